@@ -0,0 +1,37 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.bench;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * ベンチマークの起動クラス
+ *
+ * JMHのコマンドライン引数をそのまま受け付け、割り当て量を報告するため {@link GCProfiler} を常に追加します。
+ * スループットとレイテンシ（p99を含むパーセンタイル）は各ベンチマークの {@code @BenchmarkMode} で測定します。
+ * ヘルプや一覧の表示はJMH標準の起動クラスに任せます。
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListWithParams()
+                || commandLine.shouldListProfilers() || commandLine.shouldListResultFormats()) {
+            Main.main(args);
+            return;
+        }
+        new Runner(new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
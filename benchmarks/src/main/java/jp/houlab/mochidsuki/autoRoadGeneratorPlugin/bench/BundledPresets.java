@@ -0,0 +1,72 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.bench;
+
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.preset.RoadPreset;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * プラグインに同梱されている道路プリセット（presets/road/*.yml）を読み込むクラス
+ *
+ * 同梱プリセットはスライスとブロックをリストで記述した形式のため、ここで直接 {@link RoadPreset} に変換します。
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class BundledPresets {
+
+    private BundledPresets() {
+    }
+
+    /**
+     * 同梱の道路プリセットを読み込みます。
+     * @param name プリセット名（拡張子なし）
+     * @return 読み込んだプリセット
+     */
+    public static RoadPreset loadRoad(String name) {
+        String resource = "presets/road/" + name + ".yml";
+        try (InputStream in = BundledPresets.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Bundled preset not found: " + resource);
+            }
+            try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                return toRoadPreset(YamlConfiguration.loadConfiguration(reader));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read " + resource, e);
+        }
+    }
+
+    private static RoadPreset toRoadPreset(YamlConfiguration config) {
+        int lengthX = config.getInt("lengthX");
+        int widthZ = config.getInt("widthZ");
+        int heightY = config.getInt("heightY");
+        List<RoadPreset.PresetSlice> slices = new ArrayList<>();
+        for (Map<?, ?> sliceMap : config.getMapList("slices")) {
+            RoadPreset.PresetSlice slice = new RoadPreset.PresetSlice(toInt(sliceMap.get("xPosition")), widthZ, heightY);
+            Object blocks = sliceMap.get("blocks");
+            if (blocks instanceof List<?> blockList) {
+                for (Object entry : blockList) {
+                    if (entry instanceof Map<?, ?> block) {
+                        slice.setBlockString(toInt(block.get("z")), toInt(block.get("y")), String.valueOf(block.get("blockString")));
+                    }
+                }
+            }
+            slices.add(slice);
+        }
+        return new RoadPreset(config.getString("name"), slices, lengthX, widthZ, heightY,
+                config.getInt("axisZOffset", widthZ / 2), config.getInt("axisYOffset", heightY / 2));
+    }
+
+    private static int toInt(Object value) {
+        return value instanceof Number number ? number.intValue() : 0;
+    }
+}
@@ -0,0 +1,126 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.bench;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * ベンチマーク用の最小限のBukkitサーバー
+ *
+ * サーバーを起動せずに計算処理を実行するため、{@link Bukkit#setServer(Server)} に動的プロキシのサーバーを登録します。
+ * 実装しているのはロガー、ワールドの検索、{@link Bukkit#createBlockData(String)} だけで、
+ * 作成されるBlockDataは文字列とマテリアルを保持するだけです。その他のメソッドは既定値（null・0・false）を返します。
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class HeadlessServer {
+
+    private static final Logger LOGGER = Logger.getLogger("AutoRoadGeneratorPlugin-benchmarks");
+    private static final UUID WORLD_ID = UUID.nameUUIDFromBytes("benchmark".getBytes());
+    private static World world;
+
+    private HeadlessServer() {
+    }
+
+    /**
+     * サーバーを登録し、ベンチマーク用のワールドを返します。複数回呼び出しても登録は1回だけです。
+     * @return ベンチマーク用のワールド
+     */
+    public static synchronized World install() {
+        if (world != null) {
+            return world;
+        }
+        world = proxy(World.class, (self, method, args) -> switch (method.getName()) {
+            case "getName" -> "benchmark";
+            case "getUID" -> WORLD_ID;
+            case "getMinHeight" -> -64;
+            case "getMaxHeight" -> 320;
+            case "hashCode" -> WORLD_ID.hashCode();
+            case "equals" -> self == args[0];
+            case "toString" -> "HeadlessWorld";
+            default -> defaultValue(method.getReturnType());
+        });
+        if (Bukkit.getServer() == null) {
+            Bukkit.setServer(proxy(Server.class, (self, method, args) -> switch (method.getName()) {
+                case "getLogger" -> LOGGER;
+                case "getName" -> "HeadlessServer";
+                case "getVersion", "getBukkitVersion" -> "benchmark";
+                case "getWorlds" -> List.of(world);
+                case "getWorld" -> args[0] instanceof UUID ? (WORLD_ID.equals(args[0]) ? world : null)
+                        : ("benchmark".equals(args[0]) ? world : null);
+                case "getOnlinePlayers" -> Collections.emptyList();
+                case "isPrimaryThread" -> true;
+                case "createBlockData" -> args.length > 0 && args[0] instanceof String state ? blockData(state) : null;
+                case "hashCode" -> System.identityHashCode(self);
+                case "equals" -> self == args[0];
+                case "toString" -> "HeadlessServer";
+                default -> defaultValue(method.getReturnType());
+            }));
+        }
+        return world;
+    }
+
+    /**
+     * 文字列とマテリアルだけを保持するBlockDataを作成します。
+     */
+    private static BlockData blockData(String state) {
+        int bracket = state.indexOf('[');
+        Material material = Material.matchMaterial(bracket >= 0 ? state.substring(0, bracket) : state);
+        if (material == null) {
+            throw new IllegalArgumentException("Could not parse data: " + state);
+        }
+        return proxy(BlockData.class, (self, method, args) -> switch (method.getName()) {
+            case "getAsString" -> state;
+            case "getMaterial" -> material;
+            case "clone" -> self;
+            case "matches" -> args[0] instanceof BlockData other && state.equals(other.getAsString());
+            case "hashCode" -> state.hashCode();
+            case "equals" -> args[0] instanceof BlockData other && state.equals(other.getAsString());
+            case "toString" -> "HeadlessBlockData{" + state + "}";
+            default -> defaultValue(method.getReturnType());
+        });
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(HeadlessServer.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) {
+            return null;
+        }
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == char.class) {
+            return '\0';
+        }
+        if (type == float.class) {
+            return 0.0f;
+        }
+        if (type == double.class) {
+            return 0.0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == byte.class) {
+            return (byte) 0;
+        }
+        if (type == short.class) {
+            return (short) 0;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,119 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.bench;
+
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route.CurveAnchor;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route.EdgeMode;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route.PolylineBuffer;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route.RouteCalculator;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route.RouteEdge;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route.RouteNode;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route.RouteSession;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.Random;
+
+/**
+ * ベンチマーク用の道路網を生成するクラス
+ *
+ * 緩やかに蛇行しながら起伏する幹線に、一定間隔で支線を分岐させた道路網を作ります。
+ * 分岐点には3本のエッジが接続するため、接線の計算では隣接エッジを使う場合と使わない場合の両方が含まれます。
+ * 同じ引数からは常に同じ道路網が生成されます。
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class SyntheticRoutes {
+
+    /** ノード間の水平距離（ブロック） */
+    private static final double NODE_SPACING = 24.0;
+    /** 支線を分岐させる幹線のノード間隔 */
+    private static final int BRANCH_INTERVAL = 25;
+    /** アンカーを弦からずらす距離（ブロック） */
+    private static final double ANCHOR_OFFSET = 5.0;
+
+    private SyntheticRoutes() {
+    }
+
+    /**
+     * 道路網を生成します。
+     * @param world 道路網のワールド
+     * @param edgeCount エッジの数
+     * @param mix エッジモードの構成（STRAIGHT・ARC・CLOTHOID はすべてそのモード、MIXED は3種類を順に混在）
+     * @return 生成した道路網のセッション
+     */
+    public static RouteSession network(World world, int edgeCount, String mix) {
+        RouteSession session = new RouteSession();
+        Random random = new Random(edgeCount * 31L + mix.hashCode());
+        RouteNode previous = addNode(session, new Location(world, 0, 64, 0));
+        int trunkIndex = 0;
+        int edges = 0;
+        while (edges < edgeCount) {
+            trunkIndex++;
+            double x = trunkIndex * NODE_SPACING;
+            double z = 18.0 * Math.sin(trunkIndex * 0.7) + random.nextGaussian() * 2.0;
+            double y = 64.0 + 6.0 * Math.sin(trunkIndex * 0.3);
+            RouteNode next = addNode(session, new Location(world, x, y, z));
+            addEdge(session, previous, next, modeFor(mix, edges), random);
+            edges++;
+
+            if (trunkIndex % BRANCH_INTERVAL == 0 && edges < edgeCount) {
+                RouteNode spur = addNode(session, new Location(world, x + 6.0, y, z + NODE_SPACING));
+                addEdge(session, next, spur, modeFor(mix, edges), random);
+                edges++;
+            }
+            previous = next;
+        }
+        return session;
+    }
+
+    /**
+     * 道路網のすべてのエッジの建築用の経路を計算し、結合した経路を返します。
+     * @param session {@link #network} で生成したセッション
+     * @return 結合した経路
+     */
+    public static PolylineBuffer calculatedPath(RouteSession session, World world) {
+        RouteCalculator calculator = new RouteCalculator();
+        for (RouteEdge edge : session.getEdges()) {
+            PolylineBuffer path = calculator.calculate(edge, session, 1.0, null, null);
+            edge.setCalculatedPath(path, null, session.getPathDependencyStamp(edge));
+        }
+        session.refreshCalculatedPath(world);
+        return session.getCalculatedPath();
+    }
+
+    private static RouteNode addNode(RouteSession session, Location location) {
+        RouteNode node = new RouteNode(location);
+        session.addNode(node);
+        return node;
+    }
+
+    private static void addEdge(RouteSession session, RouteNode from, RouteNode to, EdgeMode mode, Random random) {
+        RouteEdge edge = new RouteEdge(from, to, mode);
+        session.addEdge(edge);
+        if (mode != EdgeMode.ARC) {
+            return;
+        }
+        // 弦の中点から左右どちらかにずらした位置にアンカーを置く
+        Location a = from.getLocation();
+        Location b = to.getLocation();
+        double dx = b.getX() - a.getX();
+        double dz = b.getZ() - a.getZ();
+        double length = Math.sqrt(dx * dx + dz * dz);
+        double side = random.nextBoolean() ? ANCHOR_OFFSET : -ANCHOR_OFFSET;
+        Location anchorLocation = new Location(a.getWorld(),
+                (a.getX() + b.getX()) / 2.0 - dz / length * side,
+                (a.getY() + b.getY()) / 2.0,
+                (a.getZ() + b.getZ()) / 2.0 + dx / length * side);
+        CurveAnchor anchor = new CurveAnchor(anchorLocation);
+        session.addAnchor(anchor);
+        session.setEdgeAnchor(edge, anchor);
+    }
+
+    private static EdgeMode modeFor(String mix, int index) {
+        if ("MIXED".equals(mix)) {
+            return EdgeMode.values()[index % EdgeMode.values().length];
+        }
+        return EdgeMode.valueOf(mix);
+    }
+}
@@ -0,0 +1,88 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build;
+
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.bench.BundledPresets;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.bench.HeadlessServer;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.bench.SyntheticRoutes;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.preset.RoadPreset;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route.PolylineBuffer;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route.RouteSession;
+import org.bukkit.World;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 道路の断面をボクセルに投票する処理（{@link BuildCalculationTask} の fillSegmentInGrid）のベンチマーク
+ *
+ * 生成した道路網の結合経路を {@link BuildCalculationTask#run()} と同じく0.1ブロック間隔に細分化し、
+ * 同梱プリセットで経路全体を1つのキャンバスに投票してから確定させるまでを測定します。
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoadRasterBenchmark {
+
+    @Param({"basic_stone_road", "cobblestone_path", "modern_concrete_road"})
+    public String preset;
+
+    @Param({"10", "100"})
+    public int edgeCount;
+
+    @Param({"STRAIGHT", "MIXED"})
+    public String mix;
+
+    private BuildCalculationTask task;
+    private RoadPreset roadPreset;
+    private PolylineBuffer path;
+    private double[] directionX;
+    private double[] directionZ;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        World world = HeadlessServer.install();
+        RouteSession session = SyntheticRoutes.network(world, edgeCount, mix);
+        roadPreset = BundledPresets.loadRoad(preset);
+        path = SyntheticRoutes.calculatedPath(session, world).subdivide(0.1, 1000);
+        task = new BuildCalculationTask(null, UUID.randomUUID(), session, roadPreset, false, false, UUID.randomUUID(), UUID.randomUUID());
+
+        // 進行方向は前後の点を結ぶベクトルのXZ成分（測定対象外）
+        int size = path.size();
+        directionX = new double[size];
+        directionZ = new double[size];
+        for (int i = 0; i < size; i++) {
+            int from = Math.max(0, i - 1);
+            int to = Math.min(size - 1, i + 1);
+            double dx = path.getX(to) - path.getX(from);
+            double dz = path.getZ(to) - path.getZ(from);
+            double length = Math.sqrt(dx * dx + dz * dz);
+            directionX[i] = length > 0 ? dx / length : 1.0;
+            directionZ[i] = length > 0 ? dz / length : 0.0;
+        }
+    }
+
+    @Benchmark
+    public VoxelCanvas rasterizeAndResolve() {
+        VoxelCanvas canvas = new VoxelCanvas();
+        task.processPathChunk(path, 0, path.size(), directionX, directionZ, roadPreset.getPalette(), canvas);
+        return canvas.resolveVotes();
+    }
+}
@@ -0,0 +1,98 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build;
+
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.bench.HeadlessServer;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.bench.SyntheticRoutes;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.preset.WallPreset;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route.PolylineBuffer;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route.RouteSession;
+import org.bukkit.World;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 壁の平行曲線の生成とブロックへの変換（{@link WallOffsetTracer}）、および断面の書き込み
+ * （{@link WallCalculationTask} の stampWallCrossSections）のベンチマーク
+ *
+ * 断面には、幅3・高さ5で上段に向きを持つ階段と壁を含む合成プリセットを使用します。
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WallOffsetBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int edgeCount;
+
+    @Param({"STRAIGHT", "MIXED"})
+    public String mix;
+
+    @Param({"2.5", "8.0"})
+    public double offset;
+
+    private PolylineBuffer path;
+    private PolylineBuffer cells;
+    private WallPreset wallPreset;
+    private WallCalculationTask task;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        World world = HeadlessServer.install();
+        RouteSession session = SyntheticRoutes.network(world, edgeCount, mix);
+        path = SyntheticRoutes.calculatedPath(session, world);
+        cells = WallOffsetTracer.trace(path, offset);
+        wallPreset = syntheticWall();
+        task = new WallCalculationTask(null, UUID.randomUUID(), session, wallPreset, offset, 0.0, false, true, UUID.randomUUID(), UUID.randomUUID());
+    }
+
+    @Benchmark
+    public PolylineBuffer traceOffsetCells() {
+        return WallOffsetTracer.trace(path, offset);
+    }
+
+    /** 経路全体の断面を1つのキャンバスに書き込む（1タイル分の処理を経路全体で行う） */
+    @Benchmark
+    public VoxelCanvas stampCrossSections() {
+        VoxelCanvas canvas = new VoxelCanvas(VoxelCanvas.RESOLVED_SLOTS);
+        task.stampWallCrossSections(cells, 0, cells.size(), wallPreset, canvas);
+        return canvas;
+    }
+
+    private static WallPreset syntheticWall() {
+        List<WallPreset.WallSlice> slices = new ArrayList<>();
+        for (int x = 0; x < 2; x++) {
+            WallPreset.WallSlice slice = new WallPreset.WallSlice(x, 3, 5);
+            for (int z = 0; z < 3; z++) {
+                for (int y = 0; y < 3; y++) {
+                    slice.setBlockString(z, y, x == 0 ? "minecraft:stone_bricks" : "minecraft:mossy_stone_bricks");
+                }
+                slice.setBlockString(z, 3, "minecraft:stone_brick_wall[east=none,north=low,south=low,up=true,waterlogged=false,west=none]");
+            }
+            slice.setBlockString(0, 4, "minecraft:stone_brick_stairs[facing=west,half=bottom,shape=straight,waterlogged=false]");
+            slice.setBlockString(2, 4, "minecraft:stone_brick_stairs[facing=east,half=bottom,shape=straight,waterlogged=false]");
+            slices.add(slice);
+        }
+        return new WallPreset("synthetic_wall", slices, 2, 3, 5, 0, 1, 0);
+    }
+}
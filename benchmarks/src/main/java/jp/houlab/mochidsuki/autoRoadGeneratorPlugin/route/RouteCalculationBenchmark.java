@@ -0,0 +1,90 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route;
+
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.bench.HeadlessServer;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.bench.SyntheticRoutes;
+import org.bukkit.World;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 道路網全体の経路計算のベンチマーク
+ *
+ * {@link RouteRecalculator} と同じ2段階（メインスレッドでのスナップショット作成と、エッジごとの経路計算）を
+ * 1スレッドで測定します。エッジごとの計算は独立しているため、並列時の所要時間はおおよそこれを計算スレッド数で割った値です。
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouteCalculationBenchmark {
+
+    /** 経路計算時の弧長表の1区間の長さ（{@link RouteRecalculator} と同じ値） */
+    private static final double PATH_STEP = 1.0;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int edgeCount;
+
+    @Param({"STRAIGHT", "ARC", "CLOTHOID", "MIXED"})
+    public String mix;
+
+    private RouteSession session;
+    private RouteCalculator calculator;
+    private List<EdgeSnapshot> snapshots;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        World world = HeadlessServer.install();
+        session = SyntheticRoutes.network(world, edgeCount, mix);
+        calculator = new RouteCalculator();
+        snapshots = new ArrayList<>();
+        for (RouteEdge edge : session.getEdges()) {
+            snapshots.add(calculator.snapshot(edge, session, null, null));
+        }
+    }
+
+    /** メインスレッドで行う、全エッジの版番号とスナップショットの作成 */
+    @Benchmark
+    public void snapshotNetwork(Blackhole blackhole) {
+        for (RouteEdge edge : session.getEdges()) {
+            blackhole.consume(session.getPathDependencyStamp(edge));
+            blackhole.consume(calculator.snapshot(edge, session, null, null));
+        }
+    }
+
+    /** 計算スレッドで行う、全エッジの建築用と表示用の経路の計算 */
+    @Benchmark
+    public void calculateNetwork(Blackhole blackhole) {
+        for (EdgeSnapshot snapshot : snapshots) {
+            blackhole.consume(calculator.calculate(snapshot, PATH_STEP, PathTolerance.BUILD, PathTolerance.PREVIEW));
+        }
+    }
+
+    /** 建築用の経路だけの計算（等間隔の標本化） */
+    @Benchmark
+    public void calculateBuildPaths(Blackhole blackhole) {
+        for (EdgeSnapshot snapshot : snapshots) {
+            blackhole.consume(calculator.calculate(snapshot, PATH_STEP, PathTolerance.BUILD));
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.util;
+
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build.VoxelCanvas;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.preset.BlockStatePalette;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BlockData文字列の回転（{@link StringBlockRotationUtil}）のベンチマーク
+ *
+ * 同梱プリセットのブロックに、向き・軸・レール・階段・複数面の各プロパティを持つ状態を加えた文字列を、
+ * オブジェクト配置と同じく1〜3回の90度回転で回転させます。
+ * 建築で実際に使われる、パレットを通した回転と確定済みキャンバスの一括回転（{@link VoxelCanvas#rotateAll}）も計測します。
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlockRotationBenchmark {
+
+    private static final String[] STATES = {
+            "minecraft:stone",
+            "minecraft:cobblestone",
+            "minecraft:mossy_cobblestone",
+            "minecraft:gray_concrete",
+            "minecraft:yellow_concrete",
+            "minecraft:cobblestone_wall[east=none,north=low,south=low,up=true,waterlogged=false,west=none]",
+            "minecraft:oak_fence[east=true,north=false,south=false,waterlogged=false,west=true]",
+            "minecraft:stone_brick_stairs[facing=north,half=bottom,shape=outer_left,waterlogged=false]",
+            "minecraft:oak_log[axis=x]",
+            "minecraft:rail[shape=north_east]",
+            "minecraft:lantern[hanging=true,waterlogged=false]",
+            "minecraft:oak_wall_sign[facing=east,waterlogged=false]",
+            "minecraft:iron_bars[east=true,north=false,south=false,waterlogged=false,west=true]",
+            "minecraft:stone_slab[type=bottom,waterlogged=false]"
+    };
+
+    @Param({"64", "4096"})
+    public int blockCount;
+
+    private String[] blocks;
+    private int[] quarterTurns;
+    private BlockStatePalette palette;
+    private int[] paletteIds;
+    private VoxelCanvas canvas;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(blockCount);
+        blocks = new String[blockCount];
+        quarterTurns = new int[blockCount];
+        palette = new BlockStatePalette();
+        paletteIds = new int[blockCount];
+        canvas = new VoxelCanvas();
+        for (int i = 0; i < blockCount; i++) {
+            blocks[i] = STATES[random.nextInt(STATES.length)];
+            quarterTurns[i] = 1 + random.nextInt(3);
+            paletteIds[i] = palette.intern(blocks[i]);
+            canvas.vote(i % 64 + 0.5, 64.5, i / 64 + 0.5, paletteIds[i], 0, 0, 90.0 * quarterTurns[i]);
+        }
+        canvas = canvas.resolveVotes();
+    }
+
+    /** 1ブロックずつ回転（キャッシュ済みの結果の検索） */
+    @Benchmark
+    public void rotateEach(Blackhole blackhole) {
+        for (int i = 0; i < blocks.length; i++) {
+            blackhole.consume(StringBlockRotationUtil.rotateQuarterTurns(blocks[i], quarterTurns[i]));
+        }
+    }
+
+    /** パレットIDのまま回転（プリセットの事前計算と壁の断面の配置で使用） */
+    @Benchmark
+    public void rotatePaletteIds(Blackhole blackhole) {
+        for (int i = 0; i < paletteIds.length; i++) {
+            blackhole.consume(palette.rotate(paletteIds[i], quarterTurns[i]));
+        }
+    }
+
+    /**
+     * 確定済みキャンバスの一括回転（道路の建築で使用）
+     * キャンバスは呼び出しごとに回転した状態のまま残るが、ボクセルごとの処理量は変わらない。
+     */
+    @Benchmark
+    public VoxelCanvas rotateCanvas() {
+        canvas.rotateAll(palette, 0.0);
+        return canvas;
+    }
+}
@@ -1,6 +1,11 @@
 package jp.houlab.mochidsuki.autoRoadGeneratorPlugin;
 
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build.BuildHistoryManager;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build.BuildJobManager;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build.ComputeScheduler;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build.PlacementBudget;
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.commands.LanguageCommand;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.commands.RbuildCommand;
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.commands.ReditCommand;
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.commands.RobjCommand;
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.commands.RroadCommand;
@@ -20,7 +25,9 @@ import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route.RouteCalculator;
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route.RouteEditListener;
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route.RouteSession;
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route.RouteVisualizer;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route.TerrainHeightCache;
 import org.bukkit.entity.Player;
+import org.bukkit.plugin.ServicePriority;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.scheduler.BukkitTask;
 
@@ -64,6 +71,12 @@ public class AutoRoadGeneratorPluginMain extends JavaPlugin {
     private ObjectPresetManager objectPresetManager;
     private WallPresetManager wallPresetManager;
     private MessageManager messageManager;
+    private ComputeScheduler computeScheduler;
+    private PlacementBudget placementBudget;
+    private BukkitTask placementBudgetTask;
+    private BuildJobManager buildJobManager;
+    private BuildHistoryManager buildHistoryManager;
+    private TerrainHeightCache terrainHeightCache;
 
     @Override
     public void onEnable() {
@@ -73,6 +86,35 @@ public class AutoRoadGeneratorPluginMain extends JavaPlugin {
         // MessageManagerの初期化
         this.messageManager = new MessageManager(this);
 
+        // 建築計算用の共有スケジューラーの初期化
+        int computeThreads = getConfig().getInt("performance.compute_threads", 0);
+        int computeQueueDepth = getConfig().getInt("performance.compute_queue_depth", 1024);
+        this.computeScheduler = new ComputeScheduler(getLogger(),
+                computeThreads > 0 ? computeThreads : ComputeScheduler.defaultParallelism(), computeQueueDepth);
+
+        // 全ての設置タスクで共有するティック予算の初期化（設置タスクより先に毎ティック実行される）
+        this.placementBudget = new PlacementBudget(
+                getConfig().getDouble("performance.min_tick_budget_ms", 1.0),
+                getConfig().getDouble("performance.tick_budget_ms", 10.0),
+                getConfig().getDouble("performance.target_mspt", 50.0),
+                getConfig().getInt("performance.max_blocks_per_tick", 0),
+                getConfig().getInt("performance.max_chunk_loads_per_tick", 2));
+        this.placementBudgetTask = placementBudget.runTaskTimer(this, 0L, 1L);
+
+        // 建築履歴（取り消し用）の管理。前回の起動時に書き出した履歴も読み込む
+        this.buildHistoryManager = new BuildHistoryManager(this,
+                getConfig().getDouble("undo.memory_budget_mb", 64.0),
+                getConfig().getInt("undo.max_history_per_player", 20));
+
+        // 建築ジョブの管理（他のプラグインからはServicesManager経由で参照できる）
+        this.buildJobManager = new BuildJobManager(this,
+                getConfig().getInt("performance.max_concurrent_jobs", 4),
+                getConfig().getInt("performance.max_jobs_per_player", 1));
+        getServer().getServicesManager().register(BuildJobManager.class, buildJobManager, this, ServicePriority.Normal);
+
+        // 地形追従用の地表の高さ（経路の再計算が参照し、設置タスクが変わったチャンクを破棄する）
+        this.terrainHeightCache = new TerrainHeightCache(this);
+
         this.calculator = new RouteCalculator();
         this.visualizer = new RouteVisualizer(this);
         this.routeEditListener = new RouteEditListener(this, calculator, visualizer);
@@ -81,7 +123,7 @@ public class AutoRoadGeneratorPluginMain extends JavaPlugin {
         this.objectPresetManager = new ObjectPresetManager(this);
         this.wallPresetManager = new WallPresetManager(this);
 
-        RroadCommand rroadCommand = new RroadCommand(this, presetManager, playerSessions);
+        RroadCommand rroadCommand = new RroadCommand(this, presetManager, wallPresetManager, objectPresetManager, playerSessions);
         getCommand("rroad").setExecutor(rroadCommand);
         getCommand("rroad").setTabCompleter(rroadCommand);
 
@@ -99,6 +141,10 @@ public class AutoRoadGeneratorPluginMain extends JavaPlugin {
 
         getCommand("rundo").setExecutor(new RundoCommand(this));
 
+        RbuildCommand rbuildCommand = new RbuildCommand(this);
+        getCommand("rbuild").setExecutor(rbuildCommand);
+        getCommand("rbuild").setTabCompleter(rbuildCommand);
+
         LanguageCommand langCommand = new LanguageCommand(this);
         getCommand("lang").setExecutor(langCommand);
         getCommand("lang").setTabCompleter(langCommand);
@@ -108,7 +154,7 @@ public class AutoRoadGeneratorPluginMain extends JavaPlugin {
         getServer().getPluginManager().registerEvents(new ObjectBrushListener(this, objectCreationSessions), this);
         getServer().getPluginManager().registerEvents(new WallListener(this, wallCreationSessions), this);
 
-        this.routeEditTask = routeEditListener.runTaskTimer(this, 0L, 20L);
+        this.routeEditTask = routeEditListener.runTaskTimer(this, 0L, routeEditListener.getPreviewIntervalTicks());
 
         getLogger().info(messageManager.getMessage("plugin.enabled"));
     }
@@ -118,6 +164,18 @@ public class AutoRoadGeneratorPluginMain extends JavaPlugin {
         if (this.routeEditTask != null && !this.routeEditTask.isCancelled()) {
             this.routeEditTask.cancel();
         }
+        if (buildJobManager != null) {
+            buildJobManager.shutdown();
+        }
+        if (buildHistoryManager != null) {
+            buildHistoryManager.shutdown();
+        }
+        if (this.placementBudgetTask != null && !this.placementBudgetTask.isCancelled()) {
+            this.placementBudgetTask.cancel();
+        }
+        if (computeScheduler != null) {
+            computeScheduler.shutdown();
+        }
         for(Player player : getServer().getOnlinePlayers()){
             RouteSession session = routeSessions.get(player.getUniqueId());
             if(session != null){
@@ -156,4 +214,44 @@ public class AutoRoadGeneratorPluginMain extends JavaPlugin {
     public MessageManager getMessageManager() {
         return messageManager;
     }
+
+    /**
+     * 建築計算用の共有スケジューラーを取得します。
+     * @return ComputeSchedulerのインスタンス
+     */
+    public ComputeScheduler getComputeScheduler() {
+        return computeScheduler;
+    }
+
+    /**
+     * ブロック設置用の共有ティック予算を取得します。
+     * @return PlacementBudgetのインスタンス
+     */
+    public PlacementBudget getPlacementBudget() {
+        return placementBudget;
+    }
+
+    /**
+     * 建築ジョブのマネージャーを取得します。
+     * @return BuildJobManagerのインスタンス
+     */
+    public BuildJobManager getBuildJobManager() {
+        return buildJobManager;
+    }
+
+    /**
+     * 建築履歴のマネージャーを取得します。
+     * @return BuildHistoryManagerのインスタンス
+     */
+    public BuildHistoryManager getBuildHistoryManager() {
+        return buildHistoryManager;
+    }
+
+    /**
+     * 地形追従用の地表の高さのキャッシュを取得します。
+     * @return TerrainHeightCacheのインスタンス
+     */
+    public TerrainHeightCache getTerrainHeightCache() {
+        return terrainHeightCache;
+    }
 }
@@ -86,7 +86,7 @@ public class BlockRotationUtil {
      * @param rotationAngle 回転角度（ラジアン）
      * @return 90度単位の回転数（0-3）
      */
-    private static int getQuarterTurns(double rotationAngle) {
+    public static int getQuarterTurns(double rotationAngle) {
         // ラジアンを度に変換
         double degrees = Math.toDegrees(rotationAngle);
 
@@ -1,10 +1,12 @@
 package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build;
 
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.AutoRoadGeneratorPluginMain;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.preset.BlockStatePalette;
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.preset.RoadPreset;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route.PolylineBuffer;
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route.RouteSession;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.util.BlockKeyUtil;
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.util.PlayerMessageUtil;
-import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.util.StringBlockRotationUtil;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.World;
@@ -14,26 +16,27 @@ import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.util.Vector;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Queue;
-import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReference;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 
 public class BuildCalculationTask extends BukkitRunnable {
 
+    // 設置順ソートキー: Z順位・スライス・Yを各11ビット（12ビット間隔）、ボクセル添字を下位28ビットに格納する
+    // （同じ行の中の順序は sortEqualBlockRows で決める）
+    private static final long SORT_FIELD_MASK = (1L << 11) - 1;
+    private static final long SORT_INDEX_MASK = (1L << 28) - 1;
+    private static final int SORT_Y_BIAS = 1024;
+
     private final AutoRoadGeneratorPluginMain plugin;
     private final UUID playerUUID;
     private final RouteSession routeSession;
@@ -43,9 +46,6 @@ public class BuildCalculationTask extends BukkitRunnable {
     private final UUID buildId;
     private final UUID edgeId;
 
-    public record Vector3d(int x, int y, int z) {}
-    public record CustomData(String blockDataString, double sourceX, double sourceY, double sourceZ, int presetZ, double pathDistance, int sliceIndex, double yaw) {}
-
     public BuildCalculationTask(AutoRoadGeneratorPluginMain plugin, UUID playerUUID, RouteSession routeSession, RoadPreset roadPreset, boolean onlyAir, boolean updateBlockData, UUID buildId, UUID edgeId) {
         this.plugin = plugin;
         this.playerUUID = playerUUID;
@@ -59,134 +59,126 @@ public class BuildCalculationTask extends BukkitRunnable {
 
     @Override
     public void run() {
-        List<Location> originalPath = routeSession.getCalculatedPath();
+        // 建築が取り消されている場合は計算せず、空の結果でセッションの集計だけを進める
+        VoxelCanvas canvas = BuildManager.isCancelled(buildId) ? new VoxelCanvas(VoxelCanvas.RESOLVED_SLOTS) : calculateCanvas();
+        BuildManager.addCanvasToSession(buildId, edgeId, canvas, plugin, playerUUID, onlyAir, updateBlockData, roadPreset);
+    }
+
+    /**
+     * エッジの経路に沿って断面を投票し、確定済みのキャンバスを計算します。回転は統合後に行うため、ここでは行いません。
+     * 複合建築（{@link CompositeBuildTask}）からも呼び出されます。
+     * @return 1ボクセル1スロットの確定済みキャンバス
+     */
+    VoxelCanvas calculateCanvas() {
+        // 設定済みの経路は変更されないため、コピーせずに参照する
+        PolylineBuffer originalPath = routeSession.getCalculatedPath();
         if (originalPath == null || originalPath.isEmpty()) {
-            BuildManager.addCanvasToSession(buildId, edgeId, new ConcurrentHashMap<>(), plugin, playerUUID, onlyAir, updateBlockData, roadPreset);
-            return;
+            return new VoxelCanvas(VoxelCanvas.RESOLVED_SLOTS);
         }
 
-        List<Location> path = new ArrayList<>(originalPath);
-
-        ConcurrentHashMap<Vector3d, ConcurrentLinkedQueue<CustomData>> tempGridCanvas = new ConcurrentHashMap<>();
-        List<Location> highResCenterPath = generateHighResPath(path, 0.1);
-
-        List<Vector> directions = new ArrayList<>(highResCenterPath.size());
-        List<Double> cumulativeDistances = new ArrayList<>(highResCenterPath.size());
-        double currentDistance = 0.0;
-        for (int i = 0; i < highResCenterPath.size(); i++) {
-            directions.add(calculateDirectionVector(highResCenterPath, i));
-            cumulativeDistances.add(currentDistance);
-            if (i < highResCenterPath.size() - 1) {
-                currentDistance += highResCenterPath.get(i).distance(highResCenterPath.get(i + 1));
-            }
+        BlockStatePalette palette = roadPreset.getPalette();
+        PolylineBuffer highResCenterPath = originalPath.subdivide(0.1, 1000);
+
+        // 各点の進行方向（XZ成分）を求める。累積距離は経路の弧長をそのまま使う
+        int pointCount = highResCenterPath.size();
+        double[] directionX = new double[pointCount];
+        double[] directionZ = new double[pointCount];
+        for (int i = 0; i < pointCount; i++) {
+            Vector direction = calculateDirectionVector(highResCenterPath, i);
+            directionX[i] = direction.getX();
+            directionZ[i] = direction.getZ();
         }
 
         int presetDepth = roadPreset.getLengthX();
-        int pointsPerChunk = (presetDepth > 0) ? presetDepth * 10 : highResCenterPath.size();
-        int numThreads = Runtime.getRuntime().availableProcessors();
-        ForkJoinPool executor = new ForkJoinPool(numThreads);
-
-        List<List<Location>> pathChunks = new ArrayList<>();
-        if (pointsPerChunk > 0 && pointsPerChunk < highResCenterPath.size()) {
-            for (int i = 0; i < highResCenterPath.size(); i += pointsPerChunk) {
-                int end = Math.min(i + pointsPerChunk, highResCenterPath.size());
-                pathChunks.add(highResCenterPath.subList(i, end));
-            }
-        } else {
-            pathChunks.add(highResCenterPath);
-        }
-
-        List<Future<Void>> futures = new ArrayList<>();
-        for (int i = 0; i < pathChunks.size(); i++) {
-            List<Location> chunk = pathChunks.get(i);
-            int startIndex = i * pointsPerChunk;
-            int endIndex = startIndex + chunk.size();
-
-            Future<Void> future = executor.submit(() -> {
-                processPathChunk(chunk, directions.subList(startIndex, endIndex), cumulativeDistances.subList(startIndex, endIndex), tempGridCanvas);
-                return null;
+        int pointsPerChunk = (presetDepth > 0 && presetDepth * 10 < pointCount) ? presetDepth * 10 : pointCount;
+        ComputeScheduler scheduler = plugin.getComputeScheduler();
+
+        List<Future<VoxelCanvas>> futures = new ArrayList<>();
+        for (int startIndex = 0; startIndex < pointCount; startIndex += pointsPerChunk) {
+            int chunkStart = startIndex;
+            int chunkEnd = Math.min(startIndex + pointsPerChunk, pointCount);
+
+            // チャンクごとに専用のキャンバスへ投票し、ロックなしで並列処理する
+            Future<VoxelCanvas> future = scheduler.submit(playerUUID, () -> {
+                VoxelCanvas chunkCanvas = new VoxelCanvas();
+                processPathChunk(highResCenterPath, chunkStart, chunkEnd, directionX, directionZ, palette, chunkCanvas);
+                return chunkCanvas;
             });
             futures.add(future);
         }
 
+        VoxelCanvas voteCanvas = new VoxelCanvas();
         try {
-            for (Future<Void> future : futures) {
-                future.get();
+            for (Future<VoxelCanvas> future : futures) {
+                voteCanvas.absorbVotes(scheduler.await(future));
             }
         } catch (InterruptedException | ExecutionException e) {
             plugin.getLogger().severe(plugin.getMessageManager().getMessage("log.path_chunk_processing_failed", edgeId, e.getMessage()));
             e.printStackTrace();
-        } finally {
-            executor.shutdown();
         }
-
-        ConcurrentHashMap<Vector3d, AtomicReference<CustomData>> finalGridCanvas = new ConcurrentHashMap<>();
-        tempGridCanvas.forEach((pos, queue) -> {
-            if (queue == null || queue.isEmpty()) return;
-
-            Map<String, Long> frequencies = queue.stream()
-                    .collect(Collectors.groupingBy(CustomData::blockDataString, Collectors.counting()));
-
-            long maxFreq = frequencies.values().stream().max(Long::compare).orElse(0L);
-
-            List<String> topBlockDataStrings = frequencies.entrySet().stream()
-                    .filter(entry -> entry.getValue() == maxFreq)
-                    .map(Map.Entry::getKey)
-                    .collect(Collectors.toList());
-
-            CustomData winner = queue.stream()
-                    .filter(data -> topBlockDataStrings.contains(data.blockDataString()))
-                    .min(Comparator.comparingDouble(data -> distanceToGridCenter(data.sourceX(), data.sourceZ())))
-                    .orElse(null);
-
-            if (winner != null) {
-                finalGridCanvas.put(pos, new AtomicReference<>(winner));
-            }
-        });
-
-        BuildManager.addCanvasToSession(buildId, edgeId, finalGridCanvas, plugin, playerUUID, onlyAir, updateBlockData, roadPreset);
+        return voteCanvas.resolveVotes();
     }
 
-    private void processPathChunk(List<Location> pathChunk, List<Vector> directions, List<Double> cumulativeDistances, ConcurrentHashMap<Vector3d, ConcurrentLinkedQueue<CustomData>> gridCanvas) {
-        final Map<Double, Location> lastPoints = new HashMap<>();
-        final Map<Double, Double> lastYaws = new HashMap<>();
-        final Map<Double, Double> lastPatterns = new HashMap<>();
-
-        for (int i = 0; i < pathChunk.size(); i++) {
-            Location centerPoint = pathChunk.get(i);
-            Vector direction = directions.get(i);
-            double yaw = Math.toDegrees(Math.atan2(-direction.getX(), direction.getZ()));
-            double patternPosition = cumulativeDistances.get(i);
-            Vector rightVector = new Vector(-direction.getZ(), 0, direction.getX()).normalize();
-
-            int maxZ = roadPreset.getWidthZ() / 2;
-
-            for (double zOffsetD = -maxZ; zOffsetD <= maxZ; zOffsetD += 0.1) {
-                int roundedZOffset = (int) Math.round(zOffsetD);
-                Location currentPoint = centerPoint.clone().add(rightVector.clone().multiply(zOffsetD));
-
-                Location lastPoint = lastPoints.get(zOffsetD);
-                Double lastYaw = lastYaws.get(zOffsetD);
-                Double lastPattern = lastPatterns.get(zOffsetD);
-
-                if (lastPoint != null) {
-                    fillSegmentInGrid(lastPoint, currentPoint, lastPattern, patternPosition, lastYaw, yaw, roundedZOffset, roadPreset, gridCanvas);
+    // ベンチマーク（benchmarks モジュール）から呼び出すためパッケージプライベート
+    void processPathChunk(PolylineBuffer path, int startIndex, int endIndex, double[] directionX, double[] directionZ, BlockStatePalette palette, VoxelCanvas gridCanvas) {
+        // 横方向のオフセット（0.1刻み）ごとに直前の点を保持する
+        int maxZ = roadPreset.getWidthZ() / 2;
+        int offsetCount = 0;
+        for (double zOffsetD = -maxZ; zOffsetD <= maxZ; zOffsetD += 0.1) {
+            offsetCount++;
+        }
+        double[] offsets = new double[offsetCount];
+        int k = 0;
+        for (double zOffsetD = -maxZ; zOffsetD <= maxZ; zOffsetD += 0.1) {
+            offsets[k++] = zOffsetD;
+        }
+        double[] lastX = new double[offsetCount];
+        double[] lastY = new double[offsetCount];
+        double[] lastZ = new double[offsetCount];
+        double lastYaw = 0.0;
+        double lastPattern = 0.0;
+
+        for (int i = startIndex; i < endIndex; i++) {
+            double dirX = directionX[i];
+            double dirZ = directionZ[i];
+            double yaw = Math.toDegrees(Math.atan2(-dirX, dirZ));
+            double patternPosition = path.getArcLength(i);
+            double rightLength = Math.sqrt(dirZ * dirZ + dirX * dirX);
+            double rightX = -dirZ / rightLength;
+            double rightZ = dirX / rightLength;
+            double centerX = path.getX(i);
+            double centerY = path.getY(i);
+            double centerZ = path.getZ(i);
+
+            for (int o = 0; o < offsetCount; o++) {
+                double zOffsetD = offsets[o];
+                double currentX = centerX + rightX * zOffsetD;
+                double currentZ = centerZ + rightZ * zOffsetD;
+
+                if (i > startIndex) {
+                    fillSegmentInGrid(lastX[o], lastY[o], lastZ[o], currentX, centerY, currentZ, lastPattern, patternPosition, lastYaw, yaw, (int) Math.round(zOffsetD), roadPreset, palette, gridCanvas);
                 }
 
-                lastPoints.put(zOffsetD, currentPoint);
-                lastYaws.put(zOffsetD, yaw);
-                lastPatterns.put(zOffsetD, patternPosition);
+                lastX[o] = currentX;
+                lastY[o] = centerY;
+                lastZ[o] = currentZ;
             }
+            lastYaw = yaw;
+            lastPattern = patternPosition;
         }
     }
 
-    private void fillSegmentInGrid(Location start, Location end, double startPattern, double endPattern, double startYaw, double endYaw, int zOffset, RoadPreset preset, ConcurrentHashMap<Vector3d, ConcurrentLinkedQueue<CustomData>> gridCanvas) {
-        Vector segment = end.toVector().subtract(start.toVector());
-        double distance = segment.length();
+    private void fillSegmentInGrid(double startX, double startY, double startZ, double endX, double endY, double endZ, double startPattern, double endPattern, double startYaw, double endYaw, int zOffset, RoadPreset preset, BlockStatePalette palette, VoxelCanvas gridCanvas) {
+        double segmentX = endX - startX;
+        double segmentY = endY - startY;
+        double segmentZ = endZ - startZ;
+        double distance = Math.sqrt(segmentX * segmentX + segmentY * segmentY + segmentZ * segmentZ);
         int steps = (int) Math.ceil(distance / 0.4);
         if (steps == 0) return;
 
-        Vector stepVector = segment.clone().divide(new Vector(steps, steps, steps));
+        double stepX = segmentX / steps;
+        double stepY = segmentY / steps;
+        double stepZ = segmentZ / steps;
         double patternStep = (endPattern - startPattern) / steps;
 
         double yawDiff = endYaw - startYaw;
@@ -194,7 +186,9 @@ public class BuildCalculationTask extends BukkitRunnable {
         if (yawDiff < -180) yawDiff += 360;
         double yawStep = yawDiff / steps;
 
-        Location currentLoc = start.clone();
+        double currentX = startX;
+        double currentY = startY;
+        double currentZ = startZ;
         double currentPattern = startPattern;
         double currentYaw = startYaw;
 
@@ -203,166 +197,140 @@ public class BuildCalculationTask extends BukkitRunnable {
             RoadPreset.PresetSlice slice = preset.getSlices().get(sliceIndex);
 
             for (int y = preset.getMinY(); y <= preset.getMaxY(); y++) {
-                String blockDataString = slice.getBlockDataStringRelativeToAxis(zOffset, y, preset.getAxisZOffset(), preset.getAxisYOffset());
+                int paletteId = slice.getPaletteIdRelativeToAxis(zOffset, y, preset.getAxisZOffset(), preset.getAxisYOffset());
 
-                if (blockDataString != null && !blockDataString.equals("minecraft:air") && !blockDataString.startsWith("minecraft:air[")) {
-                    Location blockLocation = currentLoc.clone().add(0, y, 0);
-                    String finalBlockDataString = blockDataString;
+                if (paletteId != BlockStatePalette.NO_ID && !palette.isAir(paletteId)) {
+                    double sampleY = currentY + y;
+                    int finalPaletteId = paletteId;
 
-                    if (finalBlockDataString.contains("_slab")) {
-                        String aboveBlockDataString = (y + 1 <= preset.getMaxY()) ? slice.getBlockDataStringRelativeToAxis(zOffset, y + 1, preset.getAxisZOffset(), preset.getAxisYOffset()) : null;
-                        boolean hasBlockAbove = (aboveBlockDataString != null && !aboveBlockDataString.contains("air"));
+                    if (palette.isSlab(paletteId)) {
+                        int abovePaletteId = (y + 1 <= preset.getMaxY()) ? slice.getPaletteIdRelativeToAxis(zOffset, y + 1, preset.getAxisZOffset(), preset.getAxisYOffset()) : BlockStatePalette.NO_ID;
+                        boolean hasBlockAbove = (abovePaletteId != BlockStatePalette.NO_ID && !palette.isAir(abovePaletteId));
 
                         if (!hasBlockAbove) {
-                            double heightAboveGround = blockLocation.getY() - blockLocation.getBlockY();
-                            boolean isOriginalBottom = finalBlockDataString.contains("type=bottom") || (!finalBlockDataString.contains("type=top") && !finalBlockDataString.contains("type=double"));
+                            double heightAboveGround = sampleY - Math.floor(sampleY);
+                            boolean isOriginalBottom = palette.getSlabType(paletteId) == BlockStatePalette.SLAB_BOTTOM;
 
                             if (isOriginalBottom) {
                                 if (heightAboveGround < 0.5) {
                                     continue;
                                 }
                             } else {
-                                String newType = (heightAboveGround < 0.5) ? "bottom" : "double";
-                                if (finalBlockDataString.contains("type=")) {
-                                    finalBlockDataString = finalBlockDataString.replaceAll("type=[^,\\]]*", "type=" + newType);
-                                } else if (finalBlockDataString.contains("[")) {
-                                    finalBlockDataString = finalBlockDataString.replace("]", ",type=" + newType + "]");
-                                } else {
-                                    finalBlockDataString = finalBlockDataString + "[type=" + newType + "]";
-                                }
+                                int newType = (heightAboveGround < 0.5) ? BlockStatePalette.SLAB_BOTTOM : BlockStatePalette.SLAB_DOUBLE;
+                                finalPaletteId = palette.withSlabType(paletteId, newType);
                             }
                         } else {
-                            if (finalBlockDataString.contains("type=")) {
-                                finalBlockDataString = finalBlockDataString.replaceAll("type=[^,\\]]*", "type=double");
-                            } else if (finalBlockDataString.contains("[")) {
-                                finalBlockDataString = finalBlockDataString.replace("]", ",type=double]");
-                            } else {
-                                finalBlockDataString = finalBlockDataString + "[type=double]";
-                            }
+                            finalPaletteId = palette.withSlabType(paletteId, BlockStatePalette.SLAB_DOUBLE);
                         }
                     }
 
-                    Vector3d gridKey = new Vector3d(blockLocation.getBlockX(), blockLocation.getBlockY(), blockLocation.getBlockZ());
-                    CustomData newData = new CustomData(finalBlockDataString, blockLocation.getX(), blockLocation.getY(), blockLocation.getZ(), zOffset, currentPattern, sliceIndex, currentYaw);
-                    gridCanvas.computeIfAbsent(gridKey, k -> new ConcurrentLinkedQueue<>()).add(newData);
+                    gridCanvas.vote(currentX, sampleY, currentZ, finalPaletteId, zOffset, sliceIndex, currentYaw);
                 }
             }
-            currentLoc.add(stepVector);
+            currentX += stepX;
+            currentY += stepY;
+            currentZ += stepZ;
             currentPattern += patternStep;
             currentYaw += yawStep;
         }
     }
 
-    private static double distanceToGridCenter(double x, double z) {
-        double dx = x - (Math.floor(x) + 0.5);
-        double dz = z - (Math.floor(z) + 0.5);
-        return dx * dx + dz * dz;
-    }
-
-    private static boolean shouldReplaceData(CustomData newData, CustomData existingData) {
-        int newAbsZ = Math.abs(newData.presetZ());
-        int existingAbsZ = Math.abs(existingData.presetZ());
-        if (newAbsZ != existingAbsZ) {
-            return newAbsZ < existingAbsZ;
-        }
-        return distanceToGridCenter(newData.sourceX(), newData.sourceZ()) < distanceToGridCenter(existingData.sourceX(), existingData.sourceZ());
-    }
-
-    private static List<BlockPlacementInfo> convertGridToBlockPlacementList(ConcurrentHashMap<Vector3d, AtomicReference<CustomData>> gridCanvas, World world, RoadPreset roadPreset, AutoRoadGeneratorPluginMain plugin) {
+    static List<BlockPlacementInfo> convertGridToBlockPlacementList(VoxelCanvas gridCanvas, BlockStatePalette palette, World world, RoadPreset roadPreset, AutoRoadGeneratorPluginMain plugin) {
         if (gridCanvas.isEmpty()) return new ArrayList<>();
 
-        List<CustomData> allData = gridCanvas.values().stream()
-                .map(AtomicReference::get)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
-
-        List<Integer> zValues = allData.stream()
-                .map(CustomData::presetZ)
-                .distinct()
-                .sorted()
-                .collect(Collectors.toList());
-
-        List<Integer> zOrder = new ArrayList<>();
-        if (!zValues.isEmpty()) {
-            int zCount = zValues.size();
-            for (int i = 0; i <= (zCount - 1) / 2; i++) {
-                zOrder.add(zValues.get(i));
-                if (i != zCount - 1 - i) {
-                    zOrder.add(zValues.get(zCount - 1 - i));
-                }
-            }
+        int[] zValues = new int[gridCanvas.size()];
+        for (int i = 0; i < zValues.length; i++) {
+            zValues[i] = gridCanvas.presetZAt(i);
         }
+        zValues = Arrays.stream(zValues).distinct().sorted().toArray();
 
+        // 中心線から外側へ向かって交互に並ぶZの設置順
         Map<Integer, Integer> zOrderMap = new HashMap<>();
-        for (int i = 0; i < zOrder.size(); i++) {
-            zOrderMap.put(zOrder.get(i), i);
+        int zCount = zValues.length;
+        for (int i = 0; i <= (zCount - 1) / 2; i++) {
+            zOrderMap.put(zValues[i], zOrderMap.size());
+            if (i != zCount - 1 - i) {
+                zOrderMap.put(zValues[zCount - 1 - i], zOrderMap.size());
+            }
         }
 
-        allData.sort(Comparator
-                .comparing((CustomData data) -> zOrderMap.getOrDefault(data.presetZ(), Integer.MAX_VALUE))
-                .thenComparing(CustomData::sliceIndex)
-                .thenComparing(CustomData::sourceY)
-        );
-
-        List<BlockPlacementInfo> result = new ArrayList<>(allData.size());
-        for (CustomData data : allData) {
+        // Zの順序・スライス・Yの順で並べるため、ソートキーと添字を1つのlongに詰めて整列する
+        long[] sortKeys = new long[gridCanvas.size()];
+        for (int i = 0; i < sortKeys.length; i++) {
+            long zRank = Math.min(zOrderMap.get(gridCanvas.presetZAt(i)), SORT_FIELD_MASK);
+            long slice = Math.min(Math.max(gridCanvas.sliceIndexAt(i), 0), SORT_FIELD_MASK);
+            long y = (BlockKeyUtil.unpackY(gridCanvas.keyAt(i)) + SORT_Y_BIAS) & SORT_FIELD_MASK;
+            sortKeys[i] = (zRank << 52) | (slice << 40) | (y << 28) | i;
+        }
+        Arrays.sort(sortKeys);
+        sortEqualBlockRows(sortKeys, gridCanvas);
+
+        List<BlockPlacementInfo> result = new ArrayList<>(sortKeys.length);
+        for (long sortKey : sortKeys) {
+            int i = (int) (sortKey & SORT_INDEX_MASK);
+            long key = gridCanvas.keyAt(i);
+            String blockDataString = palette.get(gridCanvas.paletteIdAt(i));
             try {
-                BlockData blockData = Bukkit.createBlockData(data.blockDataString());
-                Location loc = new Location(world, Math.floor(data.sourceX()), Math.floor(data.sourceY()), Math.floor(data.sourceZ()));
+                BlockData blockData = palette.getBlockData(gridCanvas.paletteIdAt(i));
+                Location loc = new Location(world, BlockKeyUtil.unpackX(key), BlockKeyUtil.unpackY(key), BlockKeyUtil.unpackZ(key));
                 result.add(new BlockPlacementInfo(loc, blockData));
             } catch (IllegalArgumentException e) {
-                plugin.getLogger().severe(plugin.getMessageManager().getMessage("log.failed_create_block_data", data.blockDataString()));
+                plugin.getLogger().severe(plugin.getMessageManager().getMessage("log.failed_create_block_data", blockDataString));
                 plugin.getLogger().severe(plugin.getMessageManager().getMessage("log.error_message", e.getMessage()));
-                plugin.getLogger().severe(plugin.getMessageManager().getMessage("log.source_location", data.sourceX(), data.sourceY(), data.sourceZ()));
-                plugin.getLogger().severe(plugin.getMessageManager().getMessage("log.yaw_slice_preset", data.yaw(), data.sliceIndex(), data.presetZ()));
+                plugin.getLogger().severe(plugin.getMessageManager().getMessage("log.source_location", BlockKeyUtil.unpackX(key), gridCanvas.sourceYAt(i), BlockKeyUtil.unpackZ(key)));
+                plugin.getLogger().severe(plugin.getMessageManager().getMessage("log.yaw_slice_preset", gridCanvas.yawAt(i), gridCanvas.sliceIndexAt(i), gridCanvas.presetZAt(i)));
                 e.printStackTrace();
             }
         }
         return result;
     }
 
-    private List<Location> generateHighResPath(List<Location> roadPath, double maxSegmentDistance) {
-        List<Location> highResPath = new ArrayList<>();
-        if (roadPath.isEmpty()) return highResPath;
-        World world = roadPath.get(0).getWorld();
-        for (int i = 0; i < roadPath.size() - 1; i++) {
-            Location current = roadPath.get(i);
-            Location next = roadPath.get(i + 1);
-            highResPath.add(current);
-            double segmentDistance = current.distance(next);
-            if (segmentDistance > maxSegmentDistance) {
-                int subdivisions = (int) Math.ceil(segmentDistance / maxSegmentDistance);
-                subdivisions = Math.min(subdivisions, 1000);
-                for (int j = 1; j < subdivisions; j++) {
-                    double t = (double) j / subdivisions;
-                    Vector intermediateVec = current.toVector().clone().multiply(1 - t).add(next.toVector().clone().multiply(t));
-                    highResPath.add(new Location(world, intermediateVec.getX(), intermediateVec.getY(), intermediateVec.getZ()));
+    /**
+     * Z順位・スライス・ブロックのYが等しい範囲を、採用したサンプルのY（旧実装の並び順）、
+     * キャンバスのキー（{@link BlockKeyUtil#pack}）の順に並べ直します。
+     * ボクセルの添字は投票の到着順（並列計算では不定）のため、同じ行の順序を添字に頼らず一意に決めます。
+     */
+    private static void sortEqualBlockRows(long[] sortKeys, VoxelCanvas gridCanvas) {
+        int runStart = 0;
+        for (int r = 1; r <= sortKeys.length; r++) {
+            if (r < sortKeys.length && (sortKeys[r] >>> 28) == (sortKeys[runStart] >>> 28)) {
+                continue;
+            }
+            if (r - runStart > 1) {
+                Integer[] voxels = new Integer[r - runStart];
+                for (int k = 0; k < voxels.length; k++) {
+                    voxels[k] = (int) (sortKeys[runStart + k] & SORT_INDEX_MASK);
+                }
+                Arrays.sort(voxels, Comparator.comparingDouble((Integer voxel) -> gridCanvas.sourceYAt(voxel))
+                        .thenComparingLong(gridCanvas::keyAt));
+                long rowKey = sortKeys[runStart] & ~SORT_INDEX_MASK;
+                for (int k = 0; k < voxels.length; k++) {
+                    sortKeys[runStart + k] = rowKey | voxels[k];
                 }
             }
+            runStart = r;
         }
-        if (!roadPath.isEmpty()) highResPath.add(roadPath.get(roadPath.size() - 1));
-        return highResPath;
     }
 
-    private Vector calculateDirectionVector(List<Location> path, int index) {
+    private Vector calculateDirectionVector(PolylineBuffer path, int index) {
         if (path.size() < 2) return new Vector(1, 0, 0);
         Vector direction;
         if (index == 0) {
-            direction = path.get(1).toVector().subtract(path.get(0).toVector());
+            direction = segmentVector(path, 0, 1);
         } else if (index == path.size() - 1) {
-            direction = path.get(index).toVector().subtract(path.get(index - 1).toVector());
+            direction = segmentVector(path, index - 1, index);
         } else {
-            Vector incoming = path.get(index).toVector().subtract(path.get(index - 1).toVector());
-            Vector outgoing = path.get(index + 1).toVector().subtract(path.get(index).toVector());
+            Vector incoming = segmentVector(path, index - 1, index);
+            Vector outgoing = segmentVector(path, index, index + 1);
             if (incoming.length() > 0.001) incoming.normalize();
             if (outgoing.length() > 0.001) outgoing.normalize();
             direction = incoming.add(outgoing).multiply(0.5);
         }
         if (direction.length() < 0.001) {
-            if (index > 0 && path.get(index).distanceSquared(path.get(index - 1)) > 0.0001) {
-                return path.get(index).toVector().subtract(path.get(index - 1).toVector()).normalize();
-            } else if (path.size() > index + 1 && path.get(index + 1).distanceSquared(path.get(index)) > 0.0001) {
-                return path.get(index + 1).toVector().subtract(path.get(index).toVector()).normalize();
+            if (index > 0 && path.distanceSquared(index - 1, index) > 0.0001) {
+                return segmentVector(path, index - 1, index).normalize();
+            } else if (path.size() > index + 1 && path.distanceSquared(index, index + 1) > 0.0001) {
+                return segmentVector(path, index, index + 1).normalize();
             } else {
                 return new Vector(1, 0, 0);
             }
@@ -370,19 +338,54 @@ public class BuildCalculationTask extends BukkitRunnable {
         return direction.normalize();
     }
 
+    private static Vector segmentVector(PolylineBuffer path, int from, int to) {
+        return new Vector(path.getX(to) - path.getX(from), path.getY(to) - path.getY(from), path.getZ(to) - path.getZ(from));
+    }
+
     public static class BuildManager {
-        private static final Map<UUID, Map<UUID, ConcurrentHashMap<Vector3d, AtomicReference<CustomData>>>> buildSessions = new ConcurrentHashMap<>();
+        private static final Map<UUID, Map<UUID, VoxelCanvas>> buildSessions = new ConcurrentHashMap<>();
         private static final Map<UUID, Integer> expectedEdges = new ConcurrentHashMap<>();
         private static final Map<UUID, AtomicInteger> completedEdges = new ConcurrentHashMap<>();
+        private static final Map<UUID, StreamingBuildSession> streamingSessions = new ConcurrentHashMap<>();
+        private static final Map<UUID, World> buildWorlds = new ConcurrentHashMap<>();
 
-        public static void startBuildSession(UUID buildId, int edgeCount) {
+        public static void startBuildSession(UUID buildId, int edgeCount, World world) {
             buildSessions.put(buildId, new ConcurrentHashMap<>());
             expectedEdges.put(buildId, edgeCount);
             completedEdges.put(buildId, new AtomicInteger(0));
+            buildWorlds.put(buildId, world);
+        }
+
+        /**
+         * ストリーミング建築セッションを開始します。エッジの計算結果は全体の完了を待たずにタイル単位で設置されます。
+         * @param buildId 建築ID
+         * @param session エッジ登録済みのストリーミングセッション
+         */
+        public static void startStreamingSession(UUID buildId, StreamingBuildSession session) {
+            streamingSessions.put(buildId, session);
         }
 
-        public static void addCanvasToSession(UUID buildId, UUID edgeId, ConcurrentHashMap<Vector3d, AtomicReference<CustomData>> canvas, AutoRoadGeneratorPluginMain plugin, UUID playerUUID, boolean onlyAir, boolean updateBlockData, RoadPreset roadPreset) {
-            Map<UUID, ConcurrentHashMap<Vector3d, AtomicReference<CustomData>>> session = buildSessions.get(buildId);
+        /**
+         * ストリーミング建築が取り消されたかどうか
+         * @param buildId 建築ID
+         */
+        public static boolean isCancelled(UUID buildId) {
+            StreamingBuildSession streamingSession = streamingSessions.get(buildId);
+            return streamingSession != null && streamingSession.isCancelled();
+        }
+
+        public static void addCanvasToSession(UUID buildId, UUID edgeId, VoxelCanvas canvas, AutoRoadGeneratorPluginMain plugin, UUID playerUUID, boolean onlyAir, boolean updateBlockData, RoadPreset roadPreset) {
+            StreamingBuildSession streamingSession = streamingSessions.get(buildId);
+            if (streamingSession != null) {
+                streamingSession.completeEdge(edgeId, canvas);
+                // 取り消し後もエッジの結果がすべて届くまでは登録を残し、未知のセッションとして扱わない
+                if (streamingSession.isComplete()) {
+                    streamingSessions.remove(buildId);
+                }
+                return;
+            }
+
+            Map<UUID, VoxelCanvas> session = buildSessions.get(buildId);
             if (session == null) {
                 plugin.getLogger().warning(plugin.getMessageManager().getMessage("log.unknown_build_session", buildId));
                 return;
@@ -398,9 +401,10 @@ public class BuildCalculationTask extends BukkitRunnable {
         }
 
         private static void finishBuildSession(UUID buildId, AutoRoadGeneratorPluginMain plugin, UUID playerUUID, boolean onlyAir, boolean updateBlockData, RoadPreset roadPreset) {
-            Map<UUID, ConcurrentHashMap<Vector3d, AtomicReference<CustomData>>> session = buildSessions.remove(buildId);
+            Map<UUID, VoxelCanvas> session = buildSessions.remove(buildId);
             expectedEdges.remove(buildId);
             completedEdges.remove(buildId);
+            World world = buildWorlds.remove(buildId);
 
             if (session == null) return;
 
@@ -410,52 +414,31 @@ public class BuildCalculationTask extends BukkitRunnable {
                     PlayerMessageUtil.sendTranslatedMessage(plugin, player, "build.calculation_complete");
                 }
 
-                ConcurrentHashMap<Vector3d, AtomicReference<CustomData>> mergedCanvas = new ConcurrentHashMap<>();
-                for (ConcurrentHashMap<Vector3d, AtomicReference<CustomData>> canvas : session.values()) {
-                    canvas.forEach((pos, dataRef) -> {
-                        mergedCanvas.merge(pos, dataRef, (existingRef, newRef) -> {
-                            CustomData existingData = existingRef.get();
-                            CustomData newData = newRef.get();
-                            if (existingData == null) return newRef;
-                            if (newData == null) return existingRef;
-
-                            return shouldReplaceData(newData, existingData) ? newRef : existingRef;
-                        });
-                    });
+                VoxelCanvas mergedCanvas = new VoxelCanvas(VoxelCanvas.RESOLVED_SLOTS);
+                for (VoxelCanvas canvas : session.values()) {
+                    mergedCanvas.mergeResolved(canvas);
                 }
 
+                BlockStatePalette palette = roadPreset.getPalette();
+
                 // Conditionally rotate block data here, after merging and before final conversion
                 if (updateBlockData) { // This corresponds to normal rotation behavior
-                    mergedCanvas.forEach((pos, dataRef) -> {
-                        CustomData originalData = dataRef.get();
-                        if (originalData != null) {
-                            // FIX: Add 90 degrees to the yaw to correct for the preset's assumed orientation (East vs South).
-                            double correctedYaw = originalData.yaw() + 90.0;
-                            String rotatedString = StringBlockRotationUtil.rotateBlockDataString(originalData.blockDataString(), Math.toRadians(correctedYaw));
-                            CustomData rotatedData = new CustomData(rotatedString, originalData.sourceX(), originalData.sourceY(), originalData.sourceZ(), originalData.presetZ(), originalData.pathDistance(), originalData.sliceIndex(), originalData.yaw());
-                            dataRef.set(rotatedData);
-                        }
-                    });
+                    // FIX: Add 90 degrees to the yaw to correct for the preset's assumed orientation (East vs South).
+                    mergedCanvas.rotateAll(palette, 90.0);
                 }
 
-                List<BlockPlacementInfo> worldBlocks = convertGridToBlockPlacementList(mergedCanvas, player.getWorld(), roadPreset, plugin);
+                List<BlockPlacementInfo> worldBlocks = convertGridToBlockPlacementList(mergedCanvas, palette, world, roadPreset, plugin);
 
                 Bukkit.getScheduler().runTask(plugin, () -> {
                     if (player == null || !player.isOnline()) return;
 
-                    Set<Location> placedBlockLocations = worldBlocks.stream().map(BlockPlacementInfo::position).collect(Collectors.toSet());
-                    List<BlockPlacementInfo> originalBlocks = new ArrayList<>();
-                    for (Location loc : placedBlockLocations) {
-                        originalBlocks.add(new BlockPlacementInfo(loc, loc.getBlock().getBlockData()));
-                    }
-
                     String modeText = onlyAir ? plugin.getMessageManager().getMessage("build.air_mode_text") : "";
                     PlayerMessageUtil.sendTranslatedMessage(plugin, player, "build.integration_complete", worldBlocks.size(), modeText);
 
-                    BuildHistoryManager.addBuildHistory(playerUUID, originalBlocks);
+                    // 元のブロックは設置タスクが書き換える直前に記録し、完了時に建築履歴へ登録する
                     Queue<BlockPlacementInfo> placementQueue = new ConcurrentLinkedQueue<>(worldBlocks);
 
-                    new BuildPlacementTask(plugin, playerUUID, placementQueue, onlyAir, updateBlockData).runTaskTimer(plugin, 1, 1);
+                    plugin.getBuildJobManager().submit(playerUUID, BuildJobType.ROAD, new BuildPlacementTask(plugin, playerUUID, placementQueue, onlyAir, updateBlockData, true));
                 });
             });
         }
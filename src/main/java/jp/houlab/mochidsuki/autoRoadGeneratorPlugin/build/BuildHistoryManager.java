@@ -1,10 +1,19 @@
 package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build;
 
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.AutoRoadGeneratorPluginMain;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.util.PlayerMessageUtil;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
@@ -16,55 +25,334 @@ import java.util.concurrent.ConcurrentLinkedQueue;
  *
  * プレイヤーごとの建築履歴をスタック形式で管理し、
  * rundo コマンドによる建築物の取り消し機能を実現します。
- * 履歴データはメモリ内に保持され、サーバー再起動時にクリアされます。
+ *
+ * 履歴は {@link UndoRecord} に圧縮して保持します。メモリ上の履歴の合計が予算を超えると、
+ * 最も長く参照されていない履歴からプラグインフォルダの undo/ にGZIP形式で書き出してメモリから外します。
+ * サーバー停止時には残りの履歴も書き出し、次回の起動時に読み込むため、再起動後も取り消しができます。
+ * 全てのメソッドはスレッドセーフです。
  *
  * @author Mochidsuki
  * @version 1.0.0
  * @since 1.0.0
  */
 public class BuildHistoryManager {
-    // プレイヤーごとの建築履歴を保持するマップ。値のリストはスタックとして機能する。
-    private static final Map<UUID, List<List<BlockPlacementInfo>>> buildHistory = new HashMap<>();
+
+    private static final String FILE_SUFFIX = ".undo.gz";
+
+    /**
+     * 履歴スタックの1要素
+     */
+    private static final class HistoryEntry {
+        private final long id;
+        private final UUID owner;
+        private final File file;
+        // 符号化前のブロック情報（符号化が終わるまで保持する）
+        private List<BlockPlacementInfo> pending;
+        // メモリ上のレコード（ファイルに書き出した後はnull）
+        private UndoRecord record;
+        private long memoryBytes;
+        private boolean onDisk;
+        private boolean removed;
+
+        private HistoryEntry(long id, UUID owner, File file) {
+            this.id = id;
+            this.owner = owner;
+            this.file = file;
+        }
+    }
+
+    private final AutoRoadGeneratorPluginMain plugin;
+    private final File directory;
+    private final long memoryBudgetBytes;
+    private final int maxHistoryPerPlayer;
+    // プレイヤーごとの建築履歴。末尾が最新
+    private final Map<UUID, Deque<HistoryEntry>> buildHistory = new HashMap<>();
+    // メモリ上にあるレコード（参照順）
+    private final LinkedHashMap<Long, HistoryEntry> residentEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private long residentBytes = 0L;
+    private long nextRecordId = 1L;
+    private boolean closed = false;
+
+    /**
+     * @param plugin プラグインのメインインスタンス
+     * @param memoryBudgetMegabytes メモリ上に保持する履歴の上限（MB）
+     * @param maxHistoryPerPlayer プレイヤーごとに保持する履歴の数（0以下で無制限）
+     */
+    public BuildHistoryManager(AutoRoadGeneratorPluginMain plugin, double memoryBudgetMegabytes, int maxHistoryPerPlayer) {
+        this.plugin = plugin;
+        this.directory = new File(plugin.getDataFolder(), "undo");
+        this.memoryBudgetBytes = (long) (Math.max(0.0, memoryBudgetMegabytes) * 1024 * 1024);
+        this.maxHistoryPerPlayer = maxHistoryPerPlayer > 0 ? maxHistoryPerPlayer : Integer.MAX_VALUE;
+        load();
+    }
 
     /**
      * 新しい建築履歴をスタックに追加します。
+     * 符号化は計算スレッドで行われ、完了までは渡されたリストがそのまま保持されます。
      * @param uuid プレイヤーのUUID
-     * @param blockList 元の状態に戻すためのブロック情報リスト
+     * @param blockList 元の状態に戻すためのブロック情報リスト（設置順）
      */
-    public static void addBuildHistory(UUID uuid, List<BlockPlacementInfo> blockList) {
+    public void addBuildHistory(UUID uuid, List<BlockPlacementInfo> blockList) {
+        if (blockList.isEmpty()) {
+            return;
+        }
         // 設置順の逆から元に戻すため、リストを反転させる
         Collections.reverse(blockList);
-        // プレイヤーの履歴スタックがなければ初期化
-        buildHistory.computeIfAbsent(uuid, k -> new ArrayList<>());
-        // 履歴をスタックの末尾に追加 (push)
-        buildHistory.get(uuid).add(blockList);
+        HistoryEntry entry;
+        synchronized (this) {
+            long id = nextRecordId++;
+            entry = new HistoryEntry(id, uuid, recordFile(uuid, id));
+            entry.pending = blockList;
+            Deque<HistoryEntry> playerHistory = buildHistory.computeIfAbsent(uuid, k -> new ArrayDeque<>());
+            playerHistory.addLast(entry);
+            while (playerHistory.size() > maxHistoryPerPlayer) {
+                discard(playerHistory.removeFirst(), true);
+            }
+        }
+        plugin.getComputeScheduler().submit(uuid, () -> encode(entry));
     }
 
     /**
      * 最後の建築操作を取り消し（アンドゥ）します。
+     * 書き出し済みの履歴は非同期で読み込んでから取り消しジョブを投入します。
      * @param uuid プレイヤーのUUID
-     * @param plugin プラグインのメインインスタンス
-     * @return アンドゥが成功した場合は true、履歴が空の場合は false
+     * @return 取り消す履歴があった場合は true、履歴が空の場合は false
      */
-    public static boolean undoLastBuild(UUID uuid, AutoRoadGeneratorPluginMain plugin) {
-        List<List<BlockPlacementInfo>> playerHistory = buildHistory.get(uuid);
+    public boolean undoLastBuild(UUID uuid) {
+        HistoryEntry entry;
+        List<BlockPlacementInfo> pending;
+        UndoRecord record;
+        synchronized (this) {
+            Deque<HistoryEntry> playerHistory = buildHistory.get(uuid);
+            // 履歴が存在しないか、空の場合は何もしない
+            if (playerHistory == null || playerHistory.isEmpty()) {
+                return false;
+            }
+            // スタックの最後の要素（＝最後の建築操作）を取り出す (pop)
+            entry = playerHistory.removeLast();
+            pending = entry.pending;
+            record = entry.record;
+            // ファイルは読み込み後に削除する
+            discard(entry, false);
+        }
+
+        if (pending != null) {
+            submitUndo(uuid, pending);
+            return true;
+        }
+
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            List<BlockPlacementInfo> blocks;
+            try {
+                UndoRecord source = record != null ? record : UndoRecord.readFrom(entry.file);
+                blocks = source.decode();
+            } catch (IOException e) {
+                plugin.getLogger().warning(plugin.getMessageManager().getMessage("log.undo_load_failed", entry.file.getName(), e.getMessage()));
+                Bukkit.getScheduler().runTask(plugin, () -> {
+                    Player player = Bukkit.getPlayer(uuid);
+                    if (player != null) {
+                        PlayerMessageUtil.sendTranslatedMessage(plugin, player, "undo.load_failed");
+                    }
+                });
+                return;
+            }
+            deleteFile(entry.file);
+            Bukkit.getScheduler().runTask(plugin, () -> submitUndo(uuid, blocks));
+        });
+        return true;
+    }
 
-        // 履歴が存在しないか、空の場合は何もしない
-        if (playerHistory == null || playerHistory.isEmpty()) {
-            return false;
+    /**
+     * サーバー停止時に呼び出し、メモリ上の全ての履歴をファイルに書き出します。
+     */
+    public void shutdown() {
+        List<HistoryEntry> toWrite = new ArrayList<>();
+        synchronized (this) {
+            closed = true;
+            for (Deque<HistoryEntry> playerHistory : buildHistory.values()) {
+                for (HistoryEntry entry : playerHistory) {
+                    if (!entry.onDisk) {
+                        toWrite.add(entry);
+                    }
+                }
+            }
+        }
+        for (HistoryEntry entry : toWrite) {
+            UndoRecord record;
+            List<BlockPlacementInfo> pending;
+            synchronized (this) {
+                record = entry.record;
+                pending = entry.pending;
+            }
+            if (record == null && pending != null) {
+                record = UndoRecord.encode(entry.id, entry.owner, pending);
+            }
+            if (record != null) {
+                writeRecord(entry, record);
+            }
         }
+    }
+
+    /**
+     * メモリ上に保持している履歴の概算サイズ（バイト）
+     */
+    public synchronized long getResidentBytes() {
+        return residentBytes;
+    }
 
-        // スタックの最後の要素（＝最後の建築操作）を取得
-        int lastIndex = playerHistory.size() - 1;
-        List<BlockPlacementInfo> lastBuild = playerHistory.get(lastIndex);
+    /**
+     * 指定プレイヤーの取り消し可能な履歴の数
+     */
+    public synchronized int getHistorySize(UUID uuid) {
+        Deque<HistoryEntry> playerHistory = buildHistory.get(uuid);
+        return playerHistory != null ? playerHistory.size() : 0;
+    }
 
+    private void submitUndo(UUID uuid, List<BlockPlacementInfo> blocks) {
+        if (!plugin.isEnabled()) {
+            return;
+        }
         // 取得した履歴をワールドに戻すためのタスクを準備
-        Queue<BlockPlacementInfo> placementQueue = new ConcurrentLinkedQueue<>(lastBuild);
-        new BuildPlacementTask(plugin, uuid, placementQueue, false, true).runTaskTimer(plugin, 1, 1); // デフォルトでブロック更新有効
+        Queue<BlockPlacementInfo> placementQueue = new ConcurrentLinkedQueue<>(blocks);
+        // 取り消しは新しい建築より優先して実行される
+        plugin.getBuildJobManager().submit(uuid, BuildJobType.UNDO, new BuildPlacementTask(plugin, uuid, placementQueue, false, true)); // デフォルトでブロック更新有効
+    }
 
-        // 処理した履歴をスタックから削除 (pop)
-        playerHistory.remove(lastIndex);
+    // 計算スレッドで符号化し、メモリ予算を超えた分を書き出す
+    private void encode(HistoryEntry entry) {
+        List<BlockPlacementInfo> pending;
+        synchronized (this) {
+            if (entry.removed || closed) {
+                return;
+            }
+            pending = entry.pending;
+        }
+        UndoRecord record = UndoRecord.encode(entry.id, entry.owner, pending);
+        List<HistoryEntry> toSpill;
+        synchronized (this) {
+            if (entry.removed || closed) {
+                return;
+            }
+            entry.record = record;
+            entry.pending = null;
+            entry.memoryBytes = record.estimateMemoryBytes();
+            residentEntries.put(entry.id, entry);
+            residentBytes += entry.memoryBytes;
+            toSpill = selectEntriesToSpill();
+        }
+        for (HistoryEntry spilled : toSpill) {
+            writeRecord(spilled, spilled.record);
+        }
+    }
 
-        return true;
+    // 最も長く参照されていない履歴から、予算に収まるまで書き出し対象を選ぶ
+    private List<HistoryEntry> selectEntriesToSpill() {
+        List<HistoryEntry> result = new ArrayList<>();
+        Iterator<HistoryEntry> iterator = residentEntries.values().iterator();
+        while (residentBytes > memoryBudgetBytes && iterator.hasNext()) {
+            HistoryEntry entry = iterator.next();
+            iterator.remove();
+            residentBytes -= entry.memoryBytes;
+            result.add(entry);
+        }
+        return result;
+    }
+
+    // 書き出しが終わるまではレコードをメモリに残し、その間の取り消しにも対応する
+    private void writeRecord(HistoryEntry entry, UndoRecord record) {
+        // 予算超過による書き出しと停止時の書き出しが同じファイルに重ならないよう、履歴ごとに排他する
+        synchronized (entry) {
+            synchronized (this) {
+                if (entry.onDisk || entry.removed) {
+                    return;
+                }
+            }
+            try {
+                record.writeTo(entry.file);
+            } catch (IOException e) {
+                plugin.getLogger().warning(plugin.getMessageManager().getMessage("log.undo_spill_failed", entry.file.getName(), e.getMessage()));
+                return;
+            }
+            boolean removed;
+            synchronized (this) {
+                removed = entry.removed;
+                if (!removed) {
+                    entry.onDisk = true;
+                    if (!residentEntries.containsKey(entry.id)) {
+                        entry.record = null;
+                    }
+                }
+            }
+            if (removed) {
+                deleteFile(entry.file);
+            }
+        }
+    }
+
+    // 履歴をスタックから外した後に呼び出す（同期ブロック内）
+    private void discard(HistoryEntry entry, boolean deleteFile) {
+        entry.removed = true;
+        entry.pending = null;
+        entry.record = null;
+        if (residentEntries.remove(entry.id) != null) {
+            residentBytes -= entry.memoryBytes;
+        }
+        if (deleteFile && entry.onDisk) {
+            deleteFile(entry.file);
+        }
+    }
+
+    private File recordFile(UUID owner, long id) {
+        return new File(new File(directory, owner.toString()), id + FILE_SUFFIX);
+    }
+
+    private void deleteFile(File file) {
+        if (file.exists() && !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    // 書き出し済みの履歴を一覧し、ファイル名のIDの順にスタックを復元する（中身は取り消し時に読み込む）
+    private void load() {
+        File[] ownerDirectories = directory.listFiles(File::isDirectory);
+        if (ownerDirectories == null) {
+            return;
+        }
+        for (File ownerDirectory : ownerDirectories) {
+            UUID owner;
+            try {
+                owner = UUID.fromString(ownerDirectory.getName());
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            File[] files = ownerDirectory.listFiles((dir, name) -> name.endsWith(FILE_SUFFIX));
+            if (files == null) {
+                continue;
+            }
+            List<HistoryEntry> entries = new ArrayList<>();
+            for (File file : files) {
+                String name = file.getName();
+                try {
+                    long id = Long.parseLong(name.substring(0, name.length() - FILE_SUFFIX.length()));
+                    HistoryEntry entry = new HistoryEntry(id, owner, file);
+                    entry.onDisk = true;
+                    entries.add(entry);
+                    nextRecordId = Math.max(nextRecordId, id + 1);
+                } catch (NumberFormatException e) {
+                    plugin.getLogger().warning(plugin.getMessageManager().getMessage("log.undo_load_failed", name, e.getMessage()));
+                }
+            }
+            entries.sort((a, b) -> Long.compare(a.id, b.id));
+            Deque<HistoryEntry> playerHistory = new ArrayDeque<>();
+            for (HistoryEntry entry : entries) {
+                playerHistory.addLast(entry);
+                if (playerHistory.size() > maxHistoryPerPlayer) {
+                    discard(playerHistory.removeFirst(), true);
+                }
+            }
+            if (!playerHistory.isEmpty()) {
+                buildHistory.put(owner, playerHistory);
+            }
+        }
     }
 }
@@ -0,0 +1,133 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build;
+
+import java.util.UUID;
+
+/**
+ * 建築ジョブ
+ *
+ * 道路・壁・オブジェクトの設置や取り消しの1回分を表します。
+ * 進捗の取得メソッドは他のプラグインからも利用できます（{@link BuildJobManager} を参照）。
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class BuildJob {
+
+    private final int id;
+    private final UUID owner;
+    private final BuildJobType type;
+    private final long createdAt;
+    private volatile BuildJobState state;
+    private volatile long finishedAt;
+    // 実行中はタスクから、終了後・読み込み時は保存された値から進捗を返す
+    private volatile int placedBlocks;
+    private volatile int totalBlocks;
+    private BuildPlacementTask task;
+    private boolean started = false;
+
+    BuildJob(int id, UUID owner, BuildJobType type, BuildPlacementTask task) {
+        this.id = id;
+        this.owner = owner;
+        this.type = type;
+        this.task = task;
+        this.createdAt = System.currentTimeMillis();
+        this.state = BuildJobState.QUEUED;
+    }
+
+    // 保存された状態から復元する
+    BuildJob(int id, UUID owner, BuildJobType type, BuildJobState state, long createdAt, long finishedAt, int placedBlocks, int totalBlocks) {
+        this.id = id;
+        this.owner = owner;
+        this.type = type;
+        this.state = state;
+        this.createdAt = createdAt;
+        this.finishedAt = finishedAt;
+        this.placedBlocks = placedBlocks;
+        this.totalBlocks = totalBlocks;
+        this.task = null;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public UUID getOwner() {
+        return owner;
+    }
+
+    public BuildJobType getType() {
+        return type;
+    }
+
+    public BuildJobState getState() {
+        return state;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * 終了時刻（未終了の場合は0）
+     */
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+
+    /**
+     * 設置済みのブロック数
+     */
+    public int getPlacedBlocks() {
+        BuildPlacementTask current = task;
+        return current != null ? current.getTotalBlocksPlaced() : placedBlocks;
+    }
+
+    /**
+     * 設置予定のブロック数。ストリーミング建築では計算が進むにつれて増加します。
+     */
+    public int getTotalBlocks() {
+        BuildPlacementTask current = task;
+        return current != null ? current.getTotalBlocksToPlace() : totalBlocks;
+    }
+
+    /**
+     * 進捗率（0.0〜1.0）
+     */
+    public double getProgress() {
+        if (state == BuildJobState.COMPLETED) {
+            return 1.0;
+        }
+        BuildPlacementTask current = task;
+        if (current != null) {
+            return current.getProgress();
+        }
+        return totalBlocks > 0 ? Math.min(1.0, (double) placedBlocks / totalBlocks) : 0.0;
+    }
+
+    BuildPlacementTask getTask() {
+        return task;
+    }
+
+    boolean isStarted() {
+        return started;
+    }
+
+    void markStarted() {
+        started = true;
+    }
+
+    void setState(BuildJobState state) {
+        this.state = state;
+        if (state.isFinished()) {
+            finishedAt = System.currentTimeMillis();
+            // 終了したジョブはタスクへの参照を手放し、進捗だけを保持する
+            BuildPlacementTask current = task;
+            if (current != null) {
+                placedBlocks = current.getTotalBlocksPlaced();
+                totalBlocks = current.getTotalBlocksToPlace();
+                task = null;
+            }
+        }
+    }
+}
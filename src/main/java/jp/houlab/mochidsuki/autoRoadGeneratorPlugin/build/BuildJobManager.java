@@ -0,0 +1,380 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build;
+
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.AutoRoadGeneratorPluginMain;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.util.PlayerMessageUtil;
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 全プレイヤーの建築ジョブを一元管理するマネージャークラス
+ *
+ * 建築・取り消しの設置タスクは直接開始せず、このマネージャーに投入します。
+ * 同時に実行できるジョブ数はサーバー全体とプレイヤーごとに制限され、
+ * 空き枠は優先度（取り消しが最優先）と投入順に従って割り当てられます。
+ * ジョブは一時停止・再開・取り消しができ、状態はjobs.ymlに保存されます。
+ * 保存は状態の変化ごとには行わず、短い間隔にまとめてメインスレッドで内容を確定し、
+ * ファイルへの書き込みは非同期で行います（サーバー停止時のみ同期で書き込みます）。
+ *
+ * 他のプラグインは {@link org.bukkit.plugin.ServicesManager} からこのクラスを取得し、
+ * {@link #getJobs()} などで進捗を参照できます。
+ * メインスレッド専用です。
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class BuildJobManager {
+
+    /** 保存しておく終了済みジョブの数 */
+    private static final int FINISHED_HISTORY_LIMIT = 50;
+    /** 状態の変化から保存までの待ち時間（ティック）。この間の変化は1回の書き込みにまとめる */
+    private static final long SAVE_DELAY_TICKS = 20L;
+
+    private final AutoRoadGeneratorPluginMain plugin;
+    private final int maxConcurrentJobs;
+    private final int maxJobsPerPlayer;
+    private final File stateFile;
+    private final Map<Integer, BuildJob> jobs = new LinkedHashMap<>();
+    private int nextJobId = 1;
+    private boolean saveScheduled = false;
+    // 非同期の書き込みの順序を保つためのロックと、最後に書き込んだ内容の番号
+    private final Object writeLock = new Object();
+    private long snapshotSequence = 0;
+    private long writtenSequence = 0;
+
+    /**
+     * @param plugin プラグインのメインインスタンス
+     * @param maxConcurrentJobs サーバー全体で同時に実行できるジョブ数
+     * @param maxJobsPerPlayer プレイヤーごとに同時に実行できるジョブ数
+     */
+    public BuildJobManager(AutoRoadGeneratorPluginMain plugin, int maxConcurrentJobs, int maxJobsPerPlayer) {
+        this.plugin = plugin;
+        this.maxConcurrentJobs = Math.max(1, maxConcurrentJobs);
+        this.maxJobsPerPlayer = Math.max(1, maxJobsPerPlayer);
+        this.stateFile = new File(plugin.getDataFolder(), "jobs.yml");
+        load();
+    }
+
+    /**
+     * 設置タスクをジョブとして投入します。実行枠に空きがあればすぐに開始されます。
+     * @param owner ジョブを要求したプレイヤーのUUID
+     * @param type ジョブの種類
+     * @param task 設置タスク（まだ開始していないもの）
+     * @return 作成されたジョブ
+     */
+    public BuildJob submit(UUID owner, BuildJobType type, BuildPlacementTask task) {
+        BuildJob job = new BuildJob(nextJobId++, owner, type, task);
+        task.setJob(job);
+        jobs.put(job.getId(), job);
+        dispatch();
+        if (job.getState() == BuildJobState.QUEUED) {
+            Player player = Bukkit.getPlayer(owner);
+            if (player != null) {
+                PlayerMessageUtil.sendTranslatedMessage(plugin, player, "job.queued", job.getId(), countQueuedAhead(job));
+            }
+        }
+        save();
+        return job;
+    }
+
+    /**
+     * ジョブを一時停止します。実行枠は他のジョブに譲られます。
+     * @return 一時停止できた場合はtrue
+     */
+    public boolean pause(BuildJob job) {
+        if (job.getState() != BuildJobState.RUNNING && job.getState() != BuildJobState.QUEUED) {
+            return false;
+        }
+        job.setState(BuildJobState.PAUSED);
+        if (job.isStarted()) {
+            job.getTask().setPaused(true);
+        }
+        dispatch();
+        save();
+        return true;
+    }
+
+    /**
+     * 一時停止中のジョブを再開待ちに戻します。実行枠に空きがあればすぐに再開されます。
+     * @return 再開できた場合はtrue
+     */
+    public boolean resume(BuildJob job) {
+        if (job.getState() != BuildJobState.PAUSED) {
+            return false;
+        }
+        job.setState(BuildJobState.QUEUED);
+        dispatch();
+        save();
+        return true;
+    }
+
+    /**
+     * ジョブを取り消します。設置済みのブロックは建築履歴に残り、/rundo で元に戻せます。
+     * @return 取り消せた場合はtrue
+     */
+    public boolean cancel(BuildJob job) {
+        if (job.getState().isFinished()) {
+            return false;
+        }
+        job.getTask().abort();
+        job.setState(BuildJobState.CANCELLED);
+        dispatch();
+        save();
+        return true;
+    }
+
+    /**
+     * 設置タスクが全ブロックの設置を終えたときに呼ばれます。
+     */
+    void onTaskCompleted(BuildJob job) {
+        if (job.getState().isFinished()) {
+            return;
+        }
+        job.setState(BuildJobState.COMPLETED);
+        dispatch();
+        save();
+    }
+
+    /**
+     * サーバー停止時に呼び出し、未終了のジョブを中断として保存します。
+     * 途中まで設置したブロックは建築履歴に残り、再起動後も /rundo で元に戻せます。
+     */
+    public void shutdown() {
+        for (BuildJob job : jobs.values()) {
+            if (!job.getState().isFinished()) {
+                job.getTask().abort();
+                job.setState(BuildJobState.INTERRUPTED);
+            }
+        }
+        // 停止後は非同期タスクが実行されないため、その場で書き込む
+        write(snapshot(), ++snapshotSequence);
+    }
+
+    /**
+     * IDでジョブを取得します。
+     * @return ジョブ。存在しない場合はnull
+     */
+    public BuildJob getJob(int id) {
+        return jobs.get(id);
+    }
+
+    /**
+     * 全てのジョブ（保存されている終了済みジョブを含む）を投入順に取得します。
+     */
+    public List<BuildJob> getJobs() {
+        return new ArrayList<>(jobs.values());
+    }
+
+    /**
+     * 指定プレイヤーのジョブを投入順に取得します。
+     */
+    public List<BuildJob> getJobs(UUID owner) {
+        List<BuildJob> result = new ArrayList<>();
+        for (BuildJob job : jobs.values()) {
+            if (job.getOwner().equals(owner)) {
+                result.add(job);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 指定プレイヤーの未終了のジョブのうち、最も新しいものを取得します。
+     * @return ジョブ。存在しない場合はnull
+     */
+    public BuildJob getLatestActiveJob(UUID owner) {
+        BuildJob latest = null;
+        for (BuildJob job : jobs.values()) {
+            if (job.getOwner().equals(owner) && !job.getState().isFinished()) {
+                latest = job;
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * 指定プレイヤーのジョブのうち、設置を始めていて建築履歴をまだ登録していないものを取得します。
+     * 建築履歴は設置の終了時に登録されるため、このジョブがある間に /rundo を行うと1つ前の建築が取り消されてしまいます。
+     * @return ジョブ。存在しない場合はnull
+     */
+    public BuildJob getRecordingJob(UUID owner) {
+        for (BuildJob job : jobs.values()) {
+            if (job.getOwner().equals(owner) && job.isStarted() && !job.getState().isFinished()
+                    && job.getTask() != null && job.getTask().isRecordingHistory()) {
+                return job;
+            }
+        }
+        return null;
+    }
+
+    public int getMaxConcurrentJobs() {
+        return maxConcurrentJobs;
+    }
+
+    public int getMaxJobsPerPlayer() {
+        return maxJobsPerPlayer;
+    }
+
+    /**
+     * 実行枠の空きに、優先度と投入順に従って待機中のジョブを割り当てます。
+     */
+    private void dispatch() {
+        int running = 0;
+        Map<UUID, Integer> runningPerPlayer = new LinkedHashMap<>();
+        List<BuildJob> queued = new ArrayList<>();
+        for (BuildJob job : jobs.values()) {
+            if (job.getState() == BuildJobState.RUNNING) {
+                running++;
+                runningPerPlayer.merge(job.getOwner(), 1, Integer::sum);
+            } else if (job.getState() == BuildJobState.QUEUED) {
+                queued.add(job);
+            }
+        }
+        queued.sort(Comparator.comparingInt((BuildJob job) -> job.getType().getPriority()).thenComparingInt(BuildJob::getId));
+
+        for (BuildJob job : queued) {
+            if (running >= maxConcurrentJobs) {
+                break;
+            }
+            if (runningPerPlayer.getOrDefault(job.getOwner(), 0) >= maxJobsPerPlayer) {
+                continue;
+            }
+            start(job);
+            running++;
+            runningPerPlayer.merge(job.getOwner(), 1, Integer::sum);
+        }
+    }
+
+    private void start(BuildJob job) {
+        job.setState(BuildJobState.RUNNING);
+        BuildPlacementTask task = job.getTask();
+        task.setPaused(false);
+        if (!job.isStarted()) {
+            job.markStarted();
+            task.runTaskTimer(plugin, 1, 1);
+        }
+    }
+
+    private int countQueuedAhead(BuildJob target) {
+        int ahead = 0;
+        for (BuildJob job : jobs.values()) {
+            if (job != target && job.getState() == BuildJobState.QUEUED
+                    && (job.getType().getPriority() < target.getType().getPriority()
+                    || (job.getType().getPriority() == target.getType().getPriority() && job.getId() < target.getId()))) {
+                ahead++;
+            }
+        }
+        return ahead;
+    }
+
+    private void load() {
+        if (!stateFile.exists()) {
+            return;
+        }
+        YamlConfiguration config = YamlConfiguration.loadConfiguration(stateFile);
+        nextJobId = Math.max(1, config.getInt("next_id", 1));
+        ConfigurationSection section = config.getConfigurationSection("jobs");
+        if (section == null) {
+            return;
+        }
+        for (String key : section.getKeys(false)) {
+            try {
+                ConfigurationSection entry = section.getConfigurationSection(key);
+                int id = Integer.parseInt(key);
+                BuildJobState state = BuildJobState.valueOf(entry.getString("state"));
+                // 前回の起動中に終わらなかったジョブは再開できないため、中断として記録する
+                if (!state.isFinished()) {
+                    state = BuildJobState.INTERRUPTED;
+                }
+                BuildJob job = new BuildJob(id, UUID.fromString(entry.getString("owner")),
+                        BuildJobType.valueOf(entry.getString("type")), state,
+                        entry.getLong("created_at"), entry.getLong("finished_at"),
+                        entry.getInt("placed_blocks"), entry.getInt("total_blocks"));
+                jobs.put(id, job);
+                nextJobId = Math.max(nextJobId, id + 1);
+            } catch (RuntimeException e) {
+                plugin.getLogger().warning(plugin.getMessageManager().getMessage("log.job_state_load_failed", key, e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * 保存を予約します。予約済みの場合は何もしません。
+     */
+    private void save() {
+        if (saveScheduled || !plugin.isEnabled()) {
+            return;
+        }
+        saveScheduled = true;
+        Bukkit.getScheduler().runTaskLater(plugin, () -> {
+            saveScheduled = false;
+            String data = snapshot();
+            long sequence = ++snapshotSequence;
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> write(data, sequence));
+        }, SAVE_DELAY_TICKS);
+    }
+
+    // ジョブの状態はメインスレッドで文字列に確定する
+    private String snapshot() {
+        trimFinishedJobs();
+        YamlConfiguration config = new YamlConfiguration();
+        config.set("next_id", nextJobId);
+        for (BuildJob job : jobs.values()) {
+            String key = "jobs." + job.getId();
+            config.set(key + ".owner", job.getOwner().toString());
+            config.set(key + ".type", job.getType().name());
+            config.set(key + ".state", job.getState().name());
+            config.set(key + ".created_at", job.getCreatedAt());
+            config.set(key + ".finished_at", job.getFinishedAt());
+            config.set(key + ".placed_blocks", job.getPlacedBlocks());
+            config.set(key + ".total_blocks", job.getTotalBlocks());
+        }
+        return config.saveToString();
+    }
+
+    private void write(String data, long sequence) {
+        synchronized (writeLock) {
+            // 後から確定した内容をすでに書き込んでいる場合は古い内容で上書きしない
+            if (sequence <= writtenSequence) {
+                return;
+            }
+            try {
+                Files.createDirectories(stateFile.getParentFile().toPath());
+                Files.writeString(stateFile.toPath(), data, StandardCharsets.UTF_8);
+                writtenSequence = sequence;
+            } catch (IOException e) {
+                plugin.getLogger().warning(plugin.getMessageManager().getMessage("log.job_state_save_failed", e.getMessage()));
+            }
+        }
+    }
+
+    private void trimFinishedJobs() {
+        int finished = 0;
+        for (BuildJob job : jobs.values()) {
+            if (job.getState().isFinished()) {
+                finished++;
+            }
+        }
+        Iterator<BuildJob> iterator = jobs.values().iterator();
+        while (finished > FINISHED_HISTORY_LIMIT && iterator.hasNext()) {
+            if (iterator.next().getState().isFinished()) {
+                iterator.remove();
+                finished--;
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build;
+
+/**
+ * 建築ジョブの状態
+ */
+public enum BuildJobState {
+    /** 実行枠の空きを待っている */
+    QUEUED,
+    /** 設置中 */
+    RUNNING,
+    /** 一時停止中 */
+    PAUSED,
+    /** 完了 */
+    COMPLETED,
+    /** 取り消された */
+    CANCELLED,
+    /** サーバーの停止などで中断された */
+    INTERRUPTED;
+
+    /**
+     * これ以上状態が変化しないかどうか
+     */
+    public boolean isFinished() {
+        return this == COMPLETED || this == CANCELLED || this == INTERRUPTED;
+    }
+}
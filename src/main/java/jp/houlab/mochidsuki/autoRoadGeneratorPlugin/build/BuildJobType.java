@@ -0,0 +1,22 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build;
+
+/**
+ * 建築ジョブの種類。優先度の値が小さいほど先に実行されます。
+ */
+public enum BuildJobType {
+    UNDO(0),
+    ROAD(1),
+    WALL(1),
+    OBJECT(1),
+    COMPOSITE(1);
+
+    private final int priority;
+
+    BuildJobType(int priority) {
+        this.priority = priority;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+}
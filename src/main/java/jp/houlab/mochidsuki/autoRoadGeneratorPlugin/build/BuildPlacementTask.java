@@ -5,10 +5,12 @@ import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.util.PlayerMessageUtil;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.Material;
-import org.bukkit.World;
+import org.bukkit.block.Block;
 import org.bukkit.entity.Player;
 import org.bukkit.scheduler.BukkitRunnable;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
 import java.util.UUID;
 
@@ -16,9 +18,22 @@ import java.util.UUID;
  * ブロック配置タスククラス
  *
  * 道路、壁、オブジェクトの非同期ブロック配置を管理します。
- * パフォーマンスを最適化するため、1ティックあたりの配置数を制限し、
+ * サーバーへの負荷を抑えるため、{@link PlacementBudget} が割り当てる時間の範囲で設置し、
  * プログレス表示とETA計算を提供します。
  *
+ * 建築履歴を記録する場合は、各ブロックを書き換える直前に元のブロックを読み取り、
+ * 設置の完了時（または取り消し時）に設置済みの分を建築履歴へ登録します。
+ * 設置前に全ブロックを走査する必要がなく、元の状態は実際に書き換えた時点のものになります。
+ * 設置を始めてから登録までの間は /rundo を受け付けません（{@link BuildJobManager#getRecordingJob(UUID)}）。
+ *
+ * {@link PlacementStream} を受け取るストリーミングモードでは、計算が完了したバッチを
+ * 順次取り込みながら設置します。
+ *
+ * ブロックは {@link ChunkBatchQueue} によってチャンク単位にまとめられ、読み込み済みの
+ * チャンクから1チャンクずつ設置されます（新たなチャンクの読み込みは1ティックあたりの枠の範囲で行います）。performance.defer_physics を有効にすると、
+ * チャンク内のブロックは物理演算なしで設置され、接続や落下が必要なブロックのみ
+ * チャンクの最後に物理演算付きで設置されます。
+ *
  * @author Mochidsuki
  * @version 1.0.0
  * @since 1.0.0
@@ -26,30 +41,60 @@ import java.util.UUID;
 public class BuildPlacementTask extends BukkitRunnable {
 
     // 定数定義
-    /** 1ティックあたりの最大ブロック配置数 */
-    private static final int BLOCKS_PER_TICK = 500;
     /** プログレス報告間隔（ミリ秒） */
     private static final long PROGRESS_REPORT_INTERVAL = 5000;
+    /** ストリーミング時に手元に溜めておくブロック数 */
+    private static final int STREAM_BUFFER_BLOCKS = 10000;
 
     private final AutoRoadGeneratorPluginMain plugin;
     private final UUID playerUUID;
-    private final Queue<BlockPlacementInfo> placementQueue;
+    private final ChunkBatchQueue placementQueue;
     private final boolean onlyAir;
     private final boolean updateBlockData; // ブロック更新を行うかどうか
-    private final int blocksPerTick = BLOCKS_PER_TICK;
+    private final boolean deferPhysics; // チャンク単位の設置が終わるまで物理演算を遅らせるかどうか
+    private final PlacementBudget budget;
+    private boolean registeredToBudget = false;
     private int totalBlocksPlaced = 0;
-    private final int totalBlocksToPlace;
+    private int totalBlocksToPlace;
+    private final PlacementStream stream;
+    private final List<BlockPlacementInfo> originalBlocks; // 建築履歴を記録しない場合はnull
+    private final List<BlockPlacementInfo> deferredBlocks = new ArrayList<>();
+    private ChunkBatchQueue.ChunkBatch currentBatch;
+    private BuildJob job;
+    private volatile boolean paused = false;
     private long startTime = System.currentTimeMillis();
     private long lastReportTime = startTime;
 
-    // メインコンストラクタ（すべてのオプション指定可能）
+    // メインコンストラクタ（すべてのオプション指定可能。recordHistoryが有効な場合は建築履歴をこのタスクが登録する）
+    public BuildPlacementTask(AutoRoadGeneratorPluginMain plugin, UUID playerUUID, Queue<BlockPlacementInfo> placementQueue, boolean onlyAir, boolean updateBlockData, boolean recordHistory) {
+        this(plugin, playerUUID, (PlacementStream) null, onlyAir, updateBlockData, recordHistory);
+        this.placementQueue.addAll(placementQueue);
+        this.totalBlocksToPlace = this.placementQueue.size();
+    }
+
+    // 建築履歴を記録しないコンストラクタ（取り消しなど）
     public BuildPlacementTask(AutoRoadGeneratorPluginMain plugin, UUID playerUUID, Queue<BlockPlacementInfo> placementQueue, boolean onlyAir, boolean updateBlockData) {
+        this(plugin, playerUUID, placementQueue, onlyAir, updateBlockData, false);
+    }
+
+    // ストリーミングモードのコンストラクタ（建築履歴はこのタスクが登録する）
+    public BuildPlacementTask(AutoRoadGeneratorPluginMain plugin, UUID playerUUID, PlacementStream stream, boolean onlyAir, boolean updateBlockData) {
+        this(plugin, playerUUID, stream, onlyAir, updateBlockData, true);
+    }
+
+    private BuildPlacementTask(AutoRoadGeneratorPluginMain plugin, UUID playerUUID, PlacementStream stream, boolean onlyAir, boolean updateBlockData, boolean recordHistory) {
         this.plugin = plugin;
         this.playerUUID = playerUUID;
-        this.placementQueue = placementQueue;
+        this.placementQueue = new ChunkBatchQueue(plugin,
+                plugin.getConfig().getInt("performance.chunk_preload_ahead", 4),
+                plugin.getPlacementBudget());
         this.onlyAir = onlyAir;
         this.updateBlockData = updateBlockData;
-        this.totalBlocksToPlace = placementQueue.size();
+        this.deferPhysics = plugin.getConfig().getBoolean("performance.defer_physics", false);
+        this.budget = plugin.getPlacementBudget();
+        this.totalBlocksToPlace = 0;
+        this.stream = stream;
+        this.originalBlocks = recordHistory ? new ArrayList<>() : null;
     }
 
     // 既存のコンストラクタとの互換性を保持（onlyAir指定）
@@ -64,45 +109,225 @@ public class BuildPlacementTask extends BukkitRunnable {
 
     @Override
     public void run() {
-        if (placementQueue.isEmpty()) {
+        if (paused) {
+            return;
+        }
+        if (!registeredToBudget) {
+            budget.register();
+            registeredToBudget = true;
+        }
+
+        if (stream != null) {
+            pullFromStream();
+            if (placementQueue.isEmpty() && currentBatch == null && !stream.isDrained()) {
+                // 計算待ち
+                reportProgress();
+                return;
+            }
+        }
+
+        if (placementQueue.isEmpty() && currentBatch == null) {
             // 全てのブロックの設置が完了
+            if (originalBlocks != null) {
+                plugin.getBuildHistoryManager().addBuildHistory(playerUUID, originalBlocks);
+            }
             Bukkit.getScheduler().runTask(plugin, () -> {
                 if (Bukkit.getPlayer(playerUUID) != null) {
                     PlayerMessageUtil.sendTranslatedMessage(plugin, Bukkit.getPlayer(playerUUID), "build.construction_complete", totalBlocksPlaced);
                 }
             });
             this.cancel(); // タスクを自己終了
+            if (job != null) {
+                plugin.getBuildJobManager().onTaskCompleted(job);
+            }
             return;
         }
 
-        int placedThisTick = 0;
-        while (placedThisTick < blocksPerTick && !placementQueue.isEmpty()) {
-            BlockPlacementInfo info = placementQueue.poll();
-            if (info != null) {
-                // info.position() が既に Location なので、直接 getWorld() を呼び出せる
-                World world = info.position().getWorld();
-                if (world != null) {
-                    // Location オブジェクトは既にワールド情報を含んでいるため、toLocation(world) は不要
-                    Location blockLocation = info.position();
+        // 全設置タスクで共有するティック予算のうち、このタスクの取り分だけ設置する
+        PlacementBudget.Slice slice = budget.beginSlice();
+        while (slice.hasRemaining()) {
+            if (currentBatch == null) {
+                // 読み込み済みのチャンクを1つ選び、そのチャンクを設置し終えるまで他のチャンクに移らない
+                currentBatch = placementQueue.nextReadyBatch();
+                if (currentBatch == null) {
+                    break;
+                }
+            }
 
-                    // onlyAirが有効な場合は空気ブロックのみに設置
-                    if (!onlyAir || blockLocation.getBlock().getType() == Material.AIR) {
-                        org.bukkit.block.data.BlockData blockDataToPlace = info.data();
+            BlockPlacementInfo info = placementQueue.poll(currentBatch);
+            if (info == null) {
+                slice.placed(flushDeferredBlocks());
+                placementQueue.complete(currentBatch);
+                // 設置で地表が変わったため、地形追従で使う高さを取得し直させる
+                plugin.getTerrainHeightCache().invalidate(currentBatch.getWorld(), currentBatch.getChunkX(), currentBatch.getChunkZ());
+                currentBatch = null;
+                continue;
+            }
 
-                        // ブロックデータ更新がONの場合、接続情報を破棄し回転情報のみ維持
-                        if (updateBlockData && isConnectableBlock(blockDataToPlace)) {
-                            blockDataToPlace = removeConnectionData(blockDataToPlace);
-                        }
+            Block block = info.position().getBlock();
 
-                        blockLocation.getBlock().setBlockData(blockDataToPlace, updateBlockData);
-                        placedThisTick++;
-                        totalBlocksPlaced++;
-                    } else {
-                        // 空気ブロック以外はスキップしたがカウンターは進める
+            // onlyAirが有効な場合は空気ブロックのみに設置
+            if (!onlyAir || block.getType() == Material.AIR) {
+                org.bukkit.block.data.BlockData blockDataToPlace = info.data();
+
+                // ブロックデータ更新がONの場合、接続情報を破棄し回転情報のみ維持
+                if (updateBlockData && isConnectableBlock(blockDataToPlace)) {
+                    blockDataToPlace = removeConnectionData(blockDataToPlace);
+                }
+
+                // 書き換える直前の状態を取り消し用に記録する
+                if (originalBlocks != null) {
+                    originalBlocks.add(new BlockPlacementInfo(info.position(), block.getBlockData()));
+                }
+
+                if (deferPhysics && updateBlockData) {
+                    if (needsPhysics(blockDataToPlace)) {
+                        // 周囲との接続や落下が必要なブロックは、チャンク内の他のブロックを置き終えてから物理演算付きで設置する
+                        deferredBlocks.add(new BlockPlacementInfo(info.position(), blockDataToPlace));
                         totalBlocksPlaced++;
+                        continue;
                     }
+                    block.setBlockData(blockDataToPlace, false);
+                } else {
+                    block.setBlockData(blockDataToPlace, updateBlockData);
+                }
+                slice.placed(1);
+                totalBlocksPlaced++;
+            } else {
+                // 空気ブロック以外はスキップしたがカウンターは進める
+                totalBlocksPlaced++;
+            }
+        }
+        budget.endSlice(slice);
+
+        reportProgress();
+    }
+
+    /**
+     * 設置を中断し、先読みのために確保したチャンクを解放します。
+     */
+    @Override
+    public synchronized void cancel() throws IllegalStateException {
+        placementQueue.clear();
+        currentBatch = null;
+        leaveBudget();
+        super.cancel();
+    }
+
+    /**
+     * ジョブの取り消しにより設置を打ち切ります。
+     * 設置済みの分だけを建築履歴に登録し、ストリーミング建築では計算も中止します。
+     */
+    public void abort() {
+        if (stream != null) {
+            stream.cancel();
+        }
+        flushDeferredBlocks();
+        if (originalBlocks != null && !originalBlocks.isEmpty()) {
+            plugin.getBuildHistoryManager().addBuildHistory(playerUUID, originalBlocks);
+        }
+        try {
+            cancel();
+        } catch (IllegalStateException e) {
+            // まだスケジュールされていないタスク
+            placementQueue.clear();
+        }
+    }
+
+    /**
+     * 一時停止の状態を切り替えます。一時停止中はティック予算を消費しません。
+     */
+    public void setPaused(boolean paused) {
+        this.paused = paused;
+        if (stream != null) {
+            stream.setConsumerActive(!paused);
+        }
+        if (paused) {
+            leaveBudget();
+        }
+    }
+
+    /**
+     * 元のブロックを記録し、終了時に建築履歴へ登録するタスクかどうか
+     */
+    public boolean isRecordingHistory() {
+        return originalBlocks != null;
+    }
+
+    void setJob(BuildJob job) {
+        this.job = job;
+    }
+
+    /** 設置済み（スキップを含む）のブロック数 */
+    public int getTotalBlocksPlaced() {
+        return totalBlocksPlaced;
+    }
+
+    /** 設置予定のブロック数（ストリーミング中は取り込み済みの分のみ） */
+    public int getTotalBlocksToPlace() {
+        return totalBlocksToPlace;
+    }
+
+    /**
+     * 進捗率（0.0〜1.0）。ストリーミング中は計算済みタイルの割合も考慮します。
+     */
+    public double getProgress() {
+        double placedRatio = totalBlocksToPlace > 0 ? (double) totalBlocksPlaced / totalBlocksToPlace : 0.0;
+        if (stream != null && !stream.isDrained()) {
+            int totalTiles = stream.getTotalTiles();
+            double tileRatio = totalTiles > 0 ? (double) stream.getEmittedTiles() / totalTiles : 0.0;
+            return Math.min(1.0, placedRatio * tileRatio);
+        }
+        return Math.min(1.0, placedRatio);
+    }
+
+    private void leaveBudget() {
+        if (registeredToBudget) {
+            budget.unregister();
+            registeredToBudget = false;
+        }
+    }
+
+    /**
+     * 物理演算を遅らせていたブロックを、物理演算付きで設置します。
+     * @return 設置したブロック数
+     */
+    private int flushDeferredBlocks() {
+        int placed = deferredBlocks.size();
+        for (BlockPlacementInfo info : deferredBlocks) {
+            info.position().getBlock().setBlockData(info.data(), true);
+        }
+        deferredBlocks.clear();
+        return placed;
+    }
+
+    /**
+     * ストリームから一定量のブロックが溜まるまでバッチを取り込みます。
+     * チャンクごとのまとまりを大きくするため、多めに取り込みます。
+     */
+    private void pullFromStream() {
+        while (placementQueue.size() < STREAM_BUFFER_BLOCKS) {
+            List<BlockPlacementInfo> batch = stream.poll();
+            if (batch == null) {
+                return;
+            }
+            placementQueue.addAll(batch);
+            totalBlocksToPlace += batch.size();
+        }
+    }
+
+    private void reportProgress() {
+        // ストリーミング中は全体のブロック数が未確定のため、完成したタイル数で進捗を報告する
+        if (stream != null && !stream.isDrained()) {
+            long currentTime = System.currentTimeMillis();
+            if (currentTime - lastReportTime >= PROGRESS_REPORT_INTERVAL) {
+                lastReportTime = currentTime;
+                Player player = Bukkit.getPlayer(playerUUID);
+                if (player != null && player.isOnline()) {
+                    PlayerMessageUtil.sendTranslatedMessage(plugin, player, "build.streaming_progress", totalBlocksPlaced, stream.getEmittedTiles(), stream.getTotalTiles());
                 }
             }
+            return;
         }
 
         // 進捗状況をプレイヤーに報告 (10秒間隔 + ETA表示)
@@ -146,6 +371,13 @@ public class BuildPlacementTask extends BukkitRunnable {
         }
     }
 
+    /**
+     * 設置時に物理演算が必要なブロック（接続するブロックや重力の影響を受けるブロック）かどうかを判定
+     */
+    private boolean needsPhysics(org.bukkit.block.data.BlockData blockData) {
+        return isConnectableBlock(blockData) || blockData.getMaterial().hasGravity();
+    }
+
     /**
      * 接続可能ブロック（フェンス、壁、ガラス板等）かどうかを判定
      */
@@ -0,0 +1,210 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.plugin.Plugin;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 設置待ちのブロックをチャンクごとにまとめて管理するキュー
+ *
+ * 連続して設置するブロックが別々のチャンクにまたがると、チャンクの検索や光源更新、
+ * パケット送信が細切れに発生します。このキューはブロックをチャンク単位のバッチにまとめ、
+ * バッチ内ではセクション（Y方向16ブロック）順に並べ替えて1チャンクずつ設置できるようにします。
+ * チャンクの順序は、そのチャンクのブロックが最初に追加された順です。
+ *
+ * 先頭から指定数のチャンクにはプラグインチケットを付与し、設置が終わるまで読み込まれた状態を保ちます。
+ * Spigotではチケットの付与で読み込まれていないチャンクがその場で（同期で）読み込まれるため、
+ * 新たな読み込みは {@link PlacementBudget#tryAcquireChunkLoad()} の1ティックあたりの枠の範囲でだけ行い、
+ * 枠を使い切ったティックでは読み込み済みのチャンクのバッチだけを返します。
+ * すでに読み込まれているチャンクへのチケットの付与は枠を消費しません。
+ * メインスレッド専用です。
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class ChunkBatchQueue {
+
+    /**
+     * 1チャンク分の設置バッチ
+     */
+    public static final class ChunkBatch {
+        private final World world;
+        private final int chunkX;
+        private final int chunkZ;
+        private final List<BlockPlacementInfo> blocks = new ArrayList<>();
+        private int cursor = 0;
+        private boolean sorted = false;
+        private boolean ticketed = false;
+
+        private ChunkBatch(World world, int chunkX, int chunkZ) {
+            this.world = world;
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+        }
+
+        // 初回の取り出し時にセクション順に並べ替える（同じセクション内は追加順を維持）
+        private BlockPlacementInfo next() {
+            if (!sorted) {
+                blocks.subList(cursor, blocks.size()).sort(Comparator.comparingInt(info -> info.position().getBlockY() >> 4));
+                sorted = true;
+            }
+            if (cursor >= blocks.size()) {
+                return null;
+            }
+            BlockPlacementInfo info = blocks.get(cursor);
+            blocks.set(cursor++, null);
+            return info;
+        }
+
+        public boolean isEmpty() {
+            return cursor >= blocks.size();
+        }
+
+        public int remaining() {
+            return blocks.size() - cursor;
+        }
+
+        public World getWorld() {
+            return world;
+        }
+
+        public int getChunkX() {
+            return chunkX;
+        }
+
+        public int getChunkZ() {
+            return chunkZ;
+        }
+
+        private boolean isLoaded() {
+            return world.isChunkLoaded(chunkX, chunkZ);
+        }
+    }
+
+    private record ChunkKey(UUID worldId, int chunkX, int chunkZ) {
+    }
+
+    private final Plugin plugin;
+    private final int preloadAhead;
+    private final PlacementBudget budget;
+    private final Map<ChunkKey, ChunkBatch> batches = new LinkedHashMap<>();
+    private int size = 0;
+
+    /**
+     * @param plugin チャンクチケットの所有者
+     * @param preloadAhead 先読みするチャンク数
+     * @param budget チャンクの読み込み数の枠を共有する予算
+     */
+    public ChunkBatchQueue(Plugin plugin, int preloadAhead, PlacementBudget budget) {
+        this.plugin = plugin;
+        this.preloadAhead = Math.max(1, preloadAhead);
+        this.budget = budget;
+    }
+
+    /**
+     * ブロックを該当チャンクのバッチに追加します。
+     */
+    public void add(BlockPlacementInfo info) {
+        Location location = info.position();
+        World world = location.getWorld();
+        if (world == null) {
+            return;
+        }
+        int chunkX = location.getBlockX() >> 4;
+        int chunkZ = location.getBlockZ() >> 4;
+        ChunkKey key = new ChunkKey(world.getUID(), chunkX, chunkZ);
+        ChunkBatch batch = batches.get(key);
+        if (batch == null) {
+            batch = new ChunkBatch(world, chunkX, chunkZ);
+            batches.put(key, batch);
+        }
+        batch.blocks.add(info);
+        batch.sorted = false;
+        size++;
+    }
+
+    public void addAll(Iterable<BlockPlacementInfo> infos) {
+        for (BlockPlacementInfo info : infos) {
+            add(info);
+        }
+    }
+
+    /**
+     * 先読み範囲のチャンクにチケットを付与し、読み込み済みのバッチを1つ返します。
+     * 読み込まれていないチャンクは先頭に近い順に、このティックの読み込みの枠が残っている分だけ読み込みます。
+     * @return 設置可能なバッチ。枠を使い切って読み込み済みのバッチがない場合はnull（次のティックで再試行）
+     */
+    public ChunkBatch nextReadyBatch() {
+        ChunkBatch ready = null;
+        int index = 0;
+        for (ChunkBatch batch : batches.values()) {
+            if (index++ >= preloadAhead) {
+                break;
+            }
+            if (!batch.ticketed && (batch.isLoaded() || budget.tryAcquireChunkLoad())) {
+                batch.ticketed = batch.world.addPluginChunkTicket(batch.chunkX, batch.chunkZ, plugin);
+            }
+            if (ready == null && batch.isLoaded()) {
+                ready = batch;
+            }
+        }
+        return ready;
+    }
+
+    /**
+     * 設置が終わったバッチを取り除き、チャンクチケットを解放します。
+     */
+    public void complete(ChunkBatch batch) {
+        batches.remove(new ChunkKey(batch.world.getUID(), batch.chunkX, batch.chunkZ));
+        releaseTicket(batch);
+    }
+
+    /**
+     * 全てのバッチを破棄し、チャンクチケットを解放します。
+     */
+    public void clear() {
+        Iterator<ChunkBatch> iterator = batches.values().iterator();
+        while (iterator.hasNext()) {
+            releaseTicket(iterator.next());
+            iterator.remove();
+        }
+        size = 0;
+    }
+
+    /**
+     * バッチから次に設置するブロックを取り出します。
+     * @return 次のブロック。バッチが空の場合はnull
+     */
+    public BlockPlacementInfo poll(ChunkBatch batch) {
+        BlockPlacementInfo info = batch.next();
+        if (info != null) {
+            size--;
+        }
+        return info;
+    }
+
+    /** 設置待ちのブロック数 */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private void releaseTicket(ChunkBatch batch) {
+        if (batch.ticketed) {
+            batch.world.removePluginChunkTicket(batch.chunkX, batch.chunkZ, plugin);
+            batch.ticketed = false;
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build;
+
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.AutoRoadGeneratorPluginMain;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.preset.BlockStatePalette;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.preset.BuildProfile;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.preset.RoadPreset;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.preset.WallPreset;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.preset.roadObjects.ObjectPreset;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route.PolylineBuffer;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route.RouteSession;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.util.BlockKeyUtil;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.util.PlayerMessageUtil;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.LongPredicate;
+
+/**
+ * 建築プロファイル（{@link BuildProfile}）の道路・壁・オブジェクトをまとめて建築するタスク
+ *
+ * 全レイヤーの計算を共有スケジューラーへ同時に投入し、結果を1つのキャンバスに統合します。
+ * 統合は優先度の低いレイヤーから順に上書きで行うため、重なる位置には優先度の高いレイヤーのブロックが残ります。
+ * キャンバスの値は建築ごとのパレットのIDで、BlockDataは異なる状態ごとに一度だけ取得します。
+ * オブジェクトのインスタンスのうち、優先度の高い道路のブロックと重なるものは計算の時点で取り除きます。
+ * そのようなオブジェクトレイヤーは、このタスクで道路を統合した後に計算を投入します。
+ *
+ * 統合したブロックは1つの {@link BuildPlacementTask} でチャンクごとにまとめて設置し、
+ * 元のブロックは1つの建築履歴として登録されます（/rundo 1回ですべて元に戻ります）。
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class CompositeBuildTask implements Runnable {
+
+    // 設置順（同じチャンク・セクション内では道路、壁、オブジェクトの順に設置する）
+    private static final int ORDER_ROAD = 0;
+    private static final int ORDER_WALL = 1;
+    private static final int ORDER_OBJECT = 2;
+    private static final int ORDER_COUNT = 3;
+
+    private final AutoRoadGeneratorPluginMain plugin;
+    private final UUID playerUUID;
+    private final World world;
+    private final BuildProfile profile;
+    private final RoadPreset roadPreset;
+    private final List<WallPreset> wallPresets;
+    private final List<ObjectPreset> objectPresets;
+    private final List<PolylineBuffer> edgePaths;
+    private final PolylineBuffer combinedPath;
+    private final boolean onlyAir;
+    private final boolean updateBlockData;
+
+    /**
+     * @param roadPreset 道路プリセット（道路を含まない場合はnull）
+     * @param wallPresets 壁プリセット（プロファイルの壁レイヤーと同じ順）
+     * @param objectPresets オブジェクトプリセット（プロファイルのオブジェクトレイヤーと同じ順）
+     * @param edgePaths 道路と壁を建築するエッジごとの計算済み経路
+     * @param combinedPath オブジェクトを配置する結合済みの経路
+     */
+    public CompositeBuildTask(AutoRoadGeneratorPluginMain plugin, UUID playerUUID, World world, BuildProfile profile,
+                              RoadPreset roadPreset, List<WallPreset> wallPresets, List<ObjectPreset> objectPresets,
+                              List<PolylineBuffer> edgePaths, PolylineBuffer combinedPath, boolean onlyAir, boolean updateBlockData) {
+        this.plugin = plugin;
+        this.playerUUID = playerUUID;
+        this.world = world;
+        this.profile = profile;
+        this.roadPreset = roadPreset;
+        this.wallPresets = wallPresets;
+        this.objectPresets = objectPresets;
+        this.edgePaths = edgePaths;
+        this.combinedPath = combinedPath;
+        this.onlyAir = onlyAir;
+        this.updateBlockData = updateBlockData;
+    }
+
+    /**
+     * 1レイヤー分の計算結果を統合キャンバスへ書き込む処理
+     */
+    private interface LayerWriter {
+        void write() throws InterruptedException, ExecutionException;
+    }
+
+    private static final class PendingLayer {
+        final int priority;
+        // 同じ優先度での順序（道路、壁、オブジェクトの順で、それぞれプロファイルでの記述順）
+        final int sequence;
+        final LayerWriter writer;
+
+        PendingLayer(int priority, int sequence, LayerWriter writer) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.writer = writer;
+        }
+    }
+
+    @Override
+    public void run() {
+        ComputeScheduler scheduler = plugin.getComputeScheduler();
+        List<PendingLayer> layers = new ArrayList<>();
+        VoxelCanvas composite = new VoxelCanvas(VoxelCanvas.RESOLVED_SLOTS);
+        BlockStatePalette compositePalette = new BlockStatePalette();
+        try {
+            // すべてのレイヤーの計算を先に投入し、計算スレッドで同時に進める
+            // 子タスクは他のタスクの完了を待たず、結果を待つのはこのタスクだけにする（ComputeScheduler を参照）
+            List<Future<VoxelCanvas>> edgeFutures = new ArrayList<>();
+            if (roadPreset != null) {
+                for (PolylineBuffer path : edgePaths) {
+                    BuildCalculationTask task = new BuildCalculationTask(plugin, playerUUID, singleEdgeSession(path), roadPreset, onlyAir, updateBlockData, null, UUID.randomUUID());
+                    edgeFutures.add(scheduler.submit(playerUUID, task::calculateCanvas));
+                }
+            }
+
+            for (int w = 0; w < wallPresets.size(); w++) {
+                WallPreset wallPreset = wallPresets.get(w);
+                BuildProfile.WallLayer wallLayer = profile.getWalls().get(w);
+                List<Future<VoxelCanvas>> wallFutures = new ArrayList<>();
+                for (PolylineBuffer path : edgePaths) {
+                    WallCalculationTask task = new WallCalculationTask(plugin, playerUUID, singleEdgeSession(path), wallPreset,
+                            wallLayer.getXOffset(), wallLayer.getYOffset(), onlyAir, updateBlockData, null, UUID.randomUUID());
+                    wallFutures.add(scheduler.submit(playerUUID, task::calculateCanvas));
+                }
+                layers.add(new PendingLayer(wallLayer.getPriority(), 1 + w, () -> {
+                    VoxelCanvas wallCanvas = new VoxelCanvas(VoxelCanvas.RESOLVED_SLOTS);
+                    for (Future<VoxelCanvas> future : wallFutures) {
+                        wallCanvas.putAll(scheduler.await(future));
+                    }
+                    writeLayer(wallCanvas, wallPreset.getPalette(), ORDER_WALL, composite, compositePalette);
+                }));
+            }
+
+            // 道路の方が優先度の高いオブジェクトレイヤーは、道路の統合後に道路のブロックと重なるインスタンスを除いて計算する
+            List<Integer> culledObjects = new ArrayList<>();
+            for (int o = 0; o < objectPresets.size(); o++) {
+                if (roadPreset != null && profile.getObjects().get(o).getPriority() < profile.getRoadPriority()) {
+                    culledObjects.add(o);
+                } else {
+                    layers.add(submitObjectLayer(scheduler, o, null, composite, compositePalette));
+                }
+            }
+
+            if (roadPreset != null) {
+                // エッジ間の重なりは /rroad build と同じく中心線に近いサンプルを優先する
+                VoxelCanvas roadCanvas = new VoxelCanvas(VoxelCanvas.RESOLVED_SLOTS);
+                for (Future<VoxelCanvas> future : edgeFutures) {
+                    roadCanvas.mergeResolved(scheduler.await(future));
+                }
+                if (updateBlockData) {
+                    roadCanvas.rotateAll(roadPreset.getPalette(), 90.0);
+                }
+                for (int o : culledObjects) {
+                    layers.add(submitObjectLayer(scheduler, o, roadCanvas::contains, composite, compositePalette));
+                }
+                layers.add(new PendingLayer(profile.getRoadPriority(), 0, () ->
+                        writeLayer(roadCanvas, roadPreset.getPalette(), ORDER_ROAD, composite, compositePalette)));
+            }
+
+            // 優先度の低い順に上書きする（同じ優先度はプロファイルでの記述順）
+            layers.sort(Comparator.<PendingLayer>comparingInt(layer -> layer.priority).thenComparingInt(layer -> layer.sequence));
+            for (PendingLayer layer : layers) {
+                layer.writer.write();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            plugin.getLogger().severe("Error during composite build calculation (" + profile.getName() + "): " + e.getMessage());
+            e.printStackTrace();
+            String reason = e instanceof ExecutionException && e.getCause() != null ? e.getCause().toString() : e.toString();
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                Player player = Bukkit.getPlayer(playerUUID);
+                if (player == null || !player.isOnline()) return;
+                PlayerMessageUtil.sendTranslatedMessage(plugin, player, "build.calculation_failed", reason);
+            });
+            return;
+        }
+
+        Player player = Bukkit.getPlayer(playerUUID);
+        if (player != null) {
+            PlayerMessageUtil.sendTranslatedMessage(plugin, player, "build.calculation_complete");
+        }
+        List<BlockPlacementInfo> worldBlocks = convertToBlockPlacementList(composite, compositePalette);
+
+        Bukkit.getScheduler().runTask(plugin, () -> {
+            if (player == null || !player.isOnline()) return;
+
+            String modeText = onlyAir ? plugin.getMessageManager().getMessage("build.air_mode_text") : "";
+            PlayerMessageUtil.sendTranslatedMessage(plugin, player, "build.integration_complete", worldBlocks.size(), modeText);
+
+            // 全レイヤーを1つの設置タスクで設置し、元のブロックは1つの建築履歴として登録する
+            plugin.getBuildJobManager().submit(playerUUID, BuildJobType.COMPOSITE, new BuildPlacementTask(plugin, playerUUID, new ConcurrentLinkedQueue<>(worldBlocks), onlyAir, updateBlockData, true));
+        });
+    }
+
+    /**
+     * オブジェクトレイヤーの計算を投入します。
+     *
+     * @param reservedBlocks 配置しないブロック位置（優先度の高い道路のブロック、なければnull）
+     */
+    private PendingLayer submitObjectLayer(ComputeScheduler scheduler, int index, LongPredicate reservedBlocks,
+                                           VoxelCanvas composite, BlockStatePalette compositePalette) {
+        ObjectPreset objectPreset = objectPresets.get(index);
+        BuildProfile.ObjectLayer objectLayer = profile.getObjects().get(index);
+        Future<List<BlockPlacementInfo>> objectFuture = scheduler.submit(playerUUID, () -> ObjectPlacementCalculator.calculate(
+                combinedPath, objectPreset, objectLayer.getInterval(), objectLayer.getOffset(), objectLayer.getRotation(), objectLayer.getFlipAxis(),
+                reservedBlocks));
+        return new PendingLayer(objectLayer.getPriority(), 1 + wallPresets.size() + index,
+                () -> writeObjects(scheduler.await(objectFuture), composite, compositePalette));
+    }
+
+    private static RouteSession singleEdgeSession(PolylineBuffer path) {
+        RouteSession session = new RouteSession();
+        session.setCalculatedPath(path);
+        return session;
+    }
+
+    /**
+     * レイヤーのキャンバスを、パレットIDを建築ごとのパレットのIDに変換しながら上書きで書き込みます。
+     */
+    private static void writeLayer(VoxelCanvas layerCanvas, BlockStatePalette layerPalette, int order, VoxelCanvas composite, BlockStatePalette compositePalette) {
+        int[] remap = new int[0];
+        for (int i = 0; i < layerCanvas.size(); i++) {
+            int paletteId = layerCanvas.paletteIdAt(i);
+            if (paletteId >= remap.length) {
+                int oldLength = remap.length;
+                remap = Arrays.copyOf(remap, Math.max(paletteId + 1, oldLength * 2));
+                Arrays.fill(remap, oldLength, remap.length, BlockStatePalette.NO_ID);
+            }
+            if (remap[paletteId] == BlockStatePalette.NO_ID) {
+                remap[paletteId] = compositePalette.intern(layerPalette.get(paletteId));
+            }
+            // 統合キャンバスではプリセット上のZの代わりに設置順を保持する
+            composite.put(layerCanvas.keyAt(i), remap[paletteId], order, 0);
+        }
+    }
+
+    /**
+     * オブジェクトのブロックを上書きで書き込みます。回転済みのBlockDataはプリセットで共有されているため、
+     * 同じインスタンスの状態文字列は一度だけ求めます。
+     */
+    private static void writeObjects(List<BlockPlacementInfo> blocks, VoxelCanvas composite, BlockStatePalette compositePalette) {
+        Map<BlockData, Integer> ids = new IdentityHashMap<>();
+        for (BlockPlacementInfo info : blocks) {
+            Integer paletteId = ids.get(info.data());
+            if (paletteId == null) {
+                paletteId = compositePalette.intern(info.data().getAsString());
+                ids.put(info.data(), paletteId);
+            }
+            Location position = info.position();
+            long key = BlockKeyUtil.pack((int) Math.floor(position.getX()), (int) Math.floor(position.getY()), (int) Math.floor(position.getZ()));
+            composite.put(key, paletteId, ORDER_OBJECT, 0);
+        }
+    }
+
+    /**
+     * 統合キャンバスを設置リストに変換します。道路・壁・オブジェクトの順に並べ、
+     * 設置タスクがチャンクごとにまとめた際も同じチャンク内では道路が先に設置されるようにします。
+     */
+    private List<BlockPlacementInfo> convertToBlockPlacementList(VoxelCanvas composite, BlockStatePalette compositePalette) {
+        int[] counts = new int[ORDER_COUNT + 1];
+        for (int i = 0; i < composite.size(); i++) {
+            counts[composite.presetZAt(i) + 1]++;
+        }
+        for (int order = 0; order < ORDER_COUNT; order++) {
+            counts[order + 1] += counts[order];
+        }
+        int[] sorted = new int[composite.size()];
+        for (int i = 0; i < composite.size(); i++) {
+            sorted[counts[composite.presetZAt(i)]++] = i;
+        }
+
+        List<BlockPlacementInfo> result = new ArrayList<>(sorted.length);
+        boolean[] invalidIds = new boolean[compositePalette.size()];
+        for (int i : sorted) {
+            int paletteId = composite.paletteIdAt(i);
+            if (invalidIds[paletteId]) continue;
+            BlockData blockData;
+            try {
+                blockData = compositePalette.getBlockData(paletteId);
+            } catch (IllegalArgumentException e) {
+                invalidIds[paletteId] = true;
+                plugin.getLogger().severe(plugin.getMessageManager().getMessage("log.failed_create_block_data", compositePalette.get(paletteId)));
+                continue;
+            }
+            long key = composite.keyAt(i);
+            result.add(new BlockPlacementInfo(new Location(world, BlockKeyUtil.unpackX(key), BlockKeyUtil.unpackY(key), BlockKeyUtil.unpackZ(key)), blockData));
+        }
+        return result;
+    }
+}
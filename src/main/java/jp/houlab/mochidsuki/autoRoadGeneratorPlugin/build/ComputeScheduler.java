@@ -0,0 +1,368 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * プラグイン全体で共有する計算スケジューラー
+ *
+ * 道路・壁・オブジェクトの建築計算はすべてこのスケジューラーに投入されます。
+ * ワーカースレッド数は設定で上限が決まり、建築ごとにスレッドプールを作成することはありません。
+ *
+ * タスクはプレイヤーごとのキューに入り、ワーカーはプレイヤー間をラウンドロビンで巡回して
+ * 取り出すため、大きな建築を投入したプレイヤーが他のプレイヤーの計算を待たせ続けることはありません。
+ * ワーカー上のタスクが子タスクを投入する際に待機中のタスク数（全プレイヤーの合計）が上限に達している場合は、
+ * 投入したワーカー自身がタスクを実行します（背圧）。
+ *
+ * 上限はワーカーからの投入にだけ適用されます。コマンドや編集などメインスレッドからの投入は、
+ * 上限を超えても常にキューに入ります。メインスレッドで計算を実行するとティックが止まり、
+ * 空きを待って止めても同じく止まるため、背圧をかける手段がないためです。
+ * メインスレッドからの投入は1回の操作につき建築・エッジ単位の少数のタスクで、
+ * 細かい分割はワーカー上の子タスクとして行われるため、キューの大部分は上限の対象になります。
+ *
+ * ワーカー上で実行中のタスクが子タスクの完了を {@link #await(Future)} で待つ場合、待機中は
+ * そのタスク自身が投入してまだ始まっていない子タスクだけを手伝って実行します。
+ * 他のタスクは手伝わないため、関係のない長いタスクが待機中のタスクの上に積み重なることはありません。
+ * そのためワーカー上のタスクが待ってよいのは、自分が投入した子タスクの Future だけです。
+ * キューで待機中の兄弟タスクなど他のタスクの完了を待つと、ワーカーがすべて待機で埋まった場合に
+ * デッドロックします。ワーカー以外のスレッドからは任意の Future を待てます。
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class ComputeScheduler {
+
+    /** ワーカーが子タスクの完了を待つ間にキューを確認する間隔（ミリ秒） */
+    private static final long HELP_POLL_INTERVAL_MS = 5;
+
+    private final Logger logger;
+    private final int parallelism;
+    private final int queueDepth;
+
+    private final Object lock = new Object();
+    private final Map<UUID, ArrayDeque<Task<?>>> queues = new HashMap<>();
+    private final ArrayDeque<UUID> rotation = new ArrayDeque<>();
+    private final List<Thread> workers = new ArrayList<>();
+    // 各ワーカーで実行中のタスク（子タスクの親の判定に使う）
+    private final ThreadLocal<Task<?>> currentTask = new ThreadLocal<>();
+    private int queuedTasks = 0;
+    private volatile boolean shutdown = false;
+
+    private final AtomicInteger activeTasks = new AtomicInteger();
+    private final AtomicLong completedTasks = new AtomicLong();
+    private final AtomicLong callerRunsTasks = new AtomicLong();
+
+    /**
+     * スケジューラーのタスク。投入元のタスクと、キューで待機中の子タスクを保持します。
+     * claimed と queuedChildren は lock で保護します。
+     */
+    private static final class Task<T> extends FutureTask<T> {
+        final UUID owner;
+        final Task<?> parent;
+        // 実行するワーカーが決まったか（キューからは遅れて取り除く）
+        boolean claimed;
+        ArrayDeque<Task<?>> queuedChildren;
+
+        Task(Callable<T> callable, UUID owner, Task<?> parent) {
+            super(callable);
+            this.owner = owner;
+            this.parent = parent;
+        }
+
+        Task(Runnable runnable, UUID owner, Task<?> parent) {
+            super(runnable, null);
+            this.owner = owner;
+            this.parent = parent;
+        }
+    }
+
+    /**
+     * スケジューラーを作成し、ワーカースレッドを起動します。
+     * @param logger エラー出力先のロガー
+     * @param parallelism ワーカースレッド数（1以上）
+     * @param queueDepth ワーカーからの投入をキューに入れる、待機中のタスク数の上限（1以上）
+     */
+    public ComputeScheduler(Logger logger, int parallelism, int queueDepth) {
+        this.logger = logger;
+        this.parallelism = Math.max(1, parallelism);
+        this.queueDepth = Math.max(1, queueDepth);
+        for (int i = 0; i < this.parallelism; i++) {
+            Thread worker = new Thread(this::workerLoop, "AutoRoadGenerator-Compute-" + i);
+            worker.setDaemon(true);
+            worker.setPriority(Thread.NORM_PRIORITY - 1);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * 設定値が0以下の場合に使用する既定のワーカースレッド数（メインスレッド用に1コア残す）
+     */
+    public static int defaultParallelism() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    }
+
+    /**
+     * 計算タスクを投入します。
+     * ワーカースレッドから投入した場合、待機中のタスク数が上限に達していればその場で実行してから返ります。
+     * @param owner タスクを要求したプレイヤーのUUID（公平性の単位）
+     * @param task 実行するタスク
+     * @return タスクの結果を受け取るFuture
+     */
+    public <T> Future<T> submit(UUID owner, Callable<T> task) {
+        Task<T> futureTask = new Task<>(task, owner, currentTask.get());
+        enqueue(owner, futureTask);
+        return futureTask;
+    }
+
+    /**
+     * 戻り値のない計算タスクを投入します。
+     * ワーカースレッドから投入した場合、待機中のタスク数が上限に達していればその場で実行してから返ります。
+     * @param owner タスクを要求したプレイヤーのUUID（公平性の単位）
+     * @param task 実行するタスク
+     * @return タスクの完了を待つためのFuture
+     */
+    public Future<?> submit(UUID owner, Runnable task) {
+        Task<Void> futureTask = new Task<>(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                // 結果を待つ呼び出し元がいない場合でも失敗が分かるようにログを残す
+                logger.log(Level.SEVERE, "Compute task failed", e);
+                throw e;
+            }
+        }, owner, currentTask.get());
+        enqueue(owner, futureTask);
+        return futureTask;
+    }
+
+    /**
+     * Futureの完了を待って結果を返します。
+     * ワーカー上のタスクから呼ばれた場合は、待機中にそのタスクが投入した未実行の子タスクを実行します。
+     * 待ってよいのは自分が投入した子タスクの Future だけです（クラスの説明を参照）。
+     */
+    public <T> T await(Future<T> future) throws InterruptedException, ExecutionException {
+        Task<?> waiter = currentTask.get();
+        if (waiter == null) {
+            return future.get();
+        }
+        while (!future.isDone()) {
+            Task<?> task = pollChild(waiter);
+            if (task != null) {
+                runTask(task);
+                continue;
+            }
+            try {
+                return future.get(HELP_POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ignored) {
+                // 手伝えるタスクがないか再確認する
+            }
+        }
+        return future.get();
+    }
+
+    /**
+     * スケジューラーを停止します。待機中のタスクは破棄されます。
+     */
+    public void shutdown() {
+        synchronized (lock) {
+            shutdown = true;
+            for (ArrayDeque<Task<?>> queue : queues.values()) {
+                for (Task<?> task : queue) {
+                    task.claimed = true;
+                    task.cancel(false);
+                }
+            }
+            queues.clear();
+            rotation.clear();
+            queuedTasks = 0;
+            lock.notifyAll();
+        }
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    /** ワーカースレッド数 */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /** ワーカーからの投入に適用する待機中のタスク数の上限（メインスレッドからの投入はこれを超えることがある） */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /** 待機中のタスク数 */
+    public int getQueuedTaskCount() {
+        synchronized (lock) {
+            return queuedTasks;
+        }
+    }
+
+    /** 指定プレイヤーの待機中のタスク数 */
+    public int getQueuedTaskCount(UUID owner) {
+        synchronized (lock) {
+            ArrayDeque<Task<?>> queue = queues.get(owner);
+            if (queue == null) {
+                return 0;
+            }
+            int count = 0;
+            for (Task<?> task : queue) {
+                if (!task.claimed) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    /** 実行中のタスク数 */
+    public int getActiveTaskCount() {
+        return activeTasks.get();
+    }
+
+    /** 完了したタスクの累計 */
+    public long getCompletedTaskCount() {
+        return completedTasks.get();
+    }
+
+    /** キューが満杯のため投入元のスレッドで実行されたタスクの累計 */
+    public long getCallerRunsCount() {
+        return callerRunsTasks.get();
+    }
+
+    private void enqueue(UUID owner, Task<?> task) {
+        synchronized (lock) {
+            if (shutdown) {
+                task.cancel(false);
+                return;
+            }
+            if (queuedTasks < queueDepth || !isWorkerThread()) {
+                ArrayDeque<Task<?>> queue = queues.get(owner);
+                if (queue == null) {
+                    queue = new ArrayDeque<>();
+                    queues.put(owner, queue);
+                    rotation.addLast(owner);
+                }
+                queue.addLast(task);
+                if (task.parent != null) {
+                    if (task.parent.queuedChildren == null) {
+                        task.parent.queuedChildren = new ArrayDeque<>();
+                    }
+                    task.parent.queuedChildren.addLast(task);
+                }
+                queuedTasks++;
+                lock.notify();
+                return;
+            }
+            task.claimed = true;
+        }
+        // キューが満杯の場合は投入元で実行し、投入速度を計算速度に合わせる
+        callerRunsTasks.incrementAndGet();
+        runTask(task);
+    }
+
+    private Task<?> poll() throws InterruptedException {
+        synchronized (lock) {
+            while (true) {
+                while (rotation.isEmpty()) {
+                    if (shutdown) {
+                        return null;
+                    }
+                    lock.wait();
+                }
+                UUID owner = rotation.pollFirst();
+                ArrayDeque<Task<?>> queue = queues.get(owner);
+                Task<?> task = queue.pollFirst();
+                if (queue.isEmpty()) {
+                    queues.remove(owner);
+                } else {
+                    rotation.addLast(owner);
+                }
+                if (task.claimed) {
+                    // 親タスクが待機中に実行済み
+                    continue;
+                }
+                task.claimed = true;
+                queuedTasks--;
+                return task;
+            }
+        }
+    }
+
+    /**
+     * 指定したタスクが投入した、まだ実行が始まっていない子タスクを1つ取り出します。
+     * 子タスクは所有者のキューに残し、ワーカーが取り出した時点で読み飛ばします。
+     */
+    private Task<?> pollChild(Task<?> parent) {
+        synchronized (lock) {
+            ArrayDeque<Task<?>> children = parent.queuedChildren;
+            if (children == null) {
+                return null;
+            }
+            Task<?> child;
+            while ((child = children.pollFirst()) != null) {
+                if (!child.claimed) {
+                    child.claimed = true;
+                    queuedTasks--;
+                    return child;
+                }
+            }
+            return null;
+        }
+    }
+
+    private void runTask(Task<?> task) {
+        Task<?> previous = currentTask.get();
+        currentTask.set(task);
+        activeTasks.incrementAndGet();
+        try {
+            task.run();
+        } finally {
+            currentTask.set(previous);
+            synchronized (lock) {
+                // 実行を終えたタスクは子タスクを手伝わないため、結果を保持し続けないよう参照を切る
+                task.queuedChildren = null;
+            }
+            activeTasks.decrementAndGet();
+            completedTasks.incrementAndGet();
+        }
+    }
+
+    private void workerLoop() {
+        while (!shutdown) {
+            try {
+                Task<?> task = poll();
+                if (task != null) {
+                    runTask(task);
+                }
+            } catch (InterruptedException e) {
+                if (shutdown) {
+                    return;
+                }
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "Compute task failed", e);
+            }
+        }
+    }
+
+    private boolean isWorkerThread() {
+        return workers.contains(Thread.currentThread());
+    }
+}
@@ -0,0 +1,127 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build;
+
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.preset.roadObjects.ObjectPreset;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.util.BlockKeyUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 配置済みのオブジェクトと重なるインスタンスを判定するための空間ハッシュ
+ *
+ * 各インスタンスの外接箱を一定の大きさのセルに登録し、新しいインスタンスの外接箱と重なるセルの
+ * インスタンスだけを調べます。外接箱が重なった場合のみブロック単位で比較するため、
+ * L字形のオブジェクトや斜めの経路で箱だけが触れるインスタンスは残ります。
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class InstanceCollisionIndex {
+
+    /** セルの大きさ（2の累乗の指数、16ブロック） */
+    private static final int CELL_SHIFT = 4;
+
+    private final List<Instance> instances = new ArrayList<>();
+    private final Map<Long, List<Integer>> cells = new HashMap<>();
+    // 1回の判定で同じインスタンスを重複して調べないための印
+    private int[] visited = new int[16];
+    private int visitStamp = 0;
+
+    private static final class Instance {
+        final int baseX;
+        final int baseY;
+        final int baseZ;
+        final ObjectPreset.RotatedTemplate template;
+
+        Instance(int baseX, int baseY, int baseZ, ObjectPreset.RotatedTemplate template) {
+            this.baseX = baseX;
+            this.baseY = baseY;
+            this.baseZ = baseZ;
+            this.template = template;
+        }
+
+        boolean boxOverlaps(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+            return baseX + template.minX() <= maxX && baseX + template.maxX() >= minX
+                    && baseY + template.minY() <= maxY && baseY + template.maxY() >= minY
+                    && baseZ + template.minZ() <= maxZ && baseZ + template.maxZ() >= minZ;
+        }
+    }
+
+    /**
+     * 既存のインスタンスとブロックが重ならなければインスタンスを登録します。
+     * @param baseX 基準ブロックのX座標
+     * @param baseY 基準ブロックのY座標
+     * @param baseZ 基準ブロックのZ座標
+     * @param template 配置するテンプレート
+     * @return 登録した場合true、既存のインスタンスと重なる場合false
+     */
+    boolean tryAdd(int baseX, int baseY, int baseZ, ObjectPreset.RotatedTemplate template) {
+        if (template.size() == 0) {
+            return true;
+        }
+        int minX = baseX + template.minX();
+        int minY = baseY + template.minY();
+        int minZ = baseZ + template.minZ();
+        int maxX = baseX + template.maxX();
+        int maxY = baseY + template.maxY();
+        int maxZ = baseZ + template.maxZ();
+
+        visitStamp++;
+        Set<Long> blocks = null;
+        for (int cellX = minX >> CELL_SHIFT; cellX <= maxX >> CELL_SHIFT; cellX++) {
+            for (int cellZ = minZ >> CELL_SHIFT; cellZ <= maxZ >> CELL_SHIFT; cellZ++) {
+                List<Integer> cell = cells.get(VoxelCanvas.tileKey(cellX, cellZ));
+                if (cell == null) continue;
+                for (int id : cell) {
+                    if (visited[id] == visitStamp) continue;
+                    visited[id] = visitStamp;
+                    Instance other = instances.get(id);
+                    if (!other.boxOverlaps(minX, minY, minZ, maxX, maxY, maxZ)) continue;
+                    if (blocks == null) {
+                        blocks = blockKeys(baseX, baseY, baseZ, template);
+                    }
+                    if (sharesBlock(other, blocks)) {
+                        return false;
+                    }
+                }
+            }
+        }
+
+        int id = instances.size();
+        instances.add(new Instance(baseX, baseY, baseZ, template));
+        if (id == visited.length) {
+            visited = Arrays.copyOf(visited, id * 2);
+        }
+        for (int cellX = minX >> CELL_SHIFT; cellX <= maxX >> CELL_SHIFT; cellX++) {
+            for (int cellZ = minZ >> CELL_SHIFT; cellZ <= maxZ >> CELL_SHIFT; cellZ++) {
+                cells.computeIfAbsent(VoxelCanvas.tileKey(cellX, cellZ), key -> new ArrayList<>()).add(id);
+            }
+        }
+        return true;
+    }
+
+    private static Set<Long> blockKeys(int baseX, int baseY, int baseZ, ObjectPreset.RotatedTemplate template) {
+        Set<Long> keys = new HashSet<>();
+        for (int b = 0; b < template.size(); b++) {
+            keys.add(BlockKeyUtil.pack(baseX + template.offsetX(b), baseY + template.offsetY(b), baseZ + template.offsetZ(b)));
+        }
+        return keys;
+    }
+
+    private static boolean sharesBlock(Instance other, Set<Long> blocks) {
+        ObjectPreset.RotatedTemplate template = other.template;
+        for (int b = 0; b < template.size(); b++) {
+            long key = BlockKeyUtil.pack(other.baseX + template.offsetX(b), other.baseY + template.offsetY(b), other.baseZ + template.offsetZ(b));
+            if (blocks.contains(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,169 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build;
+
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.preset.roadObjects.ObjectPreset;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route.PolylineBuffer;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.util.BlockKeyUtil;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.util.Vector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongPredicate;
+
+/**
+ * 経路に沿って一定間隔でオブジェクトを配置する際のブロック位置と状態を計算するクラス
+ *
+ * ワールドにはアクセスしないため、計算スレッドから呼び出せます。
+ * 配置位置は弧長で決め、重なるインスタンスは {@link InstanceCollisionIndex} で取り除きます。
+ * /robj place と複合建築（{@link CompositeBuildTask}）の両方から使用されます。
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class ObjectPlacementCalculator {
+
+    /** 方向ベクトルの最小長さ閾値 */
+    private static final double MIN_DIRECTION_LENGTH = 0.001;
+    /** 位置変化の最小距離閾値 */
+    private static final double MIN_POSITION_CHANGE = 0.0001;
+    /** 連続した経路とみなす点の間隔の上限（これより離れた点からは間隔を数え直す） */
+    private static final double MAX_GAP = 2.0;
+    /** 経路の終端に配置するかどうかを判定する際の誤差 */
+    private static final double LENGTH_EPSILON = 1e-6;
+
+    private ObjectPlacementCalculator() {
+    }
+
+    /**
+     * パス上に一定間隔でオブジェクトを配置した場合のブロック位置と状態を計算します。
+     * @see #calculate(PolylineBuffer, ObjectPreset, double, Vector, float, String, LongPredicate)
+     */
+    public static List<BlockPlacementInfo> calculate(PolylineBuffer path, ObjectPreset preset, double interval,
+                                                     Vector offset, float rotation, String flipAxis) {
+        return calculate(path, preset, interval, offset, rotation, flipAxis, null);
+    }
+
+    /**
+     * パス上に一定間隔でオブジェクトを配置した場合のブロック位置と状態を計算します。
+     *
+     * 配置位置は経路の弧長から二分探索で求めるため、点の間隔によらず正確に interval ごとに並びます。
+     * 結合した経路でエッジが離れている箇所（分岐の付け根に戻る箇所など）からは、そこを起点に数え直します。
+     * プリセットは向きの区分（{@link ObjectPreset#ROTATION_BUCKETS}）ごとに回転済みのテンプレートへ事前に変換されるため、
+     * 配置ごとの処理は基準ブロックの計算と、テンプレートの相対座標を加えるだけです。
+     *
+     * 先に配置したインスタンスとブロックが重なるインスタンスや、reservedBlocks に含まれるブロックを持つインスタンスは配置しません。
+     * @param path 配置する経路
+     * @param preset オブジェクトのプリセット
+     * @param interval 配置間隔（ブロック、正の値）
+     * @param offset 経路上の点からの相対位置（X: 進行方向, Y: 上, Z: 横）
+     * @param rotation 経路の向きに加える回転（度）
+     * @param flipAxis 反転する軸（"x", "z" または空文字列）
+     * @param reservedBlocks 他のレイヤーが上書きするブロック（{@link BlockKeyUtil#pack} のキー）。nullの場合は調べない
+     * @return 設置するブロックのリスト
+     * @throws IllegalArgumentException 配置間隔が正でない場合
+     */
+    public static List<BlockPlacementInfo> calculate(PolylineBuffer path, ObjectPreset preset, double interval,
+                                                     Vector offset, float rotation, String flipAxis, LongPredicate reservedBlocks) {
+        if (!(interval > 0)) {
+            throw new IllegalArgumentException("Interval must be positive: " + interval);
+        }
+        ObjectPreset.RotatedTemplate[] templates = preset.getRotationTemplates(flipAxis, rotation);
+        World world = path.getWorld();
+        List<BlockPlacementInfo> worldBlocks = new ArrayList<>();
+        InstanceCollisionIndex placedInstances = new InstanceCollisionIndex();
+
+        int runStart = 0;
+        while (runStart < path.size()) {
+            int runEnd = runStart;
+            while (runEnd + 1 < path.size() && path.distance(runEnd, runEnd + 1) <= MAX_GAP) {
+                runEnd++;
+            }
+            double startLength = path.getArcLength(runStart);
+            double runLength = path.getArcLength(runEnd) - startLength;
+
+            for (int k = 0; k * interval <= runLength + LENGTH_EPSILON; k++) {
+                double arcLength = startLength + k * interval;
+                int i = runStart < runEnd ? path.segmentAt(arcLength, runStart, runEnd) : runStart;
+                int next = Math.min(i + 1, runEnd);
+                double segmentLength = path.getArcLength(next) - path.getArcLength(i);
+                double t = segmentLength > 0 ? Math.min(1.0, Math.max(0.0, (arcLength - path.getArcLength(i)) / segmentLength)) : 0.0;
+
+                // 区間の両端の接線を補間して向きを求める
+                Vector direction = calculateDirectionVector(path, i, runStart, runEnd).multiply(1.0 - t)
+                        .add(calculateDirectionVector(path, next, runStart, runEnd).multiply(t));
+                if (direction.length() < MIN_DIRECTION_LENGTH) {
+                    direction = calculateDirectionVector(path, i, runStart, runEnd);
+                }
+                double pathYaw = Math.toDegrees(Math.atan2(-direction.getX(), direction.getZ()));
+                double cos = Math.cos(Math.toRadians(pathYaw));
+                double sin = Math.sin(Math.toRadians(pathYaw));
+
+                // 指定のオフセットは経路の向きのまま適用し、その位置のブロックを基準にテンプレートを並べる
+                double pointX = path.getX(i) + (path.getX(next) - path.getX(i)) * t;
+                double pointY = path.getY(i) + (path.getY(next) - path.getY(i)) * t;
+                double pointZ = path.getZ(i) + (path.getZ(next) - path.getZ(i)) * t;
+                int baseX = (int) Math.floor(pointX + offset.getX() * cos - offset.getZ() * sin);
+                int baseY = (int) Math.floor(pointY + offset.getY());
+                int baseZ = (int) Math.floor(pointZ + offset.getX() * sin + offset.getZ() * cos);
+
+                ObjectPreset.RotatedTemplate template = templates[ObjectPreset.rotationBucket(pathYaw)];
+                if (reservedBlocks != null && overlapsReserved(baseX, baseY, baseZ, template, reservedBlocks)) {
+                    continue;
+                }
+                if (!placedInstances.tryAdd(baseX, baseY, baseZ, template)) {
+                    continue;
+                }
+                for (int b = 0; b < template.size(); b++) {
+                    Location blockLocation = new Location(world, baseX + template.offsetX(b), baseY + template.offsetY(b), baseZ + template.offsetZ(b));
+                    worldBlocks.add(new BlockPlacementInfo(blockLocation, template.blockData(b)));
+                }
+            }
+            runStart = runEnd + 1;
+        }
+        return worldBlocks;
+    }
+
+    private static boolean overlapsReserved(int baseX, int baseY, int baseZ, ObjectPreset.RotatedTemplate template, LongPredicate reservedBlocks) {
+        for (int b = 0; b < template.size(); b++) {
+            if (reservedBlocks.test(BlockKeyUtil.pack(baseX + template.offsetX(b), baseY + template.offsetY(b), baseZ + template.offsetZ(b)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 連続した区間 [runStart, runEnd] 内の点の接線を求めます。区間の外の点は参照しません。
+     */
+    private static Vector calculateDirectionVector(PolylineBuffer path, int index, int runStart, int runEnd) {
+        if (runEnd - runStart < 1) return new Vector(1, 0, 0);
+        Vector direction;
+        if (index == runStart) {
+            direction = segmentVector(path, index, index + 1);
+        } else if (index == runEnd) {
+            direction = segmentVector(path, index - 1, index);
+        } else {
+            Vector incoming = segmentVector(path, index - 1, index);
+            Vector outgoing = segmentVector(path, index, index + 1);
+            if (incoming.length() > MIN_DIRECTION_LENGTH) incoming.normalize();
+            if (outgoing.length() > MIN_DIRECTION_LENGTH) outgoing.normalize();
+            direction = incoming.add(outgoing).multiply(0.5);
+        }
+        if (direction.length() < MIN_DIRECTION_LENGTH) {
+            if (index > runStart && path.distanceSquared(index - 1, index) > MIN_POSITION_CHANGE) {
+                return segmentVector(path, index - 1, index).normalize();
+            } else if (index < runEnd && path.distanceSquared(index, index + 1) > MIN_POSITION_CHANGE) {
+                return segmentVector(path, index, index + 1).normalize();
+            } else {
+                return new Vector(1, 0, 0);
+            }
+        }
+        return direction.normalize();
+    }
+
+    private static Vector segmentVector(PolylineBuffer path, int from, int to) {
+        return new Vector(path.getX(to) - path.getX(from), path.getY(to) - path.getY(from), path.getZ(to) - path.getZ(from));
+    }
+}
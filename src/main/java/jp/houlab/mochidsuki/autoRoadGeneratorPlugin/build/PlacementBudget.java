@@ -0,0 +1,187 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build;
+
+import org.bukkit.scheduler.BukkitRunnable;
+
+/**
+ * ブロック設置に使える1ティックあたりの時間予算を管理するクラス
+ *
+ * 全プレイヤーの建築・取り消しの設置タスクは、この1つの予算を共有します。
+ * 毎ティックの始めに予算をリセットし、各設置タスクは「残り予算 ÷ このティックでまだ実行していないタスク数」
+ * の時間だけ設置を行います。先に実行したタスクが使い切らなかった時間は後のタスクに回ります。
+ *
+ * 予算はティック間隔の実測値に応じて調整されます。間隔が目標（通常50ms）を超えて
+ * サーバーが遅れている場合は予算を減らし、余裕がある場合は上限まで少しずつ増やします。
+ *
+ * 同じくティックごとに、プラグインが読み込んでよいチャンク数の枠も管理します。
+ * Spigotにはチャンクを非同期で読み込むAPIがなく、チケットの付与やブロックの取得で
+ * 読み込まれていないチャンクに触れるとその場で読み込み（必要なら生成）が行われるため、
+ * 複数のタスクの読み込みが1ティックに重ならないようにします。
+ * メインスレッド専用です。
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class PlacementBudget extends BukkitRunnable {
+
+    /** 遅れを検出したときに予算に掛ける係数 */
+    private static final double DECREASE_FACTOR = 0.75;
+    /** 余裕があるときに1ティックごとに増やす予算（ナノ秒） */
+    private static final long INCREASE_STEP_NANOS = 250_000L;
+    /** ティック間隔の平滑化係数 */
+    private static final double SMOOTHING = 0.2;
+    /** 目標に対して遅れとみなす割合 */
+    private static final double OVERLOAD_RATIO = 1.05;
+
+    private final long minBudgetNanos;
+    private final long maxBudgetNanos;
+    private final long targetTickNanos;
+    private final int maxBlocksPerTick;
+    private final int maxChunkLoadsPerTick;
+
+    private long currentBudgetNanos;
+    private double smoothedTickNanos;
+    private long lastTickStart = 0L;
+
+    private long remainingNanos;
+    private int remainingBlocks;
+    private int remainingChunkLoads;
+    private int activeTasks = 0;
+    private int pendingTasksThisTick = 0;
+
+    /**
+     * 1回分の設置の割り当て
+     */
+    public static final class Slice {
+        private final long startNanos;
+        private final long deadlineNanos;
+        private final int blockLimit;
+        private int placed = 0;
+
+        private Slice(long startNanos, long sliceNanos, int blockLimit) {
+            this.startNanos = startNanos;
+            this.deadlineNanos = startNanos + sliceNanos;
+            this.blockLimit = blockLimit;
+        }
+
+        /**
+         * さらにブロックを設置できるかどうか
+         */
+        public boolean hasRemaining() {
+            return placed < blockLimit && System.nanoTime() < deadlineNanos;
+        }
+
+        /**
+         * ブロックを設置したことを記録します。
+         */
+        public void placed(int count) {
+            placed += count;
+        }
+    }
+
+    /**
+     * @param minBudgetMillis 予算の下限（ミリ秒）
+     * @param maxBudgetMillis 予算の上限（ミリ秒）
+     * @param targetMspt 目標とするティック間隔（ミリ秒）
+     * @param maxBlocksPerTick 全タスク合計の1ティックあたりの設置数上限（0以下で無制限）
+     * @param maxChunkLoadsPerTick 全タスク合計の1ティックあたりのチャンク読み込み数の上限（1以上に丸める）
+     */
+    public PlacementBudget(double minBudgetMillis, double maxBudgetMillis, double targetMspt, int maxBlocksPerTick, int maxChunkLoadsPerTick) {
+        this.maxBudgetNanos = (long) (Math.max(0.1, maxBudgetMillis) * 1_000_000L);
+        this.minBudgetNanos = Math.min(maxBudgetNanos, (long) (Math.max(0.1, minBudgetMillis) * 1_000_000L));
+        this.targetTickNanos = (long) (Math.max(1.0, targetMspt) * 1_000_000L);
+        this.maxBlocksPerTick = maxBlocksPerTick > 0 ? maxBlocksPerTick : Integer.MAX_VALUE;
+        this.maxChunkLoadsPerTick = Math.max(1, maxChunkLoadsPerTick);
+        this.currentBudgetNanos = maxBudgetNanos;
+        this.smoothedTickNanos = targetTickNanos;
+        resetTick();
+    }
+
+    /**
+     * ティックの始めに呼ばれ、ティック間隔を計測して予算を調整・リセットします。
+     */
+    @Override
+    public void run() {
+        long now = System.nanoTime();
+        if (lastTickStart != 0L) {
+            smoothedTickNanos += (now - lastTickStart - smoothedTickNanos) * SMOOTHING;
+            if (smoothedTickNanos > targetTickNanos * OVERLOAD_RATIO) {
+                currentBudgetNanos = Math.max(minBudgetNanos, (long) (currentBudgetNanos * DECREASE_FACTOR));
+            } else {
+                currentBudgetNanos = Math.min(maxBudgetNanos, currentBudgetNanos + INCREASE_STEP_NANOS);
+            }
+        }
+        lastTickStart = now;
+        resetTick();
+    }
+
+    /**
+     * 設置タスクを予算の分配対象に登録します。
+     */
+    public void register() {
+        activeTasks++;
+        pendingTasksThisTick++;
+    }
+
+    /**
+     * 設置タスクを予算の分配対象から外します。
+     */
+    public void unregister() {
+        activeTasks = Math.max(0, activeTasks - 1);
+        pendingTasksThisTick = Math.min(pendingTasksThisTick, activeTasks);
+    }
+
+    /**
+     * このティックの残り予算から、呼び出したタスクの取り分を割り当てます。
+     * @return 設置の割り当て
+     */
+    public Slice beginSlice() {
+        int sharers = Math.max(1, pendingTasksThisTick);
+        if (pendingTasksThisTick > 0) {
+            pendingTasksThisTick--;
+        }
+        return new Slice(System.nanoTime(), Math.max(0L, remainingNanos / sharers), Math.max(0, remainingBlocks / sharers));
+    }
+
+    /**
+     * 割り当ての使用を終え、使った時間と設置数を残り予算から差し引きます。
+     */
+    public void endSlice(Slice slice) {
+        remainingNanos -= System.nanoTime() - slice.startNanos;
+        remainingBlocks -= slice.placed;
+    }
+
+    /**
+     * このティックの枠から、読み込まれていないチャンクを1つ読み込む権利を取得します。
+     * @return 読み込んでよい場合true。枠を使い切った場合は次のティックまでfalse
+     */
+    public boolean tryAcquireChunkLoad() {
+        if (remainingChunkLoads <= 0) {
+            return false;
+        }
+        remainingChunkLoads--;
+        return true;
+    }
+
+    /** 現在の1ティックあたりの予算（ミリ秒） */
+    public double getCurrentBudgetMillis() {
+        return currentBudgetNanos / 1_000_000.0;
+    }
+
+    /** 平滑化したティック間隔（ミリ秒） */
+    public double getSmoothedMspt() {
+        return smoothedTickNanos / 1_000_000.0;
+    }
+
+    /** 予算を共有している設置タスク数 */
+    public int getActiveTaskCount() {
+        return activeTasks;
+    }
+
+    private void resetTick() {
+        remainingNanos = currentBudgetNanos;
+        remainingBlocks = maxBlocksPerTick;
+        remainingChunkLoads = maxChunkLoadsPerTick;
+        pendingTasksThisTick = activeTasks;
+    }
+}
@@ -0,0 +1,138 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 計算スレッドから設置タスクへブロックを順次受け渡すための有界キュー
+ *
+ * 計算が終わった部分から設置を始められるよう、ブロックはタイル単位のバッチで流れます。
+ * キューが満杯の場合、バッチを投入する計算スレッドは設置が追いつくまで待機するため、
+ * 計算結果がメモリに溜まり続けることはありません。
+ * ただし設置タスクが待機中・一時停止中の間は上限を適用しません。設置が進まないストリームのために
+ * 共有の計算スレッドが塞がり、他の建築の計算が止まってしまうのを防ぐためです。
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class PlacementStream {
+
+    private final ArrayDeque<List<BlockPlacementInfo>> batches = new ArrayDeque<>();
+    private final int capacity;
+    private final AtomicInteger totalTiles = new AtomicInteger();
+    private final AtomicInteger emittedTiles = new AtomicInteger();
+    private volatile boolean finished = false;
+    private volatile boolean cancelled = false;
+    private boolean consumerActive = false;
+
+    /**
+     * @param capacity キューに保持できるバッチ数の上限
+     */
+    public PlacementStream(int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    /**
+     * バッチを投入します。設置中にキューが満杯の場合は空きができるまで待機します。
+     * ストリームが中止されている場合、バッチは破棄されます。
+     * @param batch 設置順に並んだブロックのリスト
+     * @throws InterruptedException 待機中に割り込まれた場合
+     */
+    public void put(List<BlockPlacementInfo> batch) throws InterruptedException {
+        emittedTiles.incrementAndGet();
+        if (batch.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            while (!cancelled && consumerActive && batches.size() >= capacity) {
+                wait();
+            }
+            if (cancelled) {
+                return;
+            }
+            batches.addLast(batch);
+        }
+    }
+
+    /**
+     * 設置タスクが実行中かどうかを設定します。実行中でない間はキューの上限を適用しません。
+     */
+    public synchronized void setConsumerActive(boolean active) {
+        consumerActive = active;
+        notifyAll();
+    }
+
+    /**
+     * 設置するブロックがなかったタイルを完了として数えます。
+     * @param count タイル数
+     */
+    public void skipTiles(int count) {
+        emittedTiles.addAndGet(count);
+    }
+
+    /**
+     * 次のバッチを取り出します。待機はしません。
+     * @return 次のバッチ。キューが空の場合はnull
+     */
+    public synchronized List<BlockPlacementInfo> poll() {
+        List<BlockPlacementInfo> batch = batches.pollFirst();
+        if (batch != null) {
+            notifyAll();
+        }
+        return batch;
+    }
+
+    /**
+     * これ以上バッチが投入されないことを通知します。
+     */
+    public void finish() {
+        finished = true;
+    }
+
+    /**
+     * ストリームを中止し、未設置のバッチを破棄します。
+     */
+    public synchronized void cancel() {
+        cancelled = true;
+        batches.clear();
+        notifyAll();
+    }
+
+    /**
+     * これ以上バッチが投入されないかどうか
+     */
+    public boolean isFinished() {
+        return finished || cancelled;
+    }
+
+    /**
+     * ストリームが中止されたかどうか
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * 全てのバッチが投入され、かつ取り出し済みかどうか
+     */
+    public synchronized boolean isDrained() {
+        return (finished || cancelled) && batches.isEmpty();
+    }
+
+    /** 全タイル数を設定します。 */
+    public void setTotalTiles(int total) {
+        totalTiles.set(total);
+    }
+
+    /** 全タイル数 */
+    public int getTotalTiles() {
+        return totalTiles.get();
+    }
+
+    /** 計算が完了して投入されたタイル数 */
+    public int getEmittedTiles() {
+        return emittedTiles.get();
+    }
+}
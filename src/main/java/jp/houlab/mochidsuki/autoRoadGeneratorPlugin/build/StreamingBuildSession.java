@@ -0,0 +1,188 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build;
+
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.AutoRoadGeneratorPluginMain;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.preset.BlockStatePalette;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.preset.RoadPreset;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route.PolylineBuffer;
+import org.bukkit.World;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 道路のストリーミング建築セッション
+ *
+ * 建築範囲をチャンクと同じ大きさのタイルに分割し、各エッジが影響しうるタイル（フットプリント）を
+ * 計算開始前に登録します。エッジの計算が終わるたびに結果をタイルごとに振り分け、
+ * そのタイルに影響する全てのエッジが完了した時点でタイルを確定して {@link PlacementStream} へ流します。
+ *
+ * 重なりの解決は複数のエッジが共有するタイル（交差点やエッジの境界付近）でのみ発生し、
+ * 1本のエッジしか通らないタイルはそのエッジの計算完了直後に設置が始まります。
+ * タイルは書き込みうる全てのエッジの結果を統合してから流すため、結果はエッジの完了順に依存しません。
+ * フットプリントは断面の届く範囲を含むため、エッジがその外側に書き込むことはありません。
+ * 外側のブロックは確定済みのタイルを順序に依存して上書きしてしまうため、警告を出して破棄します。
+ *
+ * 建築が取り消された後に完了したエッジの結果は、警告を出さずに破棄します。
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class StreamingBuildSession {
+
+    /** タイルの一辺の長さの2の対数（16ブロック = 1チャンク） */
+    public static final int TILE_SHIFT = 4;
+    /** 道路幅に加えてフットプリントに含める余白（ブロック） */
+    private static final int FOOTPRINT_MARGIN = 2;
+
+    private final AutoRoadGeneratorPluginMain plugin;
+    private final World world;
+    private final RoadPreset roadPreset;
+    private final boolean updateBlockData;
+    private final PlacementStream stream;
+
+    private final Map<UUID, Set<Long>> edgeFootprints = new HashMap<>();
+    private final Map<Long, Integer> pendingEdgesPerTile = new HashMap<>();
+    private final Map<Long, VoxelCanvas> tileCanvases = new HashMap<>();
+    private int remainingEdges = 0;
+    // タイルをストリームへ投入中のエッジ数（全エッジの投入が終わってから完了を通知するため）
+    private int emittingEdges = 0;
+
+    public StreamingBuildSession(AutoRoadGeneratorPluginMain plugin, World world, RoadPreset roadPreset, boolean updateBlockData, PlacementStream stream) {
+        this.plugin = plugin;
+        this.world = world;
+        this.roadPreset = roadPreset;
+        this.updateBlockData = updateBlockData;
+        this.stream = stream;
+    }
+
+    /**
+     * エッジを登録し、そのパスが影響しうるタイルを記録します。全てのエッジを計算開始前に登録してください。
+     * @param edgeId エッジのID
+     * @param path エッジの計算済みパス
+     */
+    public synchronized void registerEdge(UUID edgeId, PolylineBuffer path) {
+        int reach = roadPreset.getWidthZ() / 2 + FOOTPRINT_MARGIN;
+        Set<Long> footprint = new HashSet<>();
+        for (int i = 0; i < path.size(); i++) {
+            int j = i + 1 < path.size() ? i + 1 : i;
+            int minTileX = (int) Math.floor(Math.min(path.getX(i), path.getX(j)) - reach) >> TILE_SHIFT;
+            int maxTileX = (int) Math.floor(Math.max(path.getX(i), path.getX(j)) + reach) >> TILE_SHIFT;
+            int minTileZ = (int) Math.floor(Math.min(path.getZ(i), path.getZ(j)) - reach) >> TILE_SHIFT;
+            int maxTileZ = (int) Math.floor(Math.max(path.getZ(i), path.getZ(j)) + reach) >> TILE_SHIFT;
+            for (int tx = minTileX; tx <= maxTileX; tx++) {
+                for (int tz = minTileZ; tz <= maxTileZ; tz++) {
+                    footprint.add(VoxelCanvas.tileKey(tx, tz));
+                }
+            }
+        }
+        edgeFootprints.put(edgeId, footprint);
+        for (long tile : footprint) {
+            pendingEdgesPerTile.merge(tile, 1, Integer::sum);
+        }
+        remainingEdges++;
+        stream.setTotalTiles(pendingEdgesPerTile.size());
+    }
+
+    /**
+     * エッジの確定済みキャンバスを受け取り、完成したタイルを設置ストリームへ流します。
+     * 計算スレッドから呼び出され、ストリームが満杯の場合は空きができるまで待機します。
+     * @param edgeId エッジのID
+     * @param canvas エッジの確定済みキャンバス
+     */
+    public void completeEdge(UUID edgeId, VoxelCanvas canvas) {
+        if (stream.isCancelled()) {
+            synchronized (this) {
+                if (edgeFootprints.remove(edgeId) != null) {
+                    remainingEdges--;
+                }
+                tileCanvases.clear();
+            }
+            return;
+        }
+        Map<Long, VoxelCanvas> edgeTiles = canvas.splitByTile(TILE_SHIFT);
+        List<VoxelCanvas> readyTiles = new ArrayList<>();
+        int emptyTiles = 0;
+        int outsideTiles = 0;
+
+        synchronized (this) {
+            Set<Long> footprint = edgeFootprints.remove(edgeId);
+            if (footprint == null) {
+                return;
+            }
+            for (Map.Entry<Long, VoxelCanvas> entry : edgeTiles.entrySet()) {
+                if (!footprint.contains(entry.getKey())) {
+                    outsideTiles++;
+                    continue;
+                }
+                VoxelCanvas tileCanvas = tileCanvases.get(entry.getKey());
+                if (tileCanvas == null) {
+                    tileCanvases.put(entry.getKey(), entry.getValue());
+                } else {
+                    tileCanvas.mergeResolved(entry.getValue());
+                }
+            }
+            for (long tile : footprint) {
+                int pending = pendingEdgesPerTile.merge(tile, -1, Integer::sum);
+                if (pending <= 0) {
+                    pendingEdgesPerTile.remove(tile);
+                    VoxelCanvas tileCanvas = tileCanvases.remove(tile);
+                    if (tileCanvas != null) {
+                        readyTiles.add(tileCanvas);
+                    } else {
+                        emptyTiles++;
+                    }
+                }
+            }
+            remainingEdges--;
+            emittingEdges++;
+        }
+
+        if (outsideTiles > 0) {
+            plugin.getLogger().warning(plugin.getMessageManager().getMessage("log.streaming_outside_footprint", edgeId, outsideTiles));
+        }
+        stream.skipTiles(emptyTiles);
+        BlockStatePalette palette = roadPreset.getPalette();
+        try {
+            for (VoxelCanvas tileCanvas : readyTiles) {
+                if (updateBlockData) {
+                    tileCanvas.rotateAll(palette, 90.0);
+                }
+                stream.put(BuildCalculationTask.convertGridToBlockPlacementList(tileCanvas, palette, world, roadPreset, plugin));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stream.cancel();
+        } finally {
+            synchronized (this) {
+                emittingEdges--;
+                if (remainingEdges == 0 && emittingEdges == 0) {
+                    stream.finish();
+                }
+            }
+        }
+    }
+
+    /**
+     * 登録した全てのエッジの結果を受け取ったかどうか（取り消し後に破棄した分を含む）
+     */
+    public synchronized boolean isComplete() {
+        return remainingEdges == 0;
+    }
+
+    /**
+     * 建築が取り消されたかどうか。まだ始まっていないエッジの計算を省くために使います。
+     */
+    public boolean isCancelled() {
+        return stream.isCancelled();
+    }
+
+    public PlacementStream getStream() {
+        return stream;
+    }
+}
@@ -0,0 +1,320 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 1回分の建築の取り消しデータを圧縮して保持するクラス
+ *
+ * ブロックの状態はレコードごとのパレット（BlockDataの文字列表現）に登録し、各ブロックはパレットIDで参照します。
+ * 座標はチャンクごとにまとめ、チャンク内の位置（1バイト）と前のブロックからのY座標の差分（可変長整数）で表します。
+ * 1ブロックあたりおよそ3バイトになり、Location と BlockData をそのまま保持する場合より大幅に小さくなります。
+ *
+ * 同じチャンク内のブロックは取り消し順を維持します。異なるチャンクのブロックは同じ座標を持たないため、
+ * チャンク単位に並べ替えても取り消し結果は変わりません。
+ * 生成後は変更されないため、複数スレッドから参照できます。
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class UndoRecord {
+
+    private static final int FILE_MAGIC = 0x41524755; // "ARGU"
+    private static final int FILE_VERSION = 1;
+
+    private final long id;
+    private final UUID owner;
+    private final long createdAt;
+    private final int blockCount;
+    private final UUID[] worlds;
+    private final String[] palette;
+    // [チャンク数] { [ワールド番号][チャンクX][チャンクZ][ブロック数] { [チャンク内XZ][Y差分][パレットID] } }
+    private final byte[] data;
+
+    private UndoRecord(long id, UUID owner, long createdAt, int blockCount, UUID[] worlds, String[] palette, byte[] data) {
+        this.id = id;
+        this.owner = owner;
+        this.createdAt = createdAt;
+        this.blockCount = blockCount;
+        this.worlds = worlds;
+        this.palette = palette;
+        this.data = data;
+    }
+
+    /**
+     * 取り消し順に並んだブロック情報を符号化します。
+     * @param id レコードID
+     * @param owner 建築したプレイヤーのUUID
+     * @param blocks 元の状態に戻すためのブロック情報（取り消し順）
+     * @return 符号化したレコード
+     */
+    public static UndoRecord encode(long id, UUID owner, List<BlockPlacementInfo> blocks) {
+        List<UUID> worldList = new ArrayList<>();
+        Map<UUID, Integer> worldIndex = new HashMap<>();
+        Map<String, Integer> paletteIndex = new LinkedHashMap<>();
+        Map<Long, Integer> chunkRank = new LinkedHashMap<>();
+        List<long[]> chunkKeys = new ArrayList<>();
+
+        // 各ブロックのチャンク番号（初出順）とパレットIDを求める
+        int size = blocks.size();
+        int[] chunkOf = new int[size];
+        int[] paletteOf = new int[size];
+        int[] chunkCounts = new int[Math.max(16, size)];
+        int valid = 0;
+        for (int i = 0; i < size; i++) {
+            BlockPlacementInfo info = blocks.get(i);
+            Location location = info.position();
+            World world = location.getWorld();
+            if (world == null || info.data() == null) {
+                chunkOf[i] = -1;
+                continue;
+            }
+            int worldId = worldIndex.computeIfAbsent(world.getUID(), uid -> {
+                worldList.add(uid);
+                return worldList.size() - 1;
+            });
+            int chunkX = location.getBlockX() >> 4;
+            int chunkZ = location.getBlockZ() >> 4;
+            long key = ((long) worldId << 56) ^ (((long) chunkX & 0xFFFFFFFL) << 28) ^ ((long) chunkZ & 0xFFFFFFFL);
+            Integer rank = chunkRank.get(key);
+            if (rank == null) {
+                rank = chunkKeys.size();
+                chunkRank.put(key, rank);
+                chunkKeys.add(new long[]{worldId, chunkX, chunkZ});
+            }
+            chunkOf[i] = rank;
+            chunkCounts[rank]++;
+            String state = info.data().getAsString();
+            Integer paletteId = paletteIndex.get(state);
+            if (paletteId == null) {
+                paletteId = paletteIndex.size();
+                paletteIndex.put(state, paletteId);
+            }
+            paletteOf[i] = paletteId;
+            valid++;
+        }
+
+        // チャンク順に安定な計数ソートを行う
+        int chunkCount = chunkKeys.size();
+        int[] offsets = new int[chunkCount + 1];
+        for (int c = 0; c < chunkCount; c++) {
+            offsets[c + 1] = offsets[c] + chunkCounts[c];
+        }
+        int[] order = new int[valid];
+        int[] cursor = new int[chunkCount];
+        for (int i = 0; i < size; i++) {
+            int chunk = chunkOf[i];
+            if (chunk >= 0) {
+                order[offsets[chunk] + cursor[chunk]++] = i;
+            }
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(32, valid * 3 + chunkCount * 8));
+        writeVarInt(out, chunkCount);
+        for (int c = 0; c < chunkCount; c++) {
+            long[] chunk = chunkKeys.get(c);
+            writeVarInt(out, (int) chunk[0]);
+            writeVarInt(out, zigZag((int) chunk[1]));
+            writeVarInt(out, zigZag((int) chunk[2]));
+            writeVarInt(out, chunkCounts[c]);
+            int previousY = 0;
+            for (int k = offsets[c]; k < offsets[c + 1]; k++) {
+                int index = order[k];
+                Location location = blocks.get(index).position();
+                int y = location.getBlockY();
+                out.write((location.getBlockX() & 15) | ((location.getBlockZ() & 15) << 4));
+                writeVarInt(out, zigZag(y - previousY));
+                writeVarInt(out, paletteOf[index]);
+                previousY = y;
+            }
+        }
+
+        return new UndoRecord(id, owner, System.currentTimeMillis(), valid,
+                worldList.toArray(new UUID[0]), paletteIndex.keySet().toArray(new String[0]), out.toByteArray());
+    }
+
+    /**
+     * 取り消し用のブロック情報に復元します。ワールドが読み込まれていないブロックは含まれません。
+     * @return 元の状態に戻すためのブロック情報（チャンク単位の取り消し順）
+     */
+    public List<BlockPlacementInfo> decode() {
+        World[] loadedWorlds = new World[worlds.length];
+        for (int i = 0; i < worlds.length; i++) {
+            loadedWorlds[i] = Bukkit.getWorld(worlds[i]);
+        }
+        // BlockData はパレットごとに1回だけ生成する
+        BlockData[] states = new BlockData[palette.length];
+        for (int i = 0; i < palette.length; i++) {
+            try {
+                states[i] = Bukkit.createBlockData(palette[i]);
+            } catch (IllegalArgumentException e) {
+                states[i] = null;
+            }
+        }
+
+        List<BlockPlacementInfo> result = new ArrayList<>(blockCount);
+        int[] position = {0};
+        int chunkCount = readVarInt(data, position);
+        for (int c = 0; c < chunkCount; c++) {
+            World world = loadedWorlds[readVarInt(data, position)];
+            int baseX = unZigZag(readVarInt(data, position)) << 4;
+            int baseZ = unZigZag(readVarInt(data, position)) << 4;
+            int count = readVarInt(data, position);
+            int y = 0;
+            for (int k = 0; k < count; k++) {
+                int local = data[position[0]++] & 0xFF;
+                y += unZigZag(readVarInt(data, position));
+                BlockData state = states[readVarInt(data, position)];
+                if (world != null && state != null) {
+                    result.add(new BlockPlacementInfo(new Location(world, baseX + (local & 15), y, baseZ + (local >> 4)), state));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * GZIP圧縮してファイルに書き出します。
+     */
+    public void writeTo(File file) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Could not create directory " + parent);
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(temp))))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeLong(id);
+            out.writeLong(owner.getMostSignificantBits());
+            out.writeLong(owner.getLeastSignificantBits());
+            out.writeLong(createdAt);
+            out.writeInt(blockCount);
+            out.writeInt(worlds.length);
+            for (UUID world : worlds) {
+                out.writeLong(world.getMostSignificantBits());
+                out.writeLong(world.getLeastSignificantBits());
+            }
+            out.writeInt(palette.length);
+            for (String state : palette) {
+                out.writeUTF(state);
+            }
+            out.writeInt(data.length);
+            out.write(data);
+        }
+        // 書き込み途中のファイルを読み込まないよう、完成してから置き換える
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Could not replace " + file);
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Could not rename " + temp + " to " + file);
+        }
+    }
+
+    /**
+     * {@link #writeTo(File)} で書き出したファイルを読み込みます。
+     */
+    public static UndoRecord readFrom(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))))) {
+            if (in.readInt() != FILE_MAGIC) {
+                throw new IOException("Not an undo record: " + file.getName());
+            }
+            int version = in.readInt();
+            if (version != FILE_VERSION) {
+                throw new IOException("Unsupported undo record version " + version + ": " + file.getName());
+            }
+            long id = in.readLong();
+            UUID owner = new UUID(in.readLong(), in.readLong());
+            long createdAt = in.readLong();
+            int blockCount = in.readInt();
+            UUID[] worlds = new UUID[in.readInt()];
+            for (int i = 0; i < worlds.length; i++) {
+                worlds[i] = new UUID(in.readLong(), in.readLong());
+            }
+            String[] palette = new String[in.readInt()];
+            for (int i = 0; i < palette.length; i++) {
+                palette[i] = in.readUTF();
+            }
+            byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+            return new UndoRecord(id, owner, createdAt, blockCount, worlds, palette, data);
+        }
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public UUID getOwner() {
+        return owner;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    /** 記録しているブロック数 */
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    /**
+     * メモリ上の概算サイズ（バイト）
+     */
+    public long estimateMemoryBytes() {
+        long size = 96L + data.length + worlds.length * 32L;
+        for (String state : palette) {
+            size += 48L + state.length() * 2L;
+        }
+        return size;
+    }
+
+    private static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(byte[] buffer, int[] position) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer[position[0]++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,419 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build;
+
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.preset.BlockStatePalette;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.util.BlockKeyUtil;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.util.StringBlockRotationUtil;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ブロック座標をキーとするプリミティブ配列ベースのボクセルキャンバス
+ *
+ * 座標(x, y, z)を {@link BlockKeyUtil} で1つのlong値に詰め込み、オープンアドレス法のハッシュ表で管理します。
+ * 各ボクセルは固定数の投票スロットを持ち、パレットIDごとの票数と
+ * グリッド中心に最も近いサンプルの情報をサンプル到着時に逐次更新します。
+ * これにより、サンプルごとのオブジェクト生成や後段での集計処理が不要になります。
+ *
+ * スロット数は固定のため、集計は近似です。1つのボクセルに {@link #VOTE_SLOTS} を超える種類の
+ * ブロック状態が投票されると、票の最も少ない候補はより多い票を持つ候補に置き換えられ、それまでの票は失われます。
+ * その場合、結果はサンプルの到着順や統合順によって正確な最多得票と異なることがあります。
+ * 道路の断面では1ボクセルに届くブロック状態は通常数種類のため、影響は候補が拮抗する境界のボクセルに限られます。
+ *
+ * ボクセルのデータは登録順に密に並んだ配列へ格納され、ハッシュ表はその添字のみを保持します。
+ * このクラスはスレッドセーフではありません。並列処理ではタスクごとにキャンバスを作成し、
+ * {@link #absorbVotes(VoxelCanvas)} で統合してください。
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class VoxelCanvas {
+
+    /** 投票用キャンバスの1ボクセルあたりのスロット数 */
+    public static final int VOTE_SLOTS = 4;
+    /** 投票確定後のキャンバスの1ボクセルあたりのスロット数 */
+    public static final int RESOLVED_SLOTS = 1;
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final int slotsPerVoxel;
+
+    // ハッシュ表（値は密配列の添字+1、0は空き）
+    private int[] table;
+    private int tableMask;
+
+    // ボクセルごとの密配列
+    private long[] voxelKeys;
+    private int voxelCount;
+
+    // スロットごとの密配列（添字 = ボクセル添字 * slotsPerVoxel + スロット番号）
+    private int[] slotPaletteIds;
+    private int[] slotCounts;
+    private float[] slotCenterDistances;
+    private float[] slotSourceYs;
+    private int[] slotPresetZs;
+    private int[] slotSliceIndices;
+    private float[] slotYaws;
+
+    /**
+     * 投票用のキャンバスを作成します。
+     */
+    public VoxelCanvas() {
+        this(VOTE_SLOTS);
+    }
+
+    /**
+     * 指定したスロット数でキャンバスを作成します。
+     * @param slotsPerVoxel 1ボクセルあたりの投票スロット数
+     */
+    public VoxelCanvas(int slotsPerVoxel) {
+        this.slotsPerVoxel = slotsPerVoxel;
+        this.table = new int[INITIAL_CAPACITY * 2];
+        this.tableMask = table.length - 1;
+        allocateVoxels(INITIAL_CAPACITY);
+    }
+
+    /**
+     * ブロック中心からの水平距離の二乗を計算します。
+     */
+    public static double distanceToGridCenter(double x, double z) {
+        double dx = x - (Math.floor(x) + 0.5);
+        double dz = z - (Math.floor(z) + 0.5);
+        return dx * dx + dz * dz;
+    }
+
+    /**
+     * サンプルを1票としてボクセルに投票します。
+     * @param sourceX サンプルのワールドX座標
+     * @param sourceY サンプルのワールドY座標
+     * @param sourceZ サンプルのワールドZ座標
+     * @param paletteId ブロック状態のパレットID
+     * @param presetZ プリセット上のZオフセット
+     * @param sliceIndex プリセットのスライス番号
+     * @param yaw サンプル位置での道路の向き（度）
+     */
+    public void vote(double sourceX, double sourceY, double sourceZ, int paletteId, int presetZ, int sliceIndex, double yaw) {
+        long key = BlockKeyUtil.pack((int) Math.floor(sourceX), (int) Math.floor(sourceY), (int) Math.floor(sourceZ));
+        addVotes(key, paletteId, 1, (float) distanceToGridCenter(sourceX, sourceZ), (float) sourceY, presetZ, sliceIndex, (float) yaw);
+    }
+
+    /**
+     * 別の投票用キャンバスの票をこのキャンバスに加算します。
+     * @param other 統合するキャンバス
+     */
+    public void absorbVotes(VoxelCanvas other) {
+        for (int voxel = 0; voxel < other.voxelCount; voxel++) {
+            long key = other.voxelKeys[voxel];
+            int base = voxel * other.slotsPerVoxel;
+            for (int s = base; s < base + other.slotsPerVoxel; s++) {
+                if (other.slotCounts[s] == 0) continue;
+                addVotes(key, other.slotPaletteIds[s], other.slotCounts[s], other.slotCenterDistances[s],
+                        other.slotSourceYs[s], other.slotPresetZs[s], other.slotSliceIndices[s], other.slotYaws[s]);
+            }
+        }
+    }
+
+    /**
+     * 各ボクセルの投票を確定し、勝者のみを保持する新しいキャンバスを作成します。
+     * スロットに残った候補のうち最多得票のブロック状態が勝ち、同数の場合はグリッド中心に最も近いサンプルを持つものが勝ちます。
+     * 置き換えられた候補の票は数えないため、候補が {@link #VOTE_SLOTS} を超えたボクセルでは近似になります（クラスの説明を参照）。
+     * @return 1ボクセル1スロットの確定済みキャンバス
+     */
+    public VoxelCanvas resolveVotes() {
+        VoxelCanvas resolved = new VoxelCanvas(RESOLVED_SLOTS);
+        resolved.ensureVoxelCapacity(voxelCount);
+        for (int voxel = 0; voxel < voxelCount; voxel++) {
+            int base = voxel * slotsPerVoxel;
+            int winner = -1;
+            for (int s = base; s < base + slotsPerVoxel; s++) {
+                if (slotCounts[s] == 0) continue;
+                if (winner < 0 || slotCounts[s] > slotCounts[winner]
+                        || (slotCounts[s] == slotCounts[winner] && slotCenterDistances[s] < slotCenterDistances[winner])) {
+                    winner = s;
+                }
+            }
+            if (winner >= 0) {
+                resolved.addVotes(voxelKeys[voxel], slotPaletteIds[winner], slotCounts[winner], slotCenterDistances[winner],
+                        slotSourceYs[winner], slotPresetZs[winner], slotSliceIndices[winner], slotYaws[winner]);
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * 別の確定済みキャンバスを統合します。
+     * 同じボクセルが重なる場合は、道路中心線に近い（|presetZ|が小さい）サンプルを優先し、
+     * 同じ場合はグリッド中心に近いサンプルを優先します。
+     * @param other 統合する確定済みキャンバス
+     */
+    public void mergeResolved(VoxelCanvas other) {
+        for (int voxel = 0; voxel < other.voxelCount; voxel++) {
+            int s = voxel * other.slotsPerVoxel;
+            if (other.slotCounts[s] == 0) continue;
+            long key = other.voxelKeys[voxel];
+            int existing = find(key);
+            if (existing < 0) {
+                addVotes(key, other.slotPaletteIds[s], other.slotCounts[s], other.slotCenterDistances[s],
+                        other.slotSourceYs[s], other.slotPresetZs[s], other.slotSliceIndices[s], other.slotYaws[s]);
+                continue;
+            }
+            int target = existing * slotsPerVoxel;
+            int newAbsZ = Math.abs(other.slotPresetZs[s]);
+            int existingAbsZ = Math.abs(slotPresetZs[target]);
+            boolean replace = newAbsZ != existingAbsZ
+                    ? newAbsZ < existingAbsZ
+                    : other.slotCenterDistances[s] < slotCenterDistances[target];
+            if (replace) {
+                writeSlot(target, other.slotPaletteIds[s], other.slotCounts[s], other.slotCenterDistances[s],
+                        other.slotSourceYs[s], other.slotPresetZs[s], other.slotSliceIndices[s], other.slotYaws[s]);
+            }
+        }
+    }
+
+    /**
+     * 投票を行わずにボクセルのブロック状態を設定します（確定済みキャンバス向け）。
+     * 既に値がある場合は上書きし、後から設定した値が優先されます。
+     * @param key {@link BlockKeyUtil#pack(int, int, int)} で詰め込んだブロック座標
+     * @param paletteId ブロック状態のパレットID
+     * @param presetZ プリセット上のZオフセット
+     * @param sliceIndex プリセットのスライス番号
+     */
+    public void put(long key, int paletteId, int presetZ, int sliceIndex) {
+        int voxel = findOrInsert(key);
+        writeSlot(voxel * slotsPerVoxel, paletteId, 1, 0.0f, BlockKeyUtil.unpackY(key), presetZ, sliceIndex, 0.0f);
+    }
+
+    /**
+     * 別の確定済みキャンバスの全ボクセルを、登録順に {@link #put(long, int, int, int)} と同じく上書きで統合します。
+     * @param other 統合する確定済みキャンバス
+     */
+    public void putAll(VoxelCanvas other) {
+        ensureVoxelCapacity(voxelCount + other.voxelCount);
+        for (int voxel = 0; voxel < other.voxelCount; voxel++) {
+            int s = voxel * other.slotsPerVoxel;
+            if (other.slotCounts[s] == 0) continue;
+            int target = findOrInsert(other.voxelKeys[voxel]) * slotsPerVoxel;
+            writeSlot(target, other.slotPaletteIds[s], other.slotCounts[s], other.slotCenterDistances[s],
+                    other.slotSourceYs[s], other.slotPresetZs[s], other.slotSliceIndices[s], other.slotYaws[s]);
+        }
+    }
+
+    /**
+     * 確定済みキャンバスの全ボクセルのブロック状態を、各サンプルの向きに合わせて一括で回転させます。
+     * 同じ状態と回転数の組はパレットへの問い合わせを一度だけ行います。
+     * @param palette パレットIDの解決に使用するパレット
+     * @param yawCorrection 各ボクセルの向きに加算する補正角度（度）
+     */
+    public void rotateAll(BlockStatePalette palette, double yawCorrection) {
+        int[] rotatedIds = new int[0];
+        for (int voxel = 0; voxel < voxelCount; voxel++) {
+            int s = voxel * slotsPerVoxel;
+            int paletteId = slotPaletteIds[s];
+            int quarterTurns = StringBlockRotationUtil.getQuarterTurns(Math.toRadians(slotYaws[s] + yawCorrection));
+            if (quarterTurns == 0) continue;
+
+            int lookup = paletteId * 4 + quarterTurns;
+            if (lookup >= rotatedIds.length) {
+                int oldLength = rotatedIds.length;
+                rotatedIds = Arrays.copyOf(rotatedIds, Math.max(lookup + 1, oldLength * 2));
+                Arrays.fill(rotatedIds, oldLength, rotatedIds.length, BlockStatePalette.NO_ID);
+            }
+            if (rotatedIds[lookup] == BlockStatePalette.NO_ID) {
+                rotatedIds[lookup] = palette.rotate(paletteId, quarterTurns);
+            }
+            slotPaletteIds[s] = rotatedIds[lookup];
+        }
+    }
+
+    /**
+     * 確定済みキャンバスを水平方向のタイルごとに分割します。
+     * @param tileShift タイルの一辺の長さの2の対数（4ならチャンクと同じ16ブロック）
+     * @return タイルキーから、そのタイルに含まれるボクセルだけを持つキャンバスへのマップ
+     */
+    public Map<Long, VoxelCanvas> splitByTile(int tileShift) {
+        Map<Long, VoxelCanvas> tiles = new HashMap<>();
+        for (int voxel = 0; voxel < voxelCount; voxel++) {
+            int s = voxel * slotsPerVoxel;
+            if (slotCounts[s] == 0) continue;
+            long key = voxelKeys[voxel];
+            long tile = tileKey(BlockKeyUtil.unpackX(key) >> tileShift, BlockKeyUtil.unpackZ(key) >> tileShift);
+            VoxelCanvas tileCanvas = tiles.computeIfAbsent(tile, k -> new VoxelCanvas(RESOLVED_SLOTS));
+            tileCanvas.addVotes(key, slotPaletteIds[s], slotCounts[s], slotCenterDistances[s],
+                    slotSourceYs[s], slotPresetZs[s], slotSliceIndices[s], slotYaws[s]);
+        }
+        return tiles;
+    }
+
+    /**
+     * タイル座標を1つのlong値に詰め込みます。
+     */
+    public static long tileKey(int tileX, int tileZ) {
+        return ((long) tileX << 32) | (tileZ & 0xFFFFFFFFL);
+    }
+
+    public int size() {
+        return voxelCount;
+    }
+
+    public boolean isEmpty() {
+        return voxelCount == 0;
+    }
+
+    /**
+     * 指定したブロックがキャンバスに含まれるかどうかを判定します。
+     */
+    public boolean contains(long key) {
+        return find(key) >= 0;
+    }
+
+    // 以下のアクセサは確定済みキャンバス（先頭スロット）向け
+
+    public long keyAt(int voxel) {
+        return voxelKeys[voxel];
+    }
+
+    public int paletteIdAt(int voxel) {
+        return slotPaletteIds[voxel * slotsPerVoxel];
+    }
+
+    public int presetZAt(int voxel) {
+        return slotPresetZs[voxel * slotsPerVoxel];
+    }
+
+    public int sliceIndexAt(int voxel) {
+        return slotSliceIndices[voxel * slotsPerVoxel];
+    }
+
+    public double sourceYAt(int voxel) {
+        return slotSourceYs[voxel * slotsPerVoxel];
+    }
+
+    public double yawAt(int voxel) {
+        return slotYaws[voxel * slotsPerVoxel];
+    }
+
+    private void addVotes(long key, int paletteId, int count, float centerDistance, float sourceY, int presetZ, int sliceIndex, float yaw) {
+        int voxel = findOrInsert(key);
+        int base = voxel * slotsPerVoxel;
+        int weakest = base;
+        for (int s = base; s < base + slotsPerVoxel; s++) {
+            if (slotCounts[s] == 0) {
+                writeSlot(s, paletteId, count, centerDistance, sourceY, presetZ, sliceIndex, yaw);
+                return;
+            }
+            if (slotPaletteIds[s] == paletteId) {
+                slotCounts[s] += count;
+                if (centerDistance < slotCenterDistances[s]) {
+                    slotCenterDistances[s] = centerDistance;
+                    slotSourceYs[s] = sourceY;
+                    slotPresetZs[s] = presetZ;
+                    slotSliceIndices[s] = sliceIndex;
+                    slotYaws[s] = yaw;
+                }
+                return;
+            }
+            if (slotCounts[s] < slotCounts[weakest]) {
+                weakest = s;
+            }
+        }
+        // スロットが埋まっている場合は、最も票の少ない候補より多い票を持つときだけ置き換える
+        if (count > slotCounts[weakest]) {
+            writeSlot(weakest, paletteId, count, centerDistance, sourceY, presetZ, sliceIndex, yaw);
+        }
+    }
+
+    private void writeSlot(int s, int paletteId, int count, float centerDistance, float sourceY, int presetZ, int sliceIndex, float yaw) {
+        slotPaletteIds[s] = paletteId;
+        slotCounts[s] = count;
+        slotCenterDistances[s] = centerDistance;
+        slotSourceYs[s] = sourceY;
+        slotPresetZs[s] = presetZ;
+        slotSliceIndices[s] = sliceIndex;
+        slotYaws[s] = yaw;
+    }
+
+    private int find(long key) {
+        int index = hash(key) & tableMask;
+        while (true) {
+            int entry = table[index];
+            if (entry == 0) return -1;
+            if (voxelKeys[entry - 1] == key) return entry - 1;
+            index = (index + 1) & tableMask;
+        }
+    }
+
+    private int findOrInsert(long key) {
+        int existing = find(key);
+        if (existing >= 0) return existing;
+
+        ensureVoxelCapacity(voxelCount + 1);
+        int voxel = voxelCount++;
+        voxelKeys[voxel] = key;
+        if (voxelCount * 2 > table.length) {
+            rehash(table.length * 2);
+        } else {
+            // 容量拡張でハッシュ表が作り直されている可能性があるため、空き位置を探し直す
+            insertIntoTable(voxel);
+        }
+        return voxel;
+    }
+
+    private void insertIntoTable(int voxel) {
+        int index = hash(voxelKeys[voxel]) & tableMask;
+        while (table[index] != 0) {
+            index = (index + 1) & tableMask;
+        }
+        table[index] = voxel + 1;
+    }
+
+    private void rehash(int newTableSize) {
+        table = new int[newTableSize];
+        tableMask = newTableSize - 1;
+        for (int voxel = 0; voxel < voxelCount; voxel++) {
+            insertIntoTable(voxel);
+        }
+    }
+
+    private void ensureVoxelCapacity(int required) {
+        if (required <= voxelKeys.length) return;
+        int newCapacity = voxelKeys.length;
+        while (newCapacity < required) {
+            newCapacity *= 2;
+        }
+        voxelKeys = Arrays.copyOf(voxelKeys, newCapacity);
+        int slotCapacity = newCapacity * slotsPerVoxel;
+        slotPaletteIds = Arrays.copyOf(slotPaletteIds, slotCapacity);
+        slotCounts = Arrays.copyOf(slotCounts, slotCapacity);
+        slotCenterDistances = Arrays.copyOf(slotCenterDistances, slotCapacity);
+        slotSourceYs = Arrays.copyOf(slotSourceYs, slotCapacity);
+        slotPresetZs = Arrays.copyOf(slotPresetZs, slotCapacity);
+        slotSliceIndices = Arrays.copyOf(slotSliceIndices, slotCapacity);
+        slotYaws = Arrays.copyOf(slotYaws, slotCapacity);
+        if (newCapacity * 2 > table.length) {
+            int tableSize = table.length;
+            while (newCapacity * 2 > tableSize) {
+                tableSize *= 2;
+            }
+            rehash(tableSize);
+        }
+    }
+
+    private void allocateVoxels(int capacity) {
+        voxelKeys = new long[capacity];
+        int slotCapacity = capacity * slotsPerVoxel;
+        slotPaletteIds = new int[slotCapacity];
+        slotCounts = new int[slotCapacity];
+        slotCenterDistances = new float[slotCapacity];
+        slotSourceYs = new float[slotCapacity];
+        slotPresetZs = new int[slotCapacity];
+        slotSliceIndices = new int[slotCapacity];
+        slotYaws = new float[slotCapacity];
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -1,37 +1,39 @@
 package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build;
 
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.AutoRoadGeneratorPluginMain;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.preset.BlockStatePalette;
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.preset.WallPreset;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route.PolylineBuffer;
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route.RouteSession;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.util.BlockKeyUtil;
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.util.PlayerMessageUtil;
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.util.StringBlockRotationUtil;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.block.data.BlockData;
 import org.bukkit.entity.Player;
 import org.bukkit.scheduler.BukkitRunnable;
-import org.bukkit.util.Vector;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class WallCalculationTask extends BukkitRunnable {
 
     // 定数定義
-    /** 複雑な曲線での最大細分化数 */
-    private static final int MAX_COMPLEX_SUBDIVISIONS = 1000;
-    /** 単純な曲線での最大細分化数 */
-    private static final int MAX_SIMPLE_SUBDIVISIONS = 100;
     /** 直角補正の角度（度） */
     private static final double RIGHT_ANGLE_CORRECTION = 90.0;
+    /** 並列に書き込む1タイルあたりの壁の中心線のブロック数 */
+    private static final int CELLS_PER_TILE = 512;
 
     private final AutoRoadGeneratorPluginMain plugin;
     private final UUID playerUUID;
@@ -60,269 +62,193 @@ public class WallCalculationTask extends BukkitRunnable {
 
     @Override
     public void run() {
-        List<Location> originalPath = routeSession.getCalculatedPath();
-        if (originalPath == null || originalPath.isEmpty()) {
-            BuildManager.addCanvasToSession(buildId, edgeId, new HashMap<>(), plugin, playerUUID, onlyAir, updateBlockData);
-            return;
-        }
-
-        List<Location> path = new ArrayList<>(originalPath);
-        Map<Location, BlockData> wallBlocks = new HashMap<>();
-
+        VoxelCanvas wallCanvas;
         try {
-            List<Location> smoothOffsetPath = generateSmoothOffsetPath(path, xOffset);
-            List<Location> snappedPath = voxelizeOffsetPath(smoothOffsetPath);
-            wallBlocks = stampWallCrossSections(snappedPath, wallPreset);
-
+            wallCanvas = calculateCanvas();
         } catch (Exception e) {
             plugin.getLogger().severe("Error during wall calculation: " + e.getMessage());
             e.printStackTrace();
-        } finally {
-            BuildManager.addCanvasToSession(buildId, edgeId, wallBlocks, plugin, playerUUID, onlyAir, updateBlockData);
+            wallCanvas = new VoxelCanvas(VoxelCanvas.RESOLVED_SLOTS);
         }
+        BuildManager.addCanvasToSession(buildId, edgeId, wallCanvas, plugin, playerUUID, onlyAir, updateBlockData, wallPreset.getPalette());
     }
 
-    private List<Location> generateSmoothOffsetPath(List<Location> roadPath, double offset) {
-        List<Location> highResPath = new ArrayList<>();
-        double maxSegmentDistance = 0.5;
-
-        for (int i = 0; i < roadPath.size() - 1; i++) {
-            Location current = roadPath.get(i);
-            Location next = roadPath.get(i + 1);
-            highResPath.add(current);
-            double segmentDistance = current.distance(next);
-            if (segmentDistance > maxSegmentDistance) {
-                int subdivisions = (int) Math.ceil(segmentDistance / maxSegmentDistance);
-                subdivisions = Math.min(subdivisions, MAX_COMPLEX_SUBDIVISIONS);
-                for (int j = 1; j < subdivisions; j++) {
-                    double t = (double) j / subdivisions;
-                    Location intermediate = current.clone().multiply(1 - t).add(next.toVector().multiply(t));
-                    intermediate.setWorld(current.getWorld());
-                    highResPath.add(intermediate);
-                }
-            }
-        }
-        if (!roadPath.isEmpty()) highResPath.add(roadPath.get(roadPath.size() - 1));
-
-        List<Location> initialOffsetPath = new ArrayList<>();
-        for (int i = 0; i < highResPath.size(); i++) {
-            Vector rightVector = calculateRightVector(highResPath, i);
-            initialOffsetPath.add(highResPath.get(i).clone().add(rightVector.multiply(offset)));
-        }
-
-        return recursivelySubdivideUntilDense(initialOffsetPath, maxSegmentDistance);
+    /**
+     * エッジの経路に沿って壁の断面を書き込み、回転後のパレットIDを持つキャンバスを計算します。
+     * 複合建築（{@link CompositeBuildTask}）からも呼び出されます。
+     * @return 1ボクセル1スロットのキャンバス
+     */
+    VoxelCanvas calculateCanvas() throws InterruptedException, ExecutionException {
+        VoxelCanvas wallCanvas = new VoxelCanvas(VoxelCanvas.RESOLVED_SLOTS);
+        // 設定済みの経路は変更されないため、コピーせずに参照する
+        PolylineBuffer path = routeSession.getCalculatedPath();
+        if (path == null || path.isEmpty()) {
+            return wallCanvas;
+        }
+
+        // 平行曲線の生成・自己交差の除去・ブロックへの変換を経路の1回の走査で行う
+        PolylineBuffer snappedPath = WallOffsetTracer.trace(path, xOffset);
+        int cellCount = snappedPath.size();
+
+        if (cellCount <= CELLS_PER_TILE) {
+            stampWallCrossSections(snappedPath, 0, cellCount, wallPreset, wallCanvas);
+            return wallCanvas;
+        }
+
+        // 経路をタイルに分け、タイルごとに専用のキャンバスへロックなしで並列に書き込む
+        ComputeScheduler scheduler = plugin.getComputeScheduler();
+        List<Future<VoxelCanvas>> futures = new ArrayList<>();
+        for (int startIndex = 0; startIndex < cellCount; startIndex += CELLS_PER_TILE) {
+            int tileStart = startIndex;
+            int tileEnd = Math.min(startIndex + CELLS_PER_TILE, cellCount);
+            futures.add(scheduler.submit(playerUUID, () -> {
+                VoxelCanvas tileCanvas = new VoxelCanvas(VoxelCanvas.RESOLVED_SLOTS);
+                stampWallCrossSections(snappedPath, tileStart, tileEnd, wallPreset, tileCanvas);
+                return tileCanvas;
+            }));
+        }
+        // 経路の順に上書きで統合し、1スレッドで順に書き込んだ場合と同じ結果にする
+        for (Future<VoxelCanvas> future : futures) {
+            wallCanvas.putAll(scheduler.await(future));
+        }
+        return wallCanvas;
     }
 
-    private List<Location> recursivelySubdivideUntilDense(List<Location> path, double maxDistance) {
-        if (path.size() < 2) return new ArrayList<>(path);
-        List<Location> result = new ArrayList<>();
-        boolean needsAnotherPass = false;
-        result.add(path.get(0));
-        for (int i = 0; i < path.size() - 1; i++) {
-            Location current = path.get(i);
-            Location next = path.get(i + 1);
-            double segmentDistance = current.distance(next);
-            if (segmentDistance > maxDistance) {
-                needsAnotherPass = true;
-                int subdivisions = (int) Math.ceil(segmentDistance / maxDistance);
-                subdivisions = Math.min(subdivisions, MAX_SIMPLE_SUBDIVISIONS);
-                for (int j = 1; j <= subdivisions; j++) {
-                    double t = (double) j / subdivisions;
-                    Location intermediate = current.clone().multiply(1 - t).add(next.toVector().multiply(t));
-                    intermediate.setWorld(current.getWorld());
-                    result.add(intermediate);
-                }
-            } else {
-                result.add(next);
+    // ベンチマーク（benchmarks モジュール）から呼び出すためパッケージプライベート
+    void stampWallCrossSections(PolylineBuffer snappedPath, int startIndex, int endIndex, WallPreset preset, VoxelCanvas canvas) {
+        BlockStatePalette palette = preset.getPalette();
+        int axisZOffset = preset.getAxisZOffset();
+        int axisYOffset = preset.getAxisYOffset();
+        for (int i = startIndex; i < endIndex; i++) {
+            int sliceIndex = (int) snappedPath.getArcLength(i) % preset.getLengthX();
+            if (sliceIndex < 0 || sliceIndex >= preset.getSlices().size()) {
+                continue;
             }
-        }
-        return needsAnotherPass ? recursivelySubdivideUntilDense(result, maxDistance) : result;
-    }
-
-    private Vector calculateRightVector(List<Location> path, int index) {
-        Vector forwardVector;
-        if (path.size() < 2) return new Vector(0, 0, 1);
-        if (index == 0) {
-            forwardVector = path.get(1).toVector().subtract(path.get(0).toVector());
-        } else if (index == path.size() - 1) {
-            forwardVector = path.get(index).toVector().subtract(path.get(index - 1).toVector());
-        } else {
-            Vector incoming = path.get(index).toVector().subtract(path.get(index - 1).toVector()).normalize();
-            Vector outgoing = path.get(index + 1).toVector().subtract(path.get(index).toVector()).normalize();
-            forwardVector = incoming.add(outgoing).multiply(0.5);
-        }
-        if (forwardVector.lengthSquared() < 1.0E-6) return new Vector(0, 0, 1);
-        return new Vector(-forwardVector.getZ(), 0, forwardVector.getX()).normalize();
-    }
-
-    private List<Location> voxelizeOffsetPath(List<Location> smoothPath) {
-        if (smoothPath.isEmpty()) return new ArrayList<>();
-        List<Location> snappedPath = new ArrayList<>();
-        Location lastSnapped = null;
-        for (Location smoothPoint : smoothPath) {
-            Location snapped = new Location(smoothPoint.getWorld(), Math.floor(smoothPoint.getX()) + 0.5, smoothPoint.getY(), Math.floor(smoothPoint.getZ()) + 0.5);
-            if (lastSnapped == null) {
-                snappedPath.add(snapped);
-                lastSnapped = snapped;
-            } else if (!isSameBlockPosition(lastSnapped, snapped)) {
-                addIntermediatePoints(snappedPath, lastSnapped, snapped);
-                lastSnapped = snappedPath.get(snappedPath.size() - 1);
+            WallPreset.WallSlice slice = preset.getSlices().get(sliceIndex);
+
+            // 進行方向（XZ成分）と右方向。回転数は道路と同じく90度の補正を加えて求める
+            int from = i > 0 ? i - 1 : 0;
+            int to = i > 0 ? i : Math.min(1, snappedPath.size() - 1);
+            if (snappedPath.size() > i + 1 && snappedPath.distanceSquared(from, to) < 1.0E-6
+                    && snappedPath.distanceSquared(i, i + 1) > 1.0E-6) {
+                from = i;
+                to = i + 1;
             }
-        }
-        return snappedPath;
-    }
-
-    private boolean isSameBlockPosition(Location loc1, Location loc2) {
-        return loc1.getBlockX() == loc2.getBlockX() && loc1.getBlockZ() == loc2.getBlockZ();
-    }
-
-    private void addIntermediatePoints(List<Location> path, Location from, Location to) {
-        int x0 = from.getBlockX();
-        int z0 = from.getBlockZ();
-        int x1 = to.getBlockX();
-        int z1 = to.getBlockZ();
-        double y0 = from.getY();
-        double y1 = to.getY();
-        int dx = x1 - x0;
-        int dz = z1 - z0;
-        int totalSteps = Math.abs(dx) + Math.abs(dz);
-        if (totalSteps == 0) return;
-
-        int currentX = x0;
-        int currentZ = z0;
-        int sx = Integer.compare(dx, 0);
-        int sz = Integer.compare(dz, 0);
-        int stepsDone = 0;
-
-        for (int i = 0; i < Math.abs(dx); i++) {
-            currentX += sx;
-            stepsDone++;
-            double progress = (double) stepsDone / totalSteps;
-            double interpY = y0 + (y1 - y0) * progress;
-            path.add(new Location(from.getWorld(), currentX + 0.5, interpY, currentZ + 0.5));
-        }
-        for (int i = 0; i < Math.abs(dz); i++) {
-            currentZ += sz;
-            stepsDone++;
-            double progress = (double) stepsDone / totalSteps;
-            double interpY = y0 + (y1 - y0) * progress;
-            path.add(new Location(from.getWorld(), currentX + 0.5, interpY, currentZ + 0.5));
-        }
-    }
-
-    private Map<Location, BlockData> stampWallCrossSections(List<Location> snappedPath, WallPreset preset) {
-        Map<Location, BlockData> wallBlocks = new HashMap<>();
-        float cumulativeDistance = 0f;
-        for (int i = 0; i < snappedPath.size(); i++) {
-            Location pathPoint = snappedPath.get(i);
-            Vector direction = calculateDirectionVector(snappedPath, i);
-            double yaw = Math.toDegrees(Math.atan2(-direction.getX(), direction.getZ()));
-            Vector rightVector = new Vector(-direction.getZ(), 0, direction.getX()).normalize();
-            Vector upVector = new Vector(0, 1, 0);
-            int sliceIndex = (int) cumulativeDistance % preset.getLengthX();
-            if (sliceIndex >= 0 && sliceIndex < preset.getSlices().size()) {
-                WallPreset.WallSlice slice = preset.getSlices().get(sliceIndex);
-                for (int z = preset.getMinZ(); z <= preset.getMaxZ(); z++) {
-                    for (int y = preset.getMinY(); y <= preset.getMaxY(); y++) {
-                        String blockDataString = slice.getBlockDataStringRelativeToAxis(z, y, preset.getAxisZOffset(), preset.getAxisYOffset());
-                        if (blockDataString != null) {
-                            Location blockLocation = pathPoint.clone().add(rightVector.clone().multiply(z)).add(upVector.clone().multiply(y + yOffset));
-                            try {
-                                // Add 90 degrees correction like in road system
-                                double correctedYaw = yaw + RIGHT_ANGLE_CORRECTION;
-                                String rotatedBlockDataString = StringBlockRotationUtil.rotateBlockDataString(blockDataString, Math.toRadians(correctedYaw));
-                                BlockData rotatedBlockData = Bukkit.createBlockData(rotatedBlockDataString);
-                                wallBlocks.put(blockLocation.getBlock().getLocation(), rotatedBlockData);
-                            } catch (IllegalArgumentException e) {
-                                plugin.getLogger().warning("Failed to rotate or create block data: " + blockDataString);
-                            }
-                        }
+            double directionX = snappedPath.getX(to) - snappedPath.getX(from);
+            double directionZ = snappedPath.getZ(to) - snappedPath.getZ(from);
+            double horizontalLength = Math.sqrt(directionX * directionX + directionZ * directionZ);
+            if (snappedPath.distanceSquared(from, to) < 1.0E-6 || horizontalLength < 1.0E-9) {
+                directionX = 1.0;
+                directionZ = 0.0;
+                horizontalLength = 1.0;
+            }
+            double rightX = -directionZ / horizontalLength;
+            double rightZ = directionX / horizontalLength;
+            double yaw = Math.toDegrees(Math.atan2(-directionX, directionZ));
+            int quarterTurns = StringBlockRotationUtil.getQuarterTurns(Math.toRadians(yaw + RIGHT_ANGLE_CORRECTION));
+
+            double baseX = snappedPath.getX(i);
+            double baseY = snappedPath.getY(i) + yOffset;
+            double baseZ = snappedPath.getZ(i);
+            for (int z = preset.getMinZ(); z <= preset.getMaxZ(); z++) {
+                int blockX = (int) Math.floor(baseX + rightX * z);
+                int blockZ = (int) Math.floor(baseZ + rightZ * z);
+                for (int y = preset.getMinY(); y <= preset.getMaxY(); y++) {
+                    int paletteId = slice.getPaletteIdRelativeToAxis(z, y, axisZOffset, axisYOffset);
+                    if (paletteId != BlockStatePalette.NO_ID) {
+                        // 回転後の状態もパレットIDで扱い、BlockDataは統合後に状態ごとに一度だけ取得する
+                        int rotatedPaletteId = palette.rotate(paletteId, quarterTurns);
+                        canvas.put(BlockKeyUtil.pack(blockX, (int) Math.floor(baseY + y), blockZ), rotatedPaletteId, z, sliceIndex);
                     }
                 }
             }
-            if (i < snappedPath.size() - 1) {
-                cumulativeDistance += snappedPath.get(i).distance(snappedPath.get(i + 1));
-            }
         }
-        return wallBlocks;
-    }
-
-    private Vector calculateDirectionVector(List<Location> path, int index) {
-        if (path.size() < 2) {
-            return new Vector(1, 0, 0); // Default forward (X-axis)
-        }
-
-        Vector direction;
-        if (index > 0) {
-            direction = path.get(index).toVector().subtract(path.get(index - 1).toVector());
-        } else {
-            direction = path.get(1).toVector().subtract(path.get(0).toVector());
-        }
-
-        if (direction.lengthSquared() < 1.0E-6) {
-            if (path.size() > index + 1) {
-                Vector nextDir = path.get(index + 1).toVector().subtract(path.get(index).toVector());
-                if(nextDir.lengthSquared() > 1.0E-6) return nextDir.normalize();
-            }
-            return new Vector(1, 0, 0);
-        }
-
-        return direction.normalize();
     }
 
     public static class BuildManager {
-        private static final Map<UUID, Map<UUID, Map<Location, BlockData>>> buildSessions = new ConcurrentHashMap<>();
+        private static final Map<UUID, Map<UUID, VoxelCanvas>> buildSessions = new ConcurrentHashMap<>();
         private static final Map<UUID, Integer> expectedEdges = new ConcurrentHashMap<>();
         private static final Map<UUID, AtomicInteger> completedEdges = new ConcurrentHashMap<>();
+        private static final Map<UUID, World> buildWorlds = new ConcurrentHashMap<>();
 
-        public static void startBuildSession(UUID buildId, int edgeCount) {
+        public static void startBuildSession(UUID buildId, int edgeCount, World world) {
             buildSessions.put(buildId, new ConcurrentHashMap<>());
             expectedEdges.put(buildId, edgeCount);
             completedEdges.put(buildId, new AtomicInteger(0));
+            buildWorlds.put(buildId, world);
         }
 
-        public static void addCanvasToSession(UUID buildId, UUID edgeId, Map<Location, BlockData> canvas, AutoRoadGeneratorPluginMain plugin, UUID playerUUID, boolean onlyAir, boolean updateBlockData) {
-            Map<UUID, Map<Location, BlockData>> session = buildSessions.get(buildId);
+        public static void addCanvasToSession(UUID buildId, UUID edgeId, VoxelCanvas canvas, AutoRoadGeneratorPluginMain plugin, UUID playerUUID, boolean onlyAir, boolean updateBlockData, BlockStatePalette palette) {
+            Map<UUID, VoxelCanvas> session = buildSessions.get(buildId);
             if (session == null) return;
             session.put(edgeId, canvas);
             int completed = completedEdges.get(buildId).incrementAndGet();
             int expected = expectedEdges.get(buildId);
             if (completed >= expected) {
-                finishBuildSession(buildId, plugin, playerUUID, onlyAir, updateBlockData);
+                finishBuildSession(buildId, plugin, playerUUID, onlyAir, updateBlockData, palette);
             }
         }
 
-        private static void finishBuildSession(UUID buildId, AutoRoadGeneratorPluginMain plugin, UUID playerUUID, boolean onlyAir, boolean updateBlockData) {
-            Map<UUID, Map<Location, BlockData>> session = buildSessions.remove(buildId);
+        private static void finishBuildSession(UUID buildId, AutoRoadGeneratorPluginMain plugin, UUID playerUUID, boolean onlyAir, boolean updateBlockData, BlockStatePalette palette) {
+            Map<UUID, VoxelCanvas> session = buildSessions.remove(buildId);
             expectedEdges.remove(buildId);
             completedEdges.remove(buildId);
+            World world = buildWorlds.remove(buildId);
             if (session == null) return;
 
             Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
                 Player player = Bukkit.getPlayer(playerUUID);
                 if (player != null) PlayerMessageUtil.sendTranslatedMessage(plugin, player, "build.integrating_wall");
 
-                Map<Location, BlockData> mergedCanvas = new HashMap<>();
-                for (Map<Location, BlockData> canvas : session.values()) {
+                VoxelCanvas mergedCanvas = new VoxelCanvas(VoxelCanvas.RESOLVED_SLOTS);
+                for (VoxelCanvas canvas : session.values()) {
                     mergedCanvas.putAll(canvas);
                 }
 
-                List<BlockPlacementInfo> worldBlocks = new ArrayList<>();
-                List<BlockPlacementInfo> originalBlocks = new ArrayList<>();
-                for (Map.Entry<Location, BlockData> entry : mergedCanvas.entrySet()) {
-                    Location loc = entry.getKey();
-                    originalBlocks.add(new BlockPlacementInfo(loc, loc.getBlock().getBlockData()));
-                    worldBlocks.add(new BlockPlacementInfo(loc, entry.getValue()));
-                }
+                // 元のブロックは設置タスクが書き換える直前に記録する（非同期スレッドからワールドを読まない）
+                List<BlockPlacementInfo> worldBlocks = convertCanvasToBlockPlacementList(mergedCanvas, palette, world, plugin);
 
                 Bukkit.getScheduler().runTask(plugin, () -> {
                     if (player == null || !player.isOnline()) return;
                     String modeText = onlyAir ? " (Air Only)" : "";
                     PlayerMessageUtil.sendTranslatedMessage(plugin, player, "build.wall_integration_complete", worldBlocks.size(), modeText);
-                    BuildHistoryManager.addBuildHistory(playerUUID, originalBlocks);
-                    new BuildPlacementTask(plugin, playerUUID, new ConcurrentLinkedQueue<>(worldBlocks), onlyAir, updateBlockData).runTaskTimer(plugin, 1, 1);
+                    plugin.getBuildJobManager().submit(playerUUID, BuildJobType.WALL, new BuildPlacementTask(plugin, playerUUID, new ConcurrentLinkedQueue<>(worldBlocks), onlyAir, updateBlockData, true));
                 });
             });
         }
+
+        /**
+         * 統合したキャンバスを設置リストに変換します。BlockDataは異なるパレットID（状態と回転の組）ごとに一度だけ取得し、
+         * 不正な状態は一度だけ報告して以降のボクセルでは読み飛ばします。
+         */
+        private static List<BlockPlacementInfo> convertCanvasToBlockPlacementList(VoxelCanvas canvas, BlockStatePalette palette, World world, AutoRoadGeneratorPluginMain plugin) {
+            List<BlockPlacementInfo> result = new ArrayList<>(canvas.size());
+            BlockData[] blockDataById = new BlockData[palette.size()];
+            boolean[] invalidIds = new boolean[palette.size()];
+            for (int i = 0; i < canvas.size(); i++) {
+                int paletteId = canvas.paletteIdAt(i);
+                if (paletteId >= blockDataById.length) {
+                    int capacity = Math.max(paletteId + 1, palette.size());
+                    blockDataById = Arrays.copyOf(blockDataById, capacity);
+                    invalidIds = Arrays.copyOf(invalidIds, capacity);
+                }
+                if (invalidIds[paletteId]) continue;
+                BlockData blockData = blockDataById[paletteId];
+                if (blockData == null) {
+                    try {
+                        blockData = palette.getBlockData(paletteId);
+                        blockDataById[paletteId] = blockData;
+                    } catch (IllegalArgumentException e) {
+                        invalidIds[paletteId] = true;
+                        plugin.getLogger().warning("Failed to rotate or create block data: " + palette.get(paletteId));
+                        continue;
+                    }
+                }
+                long key = canvas.keyAt(i);
+                Location location = new Location(world, BlockKeyUtil.unpackX(key), BlockKeyUtil.unpackY(key), BlockKeyUtil.unpackZ(key));
+                result.add(new BlockPlacementInfo(location, blockData));
+            }
+            return result;
+        }
     }
 }
@@ -0,0 +1,297 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build;
+
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route.PolylineBuffer;
+
+/**
+ * 道路の経路から壁の平行曲線を求め、通過するブロックの列に変換するクラス
+ *
+ * 道路の各点を、前後の点から求めた接線の右方向の法線に沿ってずらし、経路を1回走査するだけで平行曲線を作ります。
+ * 曲率半径がずらす距離より小さいカーブの内側では、平行曲線が逆走してループ（自己交差）を作るため、
+ * 逆走する点を捨て、新しい線分が直前の区間と交差した場合は交点より後ろを切り取ります。
+ * 交差を調べるのは内側の急なカーブの付近だけで、調べる範囲も道路に沿って一定の距離に限るため、全体の計算量は点の数に比例します。
+ *
+ * 確定した線分（交差を調べる範囲から外れた線分）はその場で格子走査し、4近傍で連続するブロックの中心を出力します。
+ * 細分化した点列やスナップ前の点列は作りません。
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class WallOffsetTracer {
+
+    private static final double EPSILON = 1e-9;
+    /** この曲率×距離を超える内側のカーブの付近で自己交差を調べる（平行曲線の速さが元の半分未満） */
+    private static final double TIGHT_CURVATURE_RATIO = 0.5;
+    /** 連続した経路とみなす点の間隔の上限（これより離れた点の間では壁をつなげない） */
+    private static final double MAX_GAP = 2.0;
+
+    private final double offset;
+    private final double window;
+    private final PolylineBuffer cells;
+
+    // 未確定の平行曲線の頂点（head 以降、交差による切り取りの対象）
+    private double[] xs;
+    private double[] ys;
+    private double[] zs;
+    private double[] roadDistances;
+    private int head;
+    private int size;
+
+    // 最後に追加しようとした平行曲線の点（捨てた点を含む）
+    private double rawX = Double.NaN;
+    private double rawZ = Double.NaN;
+
+    // 最後に出力したブロック
+    private int lastCellX;
+    private int lastCellZ;
+    private boolean hasCell;
+
+    private WallOffsetTracer(PolylineBuffer road, double offset) {
+        this.offset = offset;
+        // 交差を調べる道路沿いの距離。内側の曲がり角が約150度までのループを切り取れる
+        this.window = 8.0 * Math.abs(offset) + 4.0;
+        this.cells = new PolylineBuffer(road.getWorld(), Math.max(16, road.size()));
+        int capacity = 2 * road.size() + 2;
+        this.xs = new double[capacity];
+        this.ys = new double[capacity];
+        this.zs = new double[capacity];
+        this.roadDistances = new double[capacity];
+    }
+
+    /**
+     * 道路の経路を右方向にずらした壁の中心線が通るブロックの列を求めます。
+     * @param road 道路の経路
+     * @param offset 右方向にずらす距離（負の場合は左）
+     * @return 4近傍で連続するブロックの中心（高さは道路の高さ）
+     */
+    static PolylineBuffer trace(PolylineBuffer road, double offset) {
+        WallOffsetTracer tracer = new WallOffsetTracer(road, offset);
+        tracer.run(road);
+        return tracer.cells;
+    }
+
+    private void run(PolylineBuffer road) {
+        int n = road.size();
+        double tangentX = 1.0;
+        double tangentZ = 0.0;
+        double previousTangentX = Double.NaN;
+        double previousTangentZ = Double.NaN;
+        double roadDistance = 0.0;
+        double tightUntil = Double.NEGATIVE_INFINITY;
+
+        for (int i = 0; i < n; i++) {
+            if (i > 0) {
+                double step = horizontalDistance(road, i - 1, i);
+                if (step > MAX_GAP) {
+                    // 別のエッジへの飛び：ここまでを確定し、新しい壁として始める
+                    flushAll();
+                    previousTangentX = Double.NaN;
+                    tightUntil = Double.NEGATIVE_INFINITY;
+                }
+                roadDistance += step;
+            }
+
+            // 前後の点から接線を求める（端点と重複点では片側または直前の接線）
+            int before = i > 0 && horizontalDistance(road, i - 1, i) <= MAX_GAP ? i - 1 : i;
+            int after = i < n - 1 && horizontalDistance(road, i, i + 1) <= MAX_GAP ? i + 1 : i;
+            double dx = road.getX(after) - road.getX(before);
+            double dz = road.getZ(after) - road.getZ(before);
+            double length = Math.sqrt(dx * dx + dz * dz);
+            if (length > EPSILON) {
+                tangentX = dx / length;
+                tangentZ = dz / length;
+            }
+
+            // 右方向への曲率×距離が大きい（内側の急なカーブ）区間の付近では交差を調べる
+            if (!Double.isNaN(previousTangentX) && i > 0) {
+                double step = horizontalDistance(road, i - 1, i);
+                double cross = previousTangentX * tangentZ - previousTangentZ * tangentX;
+                if (step > EPSILON && cross / step * offset > TIGHT_CURVATURE_RATIO) {
+                    tightUntil = roadDistance + window;
+                }
+            }
+            previousTangentX = tangentX;
+            previousTangentZ = tangentZ;
+
+            double px = road.getX(i) - tangentZ * offset;
+            double py = road.getY(i);
+            double pz = road.getZ(i) + tangentX * offset;
+            append(px, py, pz, roadDistance, tangentX, tangentZ, roadDistance <= tightUntil);
+            commitBefore(roadDistance - window);
+        }
+        flushAll();
+    }
+
+    /**
+     * 平行曲線の頂点を追加します。逆走する点は捨て、自己交差があれば交点より後ろを切り取ります。
+     * 捨てた点も直前の点（rawX, rawZ）として保持し、逆走が終わって戻ってきた線分とすでに採用した区間との交点を求めます。
+     */
+    private void append(double px, double py, double pz, double roadDistance, double tangentX, double tangentZ, boolean checkIntersections) {
+        double fromX = rawX;
+        double fromZ = rawZ;
+        rawX = px;
+        rawZ = pz;
+        if (size > head) {
+            if (checkIntersections && trimLoop(fromX, fromZ, px, pz, roadDistance - window)) {
+                int last = size - 1;
+                if ((px - xs[last]) * tangentX + (pz - zs[last]) * tangentZ > EPSILON) {
+                    push(px, py, pz, roadDistance);
+                }
+                return;
+            }
+            int last = size - 1;
+            double forward = (px - xs[last]) * tangentX + (pz - zs[last]) * tangentZ;
+            if (forward <= EPSILON) {
+                return;
+            }
+        }
+        push(px, py, pz, roadDistance);
+    }
+
+    /**
+     * 平行曲線の線分 (fromX, fromZ)-(toX, toZ) と交差する未確定の線分を新しい順に探し、見つかれば交点まで切り詰めます。
+     * @return 交点で切り詰めた場合true
+     */
+    private boolean trimLoop(double fromX, double fromZ, double toX, double toZ, double minRoadDistance) {
+        int last = size - 1;
+        double rx = toX - fromX;
+        double rz = toZ - fromZ;
+        // 末尾の頂点から始まる線分では、端点を共有する隣接線分（last - 1, last）を除外する
+        boolean fromLast = fromX == xs[last] && fromZ == zs[last];
+        for (int k = fromLast ? last - 2 : last - 1; k >= head; k--) {
+            if (roadDistances[k + 1] < minRoadDistance) {
+                return false;
+            }
+            double sx = xs[k + 1] - xs[k];
+            double sz = zs[k + 1] - zs[k];
+            double denominator = rx * sz - rz * sx;
+            if (Math.abs(denominator) < EPSILON) {
+                continue;
+            }
+            double qx = xs[k] - fromX;
+            double qz = zs[k] - fromZ;
+            double t = (qx * sz - qz * sx) / denominator; // 新しい線分上の位置
+            double u = (qx * rz - qz * rx) / denominator; // 既存の線分上の位置
+            // 末尾の頂点から始まる場合は始点での接触を交差とみなさない
+            if (t >= (fromLast ? EPSILON : 0.0) && t <= 1.0 && u >= 0.0 && u <= 1.0) {
+                double y = ys[k] + (ys[k + 1] - ys[k]) * u;
+                double distance = roadDistances[k + 1];
+                size = k + 1;
+                push(xs[k] + sx * u, y, zs[k] + sz * u, distance);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void push(double x, double y, double z, double roadDistance) {
+        if (size == xs.length) {
+            compact();
+        }
+        xs[size] = x;
+        ys[size] = y;
+        zs[size] = z;
+        roadDistances[size] = roadDistance;
+        size++;
+    }
+
+    // 確定済みの頂点を詰めて領域を空ける（交点の追加で容量を超えた場合のみ）
+    private void compact() {
+        int keep = size - head;
+        int capacity = Math.max(xs.length, 2 * keep + 2);
+        double[] newXs = new double[capacity];
+        double[] newYs = new double[capacity];
+        double[] newZs = new double[capacity];
+        double[] newDistances = new double[capacity];
+        System.arraycopy(xs, head, newXs, 0, keep);
+        System.arraycopy(ys, head, newYs, 0, keep);
+        System.arraycopy(zs, head, newZs, 0, keep);
+        System.arraycopy(roadDistances, head, newDistances, 0, keep);
+        xs = newXs;
+        ys = newYs;
+        zs = newZs;
+        roadDistances = newDistances;
+        size = keep;
+        head = 0;
+    }
+
+    /**
+     * 交差を調べる範囲から外れた線分を確定し、ブロックに変換します。
+     */
+    private void commitBefore(double minRoadDistance) {
+        while (size - head >= 2 && roadDistances[head + 1] < minRoadDistance) {
+            emitSegment(head);
+            head++;
+        }
+    }
+
+    /**
+     * 未確定の頂点をすべて確定し、次の頂点から新しい線として始めます。
+     */
+    private void flushAll() {
+        if (size - head == 1) {
+            emitCell((int) Math.floor(xs[head]), ys[head], (int) Math.floor(zs[head]));
+        }
+        for (int k = head; k < size - 1; k++) {
+            emitSegment(k);
+        }
+        head = size;
+        hasCell = false;
+        rawX = Double.NaN;
+        rawZ = Double.NaN;
+    }
+
+    /**
+     * 線分 (k, k + 1) が通過するブロックを、進入する順に出力します（4近傍で連続する格子走査）。
+     */
+    private void emitSegment(int k) {
+        double x0 = xs[k];
+        double z0 = zs[k];
+        double dx = xs[k + 1] - x0;
+        double dy = ys[k + 1] - ys[k];
+        double dz = zs[k + 1] - z0;
+        int cellX = (int) Math.floor(x0);
+        int cellZ = (int) Math.floor(z0);
+        int endX = (int) Math.floor(xs[k + 1]);
+        int endZ = (int) Math.floor(zs[k + 1]);
+        emitCell(cellX, ys[k], cellZ);
+
+        int stepX = dx > 0 ? 1 : -1;
+        int stepZ = dz > 0 ? 1 : -1;
+        double deltaX = Math.abs(dx) > EPSILON ? Math.abs(1.0 / dx) : Double.POSITIVE_INFINITY;
+        double deltaZ = Math.abs(dz) > EPSILON ? Math.abs(1.0 / dz) : Double.POSITIVE_INFINITY;
+        double nextX = Math.abs(dx) > EPSILON ? ((dx > 0 ? cellX + 1 - x0 : x0 - cellX) * deltaX) : Double.POSITIVE_INFINITY;
+        double nextZ = Math.abs(dz) > EPSILON ? ((dz > 0 ? cellZ + 1 - z0 : z0 - cellZ) * deltaZ) : Double.POSITIVE_INFINITY;
+
+        int remaining = Math.abs(endX - cellX) + Math.abs(endZ - cellZ);
+        for (int i = 0; i < remaining; i++) {
+            double t;
+            if (nextX <= nextZ && cellX != endX || cellZ == endZ) {
+                t = nextX;
+                cellX += stepX;
+                nextX += deltaX;
+            } else {
+                t = nextZ;
+                cellZ += stepZ;
+                nextZ += deltaZ;
+            }
+            emitCell(cellX, ys[k] + dy * Math.min(1.0, t), cellZ);
+        }
+    }
+
+    private void emitCell(int cellX, double y, int cellZ) {
+        if (hasCell && cellX == lastCellX && cellZ == lastCellZ) {
+            return;
+        }
+        cells.add(cellX + 0.5, y, cellZ + 0.5);
+        lastCellX = cellX;
+        lastCellZ = cellZ;
+        hasCell = true;
+    }
+
+    private static double horizontalDistance(PolylineBuffer path, int from, int to) {
+        double dx = path.getX(to) - path.getX(from);
+        double dz = path.getZ(to) - path.getZ(from);
+        return Math.sqrt(dx * dx + dz * dz);
+    }
+}
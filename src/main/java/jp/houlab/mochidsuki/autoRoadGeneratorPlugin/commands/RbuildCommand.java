@@ -0,0 +1,166 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.commands;
+
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.AutoRoadGeneratorPluginMain;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build.BuildJob;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build.BuildJobManager;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.util.PlayerMessageUtil;
+import org.bukkit.Bukkit;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
+import org.bukkit.entity.Player;
+import org.bukkit.util.StringUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 建築ジョブの一覧表示・一時停止・再開・取り消しを行うコマンド
+ *
+ * プレイヤーは自分のジョブのみ操作でき、autoroadgen.admin 権限を持つ場合は全てのジョブを操作できます。
+ * ジョブIDを省略した場合は、自分の未終了のジョブのうち最も新しいものが対象になります。
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class RbuildCommand implements CommandExecutor, TabCompleter {
+
+    private static final String ADMIN_PERMISSION = "autoroadgen.admin";
+    private static final List<String> SUBCOMMANDS = Arrays.asList("list", "pause", "resume", "cancel");
+
+    private final AutoRoadGeneratorPluginMain plugin;
+
+    public RbuildCommand(AutoRoadGeneratorPluginMain plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        if (args.length == 0) {
+            PlayerMessageUtil.sendTranslatedMessage(plugin, sender, "job.usage");
+            return true;
+        }
+
+        String subCommand = args[0].toLowerCase(Locale.ROOT);
+        switch (subCommand) {
+            case "list":
+                handleList(sender);
+                break;
+            case "pause":
+            case "resume":
+            case "cancel":
+                handleControl(sender, subCommand, args);
+                break;
+            default:
+                PlayerMessageUtil.sendTranslatedMessage(plugin, sender, "job.usage");
+                break;
+        }
+        return true;
+    }
+
+    private void handleList(CommandSender sender) {
+        BuildJobManager jobManager = plugin.getBuildJobManager();
+        List<BuildJob> jobs = canControlAll(sender) ? jobManager.getJobs() : jobManager.getJobs(((Player) sender).getUniqueId());
+        if (jobs.isEmpty()) {
+            PlayerMessageUtil.sendTranslatedMessage(plugin, sender, "job.list_empty");
+            return;
+        }
+
+        PlayerMessageUtil.sendTranslatedMessage(plugin, sender, "job.list_header");
+        for (BuildJob job : jobs) {
+            Player owner = Bukkit.getPlayer(job.getOwner());
+            String ownerName = owner != null ? owner.getName() : job.getOwner().toString().substring(0, 8);
+            PlayerMessageUtil.sendTranslatedMessage(plugin, sender, "job.list_entry",
+                    job.getId(),
+                    plugin.getMessageManager().getMessage("job.type." + job.getType().name().toLowerCase(Locale.ROOT)),
+                    plugin.getMessageManager().getMessage("job.state." + job.getState().name().toLowerCase(Locale.ROOT)),
+                    (int) (job.getProgress() * 100),
+                    job.getPlacedBlocks(),
+                    job.getTotalBlocks(),
+                    ownerName);
+        }
+    }
+
+    private void handleControl(CommandSender sender, String action, String[] args) {
+        BuildJobManager jobManager = plugin.getBuildJobManager();
+        BuildJob job;
+        if (args.length >= 2) {
+            try {
+                job = jobManager.getJob(Integer.parseInt(args[1].replace("#", "")));
+            } catch (NumberFormatException e) {
+                PlayerMessageUtil.sendTranslatedMessage(plugin, sender, "job.invalid_id", args[1]);
+                return;
+            }
+            if (job == null) {
+                PlayerMessageUtil.sendTranslatedMessage(plugin, sender, "job.not_found", args[1]);
+                return;
+            }
+        } else {
+            if (!(sender instanceof Player)) {
+                PlayerMessageUtil.sendTranslatedMessage(plugin, sender, "job.usage");
+                return;
+            }
+            job = jobManager.getLatestActiveJob(((Player) sender).getUniqueId());
+            if (job == null) {
+                PlayerMessageUtil.sendTranslatedMessage(plugin, sender, "job.no_active_job");
+                return;
+            }
+        }
+
+        if (!canControlAll(sender) && !job.getOwner().equals(((Player) sender).getUniqueId())) {
+            PlayerMessageUtil.sendTranslatedMessage(plugin, sender, "job.not_owner");
+            return;
+        }
+
+        boolean changed;
+        String successKey;
+        switch (action) {
+            case "pause":
+                changed = jobManager.pause(job);
+                successKey = "job.paused";
+                break;
+            case "resume":
+                changed = jobManager.resume(job);
+                successKey = "job.resumed";
+                break;
+            default:
+                changed = jobManager.cancel(job);
+                successKey = "job.cancelled";
+                break;
+        }
+
+        if (changed) {
+            PlayerMessageUtil.sendTranslatedMessage(plugin, sender, successKey, job.getId());
+        } else {
+            PlayerMessageUtil.sendTranslatedMessage(plugin, sender, "job.state_unchanged", job.getId(),
+                    plugin.getMessageManager().getMessage("job.state." + job.getState().name().toLowerCase(Locale.ROOT)));
+        }
+    }
+
+    private boolean canControlAll(CommandSender sender) {
+        return !(sender instanceof Player) || sender.hasPermission(ADMIN_PERMISSION);
+    }
+
+    @Override
+    public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
+        if (args.length == 1) {
+            return StringUtil.copyPartialMatches(args[0], SUBCOMMANDS, new ArrayList<>());
+        }
+        if (args.length == 2 && !args[0].equalsIgnoreCase("list")) {
+            List<String> ids = new ArrayList<>();
+            List<BuildJob> jobs = canControlAll(sender) ? plugin.getBuildJobManager().getJobs() : plugin.getBuildJobManager().getJobs(((Player) sender).getUniqueId());
+            for (BuildJob job : jobs) {
+                if (!job.getState().isFinished()) {
+                    ids.add(String.valueOf(job.getId()));
+                }
+            }
+            return StringUtil.copyPartialMatches(args[1], ids, new ArrayList<>());
+        }
+        return Collections.emptyList();
+    }
+}
@@ -1,6 +1,7 @@
 package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.commands;
 
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.AutoRoadGeneratorPluginMain;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route.RouteEditListener;
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route.RouteSession;
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route.RouteVisualizer;
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.util.PlayerMessageUtil;
@@ -17,6 +18,7 @@ import org.bukkit.persistence.PersistentDataType;
 import org.bukkit.util.StringUtil;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
@@ -46,6 +48,11 @@ public class ReditCommand implements CommandExecutor, TabCompleter {
             return true;
         }
 
+        if (args.length > 0 && args[0].equalsIgnoreCase("terrain")) {
+            toggleTerrainFollowing(player);
+            return true;
+        }
+
         toggleEditMode(player);
         return true;
     }
@@ -53,7 +60,7 @@ public class ReditCommand implements CommandExecutor, TabCompleter {
     @Override
     public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
         if (args.length == 1) {
-            return StringUtil.copyPartialMatches(args[0], Collections.singletonList("brush"), new ArrayList<>());
+            return StringUtil.copyPartialMatches(args[0], Arrays.asList("brush", "terrain"), new ArrayList<>());
         }
         return Collections.emptyList();
     }
@@ -75,6 +82,27 @@ public class ReditCommand implements CommandExecutor, TabCompleter {
         }
     }
 
+    private void toggleTerrainFollowing(Player player) {
+        UUID playerUUID = player.getUniqueId();
+        RouteSession session = plugin.getRouteSession(playerUUID);
+        RouteEditListener listener = plugin.getRouteEditListener();
+
+        session.setTerrainFollowing(!session.isTerrainFollowing());
+        if (session.isTerrainFollowing()) {
+            // 手作業などプラグイン以外で変わった地形も反映されるよう、有効にするたびに高さを取得し直す
+            plugin.getTerrainHeightCache().clear();
+            String grade = String.format("%.1f", listener.getMaxGrade() * 100.0);
+            PlayerMessageUtil.sendTranslatedMessage(plugin, player, "edit.terrain_enabled", grade);
+        } else {
+            PlayerMessageUtil.sendTranslatedMessage(plugin, player, "edit.terrain_disabled");
+        }
+
+        // 編集中の道路網があれば新しい設定で再計算
+        if (plugin.getEditModePlayers().contains(playerUUID)) {
+            listener.updateRoute(player, session);
+        }
+    }
+
     private void handleBrush(Player player) {
         ItemStack brush = new ItemStack(Material.BLAZE_ROD);
         ItemMeta meta = brush.getItemMeta();
@@ -1,16 +1,16 @@
 package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.commands;
 
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.AutoRoadGeneratorPluginMain;
-import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.BlockRotationUtil;
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build.BlockPlacementInfo;
-import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build.BuildHistoryManager;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build.BuildJobType;
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build.BuildPlacementTask;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build.ObjectPlacementCalculator;
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.preset.roadObjects.ObjectCreationSession;
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.preset.roadObjects.ObjectPreset;
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.preset.roadObjects.ObjectPresetManager;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route.PolylineBuffer;
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route.RouteSession;
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.util.PlayerMessageUtil;
-import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.util.StringBlockRotationUtil;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.NamespacedKey;
@@ -47,10 +47,6 @@ public class RobjCommand implements CommandExecutor, TabCompleter {
     private static final double QUARTER_TURN_DEGREES = 90.0;
     /** 完全回転の角度（360度） */
     private static final int FULL_ROTATION_DEGREES = 360;
-    /** 方向ベクトルの最小長さ閾値 */
-    private static final double MIN_DIRECTION_LENGTH = 0.001;
-    /** 位置変化の最小距離閾値 */
-    private static final double MIN_POSITION_CHANGE = 0.0001;
 
     private final AutoRoadGeneratorPluginMain plugin;
     private final Map<UUID, ObjectCreationSession> creationSessions;
@@ -209,6 +205,7 @@ public class RobjCommand implements CommandExecutor, TabCompleter {
                 switch (args[i].toLowerCase()) {
                     case "--interval":
                         interval = Double.parseDouble(args[++i]);
+                        if (!(interval > 0)) throw new IllegalArgumentException("Interval must be positive");
                         break;
                     case "--offset":
                         String[] coords = args[++i].split(",");
@@ -232,7 +229,7 @@ public class RobjCommand implements CommandExecutor, TabCompleter {
         }
 
         RouteSession routeSession = plugin.getRouteSession(player.getUniqueId());
-        List<Location> path = routeSession.getCalculatedPath();
+        PolylineBuffer path = routeSession.getCalculatedPath();
         if (path == null || path.isEmpty()) {
             PlayerMessageUtil.sendTranslatedMessage(plugin, player, "object.path_not_found");
             return;
@@ -244,87 +241,28 @@ public class RobjCommand implements CommandExecutor, TabCompleter {
             return;
         }
 
-        List<BlockPlacementInfo> worldBlocks = new ArrayList<>();
-        List<BlockPlacementInfo> originalBlocks = new ArrayList<>();
-        double distanceSinceLast = interval > 0 ? interval : 0;
-
-        for (int i = 0; i < path.size(); i++) {
-            if (i > 0) {
-                distanceSinceLast += path.get(i).distance(path.get(i - 1));
-            }
-
-            if (distanceSinceLast >= interval) {
-                Location pathPoint = path.get(i);
-
-                // Calculate direction vector like in road/wall systems
-                Vector direction = calculateDirectionVector(path, i);
-                double pathYaw = Math.toDegrees(Math.atan2(-direction.getX(), direction.getZ()));
-
-                Vector tangent = new Vector(Math.cos(Math.toRadians(pathYaw)), 0, Math.sin(Math.toRadians(pathYaw)));
-                Vector up = new Vector(0, 1, 0);
-                Vector normal = new Vector(Math.cos(Math.toRadians(pathYaw + QUARTER_TURN_DEGREES)), 0, Math.sin(Math.toRadians(pathYaw + QUARTER_TURN_DEGREES)));
-
-                double totalYaw = pathYaw + rotation;
-
-                for (Map.Entry<Vector, BlockData> entry : preset.getBlocks().entrySet()) {
-                    Vector canonicalPos = entry.getKey().clone();
-
-                    if (flipAxis.equals("x")) canonicalPos.setX(canonicalPos.getX() * -1);
-                    if (flipAxis.equals("z")) canonicalPos.setZ(canonicalPos.getZ() * -1);
-                    canonicalPos.rotateAroundY(Math.toRadians(rotation));
-                    Vector finalLocalPos = canonicalPos.clone().add(offset);
-
-                    Vector worldDisplacement = new Vector();
-                    worldDisplacement.add(tangent.clone().multiply(finalLocalPos.getX()));
-                    worldDisplacement.add(up.clone().multiply(finalLocalPos.getY()));
-                    worldDisplacement.add(normal.clone().multiply(finalLocalPos.getZ()));
-
-                    Location blockLocation = pathPoint.clone().add(worldDisplacement);
-
-                    // Rotate block data by total rotation (path direction + user rotation)
-                    BlockData rotatedBlockData = BlockRotationUtil.rotateBlockData(entry.getValue().clone(), Math.toRadians(totalYaw));
-
-                    originalBlocks.add(new BlockPlacementInfo(blockLocation, blockLocation.getBlock().getBlockData()));
-                    worldBlocks.add(new BlockPlacementInfo(blockLocation, rotatedBlockData));
-                }
-                distanceSinceLast = 0;
-            }
-        }
-
-        BuildHistoryManager.addBuildHistory(player.getUniqueId(), originalBlocks);
-        Queue<BlockPlacementInfo> placementQueue = new ConcurrentLinkedQueue<>(worldBlocks);
-        new BuildPlacementTask(plugin, player.getUniqueId(), placementQueue, false, updateBlockData).runTaskTimer(plugin, 1, 1);
-
-        PlayerMessageUtil.sendTranslatedMessage(plugin, player, "object.placing_objects");
+        // 配置位置の計算は共有スケジューラーで行い、ワールドへのアクセスはメインスレッドに戻して行う
+        UUID playerUUID = player.getUniqueId();
+        double placementInterval = interval;
+        Vector placementOffset = offset;
+        float placementRotation = rotation;
+        String placementFlipAxis = flipAxis;
+        boolean placementUpdateBlockData = updateBlockData;
+        plugin.getComputeScheduler().submit(playerUUID, () -> {
+            List<BlockPlacementInfo> worldBlocks = ObjectPlacementCalculator.calculate(path, preset, placementInterval, placementOffset, placementRotation, placementFlipAxis);
+            plugin.getServer().getScheduler().runTask(plugin, () -> {
+                if (!player.isOnline()) return;
+
+                // 元のブロックは設置タスクが書き換える直前に記録し、完了時に建築履歴へ登録する
+                Queue<BlockPlacementInfo> placementQueue = new ConcurrentLinkedQueue<>(worldBlocks);
+                plugin.getBuildJobManager().submit(playerUUID, BuildJobType.OBJECT, new BuildPlacementTask(plugin, playerUUID, placementQueue, false, placementUpdateBlockData, true));
+
+                PlayerMessageUtil.sendTranslatedMessage(plugin, player, "object.placing_objects");
+            });
+        });
     }
 
     private String formatLocation(Player player, Location loc) {
         return plugin.getMessageManager().getMessage(player, "location.format", loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
     }
-
-    private Vector calculateDirectionVector(List<Location> path, int index) {
-        if (path.size() < 2) return new Vector(1, 0, 0);
-        Vector direction;
-        if (index == 0) {
-            direction = path.get(1).toVector().subtract(path.get(0).toVector());
-        } else if (index == path.size() - 1) {
-            direction = path.get(index).toVector().subtract(path.get(index - 1).toVector());
-        } else {
-            Vector incoming = path.get(index).toVector().subtract(path.get(index - 1).toVector());
-            Vector outgoing = path.get(index + 1).toVector().subtract(path.get(index).toVector());
-            if (incoming.length() > MIN_DIRECTION_LENGTH) incoming.normalize();
-            if (outgoing.length() > MIN_DIRECTION_LENGTH) outgoing.normalize();
-            direction = incoming.add(outgoing).multiply(0.5);
-        }
-        if (direction.length() < MIN_DIRECTION_LENGTH) {
-            if (index > 0 && path.get(index).distanceSquared(path.get(index - 1)) > MIN_POSITION_CHANGE) {
-                return path.get(index).toVector().subtract(path.get(index - 1).toVector()).normalize();
-            } else if (path.size() > index + 1 && path.get(index + 1).distanceSquared(path.get(index)) > MIN_POSITION_CHANGE) {
-                return path.get(index + 1).toVector().subtract(path.get(index).toVector()).normalize();
-            } else {
-                return new Vector(1, 0, 0);
-            }
-        }
-        return direction.normalize();
-    }
 }
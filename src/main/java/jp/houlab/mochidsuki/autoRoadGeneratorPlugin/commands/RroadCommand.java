@@ -2,9 +2,20 @@ package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.commands;
 
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.AutoRoadGeneratorPluginMain;
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build.BuildCalculationTask;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build.BuildJobType;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build.BuildPlacementTask;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build.CompositeBuildTask;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build.PlacementStream;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build.StreamingBuildSession;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.preset.BuildProfile;
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.preset.PresetCreationSession;
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.preset.PresetManager;
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.preset.RoadPreset;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.preset.WallPreset;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.preset.WallPresetManager;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.preset.roadObjects.ObjectPreset;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.preset.roadObjects.ObjectPresetManager;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route.PolylineBuffer;
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route.RouteEdge;
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route.RouteSession;
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.util.BlockRotationUtil;
@@ -18,6 +29,7 @@ import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
@@ -38,11 +50,16 @@ import java.util.UUID;
 public class RroadCommand implements CommandExecutor, TabCompleter {
     private final AutoRoadGeneratorPluginMain plugin;
     private final PresetManager presetManager;
+    private final WallPresetManager wallPresetManager;
+    private final ObjectPresetManager objectPresetManager;
     private final Map<UUID, PresetCreationSession> playerSessions;
 
-    public RroadCommand(AutoRoadGeneratorPluginMain plugin, PresetManager presetManager, Map<UUID, PresetCreationSession> playerSessions) {
+    public RroadCommand(AutoRoadGeneratorPluginMain plugin, PresetManager presetManager, WallPresetManager wallPresetManager,
+                        ObjectPresetManager objectPresetManager, Map<UUID, PresetCreationSession> playerSessions) {
         this.plugin = plugin;
         this.presetManager = presetManager;
+        this.wallPresetManager = wallPresetManager;
+        this.objectPresetManager = objectPresetManager;
         this.playerSessions = playerSessions;
     }
 
@@ -99,6 +116,22 @@ public class RroadCommand implements CommandExecutor, TabCompleter {
 
                 handleBuild(player, args[1], onlyAir, updateBlockData);
                 break;
+            case "profile":
+                if (args.length < 2) {
+                    PlayerMessageUtil.sendTranslatedMessage(plugin, player, "road.usage_profile");
+                    return true;
+                }
+                boolean profileOnlyAir = false;
+                boolean profileUpdateBlockData = true;
+                for (int i = 2; i < args.length; i++) {
+                    if (args[i].equalsIgnoreCase("-onlyair")) {
+                        profileOnlyAir = true;
+                    } else if (args[i].equalsIgnoreCase("--noupdateblockdata")) {
+                        profileUpdateBlockData = false;
+                    }
+                }
+                handleProfileBuild(player, args[1], profileOnlyAir, profileUpdateBlockData);
+                break;
             default:
                 sendHelp(player);
                 break;
@@ -110,13 +143,18 @@ public class RroadCommand implements CommandExecutor, TabCompleter {
     @Override
     public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
         if (args.length == 1) {
-            return StringUtil.copyPartialMatches(args[0], Arrays.asList("brush", "save", "build", "paste"), new ArrayList<>());
+            return StringUtil.copyPartialMatches(args[0], Arrays.asList("brush", "save", "build", "paste", "profile"), new ArrayList<>());
         } else if (args.length == 2) {
             if (args[0].equalsIgnoreCase("build") || args[0].equalsIgnoreCase("paste")) {
                 return StringUtil.copyPartialMatches(args[1], presetManager.getPresetNames(), new ArrayList<>());
             }
+            if (args[0].equalsIgnoreCase("profile")) {
+                ConfigurationSection profiles = plugin.getConfig().getConfigurationSection("build_profiles");
+                List<String> profileNames = profiles != null ? new ArrayList<>(profiles.getKeys(false)) : Collections.emptyList();
+                return StringUtil.copyPartialMatches(args[1], profileNames, new ArrayList<>());
+            }
         } else if (args.length > 2) {
-            if (args[0].equalsIgnoreCase("build")) {
+            if (args[0].equalsIgnoreCase("build") || args[0].equalsIgnoreCase("profile")) {
                 List<String> options = new ArrayList<>(Arrays.asList("-onlyair", "--noupdateblockdata"));
                 // Prevent suggesting already used options
                 for (int i = 2; i < args.length; i++) {
@@ -149,27 +187,119 @@ public class RroadCommand implements CommandExecutor, TabCompleter {
         PlayerMessageUtil.sendTranslatedMessage(plugin, player, "road.building_started_details", presetName, edges.size(), modeMessage, updateMessage);
 
 
-        UUID buildId = UUID.randomUUID();
-        BuildCalculationTask.BuildManager.startBuildSession(buildId, edges.size());
-
+        // パス未計算のエッジは除外し、完了数の判定が対象エッジ数と一致するようにする
+        List<RouteEdge> buildableEdges = new ArrayList<>();
         for (RouteEdge edge : edges) {
-            // Create a temporary session for each edge to pass its specific path
-            RouteSession singleEdgeSession = new RouteSession();
             if (edge.getCalculatedPath() != null && !edge.getCalculatedPath().isEmpty()) {
-                singleEdgeSession.setCalculatedPath(edge.getCalculatedPath());
+                buildableEdges.add(edge);
             } else {
                 // It's possible an edge exists but its path hasn't been calculated yet.
                 // Though the listener should handle this, we can add a fallback or skip.
                 plugin.getLogger().warning("Skipping edge " + edge.toString() + " as its path is not calculated.");
-                continue; // Or calculate it here if needed
             }
+        }
+        if (buildableEdges.isEmpty()) {
+            PlayerMessageUtil.sendTranslatedMessage(plugin, player, "road.route_not_set");
+            return;
+        }
 
-            UUID edgeId = UUID.randomUUID();
-            new BuildCalculationTask(plugin, playerUUID, singleEdgeSession, roadPreset, onlyAir, updateBlockData, buildId, edgeId).runTaskAsynchronously(plugin);
+        UUID buildId = UUID.randomUUID();
+        List<UUID> edgeIds = new ArrayList<>(buildableEdges.size());
+        for (int i = 0; i < buildableEdges.size(); i++) {
+            edgeIds.add(UUID.randomUUID());
+        }
+
+        if (plugin.getConfig().getBoolean("performance.streaming_build", true)) {
+            // 計算が終わったタイルから順に設置する
+            PlacementStream stream = new PlacementStream(plugin.getConfig().getInt("performance.stream_queue_batches", 32));
+            StreamingBuildSession streamingSession = new StreamingBuildSession(plugin, player.getWorld(), roadPreset, updateBlockData, stream);
+            for (int i = 0; i < buildableEdges.size(); i++) {
+                streamingSession.registerEdge(edgeIds.get(i), buildableEdges.get(i).getCalculatedPath());
+            }
+            BuildCalculationTask.BuildManager.startStreamingSession(buildId, streamingSession);
+            plugin.getBuildJobManager().submit(playerUUID, BuildJobType.ROAD, new BuildPlacementTask(plugin, playerUUID, stream, onlyAir, updateBlockData));
+        } else {
+            BuildCalculationTask.BuildManager.startBuildSession(buildId, buildableEdges.size(), player.getWorld());
+        }
+
+        for (int i = 0; i < buildableEdges.size(); i++) {
+            // Create a temporary session for each edge to pass its specific path
+            RouteSession singleEdgeSession = new RouteSession();
+            singleEdgeSession.setCalculatedPath(buildableEdges.get(i).getCalculatedPath());
+            plugin.getComputeScheduler().submit(playerUUID, new BuildCalculationTask(plugin, playerUUID, singleEdgeSession, roadPreset, onlyAir, updateBlockData, buildId, edgeIds.get(i)));
         }
     }
 
 
+    private void handleProfileBuild(Player player, String profileName, boolean onlyAir, boolean updateBlockData) {
+        UUID playerUUID = player.getUniqueId();
+        ConfigurationSection section = plugin.getConfig().getConfigurationSection("build_profiles." + profileName);
+        if (section == null) {
+            PlayerMessageUtil.sendTranslatedMessage(plugin, player, "road.profile_not_found", profileName);
+            return;
+        }
+        BuildProfile profile;
+        try {
+            profile = BuildProfile.fromConfig(profileName, section);
+        } catch (IllegalArgumentException e) {
+            PlayerMessageUtil.sendTranslatedMessage(plugin, player, "road.profile_invalid", profileName, e.getMessage());
+            return;
+        }
+        if (profile.isEmpty()) {
+            PlayerMessageUtil.sendTranslatedMessage(plugin, player, "road.profile_invalid", profileName, "no layers");
+            return;
+        }
+
+        // プリセットはすべて建築開始前に読み込み、1つでも見つからなければ何も建築しない
+        RoadPreset roadPreset = null;
+        if (profile.getRoadPresetName() != null) {
+            roadPreset = presetManager.loadPreset(profile.getRoadPresetName());
+            if (roadPreset == null) {
+                PlayerMessageUtil.sendTranslatedMessage(plugin, player, "road.preset_not_found", profile.getRoadPresetName());
+                return;
+            }
+        }
+        List<WallPreset> wallPresets = new ArrayList<>();
+        for (BuildProfile.WallLayer wallLayer : profile.getWalls()) {
+            WallPreset wallPreset = wallPresetManager.loadPreset(wallLayer.getPresetName());
+            if (wallPreset == null) {
+                PlayerMessageUtil.sendTranslatedMessage(plugin, player, "wall.preset_not_found", wallLayer.getPresetName());
+                return;
+            }
+            wallPresets.add(wallPreset);
+        }
+        List<ObjectPreset> objectPresets = new ArrayList<>();
+        for (BuildProfile.ObjectLayer objectLayer : profile.getObjects()) {
+            ObjectPreset objectPreset = objectPresetManager.loadPreset(objectLayer.getPresetName());
+            if (objectPreset == null) {
+                PlayerMessageUtil.sendTranslatedMessage(plugin, player, "object.preset_not_found", objectLayer.getPresetName());
+                return;
+            }
+            objectPresets.add(objectPreset);
+        }
+
+        RouteSession routeSession = plugin.getRouteSession(playerUUID);
+        List<PolylineBuffer> edgePaths = new ArrayList<>();
+        for (RouteEdge edge : routeSession.getEdges()) {
+            if (edge.getCalculatedPath() != null && !edge.getCalculatedPath().isEmpty()) {
+                edgePaths.add(edge.getCalculatedPath());
+            }
+        }
+        PolylineBuffer combinedPath = routeSession.getCalculatedPath();
+        if (edgePaths.isEmpty() || combinedPath == null || combinedPath.isEmpty()) {
+            PlayerMessageUtil.sendTranslatedMessage(plugin, player, "road.route_not_set");
+            return;
+        }
+
+        String modeMessage = onlyAir ? " " + plugin.getMessageManager().getMessage(player, "road.build.mode.only_air") : "";
+        String updateMessage = !updateBlockData ? " " + plugin.getMessageManager().getMessage(player, "road.build.mode.no_block_update") : "";
+        PlayerMessageUtil.sendTranslatedMessage(plugin, player, "road.profile_building_started", profileName,
+                roadPreset != null ? roadPreset.getName() : "-", wallPresets.size(), objectPresets.size(), edgePaths.size(), modeMessage, updateMessage);
+
+        plugin.getComputeScheduler().submit(playerUUID, new CompositeBuildTask(plugin, playerUUID, player.getWorld(), profile,
+                roadPreset, wallPresets, objectPresets, edgePaths, combinedPath, onlyAir, updateBlockData));
+    }
+
     private void handleBrush(Player player) {
         ItemStack presetBrush = new ItemStack(Material.GOLDEN_AXE);
         ItemMeta presetMeta = presetBrush.getItemMeta();
@@ -389,6 +519,7 @@ public class RroadCommand implements CommandExecutor, TabCompleter {
         PlayerMessageUtil.sendTranslatedMessage(plugin, player, "road.help_brush");
         PlayerMessageUtil.sendTranslatedMessage(plugin, player, "road.help_save");
         PlayerMessageUtil.sendTranslatedMessage(plugin, player, "road.help_build_long");
+        PlayerMessageUtil.sendTranslatedMessage(plugin, player, "road.help_profile");
         PlayerMessageUtil.sendTranslatedMessage(plugin, player, "road.help_paste");
     }
     
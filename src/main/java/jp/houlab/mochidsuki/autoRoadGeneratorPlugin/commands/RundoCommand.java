@@ -1,7 +1,7 @@
 package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.commands;
 
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.AutoRoadGeneratorPluginMain;
-import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build.BuildHistoryManager;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build.BuildJob;
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.util.PlayerMessageUtil;
 import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
@@ -25,7 +25,14 @@ public class RundoCommand implements CommandExecutor {
         }
 
         Player player = (Player) sender;
-        boolean success = BuildHistoryManager.undoLastBuild(player.getUniqueId(), plugin);
+        // 設置中の建築は終了時に履歴へ登録されるため、先に取り消すと1つ前の建築が元に戻ってしまう
+        BuildJob recordingJob = plugin.getBuildJobManager().getRecordingJob(player.getUniqueId());
+        if (recordingJob != null) {
+            PlayerMessageUtil.sendTranslatedMessage(plugin, player, "undo.build_in_progress", recordingJob.getId());
+            return true;
+        }
+
+        boolean success = plugin.getBuildHistoryManager().undoLastBuild(player.getUniqueId());
 
         if (success) {
             PlayerMessageUtil.sendTranslatedMessage(plugin, player, "undo.success");
@@ -381,7 +381,7 @@ public class WallPresetCommand implements CommandExecutor, TabCompleter {
         PlayerMessageUtil.sendTranslatedMessage(plugin, player, "wall.building_started_details", presetName, xOffset, xOffsetText, yOffsetText, modeMessage, updateMessage);
 
         UUID buildId = UUID.randomUUID();
-        WallCalculationTask.BuildManager.startBuildSession(buildId, edges.size());
+        WallCalculationTask.BuildManager.startBuildSession(buildId, edges.size(), player.getWorld());
 
         for (RouteEdge edge : edges) {
             RouteSession singleEdgeSession = new RouteSession();
@@ -393,7 +393,7 @@ public class WallPresetCommand implements CommandExecutor, TabCompleter {
             }
 
             UUID edgeId = UUID.randomUUID();
-            new WallCalculationTask(plugin, playerUUID, singleEdgeSession, wallPreset, xOffset, yOffset, onlyAir, updateBlockData, buildId, edgeId).runTaskAsynchronously(plugin);
+            plugin.getComputeScheduler().submit(playerUUID, new WallCalculationTask(plugin, playerUUID, singleEdgeSession, wallPreset, xOffset, yOffset, onlyAir, updateBlockData, buildId, edgeId));
         }
     }
 
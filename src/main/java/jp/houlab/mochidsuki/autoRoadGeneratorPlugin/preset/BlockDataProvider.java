@@ -25,4 +25,9 @@ public interface BlockDataProvider {
      * 軸からの相対座標でのBlockData取得
      */
     BlockData getBlockDataRelativeToAxis(int relativeZ, int relativeY, int axisZOffset, int axisYOffset);
+
+    /**
+     * 軸からの相対座標でのパレットID取得（プリセットのパレットにコンパイル済みの場合のみ有効）
+     */
+    int getPaletteIdRelativeToAxis(int relativeZ, int relativeY, int axisZOffset, int axisYOffset);
 }
\ No newline at end of file
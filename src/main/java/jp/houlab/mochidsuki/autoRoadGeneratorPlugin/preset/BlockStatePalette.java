@@ -0,0 +1,281 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.preset;
+
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.util.StringBlockRotationUtil;
+import org.bukkit.Bukkit;
+import org.bukkit.block.data.BlockData;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ブロック状態文字列を整数IDに変換するパレット
+ *
+ * 建築計算中に同じブロック状態文字列が何百万回も現れるため、
+ * 文字列を一度だけ登録して以降は整数IDで扱えるようにします。
+ * IDは0から連番で割り当てられ、一度割り当てたIDは変化しません。
+ *
+ * 登録時に空気・ハーフブロックなどの判定結果を保持し、
+ * {@link #precomputeVariants()} でハーフブロックの種類違いや90度単位の回転後の状態も
+ * IDとして事前計算します。これにより計算処理中は文字列操作を一切行わずに済みます。
+ * 複数スレッドから同時に登録・参照しても安全です。
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class BlockStatePalette {
+
+    /** 未登録を表すID */
+    public static final int NO_ID = -1;
+
+    /** ハーフブロックではない */
+    public static final int SLAB_NONE = 0;
+    /** 下付きハーフブロック */
+    public static final int SLAB_BOTTOM = 1;
+    /** 上付きハーフブロック */
+    public static final int SLAB_TOP = 2;
+    /** 2枚重ねのハーフブロック */
+    public static final int SLAB_DOUBLE = 3;
+
+    private static final String[] SLAB_TYPE_NAMES = {null, "bottom", "top", "double"};
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile Entry[] entries = new Entry[16];
+    private int size = 0;
+
+    /**
+     * パレットの1エントリ。判定結果は登録時に確定し、派生状態は後から計算される。
+     */
+    private static final class Entry {
+        final String state;
+        final boolean air;
+        final int slabType;
+        // 派生状態のID（計算前はNO_ID）。同じ値を書き込むだけなので競合しても問題ない
+        final int[] rotatedIds = {NO_ID, NO_ID, NO_ID, NO_ID};
+        final int[] slabVariantIds = {NO_ID, NO_ID, NO_ID, NO_ID};
+        volatile boolean variantsReady;
+        volatile boolean rotatable;
+        volatile BlockData blockData;
+
+        Entry(String state) {
+            this.state = state;
+            this.air = isAirState(state);
+            this.slabType = parseSlabType(state);
+        }
+    }
+
+    /**
+     * ブロック状態文字列を登録し、そのIDを返します。既に登録済みの場合は既存のIDを返します。
+     * @param blockDataString ブロック状態文字列
+     * @return パレットID
+     */
+    public int intern(String blockDataString) {
+        Integer id = ids.get(blockDataString);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(blockDataString);
+            if (id != null) {
+                return id;
+            }
+            Entry[] current = entries;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+            }
+            int newId = size;
+            current[newId] = new Entry(blockDataString);
+            size++;
+            // 配列を先に公開してからマップに登録し、IDが見えた時点でエントリも参照できるようにする
+            entries = current;
+            ids.put(blockDataString, newId);
+            return newId;
+        }
+    }
+
+    /**
+     * 文字列の2次元グリッドをパレットIDのグリッドに変換します。nullのセルはNO_IDになります。
+     * @param stringGrid ブロック状態文字列のグリッド
+     * @return パレットIDのグリッド
+     */
+    public int[][] compileGrid(String[][] stringGrid) {
+        int[][] idGrid = new int[stringGrid.length][];
+        for (int i = 0; i < stringGrid.length; i++) {
+            idGrid[i] = new int[stringGrid[i].length];
+            for (int j = 0; j < stringGrid[i].length; j++) {
+                String state = stringGrid[i][j];
+                idGrid[i][j] = state == null ? NO_ID : intern(state);
+            }
+        }
+        return idGrid;
+    }
+
+    /**
+     * 登録済みの全状態について、ハーフブロックの種類違いと回転後の状態を事前計算します。
+     * 派生状態として新たに登録された状態も含め、変換が閉じるまで繰り返します。
+     */
+    public void precomputeVariants() {
+        for (int id = 0; id < size(); id++) {
+            ensureVariants(entry(id));
+        }
+    }
+
+    /**
+     * IDに対応するブロック状態文字列を取得します。
+     * @param id パレットID
+     * @return ブロック状態文字列。範囲外の場合はnull
+     */
+    public String get(int id) {
+        Entry entry = entry(id);
+        return entry != null ? entry.state : null;
+    }
+
+    /**
+     * 空気ブロック（air, cave_air, void_air）かどうかを判定します。
+     */
+    public boolean isAir(int id) {
+        return entry(id).air;
+    }
+
+    /**
+     * ハーフブロックかどうかを判定します。
+     */
+    public boolean isSlab(int id) {
+        return entry(id).slabType != SLAB_NONE;
+    }
+
+    /**
+     * ハーフブロックの種類を取得します。type指定のないハーフブロックは下付きとして扱います。
+     * @return SLAB_NONE, SLAB_BOTTOM, SLAB_TOP, SLAB_DOUBLE のいずれか
+     */
+    public int getSlabType(int id) {
+        return entry(id).slabType;
+    }
+
+    /**
+     * 向きを持ち、回転によって状態が変化するブロックかどうかを判定します。
+     */
+    public boolean isRotatable(int id) {
+        Entry entry = entry(id);
+        ensureVariants(entry);
+        return entry.rotatable;
+    }
+
+    /**
+     * ハーフブロックの種類を変更した状態のIDを取得します。
+     * @param id 元の状態のID
+     * @param slabType SLAB_BOTTOM, SLAB_TOP, SLAB_DOUBLE のいずれか
+     * @return 変更後の状態のID。ハーフブロックでない場合は元のID
+     */
+    public int withSlabType(int id, int slabType) {
+        Entry entry = entry(id);
+        if (entry.slabType == SLAB_NONE || entry.slabType == slabType) {
+            return id;
+        }
+        ensureVariants(entry);
+        return entry.slabVariantIds[slabType];
+    }
+
+    /**
+     * Y軸周りに90度単位で回転させた状態のIDを取得します。
+     * @param id 元の状態のID
+     * @param quarterTurns 時計回りの90度回転数（0〜3）
+     * @return 回転後の状態のID
+     */
+    public int rotate(int id, int quarterTurns) {
+        int turns = ((quarterTurns % 4) + 4) % 4;
+        if (turns == 0) {
+            return id;
+        }
+        Entry entry = entry(id);
+        ensureVariants(entry);
+        return entry.rotatedIds[turns];
+    }
+
+    /**
+     * IDに対応するBlockDataを取得します。BlockDataは状態ごとに一度だけ生成され、以降は共有されます。
+     * 共有されるため、呼び出し側で変更する場合はcloneしてください。
+     * @param id パレットID
+     * @return BlockData
+     * @throws IllegalArgumentException ブロック状態文字列が不正な場合
+     */
+    public BlockData getBlockData(int id) {
+        Entry entry = entry(id);
+        BlockData blockData = entry.blockData;
+        if (blockData == null) {
+            blockData = Bukkit.createBlockData(entry.state);
+            entry.blockData = blockData;
+        }
+        return blockData;
+    }
+
+    /**
+     * 登録済みのブロック状態の数を取得します。
+     * @return 登録数
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private Entry entry(int id) {
+        Entry[] current = entries;
+        if (id < 0 || id >= current.length) {
+            return null;
+        }
+        return current[id];
+    }
+
+    private void ensureVariants(Entry entry) {
+        if (entry.variantsReady) {
+            return;
+        }
+        // internはこのメソッドの外でロックを取るため、ここでは同期しない（同じ結果が書き込まれるだけ）
+        int selfId = intern(entry.state);
+        entry.rotatedIds[0] = selfId;
+        boolean rotatable = false;
+        for (int turns = 1; turns < 4; turns++) {
+            String rotated = StringBlockRotationUtil.rotateQuarterTurns(entry.state, turns);
+            int rotatedId = intern(rotated);
+            entry.rotatedIds[turns] = rotatedId;
+            rotatable |= rotatedId != selfId;
+        }
+        entry.rotatable = rotatable;
+
+        if (entry.slabType != SLAB_NONE) {
+            for (int type = SLAB_BOTTOM; type <= SLAB_DOUBLE; type++) {
+                entry.slabVariantIds[type] = type == entry.slabType ? selfId : intern(replaceSlabType(entry.state, SLAB_TYPE_NAMES[type]));
+            }
+        }
+        entry.variantsReady = true;
+    }
+
+    private static boolean isAirState(String state) {
+        int bracket = state.indexOf('[');
+        String material = bracket >= 0 ? state.substring(0, bracket) : state;
+        return material.equals("minecraft:air") || material.equals("minecraft:cave_air") || material.equals("minecraft:void_air");
+    }
+
+    private static int parseSlabType(String state) {
+        if (!state.contains("_slab")) {
+            return SLAB_NONE;
+        }
+        if (state.contains("type=top")) {
+            return SLAB_TOP;
+        }
+        if (state.contains("type=double")) {
+            return SLAB_DOUBLE;
+        }
+        return SLAB_BOTTOM;
+    }
+
+    private static String replaceSlabType(String state, String newType) {
+        if (state.contains("type=")) {
+            return state.replaceAll("type=[^,\\]]*", "type=" + newType);
+        } else if (state.contains("[")) {
+            return state.replace("]", ",type=" + newType + "]");
+        } else {
+            return state + "[type=" + newType + "]";
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.preset;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.util.Vector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 道路・壁・オブジェクトのプリセットを組み合わせた建築プロファイル
+ *
+ * config.yml の build_profiles に定義し、/rroad profile で1回の計算・1回の設置・1つの建築履歴として建築します。
+ * プロファイルはプリセット名と配置の設定のみを保持し、プリセットの読み込みは建築時に行います。
+ * 各レイヤーは優先度を持ち、ブロックが重なる位置では優先度の高いレイヤーのブロックが残ります。
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class BuildProfile {
+
+    /** 道路レイヤーの既定の優先度 */
+    public static final int DEFAULT_ROAD_PRIORITY = 30;
+    /** 壁レイヤーの既定の優先度 */
+    public static final int DEFAULT_WALL_PRIORITY = 20;
+    /** オブジェクトレイヤーの既定の優先度 */
+    public static final int DEFAULT_OBJECT_PRIORITY = 10;
+    /** オブジェクトの既定の配置間隔（ブロック） */
+    private static final double DEFAULT_OBJECT_INTERVAL = 10.0;
+
+    private final String name;
+    private final String roadPresetName;
+    private final int roadPriority;
+    private final List<WallLayer> walls;
+    private final List<ObjectLayer> objects;
+
+    public BuildProfile(String name, String roadPresetName, int roadPriority, List<WallLayer> walls, List<ObjectLayer> objects) {
+        this.name = name;
+        this.roadPresetName = roadPresetName;
+        this.roadPriority = roadPriority;
+        this.walls = Collections.unmodifiableList(new ArrayList<>(walls));
+        this.objects = Collections.unmodifiableList(new ArrayList<>(objects));
+    }
+
+    /**
+     * 壁レイヤーの設定（/rwall build の引数に相当）
+     */
+    public static class WallLayer {
+        private final String presetName;
+        private final double xOffset;
+        private final double yOffset;
+        private final int priority;
+
+        public WallLayer(String presetName, double xOffset, double yOffset, int priority) {
+            this.presetName = presetName;
+            this.xOffset = xOffset;
+            this.yOffset = yOffset;
+            this.priority = priority;
+        }
+
+        public String getPresetName() {
+            return presetName;
+        }
+
+        public double getXOffset() {
+            return xOffset;
+        }
+
+        public double getYOffset() {
+            return yOffset;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+    }
+
+    /**
+     * オブジェクトレイヤーの設定（/robj place のオプションに相当）
+     */
+    public static class ObjectLayer {
+        private final String presetName;
+        private final double interval;
+        private final Vector offset;
+        private final float rotation;
+        private final String flipAxis;
+        private final int priority;
+
+        public ObjectLayer(String presetName, double interval, Vector offset, float rotation, String flipAxis, int priority) {
+            this.presetName = presetName;
+            this.interval = interval;
+            this.offset = offset;
+            this.rotation = rotation;
+            this.flipAxis = flipAxis;
+            this.priority = priority;
+        }
+
+        public String getPresetName() {
+            return presetName;
+        }
+
+        public double getInterval() {
+            return interval;
+        }
+
+        public Vector getOffset() {
+            return offset.clone();
+        }
+
+        public float getRotation() {
+            return rotation;
+        }
+
+        public String getFlipAxis() {
+            return flipAxis;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+    }
+
+    /**
+     * 設定セクションからプロファイルを読み込みます。
+     * @param name プロファイル名
+     * @param section build_profiles.&lt;name&gt; のセクション
+     * @return プロファイル
+     * @throws IllegalArgumentException 間隔・オフセット・反転軸の指定が不正な場合
+     */
+    public static BuildProfile fromConfig(String name, ConfigurationSection section) {
+        String roadPresetName = section.getString("road");
+        int roadPriority = section.getInt("road_priority", DEFAULT_ROAD_PRIORITY);
+
+        List<WallLayer> walls = new ArrayList<>();
+        for (Map<?, ?> wall : section.getMapList("walls")) {
+            walls.add(new WallLayer(
+                    requireString(wall, "preset"),
+                    toDouble(wall.get("offset"), 0.0),
+                    toDouble(wall.get("y_offset"), 0.0),
+                    (int) toDouble(wall.get("priority"), DEFAULT_WALL_PRIORITY)));
+        }
+
+        List<ObjectLayer> objects = new ArrayList<>();
+        for (Map<?, ?> object : section.getMapList("objects")) {
+            String flipAxis = object.get("flip") != null ? String.valueOf(object.get("flip")).toLowerCase() : "";
+            if (!flipAxis.isEmpty() && !flipAxis.equals("x") && !flipAxis.equals("z")) {
+                throw new IllegalArgumentException("Invalid flip axis: " + flipAxis);
+            }
+            double interval = toDouble(object.get("interval"), DEFAULT_OBJECT_INTERVAL);
+            if (!(interval > 0)) {
+                throw new IllegalArgumentException("Invalid interval: " + interval);
+            }
+            objects.add(new ObjectLayer(
+                    requireString(object, "preset"),
+                    interval,
+                    parseOffset(object.get("offset")),
+                    (float) toDouble(object.get("rotate"), 0.0),
+                    flipAxis,
+                    (int) toDouble(object.get("priority"), DEFAULT_OBJECT_PRIORITY)));
+        }
+        return new BuildProfile(name, roadPresetName, roadPriority, walls, objects);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 道路プリセット名を取得します。
+     * @return 道路プリセット名。道路を含まないプロファイルの場合はnull
+     */
+    public String getRoadPresetName() {
+        return roadPresetName;
+    }
+
+    public int getRoadPriority() {
+        return roadPriority;
+    }
+
+    public List<WallLayer> getWalls() {
+        return walls;
+    }
+
+    public List<ObjectLayer> getObjects() {
+        return objects;
+    }
+
+    /**
+     * レイヤーを1つも含まないかどうかを判定します。
+     */
+    public boolean isEmpty() {
+        return roadPresetName == null && walls.isEmpty() && objects.isEmpty();
+    }
+
+    private static String requireString(Map<?, ?> map, String key) {
+        Object value = map.get(key);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing '" + key + "'");
+        }
+        return String.valueOf(value);
+    }
+
+    private static double toDouble(Object value, double defaultValue) {
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        }
+        if (value != null) {
+            return Double.parseDouble(String.valueOf(value));
+        }
+        return defaultValue;
+    }
+
+    // "x,y,z" 形式（/robj place --offset と同じ）
+    private static Vector parseOffset(Object value) {
+        if (value == null) {
+            return new Vector(0, 0, 0);
+        }
+        String[] coords = String.valueOf(value).split(",");
+        if (coords.length != 3) {
+            throw new IllegalArgumentException("Invalid offset: " + value);
+        }
+        return new Vector(Double.parseDouble(coords[0].trim()), Double.parseDouble(coords[1].trim()), Double.parseDouble(coords[2].trim()));
+    }
+}
@@ -12,6 +12,7 @@ public class RoadPreset implements PresetData {
     private final int heightY; // Height along Y-axis
     private final int axisZOffset; // Z position of axis within the array bounds
     private final int axisYOffset; // Y position of axis within the array bounds
+    private final BlockStatePalette palette = new BlockStatePalette(); // 建築計算で使用するブロック状態のパレット
 
     public RoadPreset(String name, List<PresetSlice> slices, int lengthX, int widthZ, int heightY, int axisZOffset, int axisYOffset) {
         this.name = name;
@@ -21,6 +22,7 @@ public class RoadPreset implements PresetData {
         this.heightY = heightY;
         this.axisZOffset = axisZOffset;
         this.axisYOffset = axisYOffset;
+        compilePalette();
     }
 
     @Override
@@ -57,6 +59,18 @@ public class RoadPreset implements PresetData {
         return axisYOffset;
     }
 
+    public BlockStatePalette getPalette() {
+        return palette;
+    }
+
+    // 全スライスをパレットIDに変換し、ハーフブロックの種類違いと回転後の状態を事前計算する
+    private void compilePalette() {
+        for (PresetSlice slice : slices) {
+            slice.compilePalette(palette);
+        }
+        palette.precomputeVariants();
+    }
+
     // Z軸の最小値を取得（軸を中心とした負の範囲）
     public int getMinZ() {
         return -axisZOffset;
@@ -82,6 +96,7 @@ public class RoadPreset implements PresetData {
         private final int xPosition;
         private final BlockData[][] yzGrid; // [z][y] grid
         private final String[][] stringGrid; // [z][y] grid for thread-safe string data
+        private int[][] paletteIdGrid; // [z][y] grid of palette ids, compiled when the preset is created
 
         public PresetSlice(int xPosition, int widthZ, int heightY) {
             this.xPosition = xPosition;
@@ -133,6 +148,24 @@ public class RoadPreset implements PresetData {
             return null;
         }
 
+        @Override
+        public int getPaletteIdRelativeToAxis(int relativeZ, int relativeY, int axisZOffset, int axisYOffset) {
+            int arrayZ = relativeZ + axisZOffset;
+            int arrayY = relativeY + axisYOffset;
+
+            if (paletteIdGrid != null && arrayZ >= 0 && arrayZ < paletteIdGrid.length && arrayY >= 0 && arrayY < paletteIdGrid[0].length) {
+                return paletteIdGrid[arrayZ][arrayY];
+            }
+            return BlockStatePalette.NO_ID;
+        }
+
+        /**
+         * 文字列グリッドをパレットIDのグリッドに変換します。
+         */
+        void compilePalette(BlockStatePalette palette) {
+            this.paletteIdGrid = palette.compileGrid(stringGrid);
+        }
+
         // 従来の互換性メソッド（deprecated推奨）
         public BlockData getBlock(int z, int y) {
             return getBlockData(z, y);
@@ -12,6 +12,7 @@ public class WallPreset implements PresetData {
     private final int axisZOffset; // Z position of axis within the array bounds
     private final int axisYOffset; // Y position of axis within the array bounds
     private final int axisXOffset; // X position of axis within the array bounds (new for 3D)
+    private final BlockStatePalette palette = new BlockStatePalette(); // 建築計算で使用するブロック状態のパレット
 
     public WallPreset(String name, List<WallSlice> slices, int lengthX, int widthZ, int heightY,
                      int axisXOffset, int axisZOffset, int axisYOffset) {
@@ -23,6 +24,7 @@ public class WallPreset implements PresetData {
         this.axisXOffset = axisXOffset;
         this.axisZOffset = axisZOffset;
         this.axisYOffset = axisYOffset;
+        compilePalette();
     }
 
     @Override
@@ -63,6 +65,18 @@ public class WallPreset implements PresetData {
         return axisYOffset;
     }
 
+    public BlockStatePalette getPalette() {
+        return palette;
+    }
+
+    // 全スライスをパレットIDに変換し、回転後の状態を事前計算する
+    private void compilePalette() {
+        for (WallSlice slice : slices) {
+            slice.compilePalette(palette);
+        }
+        palette.precomputeVariants();
+    }
+
     // 軸からの相対座標での範囲を取得するメソッド
     public int getMinX() {
         return -axisXOffset;
@@ -93,6 +107,7 @@ public class WallPreset implements PresetData {
         private final int xPosition;
         private final BlockData[][] yzGrid; // [z][y] grid
         private final String[][] stringGrid; // [z][y] grid for thread-safe string data
+        private int[][] paletteIdGrid; // [z][y] grid of palette ids, compiled when the preset is created
 
         public WallSlice(int xPosition, int widthZ, int heightY) {
             this.xPosition = xPosition;
@@ -144,6 +159,24 @@ public class WallPreset implements PresetData {
             return null;
         }
 
+        @Override
+        public int getPaletteIdRelativeToAxis(int relativeZ, int relativeY, int axisZOffset, int axisYOffset) {
+            int arrayZ = relativeZ + axisZOffset;
+            int arrayY = relativeY + axisYOffset;
+
+            if (paletteIdGrid != null && arrayZ >= 0 && arrayZ < paletteIdGrid.length && arrayY >= 0 && arrayY < paletteIdGrid[0].length) {
+                return paletteIdGrid[arrayZ][arrayY];
+            }
+            return BlockStatePalette.NO_ID;
+        }
+
+        /**
+         * 文字列グリッドをパレットIDのグリッドに変換します。
+         */
+        void compilePalette(BlockStatePalette palette) {
+            this.paletteIdGrid = palette.compileGrid(stringGrid);
+        }
+
         // 従来の互換性メソッド
         public BlockData getBlock(int z, int y) {
             return getBlockData(z, y);
@@ -1,21 +1,113 @@
 package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.preset.roadObjects;
 
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.BlockRotationUtil;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.preset.BlockStatePalette;
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.preset.PresetData;
 import org.bukkit.block.data.BlockData;
 import org.bukkit.util.Vector;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 道路に設置するオブジェクトの構造を保持するプリセットクラス。
  */
 public class ObjectPreset implements PresetData {
 
+    /** 経路の向きを量子化する区分の数（22.5度刻み） */
+    public static final int ROTATION_BUCKETS = 16;
+    /** 区分1つあたりの角度（度） */
+    private static final double BUCKET_DEGREES = 360.0 / ROTATION_BUCKETS;
+    // 相対座標の詰め込み: X・Y・Zを各21ビット（符号付き）
+    private static final int OFFSET_BITS = 21;
+    private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+
     private final String name;
     private final Map<Vector, BlockData> blocks;
     private final int initialYaw;
     private final Vector dimensions;
 
+    // 設置処理用にコンパイルされたデータ
+    private final BlockStatePalette palette = new BlockStatePalette();
+    private final List<Vector> blockOffsets = new ArrayList<>();
+    private final List<Integer> blockPaletteIds = new ArrayList<>();
+    private final List<BlockData[]> rotatedBlockData = new ArrayList<>(); // [パレットID][90度回転数]
+    // 反転軸と回転角ごとの、向きの区分別テンプレート
+    private final Map<String, RotatedTemplate[]> rotationTemplates = new ConcurrentHashMap<>();
+
+    /**
+     * 1つの向きの区分に対する配置テンプレート
+     *
+     * 経路の向きと利用者指定の回転・反転を適用した後の、基準ブロックからの整数の相対座標（詰め込み済み）と、
+     * 同じ向きに回転済みのBlockDataを保持します。同じ相対座標に複数のブロックがある場合は後のものだけを残します。
+     * BlockDataはプリセットで共有されるため変更しないでください。
+     */
+    public static final class RotatedTemplate {
+        private final long[] packedOffsets;
+        private final BlockData[] blockData;
+        // 相対座標の範囲（両端を含む）。ブロックがない場合は最小値が最大値より大きい
+        private final int[] bounds = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+
+        private RotatedTemplate(long[] packedOffsets, BlockData[] blockData) {
+            this.packedOffsets = packedOffsets;
+            this.blockData = blockData;
+            for (int i = 0; i < packedOffsets.length; i++) {
+                int[] offset = {offsetX(i), offsetY(i), offsetZ(i)};
+                for (int axis = 0; axis < 3; axis++) {
+                    bounds[axis] = Math.min(bounds[axis], offset[axis]);
+                    bounds[axis + 3] = Math.max(bounds[axis + 3], offset[axis]);
+                }
+            }
+        }
+
+        public int size() {
+            return packedOffsets.length;
+        }
+
+        public int minX() {
+            return bounds[0];
+        }
+
+        public int minY() {
+            return bounds[1];
+        }
+
+        public int minZ() {
+            return bounds[2];
+        }
+
+        public int maxX() {
+            return bounds[3];
+        }
+
+        public int maxY() {
+            return bounds[4];
+        }
+
+        public int maxZ() {
+            return bounds[5];
+        }
+
+        public int offsetX(int index) {
+            return (int) (packedOffsets[index] << (64 - OFFSET_BITS * 3) >> (64 - OFFSET_BITS));
+        }
+
+        public int offsetY(int index) {
+            return (int) (packedOffsets[index] << (64 - OFFSET_BITS * 2) >> (64 - OFFSET_BITS));
+        }
+
+        public int offsetZ(int index) {
+            return (int) (packedOffsets[index] << (64 - OFFSET_BITS) >> (64 - OFFSET_BITS));
+        }
+
+        public BlockData blockData(int index) {
+            return blockData[index];
+        }
+    }
+
     /**
      * @param name プリセット名
      * @param blocks 原点を基準としたブロックの相対座標とBlockDataのマップ
@@ -27,6 +119,25 @@ public class ObjectPreset implements PresetData {
         this.blocks = blocks;
         this.initialYaw = initialYaw;
         this.dimensions = dimensions;
+        compilePalette();
+    }
+
+    /**
+     * ブロックをパレットIDに変換し、状態ごとに0/90/180/270度回転後のBlockDataを事前計算します。
+     */
+    private void compilePalette() {
+        for (Map.Entry<Vector, BlockData> entry : blocks.entrySet()) {
+            int paletteId = palette.intern(entry.getValue().getAsString());
+            if (paletteId == rotatedBlockData.size()) {
+                BlockData[] variants = new BlockData[4];
+                for (int turns = 0; turns < 4; turns++) {
+                    variants[turns] = BlockRotationUtil.rotateBlockData(entry.getValue(), Math.toRadians(90.0 * turns));
+                }
+                rotatedBlockData.add(variants);
+            }
+            blockOffsets.add(entry.getKey());
+            blockPaletteIds.add(paletteId);
+        }
     }
 
     public String getName() {
@@ -45,6 +156,83 @@ public class ObjectPreset implements PresetData {
         return dimensions;
     }
 
+    /**
+     * 事前計算済みの回転後BlockDataを取得します。返されるBlockDataは共有されるため変更しないでください。
+     * @param paletteId パレットID
+     * @param quarterTurns 90度単位の回転数（0〜3）
+     * @return 回転後のBlockData
+     */
+    public BlockData getRotatedBlockData(int paletteId, int quarterTurns) {
+        return rotatedBlockData.get(paletteId)[((quarterTurns % 4) + 4) % 4];
+    }
+
+    /**
+     * 経路の向き（度）に対応する区分の番号を取得します。
+     * @param pathYaw 経路の向き（度）
+     * @return 0〜{@link #ROTATION_BUCKETS}-1 の区分番号
+     */
+    public static int rotationBucket(double pathYaw) {
+        return Math.floorMod((int) Math.round(pathYaw / BUCKET_DEGREES), ROTATION_BUCKETS);
+    }
+
+    /**
+     * 反転と回転を適用した、向きの区分ごとの配置テンプレートを取得します。初回の呼び出しで全区分を計算し、以降は共有します。
+     * @param flipAxis 反転する軸（"x", "z" または空文字列）
+     * @param rotation 経路の向きに加える回転（度）
+     * @return 区分番号を添字とするテンプレートの配列
+     */
+    public RotatedTemplate[] getRotationTemplates(String flipAxis, float rotation) {
+        return rotationTemplates.computeIfAbsent(flipAxis + "@" + Float.floatToIntBits(rotation),
+                key -> compileRotationTemplates(flipAxis, rotation));
+    }
+
+    private RotatedTemplate[] compileRotationTemplates(String flipAxis, float rotation) {
+        // 反転と利用者指定の回転は区分によらないため先に適用する
+        int blockCount = blockOffsets.size();
+        double[] localX = new double[blockCount];
+        double[] localY = new double[blockCount];
+        double[] localZ = new double[blockCount];
+        for (int b = 0; b < blockCount; b++) {
+            Vector canonicalPos = blockOffsets.get(b).clone();
+            if (flipAxis.equals("x")) canonicalPos.setX(canonicalPos.getX() * -1);
+            if (flipAxis.equals("z")) canonicalPos.setZ(canonicalPos.getZ() * -1);
+            canonicalPos.rotateAroundY(Math.toRadians(rotation));
+            localX[b] = canonicalPos.getX();
+            localY[b] = canonicalPos.getY();
+            localZ[b] = canonicalPos.getZ();
+        }
+
+        RotatedTemplate[] templates = new RotatedTemplate[ROTATION_BUCKETS];
+        for (int bucket = 0; bucket < ROTATION_BUCKETS; bucket++) {
+            double pathYaw = bucket * BUCKET_DEGREES;
+            double cos = Math.cos(Math.toRadians(pathYaw));
+            double sin = Math.sin(Math.toRadians(pathYaw));
+            int quarterTurns = BlockRotationUtil.getQuarterTurns(Math.toRadians(pathYaw + rotation));
+
+            // 進行方向（X）と右方向（Z）を経路の向きに合わせてワールド座標に変換し、ブロック単位に丸める
+            Map<Long, BlockData> cells = new LinkedHashMap<>();
+            for (int b = 0; b < blockCount; b++) {
+                long dx = Math.round(localX[b] * cos - localZ[b] * sin);
+                long dy = Math.round(localY[b]);
+                long dz = Math.round(localX[b] * sin + localZ[b] * cos);
+                long packed = ((dx & OFFSET_MASK) << (OFFSET_BITS * 2)) | ((dy & OFFSET_MASK) << OFFSET_BITS) | (dz & OFFSET_MASK);
+                cells.remove(packed);
+                cells.put(packed, getRotatedBlockData(blockPaletteIds.get(b), quarterTurns));
+            }
+
+            long[] packedOffsets = new long[cells.size()];
+            BlockData[] blockData = new BlockData[cells.size()];
+            int k = 0;
+            for (Map.Entry<Long, BlockData> cell : cells.entrySet()) {
+                packedOffsets[k] = cell.getKey();
+                blockData[k] = cell.getValue();
+                k++;
+            }
+            templates[bucket] = new RotatedTemplate(packedOffsets, blockData);
+        }
+        return templates;
+    }
+
     @Override
     public PresetType getType() {
         return PresetType.OBJECT;
@@ -0,0 +1,206 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+
+/**
+ * {@link EdgeCurve} を弧長に沿って標本化するクラス
+ *
+ * パラメータ区間を等分した各区間の弧長を 5点 Gauss–Legendre 求積で求めて累積表を作り、
+ * 目標の弧長に対応するパラメータを表からの線形推定とニュートン法で求めます。
+ * 曲線を1回だけ評価して目的の間隔の点列を得られるため、細かく標本化してから再標本化する必要がありません。
+ * 点の間隔は {@link PathTolerance} で指定し、等間隔（建築用）と曲率に応じた間隔（表示用）を選べます。
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class ArcLengthSampler {
+
+    private static final double[] GL_NODES = {0.0, -0.5384693101056831, 0.5384693101056831, -0.9061798459386640, 0.9061798459386640};
+    private static final double[] GL_WEIGHTS = {0.5688888888888889, 0.4786286704993665, 0.4786286704993665, 0.2369268850561891, 0.2369268850561891};
+    private static final int MAX_NEWTON_ITERATIONS = 8;
+    private static final double NEWTON_TOLERANCE = 1e-9;
+    private static final double EPSILON = 1e-9;
+
+    private ArcLengthSampler() {
+    }
+
+    /**
+     * 曲線を弧長に沿って標本化します。
+     * 等間隔の場合、点の間隔は全長を最大間隔以下で等分した長さになります。
+     * 曲率に応じる場合は、弦の誤差（曲率 κ、間隔 Δs のとき κΔs²/8）が許容誤差に収まる最大の間隔を使います。
+     * 始点と終点は指定した座標に一致します。始点の向きは引数で指定し、それ以外の点の向きは曲線の接線から求めます。
+     * @param curve 標本化する曲線
+     * @param world 経路のワールド
+     * @param intervals 弧長表の区間数
+     * @param tolerance 点の間隔と弦の誤差の許容値
+     * @param start 始点
+     * @param end 終点
+     * @param startYaw 始点のヨー角
+     * @param startPitch 始点のピッチ角
+     * @return 標本化した経路
+     */
+    static PolylineBuffer sample(EdgeCurve curve, World world, int intervals, PathTolerance tolerance,
+                                 Location start, Location end, float startYaw, float startPitch) {
+        double[] cumulative = new double[intervals + 1];
+        double[] curvatures = tolerance.isAdaptive() ? new double[intervals] : null;
+        double[] state = new double[6];
+        double h = 1.0 / intervals;
+        double[] direction = curvatures != null ? unitDirection(curve, 0.0, state) : null;
+        for (int k = 0; k < intervals; k++) {
+            double length = integrateSpeed(curve, k * h, (k + 1) * h, state);
+            cumulative[k + 1] = cumulative[k] + length;
+            if (curvatures != null) {
+                // 区間の両端の接線がなす角を区間の長さで割って平均曲率とする
+                double[] next = unitDirection(curve, (k + 1) * h, state);
+                double dot = direction[0] * next[0] + direction[1] * next[1] + direction[2] * next[2];
+                double turn = Math.acos(Math.max(-1.0, Math.min(1.0, dot)));
+                curvatures[k] = length > EPSILON ? turn / length : 0.0;
+                direction = next;
+            }
+        }
+        double totalLength = cumulative[intervals];
+        double maxSpacing = tolerance.getMaxSpacing();
+
+        int uniformSegments = Math.max(1, (int) Math.ceil(totalLength / maxSpacing - EPSILON));
+        PolylineBuffer path = new PolylineBuffer(world, uniformSegments + 1);
+        path.add(start.getX(), start.getY(), start.getZ(), startYaw, startPitch);
+        if (totalLength < EPSILON) {
+            if (start.getX() != end.getX() || start.getY() != end.getY() || start.getZ() != end.getZ()) {
+                path.add(end.getX(), end.getY(), end.getZ(), startYaw, startPitch);
+            }
+            return path;
+        }
+
+        float yaw = startYaw;
+        float pitch = startPitch;
+        int k = 0;
+        int emitted = 0;
+        double covered = 0.0;
+        while (true) {
+            double target;
+            if (curvatures == null) {
+                emitted++;
+                target = emitted >= uniformSegments ? totalLength : totalLength * emitted / uniformSegments;
+            } else {
+                target = nextAdaptiveTarget(cumulative, curvatures, covered, totalLength, tolerance);
+            }
+            boolean last = target >= totalLength;
+
+            double t;
+            if (last) {
+                t = 1.0;
+            } else {
+                while (k < intervals - 1 && cumulative[k + 1] < target) {
+                    k++;
+                }
+                t = invert(curve, target, k * h, (k + 1) * h, cumulative[k], cumulative[k + 1], state);
+            }
+            curve.evaluate(t, state);
+            double speed = Math.sqrt(state[3] * state[3] + state[4] * state[4] + state[5] * state[5]);
+            if (speed > EPSILON) {
+                yaw = (float) Math.toDegrees(Math.atan2(state[5], state[3]));
+                pitch = (float) Math.toDegrees(Math.asin(-state[4] / speed));
+            }
+            if (last) {
+                path.add(end.getX(), end.getY(), end.getZ(), yaw, pitch);
+                break;
+            }
+            path.add(state[0], state[1], state[2], yaw, pitch);
+            covered = target;
+        }
+        path.trimToSize();
+        return path;
+    }
+
+    /**
+     * 曲率に応じた次の点の弧長を求めます。
+     * 現在位置と1歩先の曲率の大きい方から間隔を決め、残りが2歩未満になったら残りを二等分して端数の短い区間を作りません。
+     */
+    private static double nextAdaptiveTarget(double[] cumulative, double[] curvatures, double covered,
+                                             double totalLength, PathTolerance tolerance) {
+        double step = adaptiveStep(curvatureAt(cumulative, curvatures, covered), tolerance);
+        double lookAhead = adaptiveStep(curvatureAt(cumulative, curvatures, covered + step), tolerance);
+        step = Math.min(step, lookAhead);
+        double remaining = totalLength - covered;
+        if (remaining <= step * (1.0 + EPSILON)) {
+            return totalLength;
+        }
+        if (remaining < 2.0 * step) {
+            return covered + remaining / 2.0;
+        }
+        return covered + step;
+    }
+
+    private static double adaptiveStep(double curvature, PathTolerance tolerance) {
+        if (curvature < EPSILON) {
+            return tolerance.getMaxSpacing();
+        }
+        return Math.min(tolerance.getMaxSpacing(), Math.sqrt(8.0 * tolerance.getMaxChordError() / curvature));
+    }
+
+    /**
+     * 弧長 s を含む区間の平均曲率を返します。
+     */
+    private static double curvatureAt(double[] cumulative, double[] curvatures, double s) {
+        int low = 0;
+        int high = curvatures.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (cumulative[mid] <= s) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return curvatures[low];
+    }
+
+    /**
+     * 指定したパラメータでの接線の単位ベクトルを返します。速さが0の場合は零ベクトルです。
+     */
+    private static double[] unitDirection(EdgeCurve curve, double t, double[] state) {
+        curve.evaluate(t, state);
+        double speed = Math.sqrt(state[3] * state[3] + state[4] * state[4] + state[5] * state[5]);
+        if (speed < EPSILON) {
+            return new double[3];
+        }
+        return new double[]{state[3] / speed, state[4] / speed, state[5] / speed};
+    }
+
+    /**
+     * 目標の弧長に対応するパラメータを、区間 [t0, t1] 内で求めます。
+     */
+    private static double invert(EdgeCurve curve, double target, double t0, double t1, double length0, double length1, double[] state) {
+        double span = length1 - length0;
+        double t = span > EPSILON ? t0 + (t1 - t0) * (target - length0) / span : t0;
+        for (int i = 0; i < MAX_NEWTON_ITERATIONS; i++) {
+            double error = length0 + integrateSpeed(curve, t0, t, state) - target;
+            if (Math.abs(error) < NEWTON_TOLERANCE) {
+                break;
+            }
+            curve.evaluate(t, state);
+            double speed = Math.sqrt(state[3] * state[3] + state[4] * state[4] + state[5] * state[5]);
+            if (speed < EPSILON) {
+                break;
+            }
+            t = Math.max(t0, Math.min(t1, t - error / speed));
+        }
+        return t;
+    }
+
+    /**
+     * 区間 [a, b] における曲線の長さ（速さの積分）を求めます。
+     */
+    private static double integrateSpeed(EdgeCurve curve, double a, double b, double[] state) {
+        double half = 0.5 * (b - a);
+        double mid = 0.5 * (a + b);
+        double sum = 0.0;
+        for (int n = 0; n < GL_NODES.length; n++) {
+            curve.evaluate(mid + half * GL_NODES[n], state);
+            sum += GL_WEIGHTS[n] * Math.sqrt(state[3] * state[3] + state[4] * state[4] + state[5] * state[5]);
+        }
+        return sum * half;
+    }
+}
@@ -0,0 +1,93 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route;
+
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.util.BlockKeyUtil;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * ノードやアンカーのIDをブロック座標で検索するための空間ハッシュ
+ *
+ * ブロック座標を {@link BlockKeyUtil} で詰め込んだlong値をキーにした表を保持し、同じブロックの検索を1回の表引きで行います。
+ * 座標の計算にワールドへのアクセスは不要です。
+ *
+ * 変更は同期化され、検索はロックなしで行えます。
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class BlockSpatialIndex {
+
+    private final Map<Long, List<UUID>> blocks = new ConcurrentHashMap<>();
+    private final Map<UUID, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * IDを指定した位置に登録します。登録済みの場合は位置を更新します。
+     */
+    synchronized void put(UUID id, Location location) {
+        remove(id);
+        Entry entry = new Entry(location);
+        entries.put(id, entry);
+        blocks.computeIfAbsent(entry.blockKey, k -> new CopyOnWriteArrayList<>()).add(id);
+    }
+
+    /**
+     * IDの登録を解除します。
+     */
+    synchronized void remove(UUID id) {
+        Entry entry = entries.remove(id);
+        if (entry == null) {
+            return;
+        }
+        removeFromBucket(blocks, entry.blockKey, id);
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        blocks.clear();
+    }
+
+    /**
+     * 指定した位置と同じブロックに登録されているIDを返します。
+     * @return ID、見つからなければnull
+     */
+    UUID findAt(Location location) {
+        List<UUID> bucket = blocks.get(BlockKeyUtil.pack(location.getBlockX(), location.getBlockY(), location.getBlockZ()));
+        if (bucket == null) {
+            return null;
+        }
+        for (UUID id : bucket) {
+            Entry entry = entries.get(id);
+            if (entry != null && entry.world == location.getWorld()) {
+                return id;
+            }
+        }
+        return null;
+    }
+
+    private static void removeFromBucket(Map<Long, List<UUID>> buckets, long key, UUID id) {
+        List<UUID> bucket = buckets.get(key);
+        if (bucket != null) {
+            bucket.remove(id);
+            if (bucket.isEmpty()) {
+                buckets.remove(key, bucket);
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final World world;
+        private final long blockKey;
+
+        private Entry(Location location) {
+            this.world = location.getWorld();
+            this.blockKey = BlockKeyUtil.pack(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+        }
+    }
+}
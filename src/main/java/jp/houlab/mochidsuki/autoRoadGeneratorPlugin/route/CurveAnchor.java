@@ -9,6 +9,7 @@ import java.util.UUID;
 public class CurveAnchor {
     private final UUID id;
     private Location location;
+    private volatile long version = RouteVersions.next();
 
     public CurveAnchor(Location location) {
         this.id = UUID.randomUUID();
@@ -25,6 +26,15 @@ public class CurveAnchor {
 
     public void setLocation(Location location) {
         this.location = location;
+        this.version = RouteVersions.next();
+    }
+
+    /**
+     * 座標が変わるたびに更新される版番号を返します。
+     * @return 版番号
+     */
+    public long getVersion() {
+        return version;
     }
 
     @Override
@@ -0,0 +1,218 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route;
+
+import java.util.List;
+
+/**
+ * エッジの形状を表す、パラメータ t（0〜1）の曲線
+ *
+ * 各 {@link EdgeMode} の曲線は、位置と t に関する微分を返すこのインターフェースで表します。
+ * 弧長は {@link ArcLengthSampler} が微分の大きさを Gauss–Legendre 求積で積分して求め、
+ * 弧長から t への逆写像を使って等間隔に1回だけ標本化します。
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+interface EdgeCurve {
+
+    /**
+     * 指定したパラメータでの位置と微分を求めます。
+     * @param t パラメータ（0〜1）
+     * @param out 結果の格納先 {x, y, z, dx/dt, dy/dt, dz/dt}
+     */
+    void evaluate(double t, double[] out);
+
+    /**
+     * 始点と終点のY座標から、パラメータに対する高さを求めるクラス
+     * 中間点（アンカー）がある場合は二次ベジェ曲線、ない場合は線形補間です。
+     */
+    final class HeightProfile {
+        private final double startY;
+        private final double controlY;
+        private final double endY;
+        private final boolean quadratic;
+
+        private HeightProfile(double startY, double controlY, double endY, boolean quadratic) {
+            this.startY = startY;
+            this.controlY = controlY;
+            this.endY = endY;
+            this.quadratic = quadratic;
+        }
+
+        static HeightProfile linear(double startY, double endY) {
+            return new HeightProfile(startY, 0.0, endY, false);
+        }
+
+        static HeightProfile quadratic(double startY, double controlY, double endY) {
+            return new HeightProfile(startY, controlY, endY, true);
+        }
+
+        double heightAt(double t) {
+            if (quadratic) {
+                return (1 - t) * (1 - t) * startY + 2 * (1 - t) * t * controlY + t * t * endY;
+            }
+            return startY * (1 - t) + endY * t;
+        }
+
+        double slopeAt(double t) {
+            if (quadratic) {
+                return 2 * (1 - t) * (controlY - startY) + 2 * t * (endY - controlY);
+            }
+            return endY - startY;
+        }
+    }
+
+    /**
+     * 2点間の線分
+     */
+    final class Line implements EdgeCurve {
+        private final double x0, y0, z0, dx, dy, dz;
+
+        Line(double x0, double y0, double z0, double x1, double y1, double z1) {
+            this.x0 = x0;
+            this.y0 = y0;
+            this.z0 = z0;
+            this.dx = x1 - x0;
+            this.dy = y1 - y0;
+            this.dz = z1 - z0;
+        }
+
+        @Override
+        public void evaluate(double t, double[] out) {
+            out[0] = x0 + dx * t;
+            out[1] = y0 + dy * t;
+            out[2] = z0 + dz * t;
+            out[3] = dx;
+            out[4] = dy;
+            out[5] = dz;
+        }
+    }
+
+    /**
+     * XZ平面の円弧と高さの補間を組み合わせた曲線
+     */
+    final class CircularArc implements EdgeCurve {
+        private final double centerX, centerZ, radius, startAngle, angleDiff;
+        private final HeightProfile height;
+
+        CircularArc(double centerX, double centerZ, double radius, double startAngle, double angleDiff, HeightProfile height) {
+            this.centerX = centerX;
+            this.centerZ = centerZ;
+            this.radius = radius;
+            this.startAngle = startAngle;
+            this.angleDiff = angleDiff;
+            this.height = height;
+        }
+
+        @Override
+        public void evaluate(double t, double[] out) {
+            double angle = startAngle + angleDiff * t;
+            double cos = Math.cos(angle);
+            double sin = Math.sin(angle);
+            out[0] = centerX + radius * cos;
+            out[1] = height.heightAt(t);
+            out[2] = centerZ + radius * sin;
+            out[3] = -radius * sin * angleDiff;
+            out[4] = height.slopeAt(t);
+            out[5] = radius * cos * angleDiff;
+        }
+    }
+
+    /**
+     * XZ平面のクロソイド（1つまたは連続する複数）と高さの補間を組み合わせた曲線
+     * パラメータはXZ平面上の弧長の割合です。
+     */
+    final class Spiral implements EdgeCurve {
+        private final EulerSpiral[] pieces;
+        private final double[] pieceStarts;
+        private final double totalLength;
+        private final HeightProfile height;
+
+        Spiral(List<EulerSpiral> pieces, HeightProfile height) {
+            this.pieces = pieces.toArray(new EulerSpiral[0]);
+            this.pieceStarts = new double[this.pieces.length];
+            double length = 0.0;
+            for (int i = 0; i < this.pieces.length; i++) {
+                pieceStarts[i] = length;
+                length += this.pieces[i].getLength();
+            }
+            this.totalLength = length;
+            this.height = height;
+        }
+
+        @Override
+        public void evaluate(double t, double[] out) {
+            double s = t * totalLength;
+            int index = pieces.length - 1;
+            while (index > 0 && s < pieceStarts[index]) {
+                index--;
+            }
+            EulerSpiral piece = pieces[index];
+            double local = Math.max(0.0, Math.min(piece.getLength(), s - pieceStarts[index]));
+            // positionAt は out の先頭2要素に {x, z} を書き込むため、z を移してから高さを入れる
+            piece.positionAt(local, out);
+            double angle = piece.angleAt(local);
+            out[2] = out[1];
+            out[1] = height.heightAt(t);
+            out[3] = totalLength * Math.cos(angle);
+            out[4] = height.slopeAt(t);
+            out[5] = totalLength * Math.sin(angle);
+        }
+    }
+
+    /**
+     * Catmull-Romスプラインによる曲線
+     * クロソイドを当てはめられない場合の代替として使用します。
+     * アンカーがある場合は、始点〜アンカーとアンカー〜終点の2区間をXZ平面上の長さの比で連結します。
+     */
+    final class CatmullRom implements EdgeCurve {
+        private final double[] xs;
+        private final double[] zs;
+        private final double ratio;
+        private final HeightProfile height;
+
+        /**
+         * @param xs 制御点のX座標（アンカーなしは4点、ありは5点）
+         * @param zs 制御点のZ座標
+         * @param ratio 1区間目が占めるパラメータの割合（アンカーなしは1）
+         */
+        CatmullRom(double[] xs, double[] zs, double ratio, HeightProfile height) {
+            this.xs = xs;
+            this.zs = zs;
+            this.ratio = ratio;
+            this.height = height;
+        }
+
+        @Override
+        public void evaluate(double t, double[] out) {
+            int offset;
+            double local;
+            double scale;
+            if (xs.length == 4 || t < ratio || ratio >= 1.0) {
+                offset = 0;
+                scale = 1.0 / ratio;
+                local = t * scale;
+            } else {
+                offset = 1;
+                scale = 1.0 / (1.0 - ratio);
+                local = (t - ratio) * scale;
+            }
+            out[0] = value(local, xs[offset], xs[offset + 1], xs[offset + 2], xs[offset + 3]);
+            out[1] = height.heightAt(t);
+            out[2] = value(local, zs[offset], zs[offset + 1], zs[offset + 2], zs[offset + 3]);
+            out[3] = derivative(local, xs[offset], xs[offset + 1], xs[offset + 2], xs[offset + 3]) * scale;
+            out[4] = height.slopeAt(t);
+            out[5] = derivative(local, zs[offset], zs[offset + 1], zs[offset + 2], zs[offset + 3]) * scale;
+        }
+
+        private static double value(double t, double p0, double p1, double p2, double p3) {
+            double t2 = t * t;
+            double t3 = t2 * t;
+            return 0.5 * ((2 * p1) + (-p0 + p2) * t + (2 * p0 - 5 * p1 + 4 * p2 - p3) * t2 + (-p0 + 3 * p1 - 3 * p2 + p3) * t3);
+        }
+
+        private static double derivative(double t, double p0, double p1, double p2, double p3) {
+            return 0.5 * ((-p0 + p2) + 2 * (2 * p0 - 5 * p1 + 4 * p2 - p3) * t + 3 * (-p0 + 3 * p1 - 3 * p2 + p3) * t * t);
+        }
+    }
+}
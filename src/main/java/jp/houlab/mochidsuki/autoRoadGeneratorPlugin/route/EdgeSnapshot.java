@@ -0,0 +1,70 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route;
+
+import org.bukkit.Location;
+import org.bukkit.util.Vector;
+
+import javax.annotation.Nullable;
+
+/**
+ * エッジの経路計算に必要な入力を確定させた不変のスナップショット
+ *
+ * 端点とアンカーの座標、および隣接エッジから求めた両端の接線を複製して保持します。
+ * 作成後はセッションを参照しないため、{@link RouteCalculator#calculate(EdgeSnapshot, double, PathTolerance...)} は
+ * 編集中のグラフと並行して任意のスレッドで実行できます。
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class EdgeSnapshot {
+    private final RouteEdge edge;
+    private final Location start;
+    private final Location end;
+    private final Vector startTangent;
+    private final Vector endTangent;
+    private final EdgeMode edgeMode;
+    private final Location anchorLocation;
+
+    EdgeSnapshot(RouteEdge edge, Location start, Location end, Vector startTangent, Vector endTangent,
+                 EdgeMode edgeMode, @Nullable Location anchorLocation) {
+        this.edge = edge;
+        this.start = start.clone();
+        this.end = end.clone();
+        this.startTangent = startTangent.clone();
+        this.endTangent = endTangent.clone();
+        this.edgeMode = edgeMode;
+        this.anchorLocation = anchorLocation != null ? anchorLocation.clone() : null;
+    }
+
+    /** スナップショットの元になったエッジ */
+    RouteEdge getEdge() {
+        return edge;
+    }
+
+    Location getStart() {
+        return start.clone();
+    }
+
+    Location getEnd() {
+        return end.clone();
+    }
+
+    /** 始点での進行方向の接線 */
+    Vector getStartTangent() {
+        return startTangent.clone();
+    }
+
+    /** 終点での進行方向の接線 */
+    Vector getEndTangent() {
+        return endTangent.clone();
+    }
+
+    EdgeMode getEdgeMode() {
+        return edgeMode;
+    }
+
+    @Nullable
+    Location getAnchorLocation() {
+        return anchorLocation != null ? anchorLocation.clone() : null;
+    }
+}
@@ -0,0 +1,193 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route;
+
+/**
+ * XZ平面上のクロソイド（オイラー螺旋）
+ *
+ * 曲率が弧長に比例して変化する曲線で、接線角は θ(s) = θ0 + κ0·s + κ'·s²/2 です。
+ * {@link #fit} は2点とそれぞれの接線方向を満たすクロソイドを求めます（G1エルミート補間）。
+ * 位置はフレネル積分を Gauss–Legendre 求積で評価して求めます。
+ * 生成時に接線角の変化が一定以下になる間隔で区間の始点の座標を求めておき、
+ * {@link #positionAt} は最寄りの区間の始点から1区間分だけ積分するため、弧長によらず一定の手間で位置を返します。
+ *
+ * 計算方法は Bertolazzi, Frego "G1 fitting with clothoids" (2015) に基づきます。
+ * 生成後は変更されませんが、{@link #positionAt} は呼び出し側の配列に書き込むため複数スレッドから呼び出せます。
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class EulerSpiral {
+
+    private static final int MAX_NEWTON_ITERATIONS = 20;
+    private static final double NEWTON_TOLERANCE = 1e-12;
+    /** 弦長に対する曲線長の上限（これを超える解は大きく回り込むため採用しない） */
+    private static final double MAX_LENGTH_RATIO = 20.0;
+    /** 求積の1区間あたりの最大の接線角の変化（ラジアン） */
+    private static final double MAX_TURN_PER_INTERVAL = Math.PI / 8;
+
+    private static final double[] GL_NODES = {0.0, -0.5384693101056831, 0.5384693101056831, -0.9061798459386640, 0.9061798459386640};
+    private static final double[] GL_WEIGHTS = {0.5688888888888889, 0.4786286704993665, 0.4786286704993665, 0.2369268850561891, 0.2369268850561891};
+
+    private final double startAngle;
+    private final double curvature;
+    private final double curvatureRate;
+    private final double length;
+    /** 区間の長さ（区間 j は弧長 j·nodeSpacing から始まる） */
+    private final double nodeSpacing;
+    /** 各区間の始点のX座標 */
+    private final double[] nodeXs;
+    /** 各区間の始点のZ座標 */
+    private final double[] nodeZs;
+
+    private EulerSpiral(double startX, double startZ, double startAngle, double curvature, double curvatureRate, double length) {
+        this.startAngle = startAngle;
+        this.curvature = curvature;
+        this.curvatureRate = curvatureRate;
+        this.length = length;
+
+        // 曲率の絶対値は |κ0| + |κ'|·L 以下なので、これに長さを掛けた値で1区間の接線角の変化を抑える
+        double maxTurn = (Math.abs(curvature) + Math.abs(curvatureRate) * length) * length;
+        int intervals = 1 + (int) (maxTurn / MAX_TURN_PER_INTERVAL);
+        this.nodeSpacing = length / intervals;
+        this.nodeXs = new double[intervals];
+        this.nodeZs = new double[intervals];
+        double[] point = {startX, startZ};
+        for (int j = 0; j < intervals; j++) {
+            nodeXs[j] = point[0];
+            nodeZs[j] = point[1];
+            accumulate(j * nodeSpacing, (j + 1) * nodeSpacing, point);
+        }
+    }
+
+    /**
+     * 始点・終点とその接線角を満たすクロソイドを求めます。
+     * @param x0 始点のX座標
+     * @param z0 始点のZ座標
+     * @param theta0 始点の接線角（atan2(dz, dx)、ラジアン）
+     * @param x1 終点のX座標
+     * @param z1 終点のZ座標
+     * @param theta1 終点の接線角（ラジアン）
+     * @return クロソイド、求められない場合はnull
+     */
+    static EulerSpiral fit(double x0, double z0, double theta0, double x1, double z1, double theta1) {
+        double dx = x1 - x0;
+        double dz = z1 - z0;
+        double chord = Math.sqrt(dx * dx + dz * dz);
+        if (chord < 1e-9) {
+            return null;
+        }
+        double chordAngle = Math.atan2(dz, dx);
+        double phi0 = normalizeAngle(theta0 - chordAngle);
+        double phi1 = normalizeAngle(theta1 - chordAngle);
+        double delta = phi1 - phi0;
+
+        // g(A) = ∫0^1 sin(A t² + (δ - A) t + φ0) dt = 0 をニュートン法で解く
+        double a = 3.0 * (phi0 + phi1);
+        double[] integrals = new double[3];
+        boolean converged = false;
+        for (int i = 0; i < MAX_NEWTON_ITERATIONS; i++) {
+            fresnelIntegrals(a, delta - a, phi0, integrals);
+            double g = integrals[1];
+            if (Math.abs(g) < NEWTON_TOLERANCE) {
+                converged = true;
+                break;
+            }
+            double derivative = integrals[2];
+            if (Math.abs(derivative) < 1e-15) {
+                break;
+            }
+            a -= g / derivative;
+        }
+        if (!converged) {
+            fresnelIntegrals(a, delta - a, phi0, integrals);
+            if (Math.abs(integrals[1]) > 1e-9) {
+                return null;
+            }
+        }
+
+        double h = integrals[0];
+        if (h <= 1e-9) {
+            return null;
+        }
+        double length = chord / h;
+        if (length > chord * MAX_LENGTH_RATIO) {
+            return null;
+        }
+        double curvature = (delta - a) / length;
+        double curvatureRate = 2.0 * a / (length * length);
+        return new EulerSpiral(x0, z0, chordAngle + phi0, curvature, curvatureRate, length);
+    }
+
+    /** 曲線の長さ */
+    double getLength() {
+        return length;
+    }
+
+    /**
+     * 始点から弧長 s の位置での接線角（ラジアン）
+     */
+    double angleAt(double s) {
+        return startAngle + curvature * s + 0.5 * curvatureRate * s * s;
+    }
+
+    /**
+     * 始点から弧長 s の位置を求めます。
+     * @param s 弧長
+     * @param out 結果の格納先 {x, z}
+     */
+    void positionAt(double s, double[] out) {
+        int j = nodeSpacing > 0 ? Math.max(0, Math.min(nodeXs.length - 1, (int) (s / nodeSpacing))) : 0;
+        out[0] = nodeXs[j];
+        out[1] = nodeZs[j];
+        accumulate(j * nodeSpacing, s, out);
+    }
+
+    /**
+     * 弧長 [a, b] の区間で接線を積分し、out の {x, z} に加えます。
+     */
+    private void accumulate(double a, double b, double[] out) {
+        double half = 0.5 * (b - a);
+        double mid = 0.5 * (a + b);
+        for (int n = 0; n < GL_NODES.length; n++) {
+            double angle = angleAt(mid + half * GL_NODES[n]);
+            double weight = half * GL_WEIGHTS[n];
+            out[0] += weight * Math.cos(angle);
+            out[1] += weight * Math.sin(angle);
+        }
+    }
+
+    /**
+     * 一般化フレネル積分と、その A に関する微分を求めます。
+     * 位相は A t² + b t + c です。
+     * @param out {∫cos, ∫sin, ∫cos·(t² - t)}
+     */
+    private static void fresnelIntegrals(double a, double b, double c, double[] out) {
+        double turn = Math.abs(a) + Math.abs(b);
+        int intervals = 4 + (int) (turn / MAX_TURN_PER_INTERVAL);
+        double h = 1.0 / intervals;
+        double cosSum = 0.0;
+        double sinSum = 0.0;
+        double derivativeSum = 0.0;
+        for (int k = 0; k < intervals; k++) {
+            double mid = (k + 0.5) * h;
+            for (int n = 0; n < GL_NODES.length; n++) {
+                double t = mid + 0.5 * h * GL_NODES[n];
+                double weight = 0.5 * h * GL_WEIGHTS[n];
+                double phase = a * t * t + b * t + c;
+                double cos = Math.cos(phase);
+                cosSum += weight * cos;
+                sinSum += weight * Math.sin(phase);
+                derivativeSum += weight * cos * (t * t - t);
+            }
+        }
+        out[0] = cosSum;
+        out[1] = sinSum;
+        out[2] = derivativeSum;
+    }
+
+    private static double normalizeAngle(double angle) {
+        while (angle > Math.PI) angle -= 2 * Math.PI;
+        while (angle < -Math.PI) angle += 2 * Math.PI;
+        return angle;
+    }
+}
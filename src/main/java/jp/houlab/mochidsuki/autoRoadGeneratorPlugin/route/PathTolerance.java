@@ -0,0 +1,48 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route;
+
+/**
+ * 経路を標本化する際の許容誤差
+ *
+ * 点の最大間隔と、曲線と点を結んだ線分との最大のずれ（弦の誤差）で指定します。
+ * 弦の誤差が0の場合は最大間隔ちょうどの等間隔で、正の場合は曲率に応じて間隔を変え、
+ * 直線部分は最大間隔まで粗く、急なカーブほど細かく標本化します。
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class PathTolerance {
+
+    /** 建築用：0.5ブロックの等間隔 */
+    public static final PathTolerance BUILD = new PathTolerance(0.5, 0.0);
+    /** パーティクル表示用：最大2ブロック間隔、弦の誤差0.05ブロックまで */
+    public static final PathTolerance PREVIEW = new PathTolerance(2.0, 0.05);
+
+    /** 点の間隔の下限（ブロック） */
+    private static final double MIN_SPACING = 0.01;
+
+    private final double maxSpacing;
+    private final double maxChordError;
+
+    /**
+     * @param maxSpacing 点の最大間隔（ブロック、0.01以上）
+     * @param maxChordError 弦の最大誤差（ブロック）。0の場合は等間隔
+     */
+    public PathTolerance(double maxSpacing, double maxChordError) {
+        this.maxSpacing = Math.max(MIN_SPACING, maxSpacing);
+        this.maxChordError = Math.max(0.0, maxChordError);
+    }
+
+    public double getMaxSpacing() {
+        return maxSpacing;
+    }
+
+    public double getMaxChordError() {
+        return maxChordError;
+    }
+
+    /** 曲率に応じて間隔を変えるかどうか */
+    public boolean isAdaptive() {
+        return maxChordError > 0;
+    }
+}
@@ -0,0 +1,318 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 経路（折れ線）を座標ごとのプリミティブ配列で保持するクラス
+ *
+ * 点ごとに {@link Location} を生成せず、X・Y・Z・ヨー・ピッチと始点からの累積距離（弧長）を
+ * 並列の配列に格納します。{@link RouteCalculator} の出力から道路・壁・オブジェクトの計算、
+ * 表示までこの形式で受け渡し、{@link Location} は外部APIとの境界でのみ {@link #toLocation(int)}
+ * などで生成します。
+ *
+ * 点の追加は作成したスレッドだけが行います。{@link RouteEdge} や {@link RouteSession} に設定した後は
+ * 変更しないため、計算スレッドからコピーせずに参照できます。
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class PolylineBuffer {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final World world;
+    private double[] xs;
+    private double[] ys;
+    private double[] zs;
+    private float[] yaws;
+    private float[] pitches;
+    private double[] arcLengths;
+    private int size = 0;
+
+    public PolylineBuffer(World world) {
+        this(world, DEFAULT_CAPACITY);
+    }
+
+    public PolylineBuffer(World world, int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        this.world = world;
+        this.xs = new double[capacity];
+        this.ys = new double[capacity];
+        this.zs = new double[capacity];
+        this.yaws = new float[capacity];
+        this.pitches = new float[capacity];
+        this.arcLengths = new double[capacity];
+    }
+
+    /**
+     * Locationのリストから作成します。
+     */
+    public static PolylineBuffer fromLocations(List<Location> locations) {
+        World world = locations.isEmpty() ? null : locations.get(0).getWorld();
+        PolylineBuffer buffer = new PolylineBuffer(world, locations.size());
+        for (Location location : locations) {
+            buffer.add(location.getX(), location.getY(), location.getZ(), location.getYaw(), location.getPitch());
+        }
+        return buffer;
+    }
+
+    /**
+     * 先頭から指定した数の点を複製した新しい経路を返します。
+     * 弧長は再計算せずに複製するため、点を1つずつ追加するより高速です。
+     * @param length 複製する点の数
+     */
+    public PolylineBuffer copyPrefix(int length) {
+        if (length < 0 || length > size) {
+            throw new IndexOutOfBoundsException("Length " + length + " out of bounds for size " + size);
+        }
+        PolylineBuffer copy = new PolylineBuffer(world, Math.max(length, DEFAULT_CAPACITY));
+        System.arraycopy(xs, 0, copy.xs, 0, length);
+        System.arraycopy(ys, 0, copy.ys, 0, length);
+        System.arraycopy(zs, 0, copy.zs, 0, length);
+        System.arraycopy(yaws, 0, copy.yaws, 0, length);
+        System.arraycopy(pitches, 0, copy.pitches, 0, length);
+        System.arraycopy(arcLengths, 0, copy.arcLengths, 0, length);
+        copy.size = length;
+        return copy;
+    }
+
+    /**
+     * 点を末尾に追加します。
+     */
+    public void add(double x, double y, double z, float yaw, float pitch) {
+        if (size == xs.length) {
+            grow();
+        }
+        xs[size] = x;
+        ys[size] = y;
+        zs[size] = z;
+        yaws[size] = yaw;
+        pitches[size] = pitch;
+        if (size == 0) {
+            arcLengths[0] = 0.0;
+        } else {
+            double dx = x - xs[size - 1];
+            double dy = y - ys[size - 1];
+            double dz = z - zs[size - 1];
+            arcLengths[size] = arcLengths[size - 1] + Math.sqrt(dx * dx + dy * dy + dz * dz);
+        }
+        size++;
+    }
+
+    /**
+     * 向きを持たない点を末尾に追加します。
+     */
+    public void add(double x, double y, double z) {
+        add(x, y, z, 0f, 0f);
+    }
+
+    /**
+     * 別の経路の点を末尾に追加します。接続点で直前の点と完全に一致する点は追加しません。
+     */
+    public void appendAll(PolylineBuffer other) {
+        for (int i = 0; i < other.size; i++) {
+            if (i == 0 && size > 0 && isSamePoint(size - 1, other, 0)) {
+                continue;
+            }
+            add(other.xs[i], other.ys[i], other.zs[i], other.yaws[i], other.pitches[i]);
+        }
+    }
+
+    /**
+     * 指定した点のヨー角とピッチ角を設定します。
+     */
+    public void setOrientation(int index, float yaw, float pitch) {
+        checkIndex(index);
+        yaws[index] = yaw;
+        pitches[index] = pitch;
+    }
+
+    public World getWorld() {
+        return world;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public double getX(int index) {
+        checkIndex(index);
+        return xs[index];
+    }
+
+    public double getY(int index) {
+        checkIndex(index);
+        return ys[index];
+    }
+
+    public double getZ(int index) {
+        checkIndex(index);
+        return zs[index];
+    }
+
+    public float getYaw(int index) {
+        checkIndex(index);
+        return yaws[index];
+    }
+
+    public float getPitch(int index) {
+        checkIndex(index);
+        return pitches[index];
+    }
+
+    /**
+     * 始点から指定した点までの経路に沿った距離
+     */
+    public double getArcLength(int index) {
+        checkIndex(index);
+        return arcLengths[index];
+    }
+
+    /**
+     * 経路の全長
+     */
+    public double length() {
+        return size > 0 ? arcLengths[size - 1] : 0.0;
+    }
+
+    /**
+     * 指定した弧長を含む区間の始点を二分探索で求めます。
+     * @param arcLength 始点からの経路に沿った距離
+     * @param from 探索する範囲の最初の点
+     * @param to 探索する範囲の最後の点（from より大きいこと）
+     * @return getArcLength(i) &lt;= arcLength となる最大の i（from 以上 to 未満に丸める）
+     */
+    public int segmentAt(double arcLength, int from, int to) {
+        checkIndex(from);
+        checkIndex(to);
+        int low = from;
+        int high = to - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (arcLengths[mid] <= arcLength) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 2点間の直線距離
+     */
+    public double distance(int from, int to) {
+        return Math.sqrt(distanceSquared(from, to));
+    }
+
+    public double distanceSquared(int from, int to) {
+        checkIndex(from);
+        checkIndex(to);
+        double dx = xs[to] - xs[from];
+        double dy = ys[to] - ys[from];
+        double dz = zs[to] - zs[from];
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * 指定した座標と点の距離の2乗
+     */
+    public double distanceSquared(int index, double x, double y, double z) {
+        checkIndex(index);
+        double dx = xs[index] - x;
+        double dy = ys[index] - y;
+        double dz = zs[index] - z;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * 各区間の長さが maxSegmentDistance 以下になるよう、区間を線形補間で分割した新しい経路を返します。
+     * 補間した点の向きは区間の始点の向きを引き継ぎます。
+     * @param maxSegmentDistance 区間の最大長
+     * @param maxSubdivisions 1区間あたりの最大分割数
+     */
+    public PolylineBuffer subdivide(double maxSegmentDistance, int maxSubdivisions) {
+        PolylineBuffer result = new PolylineBuffer(world, Math.max(size, (int) Math.min(Integer.MAX_VALUE - 8, length() / maxSegmentDistance) + size));
+        if (size == 0) {
+            return result;
+        }
+        for (int i = 0; i < size - 1; i++) {
+            result.add(xs[i], ys[i], zs[i], yaws[i], pitches[i]);
+            double segmentDistance = distance(i, i + 1);
+            if (segmentDistance > maxSegmentDistance) {
+                int subdivisions = Math.min((int) Math.ceil(segmentDistance / maxSegmentDistance), maxSubdivisions);
+                for (int j = 1; j < subdivisions; j++) {
+                    double t = (double) j / subdivisions;
+                    result.add(xs[i] * (1 - t) + xs[i + 1] * t,
+                            ys[i] * (1 - t) + ys[i + 1] * t,
+                            zs[i] * (1 - t) + zs[i + 1] * t,
+                            yaws[i], pitches[i]);
+                }
+            }
+        }
+        result.add(xs[size - 1], ys[size - 1], zs[size - 1], yaws[size - 1], pitches[size - 1]);
+        return result;
+    }
+
+    /**
+     * 指定した点をLocationとして生成します。
+     */
+    public Location toLocation(int index) {
+        checkIndex(index);
+        return new Location(world, xs[index], ys[index], zs[index], yaws[index], pitches[index]);
+    }
+
+    /**
+     * 全ての点をLocationのリストとして生成します。
+     */
+    public List<Location> toLocations() {
+        List<Location> locations = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            locations.add(toLocation(i));
+        }
+        return locations;
+    }
+
+    /**
+     * 余分な容量を切り詰めます。長く保持する経路に対して呼び出します。
+     */
+    public void trimToSize() {
+        if (size < xs.length) {
+            resize(Math.max(1, size));
+        }
+    }
+
+    private boolean isSamePoint(int index, PolylineBuffer other, int otherIndex) {
+        return xs[index] == other.xs[otherIndex] && ys[index] == other.ys[otherIndex] && zs[index] == other.zs[otherIndex]
+                && yaws[index] == other.yaws[otherIndex] && pitches[index] == other.pitches[otherIndex];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+    }
+
+    private void grow() {
+        resize(xs.length + (xs.length >> 1) + 1);
+    }
+
+    private void resize(int capacity) {
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+        zs = Arrays.copyOf(zs, capacity);
+        yaws = Arrays.copyOf(yaws, capacity);
+        pitches = Arrays.copyOf(pitches, capacity);
+        arcLengths = Arrays.copyOf(arcLengths, capacity);
+    }
+}
@@ -5,7 +5,6 @@ import org.bukkit.util.Vector;
 
 import javax.annotation.Nullable;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
@@ -18,6 +17,9 @@ import java.util.UUID;
  * - 数値計算の精度統一
  * - Y座標補間の一貫性確保
  * - 角度計算の正規化統一
+ * - 経路を {@link PolylineBuffer} に直接出力し、点ごとの Location 生成を排除
+ * - 曲線を弧長に沿って1回だけ等間隔に標本化し、再サンプリングを排除
+ * - クロソイドをオイラー螺旋（フレネル積分）で計算
  */
 public class RouteCalculator {
 
@@ -25,83 +27,145 @@ public class RouteCalculator {
     private static final double EPSILON = 1e-6; // 数値計算の閾値を統一
     private static final double MAX_RADIUS = 1000.0; // 最大円弧半径
     private static final double MIN_RADIUS = 0.1; // 最小円弧半径
-    private static final double DEFAULT_STEP_DISTANCE = 0.5; // デフォルトの再サンプリング間隔
     private static final double MAX_ANCHOR_DISTANCE_RATIO = 3.0; // アンカーの最大距離比率（弦長の何倍まで許可）
+    private static final int LENGTH_ESTIMATE_SEGMENTS = 8; // 弧長表の区間数を決める際に曲線長を見積もる折れ線の区間数
+    private static final int MAX_TABLE_INTERVALS = 4096; // 弧長表の区間数の上限
 
     /**
-     * 2つのノード間のパスを計算します。
+     * 2つのノード間の建築用のパスを計算します。
+     * エッジモードに応じた曲線を作成し、弧長に沿って {@link PathTolerance#BUILD} の等間隔で1回だけ標本化します。
      *
      * @param edge   計算対象のエッジ
      * @param session 現在のルートセッション
-     * @param step パス上の点を生成する密度
+     * @param step 弧長表の1区間の目標の長さ（ブロック、小さいほど弧長が正確になる）
      * @param p1Override node1のLocationを一時的に上書きする場合のLocation
      * @param p2Override node2のLocationを一時的に上書きする場合のLocation
-     * @return 生成された高密度のLocationリスト
+     * @return 生成された等間隔の経路
      */
-    public List<Location> calculate(RouteEdge edge, RouteSession session, double step,
+    public PolylineBuffer calculate(RouteEdge edge, RouteSession session, double step,
                                     @Nullable Location p1Override, @Nullable Location p2Override) {
-        List<Location> path = new ArrayList<>();
+        return calculate(snapshot(edge, session, p1Override, p2Override), step, PathTolerance.BUILD)[0];
+    }
+
+    /**
+     * エッジの端点・アンカー・両端の接線を確定させたスナップショットを作成します。
+     * 接線は隣接エッジに依存するため、グラフを変更するスレッド（メインスレッド）で呼び出してください。
+     *
+     * @param edge   計算対象のエッジ
+     * @param session 現在のルートセッション
+     * @param p1Override node1のLocationを一時的に上書きする場合のLocation
+     * @param p2Override node2のLocationを一時的に上書きする場合のLocation
+     * @return 経路計算の入力
+     */
+    EdgeSnapshot snapshot(RouteEdge edge, RouteSession session,
+                          @Nullable Location p1Override, @Nullable Location p2Override) {
+        return snapshot(edge, session, p1Override, p2Override, null);
+    }
 
+    /**
+     * アンカーの位置も上書きしてスナップショットを作成します。
+     * アンカーを実際に動かさずに移動後の経路をプレビューするために使用します。
+     *
+     * @param anchorOverride エッジのアンカーのLocationを一時的に上書きする場合のLocation
+     */
+    EdgeSnapshot snapshot(RouteEdge edge, RouteSession session,
+                          @Nullable Location p1Override, @Nullable Location p2Override, @Nullable Location anchorOverride) {
         RouteNode node1 = edge.getNode1();
         RouteNode node2 = edge.getNode2();
         Location p1 = (p1Override != null) ? p1Override : node1.getLocation();
         Location p2 = (p2Override != null) ? p2Override : node2.getLocation();
-        EdgeMode edgeMode = edge.getEdgeMode();
-        CurveAnchor anchor = edge.getCurveAnchor(); // アンカーを取得
+        Location anchorLocation = (anchorOverride != null) ? anchorOverride : getAnchorLocation(edge); // アンカーを取得
 
         // 接線ベクトルを計算
         // P1における接線は、P_prev -> P1 の方向
-        Vector tangent1 = getTangentVectorForNode(node1, session, edge, p1Override, true);
+        Vector tangent1 = getTangentVectorForNode(node1, session, edge, anchorLocation, p1Override, true);
         // P2における接線は、P2 -> P_next の方向
-        Vector tangent2 = getTangentVectorForNode(node2, session, edge, p2Override, false);
+        Vector tangent2 = getTangentVectorForNode(node2, session, edge, anchorLocation, p2Override, false);
+
+        return new EdgeSnapshot(edge, p1, p2, tangent1, tangent2, edge.getEdgeMode(), anchorLocation);
+    }
+
+    @Nullable
+    private Location getAnchorLocation(RouteEdge edge) {
+        CurveAnchor anchor = edge.getCurveAnchor();
+        return (anchor != null) ? anchor.getLocation() : null;
+    }
 
-        // 始点と終点は必ずパスに含める
-        Location startPoint = p1.clone();
-        // 始点のヨー角とピッチ角を設定
-        Vector startDirection = tangent1.normalize();
+    /**
+     * スナップショットからパスを計算します。
+     * 曲線は1回だけ作成し、許容誤差ごとに標本化します（建築用と表示用を同時に求める場合など）。
+     * セッションを参照しないため、任意のスレッドから並行して呼び出せます。
+     *
+     * @param snapshot 経路計算の入力
+     * @param step 弧長表の1区間の目標の長さ（ブロック）
+     * @param tolerances 標本化の許容誤差
+     * @return 許容誤差と同じ順の経路
+     */
+    PolylineBuffer[] calculate(EdgeSnapshot snapshot, double step, PathTolerance... tolerances) {
+        Location p1 = snapshot.getStart();
+        Location p2 = snapshot.getEnd();
+        Vector tangent1 = snapshot.getStartTangent();
+        Vector tangent2 = snapshot.getEndTangent();
+
+        // 始点のヨー角とピッチ角は接続するエッジと揃えるため接線から求める
+        Vector startDirection = tangent1.clone().normalize();
         float startYaw = (float) Math.toDegrees(Math.atan2(startDirection.getZ(), startDirection.getX()));
         float startPitch = (float) Math.toDegrees(Math.asin(-startDirection.getY()));
-        startPoint.setYaw(startYaw);
-        startPoint.setPitch(startPitch);
-        path.add(startPoint);
 
+        EdgeCurve curve = createCurve(snapshot.getEdgeMode(), p1, p2, tangent1, tangent2, snapshot.getAnchorLocation());
+        int intervals = tableIntervals(curve, step);
+        PolylineBuffer[] paths = new PolylineBuffer[tolerances.length];
+        for (int i = 0; i < tolerances.length; i++) {
+            paths[i] = ArcLengthSampler.sample(curve, p1.getWorld(), intervals, tolerances[i], p1, p2, startYaw, startPitch);
+        }
+        return paths;
+    }
+
+    /**
+     * 弧長表の区間数を、曲線の長さを粗い折れ線で見積もって求めます。
+     * 区間の長さが曲線の長さによらず step 程度になるよう、長いエッジほど区間を増やします。
+     */
+    private static int tableIntervals(EdgeCurve curve, double step) {
+        double[] state = new double[6];
+        curve.evaluate(0.0, state);
+        double x = state[0];
+        double y = state[1];
+        double z = state[2];
+        double length = 0.0;
+        for (int k = 1; k <= LENGTH_ESTIMATE_SEGMENTS; k++) {
+            curve.evaluate((double) k / LENGTH_ESTIMATE_SEGMENTS, state);
+            double dx = state[0] - x;
+            double dy = state[1] - y;
+            double dz = state[2] - z;
+            length += Math.sqrt(dx * dx + dy * dy + dz * dz);
+            x = state[0];
+            y = state[1];
+            z = state[2];
+        }
+        return (int) Math.max(1, Math.min(MAX_TABLE_INTERVALS, Math.ceil(length / step)));
+    }
+
+    /**
+     * エッジモードに応じた曲線を作成します。
+     */
+    private EdgeCurve createCurve(EdgeMode edgeMode, Location p1, Location p2, Vector tangent1, Vector tangent2, @Nullable Location anchorLoc) {
         switch (edgeMode) {
-            case STRAIGHT:
-                calculateStraightWithYaw(p1, p2, step, path);
-                break;
             case ARC:
-                calculateArcWithYaw(p1, p2, tangent1, tangent2, anchor, step, path);
-                break;
+                return createArcCurve(p1, p2, tangent1, tangent2, anchorLoc);
             case CLOTHOID:
-                calculateClothoidApproximationWithYaw(p1, p2, tangent1, tangent2, anchor, step, path);
-                break;
+                return createClothoidCurve(p1, p2, tangent1, tangent2, anchorLoc);
+            case STRAIGHT:
             default:
                 // 未定義のモードの場合も線形補間
-                calculateStraightWithYaw(p1, p2, step, path);
-                break;
-        }
-        // 終点も必ずパスに含める（重複を避けるため、最後のステップで追加）
-        if (!path.get(path.size() - 1).equals(p2)) {
-            Location endPoint = p2.clone();
-            // 終点のヨー角とピッチ角を設定
-            Vector endDirection = tangent2.normalize();
-            float endYaw = (float) Math.toDegrees(Math.atan2(endDirection.getZ(), endDirection.getX()));
-            float endPitch = (float) Math.toDegrees(Math.asin(-endDirection.getY()));
-            endPoint.setYaw(endYaw);
-            endPoint.setPitch(endPitch);
-            path.add(endPoint);
+                return createLine(p1, p2);
         }
-        return resamplePath(path, DEFAULT_STEP_DISTANCE); // デフォルト間隔でパスを再サンプリング
     }
 
     /**
-     * 2つのLocation間で線形補間を行います。
+     * 2つのLocationを結ぶ線分を作成します。
      */
-    private Location lerp(Location loc1, Location loc2, double t) {
-        double x = loc1.getX() * (1 - t) + loc2.getX() * t;
-        double y = loc1.getY() * (1 - t) + loc2.getY() * t;
-        double z = loc1.getZ() * (1 - t) + loc2.getZ() * t;
-        return new Location(loc1.getWorld(), x, y, z);
+    private EdgeCurve createLine(Location p1, Location p2) {
+        return new EdgeCurve.Line(p1.getX(), p1.getY(), p1.getZ(), p2.getX(), p2.getY(), p2.getZ());
     }
 
     /**
@@ -111,16 +175,18 @@ public class RouteCalculator {
      * @param node 計算対象のノード
      * @param session 現在のルートセッション
      * @param currentEdge 現在計算中のエッジ
+     * @param currentAnchorLocation 現在計算中のエッジのアンカーのLocation
      * @param overrideLocation ノードのLocationを一時的に上書きする場合のLocation
      * @param isStartNodeOfCurrentEdge nodeがcurrentEdgeの始点であるか (true) 終点であるか (false)
      * @return 計算された接線ベクトル
      */
-    private Vector getTangentVectorForNode(RouteNode node, RouteSession session, RouteEdge currentEdge, @Nullable Location overrideLocation, boolean isStartNodeOfCurrentEdge) {
+    private Vector getTangentVectorForNode(RouteNode node, RouteSession session, RouteEdge currentEdge, @Nullable Location currentAnchorLocation,
+                                           @Nullable Location overrideLocation, boolean isStartNodeOfCurrentEdge) {
         Location actualNodeLocation = (overrideLocation != null) ? overrideLocation : node.getLocation();
 
         // ちょうど2つのエッジが接続している場合、滑らかな接続のための角度修正を適用
         if (session.hasExactlyTwoConnectedEdges(node)) {
-            Vector smoothTangent = calculateSmoothTangentForTwoEdgeNode(node, session, currentEdge, actualNodeLocation, isStartNodeOfCurrentEdge);
+            Vector smoothTangent = calculateSmoothTangentForTwoEdgeNode(node, session, currentEdge, currentAnchorLocation, actualNodeLocation, isStartNodeOfCurrentEdge);
             if (smoothTangent != null) {
                 return smoothTangent;
             }
@@ -128,7 +194,7 @@ public class RouteCalculator {
 
         // 通常の場合またはスムーズな接線計算が失敗した場合
         // エッジタイプに基づいた正確な接線ベクトルを計算
-        return calculateAccurateTangentFromEdgeEquation(currentEdge, actualNodeLocation, isStartNodeOfCurrentEdge);
+        return calculateAccurateTangentFromEdgeEquation(currentEdge, currentAnchorLocation, actualNodeLocation, isStartNodeOfCurrentEdge);
     }
 
     /**
@@ -138,11 +204,13 @@ public class RouteCalculator {
      * @param node 2つのエッジが接続するノード
      * @param session 現在のルートセッション
      * @param currentEdge 現在計算中のエッジ
+     * @param currentAnchorLocation 現在計算中のエッジのアンカーのLocation
      * @param nodeLocation ノードの位置
      * @param isStartNodeOfCurrentEdge nodeがcurrentEdgeの始点であるかどうか
      * @return 計算された滑らかな接線ベクトル、計算できない場合はnull
      */
-    private Vector calculateSmoothTangentForTwoEdgeNode(RouteNode node, RouteSession session, RouteEdge currentEdge, Location nodeLocation, boolean isStartNodeOfCurrentEdge) {
+    private Vector calculateSmoothTangentForTwoEdgeNode(RouteNode node, RouteSession session, RouteEdge currentEdge, @Nullable Location currentAnchorLocation,
+                                                        Location nodeLocation, boolean isStartNodeOfCurrentEdge) {
         List<RouteEdge> connectedEdges = session.getEdgesConnectedToNode(node);
         if (connectedEdges.size() != 2) {
             return null;
@@ -165,10 +233,10 @@ public class RouteCalculator {
         if (isStartNodeOfCurrentEdge) {
             // 現在のエッジが始点の場合、前のエッジ（otherEdge）の終点での接線を直接使用
             boolean isOtherEdgeStartAtNode = otherEdge.getNode1().equals(node);
-            return calculateAccurateTangentFromEdgeEquation(otherEdge, nodeLocation, isOtherEdgeStartAtNode);
+            return calculateAccurateTangentFromEdgeEquation(otherEdge, getAnchorLocation(otherEdge), nodeLocation, isOtherEdgeStartAtNode);
         } else {
             // 現在のエッジが終点の場合、現在のエッジの終点での接線を使用
-            return calculateAccurateTangentFromEdgeEquation(currentEdge, nodeLocation, isStartNodeOfCurrentEdge);
+            return calculateAccurateTangentFromEdgeEquation(currentEdge, currentAnchorLocation, nodeLocation, isStartNodeOfCurrentEdge);
         }
     }
 
@@ -177,15 +245,15 @@ public class RouteCalculator {
      * 各エッジタイプ（STRAIGHT, ARC, CLOTHOID）の数学的方程式から導出された接線を使用します。
      *
      * @param edge 対象エッジ
+     * @param anchor エッジのアンカーのLocation
      * @param nodeLocation ノードの位置
      * @param isStartNode ノードがエッジの始点かどうか
      * @return 計算された正確な接線ベクトル
      */
-    private Vector calculateAccurateTangentFromEdgeEquation(RouteEdge edge, Location nodeLocation, boolean isStartNode) {
+    private Vector calculateAccurateTangentFromEdgeEquation(RouteEdge edge, @Nullable Location anchor, Location nodeLocation, boolean isStartNode) {
         Location p1 = edge.getNode1().getLocation();
         Location p2 = edge.getNode2().getLocation();
         EdgeMode edgeMode = edge.getEdgeMode();
-        CurveAnchor anchor = edge.getCurveAnchor();
 
         switch (edgeMode) {
             case STRAIGHT:
@@ -209,9 +277,9 @@ public class RouteCalculator {
 
     /**
      * 円弧エッジの正確な接線ベクトルを計算します。
-     * 円弧上の微小な点差分を使用して接線を計算します。
+     * 3点を通る円の中心からノードへの半径に垂直な方向を、円弧の進む向きに合わせて返します（差分による近似は使いません）。
      */
-    private Vector calculateArcTangentAccurate(Location p1, Location p2, @Nullable CurveAnchor anchor, boolean isStartNode) {
+    private Vector calculateArcTangentAccurate(Location p1, Location p2, @Nullable Location anchor, boolean isStartNode) {
         if (anchor == null) {
             // アンカーがない場合は直線として扱う
             return calculateStraightTangentAccurate(p1, p2, isStartNode);
@@ -219,7 +287,7 @@ public class RouteCalculator {
 
         Vector p1_xz = new Vector(p1.getX(), 0, p1.getZ());
         Vector p2_xz = new Vector(p2.getX(), 0, p2.getZ());
-        Vector anchor_xz = new Vector(anchor.getLocation().getX(), 0, anchor.getLocation().getZ());
+        Vector anchor_xz = new Vector(anchor.getX(), 0, anchor.getZ());
 
         CircleData circleData = getCircleFromThreePoints(p1_xz, p2_xz, anchor_xz);
         if (circleData == null || circleData.radius > MAX_RADIUS || circleData.radius < MIN_RADIUS) {
@@ -271,10 +339,12 @@ public class RouteCalculator {
     }
 
     /**
-     * クロソイドエッジの正確な接線ベクトルを計算します。
-     * Catmull-Romスプラインの方程式から導出された接線を使用します。
+     * クロソイドエッジの接線ベクトルを計算します。
+     * クロソイドは両端の接線を与えて当てはめる（{@link EulerSpiral#fit} のG1エルミート補間）ため、
+     * 端点の接線は曲線から導くのではなく、隣接エッジと揃える入力として決まります。
+     * ここでは曲線を作らずに決まる方向として、アンカーがある場合はノードとアンカーを結ぶ方向、ない場合は弦の方向を返します。
      */
-    private Vector calculateClothoidTangentAccurate(Location p1, Location p2, @Nullable CurveAnchor anchor, boolean isStartNode) {
+    private Vector calculateClothoidTangentAccurate(Location p1, Location p2, @Nullable Location anchor, boolean isStartNode) {
         return calculateTangentFromPoints(p1, p2, anchor, isStartNode);
     }
 
@@ -282,7 +352,7 @@ public class RouteCalculator {
      * 3点から接線ベクトルを計算する共通メソッド。
      * パフォーマンス最適化：Vector計算を再利用。
      */
-    private Vector calculateTangentFromPoints(Location p1, Location p2, @Nullable CurveAnchor anchor, boolean isStartNode) {
+    private Vector calculateTangentFromPoints(Location p1, Location p2, @Nullable Location anchor, boolean isStartNode) {
         Vector p1Vec = p1.toVector();
         Vector p2Vec = p2.toVector();
         Vector chordVec = p2Vec.subtract(p1Vec);
@@ -293,7 +363,7 @@ public class RouteCalculator {
         }
 
         if (anchor != null) {
-            Vector anchorVec = anchor.getLocation().toVector();
+            Vector anchorVec = anchor.toVector();
             Vector tangent = isStartNode ?
                 anchorVec.subtract(p1Vec) :
                 p2Vec.subtract(anchorVec);
@@ -304,31 +374,20 @@ public class RouteCalculator {
     }
 
     /**
-     * 2つのノード間に円弧を計算します。
-     * 始点、終点、およびアンカーの3点を通る3D円弧を生成します。
-     * この実装では、隣接するエッジとの微分可能性を保証します。
+     * 2つのノード間の円弧を作成します。
+     * 始点、終点、およびアンカーの3点を通る円弧を生成します。
+     * アンカーがない場合は、始点の接線に接する円弧を生成します。
+     * 円弧を作れない場合は線分を返します。
      */
-    private void calculateArc(Location p1, Location p2, Vector tangent1, Vector tangent2, @Nullable CurveAnchor anchor, double step, List<Location> path) {
-        Location anchorLoc = (anchor != null) ? anchor.getLocation() : null;
-
+    private EdgeCurve createArcCurve(Location p1, Location p2, Vector tangent1, Vector tangent2, @Nullable Location anchorLoc) {
         // 3点が与えられた場合、それらを通る円を計算
         if (anchorLoc != null) {
             // 3点が一直線上にあるかチェック
             if (isCollinear(p1, p2, anchorLoc)) {
-                // 直線として補間
-                for (double t = step; t < 1.0; t += step) {
-                    path.add(lerp(p1, p2, t));
-                }
-                return;
+                return createLine(p1, p2);
             }
 
-            // 3点を通る円の中心と半径を計算 (3D)
-            // この計算は複雑なので、ここでは簡略化された2D円弧のY軸補間を維持しつつ、
-            // XZ平面での円弧を3点を通るように調整する。
-            // 厳密な3D円は、3点から平面を決定し、その平面上で円を求める必要がある。
-            // ここでは、XZ平面での円弧とY軸の二次ベジェ補間を組み合わせる。
-
-            // XZ平面での円の中心と半径を求める
+            // XZ平面での円弧とY軸の二次ベジェ補間を組み合わせる。
             Vector p1_xz = new Vector(p1.getX(), 0, p1.getZ());
             Vector p2_xz = new Vector(p2.getX(), 0, p2.getZ());
             Vector anchor_xz = new Vector(anchorLoc.getX(), 0, anchorLoc.getZ());
@@ -337,14 +396,10 @@ public class RouteCalculator {
             CircleData circleData = getCircleFromThreePoints(p1_xz, p2_xz, anchor_xz);
 
             if (circleData == null || circleData.radius > MAX_RADIUS || circleData.radius < MIN_RADIUS || !isValidAnchor(p1, p2, anchorLoc)) { // 円が計算できない、または異常な場合、またはアンカーが無効な場合
-                for (double t = step; t < 1.0; t += step) {
-                    path.add(lerp(p1, p2, t));
-                }
-                return;
+                return createLine(p1, p2);
             }
 
             Vector center_xz = circleData.center;
-            double radius = circleData.radius;
 
             // 開始角度と終了角度を計算
             double startAngle = Math.atan2(p1_xz.getZ() - center_xz.getZ(), p1_xz.getX() - center_xz.getX());
@@ -352,8 +407,7 @@ public class RouteCalculator {
             double anchorAngle = Math.atan2(anchor_xz.getZ() - center_xz.getZ(), anchor_xz.getX() - center_xz.getX());
 
             // 角度の差を計算し、アンカーを通るように調整
-            double angleDiff = endAngle - startAngle;
-            angleDiff = normalizeAngle(angleDiff);
+            double angleDiff = normalizeAngle(endAngle - startAngle);
 
             // アンカー経由の円弧方向を決定
             // 外積による位置判定も考慮
@@ -370,155 +424,134 @@ public class RouteCalculator {
                 angleDiff = normalizeAngle(angleDiff + ((angleDiff > 0) ? -2 * Math.PI : 2 * Math.PI));
             }
 
-            // 曲率に基づく適応的サンプリング
-            double arcLength = Math.abs(angleDiff) * radius;
-            double adaptiveStep = Math.max(step, 0.2 / radius); // 半径が小さいほど密度を高く
-            int numSteps = Math.max(1, (int) Math.ceil(arcLength / (adaptiveStep * arcLength)));
+            return new EdgeCurve.CircularArc(center_xz.getX(), center_xz.getZ(), circleData.radius, startAngle, angleDiff,
+                    EdgeCurve.HeightProfile.quadratic(p1.getY(), anchorLoc.getY(), p2.getY()));
+        }
 
-            for (int i = 1; i < numSteps; i++) {
-                double t = (double) i / numSteps;
-                double currentAngle = startAngle + angleDiff * t;
-                double x = center_xz.getX() + radius * Math.cos(currentAngle);
-                double z = center_xz.getZ() + radius * Math.sin(currentAngle);
+        // アンカーがない場合、接線ベースの円弧計算
+        Vector tan1_xz = new Vector(tangent1.getX(), 0, tangent1.getZ()).normalize();
+        Vector tan2_xz = new Vector(tangent2.getX(), 0, tangent2.getZ()).normalize();
 
-                // Y座標は統一された補間方式を使用
-                double y = interpolateY(p1, p2, anchorLoc, t);
-                path.add(new Location(p1.getWorld(), x, y, z));
-            }
+        Vector p1_xz = new Vector(p1.getX(), 0, p1.getZ());
+        Vector p2_xz = new Vector(p2.getX(), 0, p2.getZ());
 
-        } else { // アンカーがない場合、接線ベースの円弧計算 (旧ロジックを簡略化)
+        Vector normal1_xz = new Vector(-tan1_xz.getZ(), 0, tan1_xz.getX());
+        Vector normal2_xz = new Vector(-tan2_xz.getZ(), 0, tan2_xz.getX());
 
-            Vector tan1_xz = new Vector(tangent1.getX(), 0, tangent1.getZ()).normalize();
-            Vector tan2_xz = new Vector(tangent2.getX(), 0, tangent2.getZ()).normalize();
+        double det = normal1_xz.getX() * normal2_xz.getZ() - normal1_xz.getZ() * normal2_xz.getX();
 
-            Vector p1_xz = new Vector(p1.getX(), 0, p1.getZ());
-            Vector p2_xz = new Vector(p2.getX(), 0, p2.getZ());
+        if (Math.abs(det) < EPSILON) { // 法線が平行 (接線も平行) -> 直線
+            return createLine(p1, p2);
+        }
 
-            Vector normal1_xz = new Vector(-tan1_xz.getZ(), 0, tan1_xz.getX());
-            Vector normal2_xz = new Vector(-tan2_xz.getZ(), 0, tan2_xz.getX());
+        double s = ( (p2_xz.getX() - p1_xz.getX()) * normal2_xz.getZ() - (p2_xz.getZ() - p1_xz.getZ()) * normal2_xz.getX() ) / det;
 
-            double det = normal1_xz.getX() * normal2_xz.getZ() - normal1_xz.getZ() * normal2_xz.getX();
+        Vector center_xz = p1_xz.clone().add(normal1_xz.multiply(s));
+        double radius = center_xz.distance(p1_xz);
 
-            if (Math.abs(det) < EPSILON) { // 法線が平行 (接線も平行) -> 直線
-                for (double t = step; t < 1.0; t += step) {
-                    path.add(lerp(p1, p2, t));
-                }
-                return;
-            }
+        if (radius > MAX_RADIUS || radius < MIN_RADIUS) { // 半径が異常に大きい、または小さい場合も直線として扱う
+            return createLine(p1, p2);
+        }
 
-            double s = ( (p2_xz.getX() - p1_xz.getX()) * normal2_xz.getZ() - (p2_xz.getZ() - p1_xz.getZ()) * normal2_xz.getX() ) / det;
+        double startAngle = Math.atan2(p1_xz.getZ() - center_xz.getZ(), p1_xz.getX() - center_xz.getX());
+        double endAngle = Math.atan2(p2_xz.getZ() - center_xz.getZ(), p2_xz.getX() - center_xz.getX());
 
-            Vector center_xz = p1_xz.clone().add(normal1_xz.multiply(s));
-            double radius = center_xz.distance(p1_xz);
+        Vector p1ToCenter_xz = center_xz.clone().subtract(p1_xz);
+        Vector p1ArcDirection_xz = new Vector(-p1ToCenter_xz.getZ(), 0, p1ToCenter_xz.getX()).normalize();
 
-            if (radius > MAX_RADIUS || radius < MIN_RADIUS) { // 半径が異常に大きい、または小さい場合も直線として扱う
-                for (double t = step; t < 1.0; t += step) {
-                    path.add(lerp(p1, p2, t));
-                }
-                return;
-            }
+        double angleDiff = endAngle - startAngle;
 
-            double startAngle = Math.atan2(p1_xz.getZ() - center_xz.getZ(), p1_xz.getX() - center_xz.getX());
-            double endAngle = Math.atan2(p2_xz.getZ() - center_xz.getZ(), p2_xz.getX() - center_xz.getX());
+        if (tan1_xz.dot(p1ArcDirection_xz) < 0) {
+            if (angleDiff > 0) angleDiff -= 2 * Math.PI;
+            else if (angleDiff < 0) angleDiff += 2 * Math.PI;
+        }
 
-            Vector p1ToCenter_xz = center_xz.clone().subtract(p1_xz);
-            Vector p1ArcDirection_xz = new Vector(-p1ToCenter_xz.getZ(), 0, p1ToCenter_xz.getX()).normalize();
+        return new EdgeCurve.CircularArc(center_xz.getX(), center_xz.getZ(), radius, startAngle, angleDiff,
+                EdgeCurve.HeightProfile.linear(p1.getY(), p2.getY()));
+    }
 
-            double angleDiff = endAngle - startAngle;
+    /**
+     * 2つのノード間のクロソイド曲線を作成します。
+     * 始点と終点の接線方向を満たすクロソイドを当てはめます。
+     * アンカーが存在する場合は、アンカーで弦と平行な向きになる2つのクロソイドを連結し、
+     * アンカーのY座標を曲線の高さに反映させます。
+     * クロソイドを当てはめられない場合はCatmull-Romスプラインで近似します。
+     */
+    private EdgeCurve createClothoidCurve(Location p1, Location p2, Vector tangent1, Vector tangent2, @Nullable Location anchorLoc) {
+        double chordLength = p2.toVector().subtract(p1.toVector()).length();
 
-            if (tan1_xz.dot(p1ArcDirection_xz) < 0) { 
-                if (angleDiff > 0) angleDiff -= 2 * Math.PI; 
-                else if (angleDiff < 0) angleDiff += 2 * Math.PI; 
-            }
+        if (chordLength < 0.1) { // ノードが近すぎる場合、直線として扱う
+            return createLine(p1, p2);
+        }
+
+        double chordAngle = Math.atan2(p2.getZ() - p1.getZ(), p2.getX() - p1.getX());
+        double startAngle = tangentAngleXZ(tangent1, chordAngle);
+        double endAngle = tangentAngleXZ(tangent2, chordAngle);
 
-            // 曲率に基づく適応的サンプリング
-            double arcLength = Math.abs(angleDiff) * radius;
-            double adaptiveStep = Math.max(step, 0.2 / radius); // 半径が小さいほど密度を高く
-            int numSteps = Math.max(1, (int) Math.ceil(arcLength / (adaptiveStep * arcLength)));
-
-            for (int i = 1; i < numSteps; i++) {
-                double t = (double) i / numSteps;
-                double currentAngle = startAngle + angleDiff * t;
-                double x = center_xz.getX() + radius * Math.cos(currentAngle);
-                double z = center_xz.getZ() + radius * Math.sin(currentAngle);
-                double y = interpolateY(p1, p2, null, t); // Y座標は統一された補間方式を使用
-                path.add(new Location(p1.getWorld(), x, y, z));
+        if (anchorLoc != null) {
+            EulerSpiral first = EulerSpiral.fit(p1.getX(), p1.getZ(), startAngle, anchorLoc.getX(), anchorLoc.getZ(), chordAngle);
+            EulerSpiral second = EulerSpiral.fit(anchorLoc.getX(), anchorLoc.getZ(), chordAngle, p2.getX(), p2.getZ(), endAngle);
+            if (first != null && second != null) {
+                return new EdgeCurve.Spiral(List.of(first, second), EdgeCurve.HeightProfile.quadratic(p1.getY(), anchorLoc.getY(), p2.getY()));
+            }
+        } else {
+            EulerSpiral spiral = EulerSpiral.fit(p1.getX(), p1.getZ(), startAngle, p2.getX(), p2.getZ(), endAngle);
+            if (spiral != null) {
+                return new EdgeCurve.Spiral(List.of(spiral), EdgeCurve.HeightProfile.linear(p1.getY(), p2.getY()));
             }
         }
+        return createCatmullRomCurve(p1, p2, tangent1, tangent2, anchorLoc, chordLength);
     }
 
     /**
-     * 2つのノード間にクロソイド曲線の近似を計算します。
-     * 接線ベクトルを考慮してベジェ曲線を生成します。
-     * アンカーが存在する場合、そのY座標を曲線の高さに反映させます。
+     * 接線ベクトルのXZ平面上の角度を求めます。水平成分がない場合は代わりの角度を返します。
      */
-    private void calculateClothoidApproximation(Location p1, Location p2, Vector tangent1, Vector tangent2, @Nullable CurveAnchor anchor, double step, List<Location> path) {
-        Vector p1Vec = p1.toVector();
-        Vector p2Vec = p2.toVector();
-
-        double chordLength = p2Vec.clone().subtract(p1Vec).length();
-
-        if (chordLength < 0.1) { // ノードが近すぎる場合、直線として扱う
-            for (double t = step; t < 1.0; t += step) {
-                path.add(lerp(p1, p2, t));
-            }
-            return;
+    private double tangentAngleXZ(Vector tangent, double fallbackAngle) {
+        if (tangent.getX() * tangent.getX() + tangent.getZ() * tangent.getZ() < EPSILON * EPSILON) {
+            return fallbackAngle;
         }
+        return Math.atan2(tangent.getZ(), tangent.getX());
+    }
 
+    /**
+     * Catmull-Romスプラインでクロソイドを近似した曲線を作成します。
+     * 接線ベクトルから仮想的な制御点を置いて、始点と終点の向きを揃えます。
+     */
+    private EdgeCurve createCatmullRomCurve(Location p1, Location p2, Vector tangent1, Vector tangent2, @Nullable Location anchorLoc, double chordLength) {
         // Define virtual points for Catmull-Rom spline in XZ plane
         // These points help define the tangents at p1 and p2
-        Location p_prev_xz = p1.clone().subtract(new Vector(tangent1.getX(), 0, tangent1.getZ()).normalize().multiply(TANGENT_LENGTH_FACTOR * chordLength));
-        Location p_next_xz = p2.clone().add(new Vector(tangent2.getX(), 0, tangent2.getZ()).normalize().multiply(TANGENT_LENGTH_FACTOR * chordLength));
+        Vector prevOffset = new Vector(tangent1.getX(), 0, tangent1.getZ()).normalize().multiply(TANGENT_LENGTH_FACTOR * chordLength);
+        Vector nextOffset = new Vector(tangent2.getX(), 0, tangent2.getZ()).normalize().multiply(TANGENT_LENGTH_FACTOR * chordLength);
+        double prevX = p1.getX() - prevOffset.getX();
+        double prevZ = p1.getZ() - prevOffset.getZ();
+        double nextX = p2.getX() + nextOffset.getX();
+        double nextZ = p2.getZ() + nextOffset.getZ();
+
+        if (anchorLoc == null) {
+            // Control points: p_prev_xz, p1_xz, p2_xz, p_next_xz
+            return new EdgeCurve.CatmullRom(
+                    new double[]{prevX, p1.getX(), p2.getX(), nextX},
+                    new double[]{prevZ, p1.getZ(), p2.getZ(), nextZ},
+                    1.0, EdgeCurve.HeightProfile.linear(p1.getY(), p2.getY()));
+        }
 
-        if (anchor != null) {
-            // Use two Catmull-Rom segments for XZ: p1-anchor and anchor-p2
-            // Control points: p_prev_xz, p1_xz, anchor_xz, p2_xz
-            Location anchorLoc = anchor.getLocation();
-            Location p1_xz = new Location(p1.getWorld(), p1.getX(), 0, p1.getZ());
-            Location p2_xz = new Location(p2.getWorld(), p2.getX(), 0, p2.getZ());
-            Location anchor_xz = new Location(anchorLoc.getWorld(), anchorLoc.getX(), 0, anchorLoc.getZ());
-
-            double segment1Length = p1_xz.distance(anchor_xz);
-            double segment2Length = anchor_xz.distance(p2_xz);
-            double totalSegmentLength = segment1Length + segment2Length;
-
-            if (totalSegmentLength < 1e-6) { // Avoid division by zero or very small length
-                for (double t = step; t < 1.0; t += step) {
-                    path.add(lerp(p1, p2, t));
-                }
-                return;
-            }
+        // Use two Catmull-Rom segments for XZ: p1-anchor and anchor-p2
+        double anchorX = anchorLoc.getX();
+        double anchorZ = anchorLoc.getZ();
 
-            double ratio = segment1Length / totalSegmentLength; // Proportion of the first segment
-
-            for (double t = step; t < 1.0; t += step) {
-                Location currentPoint;
-                double currentY;
-                if (t < ratio) { // First segment
-                    double t_segment = t / ratio; // Normalize t for the first segment (0 to 1)
-                    currentPoint = getPointOnCatmullRomSpline(t_segment, p_prev_xz, p1_xz, anchor_xz, p2_xz);
-                } else { // Second segment
-                    double t_segment = (t - ratio) / (1.0 - ratio); // Normalize t for the second segment (0 to 1)
-                    currentPoint = getPointOnCatmullRomSpline(t_segment, p1_xz, anchor_xz, p2_xz, p_next_xz);
-                }
-
-                // Y座標は統一された補間方式を使用
-                currentY = interpolateY(p1, p2, anchorLoc, t);
-                path.add(new Location(p1.getWorld(), currentPoint.getX(), currentY, currentPoint.getZ()));
-            }
+        double segment1Length = Math.sqrt((anchorX - p1.getX()) * (anchorX - p1.getX()) + (anchorZ - p1.getZ()) * (anchorZ - p1.getZ()));
+        double segment2Length = Math.sqrt((p2.getX() - anchorX) * (p2.getX() - anchorX) + (p2.getZ() - anchorZ) * (p2.getZ() - anchorZ));
+        double totalSegmentLength = segment1Length + segment2Length;
 
-        } else {
-            // Fallback to a single Catmull-Rom segment if no anchor
-            // Control points: p_prev_xz, p1_xz, p2_xz, p_next_xz
-            Location p1_xz = new Location(p1.getWorld(), p1.getX(), 0, p1.getZ());
-            Location p2_xz = new Location(p2.getWorld(),p2.getX(), 0, p2.getZ());
-
-            for (double t = step; t < 1.0; t += step) {
-                Location currentPoint = getPointOnCatmullRomSpline(t, p_prev_xz, p1_xz, p2_xz, p_next_xz);
-                double y = interpolateY(p1, p2, null, t); // Y座標は統一された補間方式を使用
-                path.add(new Location(p1.getWorld(), currentPoint.getX(), y, currentPoint.getZ()));
-            }
+        if (totalSegmentLength < 1e-6) { // Avoid division by zero or very small length
+            return createLine(p1, p2);
         }
+
+        return new EdgeCurve.CatmullRom(
+                new double[]{prevX, p1.getX(), anchorX, p2.getX(), nextX},
+                new double[]{prevZ, p1.getZ(), anchorZ, p2.getZ(), nextZ},
+                segment1Length / totalSegmentLength, // Proportion of the first segment
+                EdgeCurve.HeightProfile.quadratic(p1.getY(), anchorLoc.getY(), p2.getY()));
     }
 
     // ヘルパークラスとメソッド
@@ -628,22 +661,6 @@ public class RouteCalculator {
         return crossProduct > 0;
     }
 
-    /**
-     * Y座標の統一補間方式。
-     * アンカーが存在する場合は二次ベジェ曲線、ない場合は線形補間。
-     */
-    private double interpolateY(Location p1, Location p2, Location anchor, double t) {
-        if (anchor != null) {
-            // 二次ベジェ曲線補間
-            return (1 - t) * (1 - t) * p1.getY() +
-                   2 * (1 - t) * t * anchor.getY() +
-                   t * t * p2.getY();
-        } else {
-            // 線形補間
-            return p1.getY() * (1 - t) + p2.getY() * t;
-        }
-    }
-
     /**
      * アンカーが有効かどうかチェックします。
      * 距離比率チェックを追加して、離れすぎたアンカーによる異常な円弧を防ぐ。
@@ -710,166 +727,4 @@ public class RouteCalculator {
         // 垂直距離が弦長の半分以下であることを確認（極端に離れた位置を避ける）
         return perpendicularDistance <= chordLength * 0.5;
     }
-
-    /**
-     * 角度の循環補間を行います（-180°〜180°の範囲で）。
-     * 360度境界を正しく処理します。
-     */
-    private float interpolateAngle(float angle1, float angle2, float t) {
-        // 角度を-180〜180の範囲に正規化
-        angle1 = normalizeAngleDegrees(angle1);
-        angle2 = normalizeAngleDegrees(angle2);
-
-        float difference = angle2 - angle1;
-
-        // 最短経路を選択
-        if (difference > 180) {
-            difference -= 360;
-        } else if (difference < -180) {
-            difference += 360;
-        }
-
-        float result = angle1 + difference * t;
-        return normalizeAngleDegrees(result);
-    }
-
-    /**
-     * 角度を-180°〜180°の範囲に正規化します。
-     */
-    private float normalizeAngleDegrees(float angle) {
-        while (angle > 180) angle -= 360;
-        while (angle < -180) angle += 360;
-        return angle;
-    }
-
-    /**
-     * Catmull-Romスプラインの公式に基づいて、特定の位置(t)の座標を計算します。
-     * Y軸は直線補間を使用します。
-     */
-    private Location getPointOnCatmullRomSpline(double t, Location p0, Location p1, Location p2, Location p3) {
-        // Catmull-Rom spline formula
-        double t2 = t * t;
-        double t3 = t2 * t;
-
-        double x = 0.5 * ((2 * p1.getX()) + (-p0.getX() + p2.getX()) * t + (2 * p0.getX() - 5 * p1.getX() + 4 * p2.getX() - p3.getX()) * t2 + (-p0.getX() + 3 * p1.getX() - 3 * p2.getX() + p3.getX()) * t3);
-        double y = 0.5 * ((2 * p1.getY()) + (-p0.getY() + p2.getY()) * t + (2 * p0.getY() - 5 * p1.getY() + 4 * p2.getY() - p3.getY()) * t2 + (-p0.getY() + 3 * p1.getY() - 3 * p2.getY() + p3.getY()) * t3);
-        double z = 0.5 * ((2 * p1.getZ()) + (-p0.getZ() + p2.getZ()) * t + (2 * p0.getZ() - 5 * p1.getZ() + 4 * p2.getZ() - p3.getZ()) * t2 + (-p0.getZ() + 3 * p1.getZ() - 3 * p2.getZ() + p3.getZ()) * t3);
-
-        return new Location(p1.getWorld(), x, y, z);
-    }
-
-    /**
-     * 直線でヨー角とピッチ角付きの点を計算します。
-     */
-    private void calculateStraightWithYaw(Location p1, Location p2, double step, List<Location> path) {
-        Vector direction = p2.toVector().subtract(p1.toVector()).normalize();
-        float yaw = (float) Math.toDegrees(Math.atan2(direction.getZ(), direction.getX()));
-        float pitch = (float) Math.toDegrees(Math.asin(-direction.getY()));
-
-        for (double t = step; t < 1.0; t += step) {
-            Location interpolated = lerp(p1, p2, t);
-            interpolated.setYaw(yaw);
-            interpolated.setPitch(pitch);
-            path.add(interpolated);
-        }
-    }
-
-    /**
-     * 円弧でヨー角とピッチ角付きの点を計算します。
-     */
-    private void calculateArcWithYaw(Location p1, Location p2, Vector tangent1, Vector tangent2, @Nullable CurveAnchor anchor, double step, List<Location> path) {
-        // 元のcalculateArcロジックを使用しつつ、各点でヨー角とピッチ角を計算
-        calculateArc(p1, p2, tangent1, tangent2, anchor, step, path);
-        applyYawAndPitchToPath(path, tangent1);
-    }
-
-    /**
-     * クロソイドでヨー角とピッチ角付きの点を計算します。
-     */
-    private void calculateClothoidApproximationWithYaw(Location p1, Location p2, Vector tangent1, Vector tangent2, @Nullable CurveAnchor anchor, double step, List<Location> path) {
-        // 元のcalculateClothoidApproximationロジックを使用しつつ、各点でヨー角とピッチ角を計算
-        calculateClothoidApproximation(p1, p2, tangent1, tangent2, anchor, step, path);
-        applyYawAndPitchToPath(path, tangent1);
-    }
-
-    /**
-     * パスの各点にヨー角とピッチ角を設定します（重複コードを統合）。
-     */
-    private void applyYawAndPitchToPath(List<Location> path, Vector firstTangent) {
-        // 生成された各点にヨー角とピッチ角を設定
-        for (int i = 1; i < path.size(); i++) {
-            Location current = path.get(i);
-            Location previous = path.get(i - 1);
-
-            Vector tangent = current.toVector().subtract(previous.toVector()).normalize();
-            float yaw = (float) Math.toDegrees(Math.atan2(tangent.getZ(), tangent.getX()));
-            float pitch = (float) Math.toDegrees(Math.asin(-tangent.getY()));
-            current.setYaw(yaw);
-            current.setPitch(pitch);
-        }
-
-        // 最初の点のヨー角とピッチ角も設定
-        if (path.size() > 1) {
-            Vector normalizedFirstTangent = firstTangent.normalize();
-            float firstYaw = (float) Math.toDegrees(Math.atan2(normalizedFirstTangent.getZ(), normalizedFirstTangent.getX()));
-            float firstPitch = (float) Math.toDegrees(Math.asin(-normalizedFirstTangent.getY()));
-            path.get(0).setYaw(firstYaw);
-            path.get(0).setPitch(firstPitch);
-        }
-    }
-
-    /**
-     * 指定されたパスを、一定の距離間隔を持つ新しいパスに再サンプリングします。
-     * これにより、カーブや坂でも点の間隔が均一になり、建築時の隙間を防ぎます。
-     * @param originalPath 元の高密度パス
-     * @param stepDistance 新しい点の間隔（例：0.5ブロック）
-     * @return 再サンプリングされたパス
-     */
-    private List<Location> resamplePath(List<Location> originalPath, double stepDistance) {
-        if (originalPath.size() < 2) {
-            return originalPath;
-        }
-
-        List<Location> resampledPath = new ArrayList<>();
-        resampledPath.add(originalPath.get(0).clone()); // 始点を追加（ヨー角とピッチ角も保持）
-
-        double distanceCovered = 0.0;
-        for (int i = 0; i < originalPath.size() - 1; i++) {
-            Location current = originalPath.get(i);
-            Location next = originalPath.get(i + 1);
-            Vector segment = next.toVector().subtract(current.toVector());
-            double segmentLength = segment.length();
-
-            while (distanceCovered + segmentLength >= stepDistance) {
-                double remainingDistanceInSegment = stepDistance - distanceCovered;
-                double t = remainingDistanceInSegment / segmentLength;
-
-                Location newPoint = current.clone().add(segment.clone().multiply(t));
-
-                // ヨー角とピッチ角を補間
-                float currentYaw = current.getYaw();
-                float nextYaw = next.getYaw();
-                float currentPitch = current.getPitch();
-                float nextPitch = next.getPitch();
-
-                // ヨー角とピッチ角の循環補間（改良版）
-                float interpolatedYaw = interpolateAngle(currentYaw, nextYaw, (float) t);
-                float interpolatedPitch = interpolateAngle(currentPitch, nextPitch, (float) t);
-
-                newPoint.setYaw(interpolatedYaw);
-                newPoint.setPitch(interpolatedPitch);
-
-                resampledPath.add(newPoint);
-
-                current = newPoint;
-                segment = next.toVector().subtract(current.toVector());
-                segmentLength = segment.length();
-                distanceCovered = 0.0;
-            }
-            distanceCovered += segmentLength;
-        }
-
-        resampledPath.add(originalPath.get(originalPath.size() - 1).clone()); // 終点を追加（ヨー角とピッチ角も保持）
-        return resampledPath;
-    }
 }
@@ -1,7 +1,6 @@
 package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route;
 
-import org.bukkit.Location;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Objects;
 
 /**
@@ -10,9 +9,12 @@ import java.util.Objects;
 public class RouteEdge {
     private final RouteNode node1;
     private final RouteNode node2;
-    private List<Location> calculatedPath;
+    private volatile PolylineBuffer calculatedPath;
+    private volatile PolylineBuffer previewPath; // パーティクル表示用の粗い経路（nullの場合はcalculatedPathを使用）
     private EdgeMode edgeMode;
     private CurveAnchor curveAnchor; // アンカーポイントを追加
+    private volatile long version = RouteVersions.next();
+    private volatile long[] pathStamp; // calculatedPath を計算したときの依存要素の版番号（プレビュー中はnull）
 
     public RouteEdge(RouteNode node1, RouteNode node2) {
         this(node1, node2, EdgeMode.STRAIGHT, null); // デフォルトで直線モード、アンカーなし
@@ -37,12 +39,55 @@ public class RouteEdge {
         return node2;
     }
 
-    public List<Location> getCalculatedPath() {
+    public PolylineBuffer getCalculatedPath() {
         return calculatedPath;
     }
 
-    public void setCalculatedPath(List<Location> calculatedPath) {
+    /**
+     * パーティクル表示用の経路を返します。表示用の経路がない場合は建築用の経路を返します。
+     */
+    public PolylineBuffer getPreviewPath() {
+        PolylineBuffer path = previewPath;
+        return path != null ? path : calculatedPath;
+    }
+
+    /**
+     * 表示用の経路だけを設定します。ライブドラッグのプレビューなど、現在の状態と一致しない経路に使用します。
+     * 建築用の経路は変更しませんが、次回の {@link #isCalculatedPathCurrent(long[])} は必ずfalseになります。
+     * @param previewPath 設定する表示用の経路
+     */
+    public void setPreviewPath(PolylineBuffer previewPath) {
+        this.pathStamp = null;
+        this.previewPath = previewPath;
+    }
+
+    /**
+     * 現在の状態から計算した建築用と表示用の経路を、計算時の依存要素の版番号とともに設定します。
+     * @param calculatedPath 建築用の経路
+     * @param previewPath 表示用の経路（nullの場合は建築用の経路を表示）
+     * @param stamp {@link RouteSession#getPathDependencyStamp(RouteEdge)} で取得した版番号
+     */
+    public void setCalculatedPath(PolylineBuffer calculatedPath, PolylineBuffer previewPath, long[] stamp) {
         this.calculatedPath = calculatedPath;
+        this.previewPath = previewPath;
+        this.pathStamp = stamp;
+    }
+
+    /**
+     * 設定済みの経路が、指定した依存要素の版番号のときに計算したものかどうかを判定します。
+     * @param stamp {@link RouteSession#getPathDependencyStamp(RouteEdge)} で取得した版番号
+     * @return 再計算が不要な場合true
+     */
+    public boolean isCalculatedPathCurrent(long[] stamp) {
+        return calculatedPath != null && Arrays.equals(pathStamp, stamp);
+    }
+
+    /**
+     * エッジモードまたはアンカーが変わるたびに更新される版番号を返します。
+     * @return 版番号
+     */
+    public long getVersion() {
+        return version;
     }
 
     public EdgeMode getEdgeMode() {
@@ -51,6 +96,7 @@ public class RouteEdge {
 
     public void setEdgeMode(EdgeMode edgeMode) {
         this.edgeMode = edgeMode;
+        this.version = RouteVersions.next();
     }
 
     public CurveAnchor getCurveAnchor() {
@@ -59,6 +105,7 @@ public class RouteEdge {
 
     public void setCurveAnchor(CurveAnchor curveAnchor) {
         this.curveAnchor = curveAnchor;
+        this.version = RouteVersions.next();
     }
 
     /**
@@ -2,6 +2,7 @@ package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route;
 
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.AutoRoadGeneratorPluginMain;
 import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.util.PlayerMessageUtil;
+import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
 import org.bukkit.Material;
@@ -23,42 +24,71 @@ import org.bukkit.util.RayTraceResult;
 
 import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.Future;
 
 /**
  * 編集モード中のプレイヤーの操作を検知し、道路網の編集を行うリスナーです。
  */
 public class RouteEditListener extends BukkitRunnable implements Listener {
 
+    /** アクションバーを更新する間隔（ティック） */
+    private static final int ACTION_BAR_INTERVAL_TICKS = 20;
+    /** プレビュー経路の計算時の弧長表の1区間の長さ（ブロック） */
+    private static final double PREVIEW_PATH_STEP = 1.0;
+
     private final AutoRoadGeneratorPluginMain plugin;
     private final RouteCalculator calculator;
     private final RouteVisualizer visualizer;
+    private final RouteRecalculator recalculator;
+    private final int previewIntervalTicks;
+    private int ticksUntilActionBar = 0;
 
     public RouteEditListener(AutoRoadGeneratorPluginMain plugin, RouteCalculator calculator, RouteVisualizer visualizer) {
         this.plugin = plugin;
         this.calculator = calculator;
         this.visualizer = visualizer;
+        this.recalculator = new RouteRecalculator(plugin, calculator,
+                plugin.getConfig().getInt("performance.parallel_route_threshold", 32));
+        this.previewIntervalTicks = Math.max(1, plugin.getConfig().getInt("performance.live_preview_interval_ticks", 2));
+    }
+
+    /**
+     * リアルタイム更新タスクの実行間隔（ティック）
+     */
+    public int getPreviewIntervalTicks() {
+        return previewIntervalTicks;
     }
 
     @Override
     public void run() {
+        ticksUntilActionBar -= previewIntervalTicks;
+        boolean refreshActionBar = ticksUntilActionBar <= 0;
+        if (refreshActionBar) {
+            ticksUntilActionBar = ACTION_BAR_INTERVAL_TICKS;
+        }
         // 編集モードのプレイヤーに対してリアルタイム更新タスクを実行
         for (UUID uuid : plugin.getEditModePlayers()) {
             Player player = plugin.getServer().getPlayer(uuid);
             if (player != null && player.isOnline()) {
                 runLiveUpdate(player, plugin.getRouteSession(uuid));
-                // アクションバーを更新
-                sendActionBar(player, plugin.getRouteSession(uuid));
+                if (refreshActionBar) {
+                    // アクションバーを更新
+                    sendActionBar(player, plugin.getRouteSession(uuid));
+                }
             }
         }
     }
 
     /**
      * リアルタイム更新処理。主にライブドラッグ（ノードまたはアンカー移動のプレビュー）を担当します。
+     * メインスレッドでは視線の先の取得と、影響するエッジのスナップショット作成だけを行い、
+     * 経路の計算はワーカースレッドで行います。前回のプレビューの計算中は新しい計算を開始しません。
      */
     private void runLiveUpdate(Player player, RouteSession session) {
         UUID selectedNodeId = session.getSelectedNodeId();
@@ -75,14 +105,21 @@ public class RouteEditListener extends BukkitRunnable implements Listener {
             previewLocation = result.getHitBlock().getLocation().add(0.5, 0.5, 0.5);
         }
 
+        List<EdgeSnapshot> snapshots = new ArrayList<>();
         if (selectedNodeId != null) {
             RouteNode selectedNode = session.getNode(selectedNodeId);
             if (selectedNode == null) return;
             // ノード移動のプレビュー
-            updateConnectedEdges(session, selectedNode, previewLocation);
-        } else if (selectedAnchorId != null) {
+            for (RouteEdge edge : session.getEdgesConnectedToNode(selectedNode)) {
+                Location p1Override = edge.getNode1().equals(selectedNode) ? previewLocation : null;
+                Location p2Override = edge.getNode2().equals(selectedNode) ? previewLocation : null;
+                snapshots.add(calculator.snapshot(edge, session, p1Override, p2Override));
+            }
+        } else {
             CurveAnchor selectedAnchor = session.getAnchor(selectedAnchorId);
             if (selectedAnchor == null) return;
+            RouteEdge edge = session.getEdgeWithAnchor(selectedAnchor);
+            if (edge == null) return;
 
             // アンカー編集モードに基づいてpreviewLocationを制約
             Location constrainedPreviewLocation = getConstrainedLocation(
@@ -90,28 +127,64 @@ public class RouteEditListener extends BukkitRunnable implements Listener {
                     session.getCurrentAnchorEditMode(),
                     session.getOriginalSelectedAnchorLocation()
             );
-            // アンカー移動のプレビュー
-            runLiveUpdateForAnchor(session, selectedAnchor, constrainedPreviewLocation);
+            // アンカー移動のプレビュー（アンカー自体は動かさない）
+            snapshots.add(calculator.snapshot(edge, session, null, null, constrainedPreviewLocation));
         }
 
-        // 描画処理をメインスレッドにディスパッチ
-        plugin.getServer().getScheduler().runTask(plugin, () -> {
-            visualizer.showAll(player, session);
-        });
+        if (snapshots.isEmpty() || !session.beginLivePreview()) return;
+
+        // 計算結果を反映する時点で古くなっていないか判定するため、依存する要素の版番号を記録
+        List<long[]> stamps = new ArrayList<>(snapshots.size());
+        for (EdgeSnapshot snapshot : snapshots) {
+            stamps.add(session.getPathDependencyStamp(snapshot.getEdge()));
+        }
+
+        Future<?> future;
+        try {
+            future = plugin.getComputeScheduler().submit(player.getUniqueId(), () -> {
+                PolylineBuffer[] paths = new PolylineBuffer[snapshots.size()];
+                try {
+                    for (int i = 0; i < paths.length; i++) {
+                        paths[i] = calculator.calculate(snapshots.get(i), PREVIEW_PATH_STEP, PathTolerance.PREVIEW)[0];
+                    }
+                } finally {
+                    if (plugin.isEnabled()) {
+                        Bukkit.getScheduler().runTask(plugin, () ->
+                                applyLivePreview(session, selectedNodeId, selectedAnchorId, snapshots, stamps, paths));
+                    } else {
+                        session.endLivePreview();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            // 投入に失敗するとタスク側の finally が実行されないため、ここで計算中の印を戻す
+            session.endLivePreview();
+            throw e;
+        }
+        if (future.isCancelled()) {
+            // 停止中のスケジューラはタスクを実行せずに取り消す
+            session.endLivePreview();
+        }
     }
 
     /**
-     * リアルタイム更新処理。主にライブドラッグ（アンカー移動のプレビュー）を担当します。
+     * ワーカースレッドで計算したプレビュー経路をエッジに反映します。
+     * 計算中に選択が変わった場合や、エッジが依存する要素の版番号が変わった場合は古い結果として破棄します。
+     * 表示中のパーティクルは次の描画からこの経路を使用します。
      */
-    private void runLiveUpdateForAnchor(RouteSession session, CurveAnchor anchor, Location newLocation) {
-        RouteEdge edge = session.getEdgeWithAnchor(anchor);
-        if (edge == null) return;
-
-        // アンカーのLocationを一時的に上書きしてパスを再計算
-        Location originalAnchorLocation = anchor.getLocation();
-        anchor.setLocation(newLocation);
-        edge.setCalculatedPath(calculator.calculate(edge, session, 0.1, null, null));
-        anchor.setLocation(originalAnchorLocation); // 元に戻す
+    private void applyLivePreview(RouteSession session, UUID selectedNodeId, UUID selectedAnchorId,
+                                  List<EdgeSnapshot> snapshots, List<long[]> stamps, PolylineBuffer[] paths) {
+        session.endLivePreview();
+        if (!Objects.equals(session.getSelectedNodeId(), selectedNodeId)
+                || !Objects.equals(session.getSelectedAnchorId(), selectedAnchorId)) {
+            return;
+        }
+        for (int i = 0; i < paths.length; i++) {
+            RouteEdge edge = snapshots.get(i).getEdge();
+            if (paths[i] != null && Arrays.equals(session.getPathDependencyStamp(edge), stamps.get(i))) {
+                edge.setPreviewPath(paths[i]);
+            }
+        }
     }
 
     @EventHandler
@@ -173,7 +246,7 @@ public class RouteEditListener extends BukkitRunnable implements Listener {
                         session.getCurrentAnchorEditMode(),
                         session.getOriginalSelectedAnchorLocation()
                 );
-                anchorToMove.setLocation(finalAnchorLocation);
+                session.moveAnchor(anchorToMove, finalAnchorLocation);
                 session.setSelectedAnchorId(null); // 選択解除
                 PlayerMessageUtil.sendTranslatedMessage(plugin, player, "route_edit.anchor_moved");
                 updateRoute(player, session);
@@ -206,7 +279,7 @@ public class RouteEditListener extends BukkitRunnable implements Listener {
             if (anchorToRemove != null) {
                 RouteEdge edge = session.getEdgeWithAnchor(anchorToRemove);
                 if (edge != null) {
-                    edge.setCurveAnchor(null); // エッジからアンカーを解除
+                    session.setEdgeAnchor(edge, null); // エッジからアンカーを解除
                 }
                 session.removeAnchor(clickedAnchorId);
                 PlayerMessageUtil.sendTranslatedMessage(plugin, player, "route_edit.anchor_deleted");
@@ -320,18 +393,9 @@ public class RouteEditListener extends BukkitRunnable implements Listener {
 
         if (player.isSneaking()) {
             // --- ノード削除処理 ---
-            RouteNode nodeToRemove = session.getNodes().remove(nearestNodeId);
+            // 関連するエッジとアンカーもすべて削除
+            RouteNode nodeToRemove = session.removeNode(nearestNodeId);
             if (nodeToRemove != null) {
-                // 関連するエッジもすべて削除
-                session.getEdges().removeIf(edge -> {
-                    if (edge.getNode1().equals(nodeToRemove) || edge.getNode2().equals(nodeToRemove)) {
-                        if (edge.getCurveAnchor() != null) {
-                            session.removeAnchor(edge.getCurveAnchor().getId()); // 関連アンカーも削除
-                        }
-                        return true;
-                    }
-                    return false;
-                });
                 PlayerMessageUtil.sendTranslatedMessage(plugin, player, "route_edit.node_deleted");
                 // 削除されたノードの元のブロックをプレイヤーに送信して復元
                 plugin.getServer().getScheduler().runTaskLater(plugin,()->player.sendBlockChange(nodeToRemove.getLocation(), nodeToRemove.getLocation().getBlock().getBlockData()),1L);
@@ -367,7 +431,7 @@ public class RouteEditListener extends BukkitRunnable implements Listener {
             RouteNode nodeToMove = session.getNode(selectedNodeId);
             if (nodeToMove != null) {
                 // ノードは常にブロックの中心にスナップ
-                nodeToMove.setLocation(interactionLocation.getBlock().getLocation().add(0.5, 0.5, 0.5));
+                session.moveNode(nodeToMove, interactionLocation.getBlock().getLocation().add(0.5, 0.5, 0.5));
                 session.setSelectedNodeId(null); // 選択解除
                 PlayerMessageUtil.sendTranslatedMessage(plugin, player, "route_edit.node_moved");
                 updateRoute(player, session);
@@ -417,17 +481,16 @@ public class RouteEditListener extends BukkitRunnable implements Listener {
             if (startNode != null && !startNode.equals(endNode)) {
                 // 既存のエッジをチェックし、存在すれば削除
                 RouteEdge existingEdge = null;
-                for (RouteEdge edge : session.getEdges()) {
+                for (RouteEdge edge : session.getEdgesConnectedToNode(startNode)) {
                     // 既存のエッジが (startNode, endNode) または (endNode, startNode) のいずれかであるかを確認
-                    if ((edge.getNode1().equals(startNode) && edge.getNode2().equals(endNode)) ||
-                        (edge.getNode1().equals(endNode) && edge.getNode2().equals(startNode))) {
+                    if (edge.getOtherNode(startNode).equals(endNode)) {
                         existingEdge = edge;
                         break;
                     }
                 }
 
                 if (existingEdge != null) {
-                    session.getEdges().remove(existingEdge);
+                    session.removeEdge(existingEdge);
                     if (existingEdge.getCurveAnchor() != null) {
                         session.removeAnchor(existingEdge.getCurveAnchor().getId()); // 関連アンカーも削除
                     }
@@ -471,9 +534,10 @@ public class RouteEditListener extends BukkitRunnable implements Listener {
         double minDistance = Double.MAX_VALUE;
 
         for (RouteEdge edge : session.getEdges()) {
-            if (edge.getCalculatedPath() == null) continue;
-            for (Location point : edge.getCalculatedPath()) {
-                double distance = point.distance(targetLocation);
+            PolylineBuffer path = edge.getCalculatedPath();
+            if (path == null) continue;
+            for (int i = 0; i < path.size(); i++) {
+                double distance = Math.sqrt(path.distanceSquared(i, targetLocation.getX(), targetLocation.getY(), targetLocation.getZ()));
                 if (distance < minDistance) {
                     minDistance = distance;
                     closestEdge = edge;
@@ -482,7 +546,7 @@ public class RouteEditListener extends BukkitRunnable implements Listener {
         }
 
         if (closestEdge != null && minDistance < 2.0) {
-            session.getEdges().remove(closestEdge);
+            session.removeEdge(closestEdge);
             // エッジ分割で作成される新しいノードは常にブロックの中心にスナップ
             RouteNode newNode = new RouteNode(targetLocation.getBlock().getLocation().add(0.5, 0.5, 0.5));
             session.addNode(newNode);
@@ -502,53 +566,26 @@ public class RouteEditListener extends BukkitRunnable implements Listener {
     }
 
     /**
-     * 道路網の計算と描画を更新します。
+     * 地形追従時の最大勾配（水平距離1ブロックあたりの高低差）を返します。
      */
-    public void updateRoute(Player player, RouteSession session) {
-        // 個々のエッジのパスを更新
-        for (RouteEdge edge : session.getEdges()) {
-            updateSingleEdge(session, edge);
-        }
-
-        // すべてのエッジのパスを結合して、RouteSessionのcalculatedPathに設定
-        LinkedHashSet<Location> combinedPath = new LinkedHashSet<>(); // 重複を避けるためにLinkedHashSetを使用
-        for (RouteEdge edge : session.getEdges()) {
-            if (edge.getCalculatedPath() != null) {
-                combinedPath.addAll(edge.getCalculatedPath());
-            }
-        }
-        session.setCalculatedPath(new ArrayList<>(combinedPath));
-
-        visualizer.showAll(player, session);
-        // ルート更新時にもアクションバーを更新（特にノード移動時など）
-        sendActionBar(player, session);
+    public double getMaxGrade() {
+        return recalculator.getMaxGrade();
     }
 
     /**
-     * 接続されているエッジのパスを一時的に更新します。
-     * 主にライブドラッグで使用されます。
+     * 道路網の計算と描画を更新します。
+     * 再計算するエッジが多い場合はワーカースレッドで並列に計算し、結果の反映後に描画します。
      */
-    private void updateConnectedEdges(RouteSession session, RouteNode node, Location newLocation) {
-        List<RouteEdge> connectedEdges = session.getEdgesConnectedToNode(node);
-        for (RouteEdge edge : connectedEdges) {
-            Location p1Override = null;
-            Location p2Override = null;
-
-            if (edge.getNode1().equals(node)) {
-                p1Override = newLocation;
-            }
-            if (edge.getNode2().equals(node)) {
-                p2Override = newLocation;
+    public void updateRoute(Player player, RouteSession session) {
+        // 端点・アンカー・モード・隣接エッジの接線が変わったエッジのパスだけを再計算
+        recalculator.recalculate(player.getUniqueId(), session, player.getWorld(), () -> {
+            if (!player.isOnline()) {
+                return;
             }
-            edge.setCalculatedPath(calculator.calculate(edge, session, 0.1, p1Override, p2Override));
-        }
-    }
-
-    /**
-     * 単一のエッジのパスを計算し、設定します。
-     */
-    private void updateSingleEdge(RouteSession session, RouteEdge edge) {
-        edge.setCalculatedPath(calculator.calculate(edge, session, 0.1, null, null));
+            visualizer.showAll(player, session);
+            // ルート更新時にもアクションバーを更新（特にノード移動時など）
+            sendActionBar(player, session);
+        });
     }
 
     /**
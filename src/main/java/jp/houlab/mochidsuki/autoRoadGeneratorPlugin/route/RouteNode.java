@@ -9,6 +9,7 @@ import java.util.UUID;
 public class RouteNode {
     private final UUID id;
     private Location location;
+    private volatile long version = RouteVersions.next();
 
     public RouteNode(Location location) {
         this.id = UUID.randomUUID();
@@ -29,6 +30,15 @@ public class RouteNode {
      */
     public void setLocation(Location location) {
         this.location = location;
+        this.version = RouteVersions.next();
+    }
+
+    /**
+     * 座標が変わるたびに更新される版番号を返します。
+     * @return 版番号
+     */
+    public long getVersion() {
+        return version;
     }
 
     @Override
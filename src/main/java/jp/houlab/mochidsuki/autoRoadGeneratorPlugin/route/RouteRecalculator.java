@@ -0,0 +1,185 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route;
+
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.AutoRoadGeneratorPluginMain;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build.ComputeScheduler;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * 道路網全体のエッジの経路を再計算するクラス
+ *
+ * 再計算は2段階で行います。まずメインスレッドで、依存する要素が変わったエッジの端点・アンカー・両端の接線を
+ * 不変の {@link EdgeSnapshot} に確定させます。接線は隣接エッジに依存しますが、スナップショットを作った後は
+ * エッジごとの計算が独立するため、共有の {@link ComputeScheduler} で並列に計算します。
+ *
+ * 計算結果はメインスレッドの1回のタスクでまとめてエッジに反映し、結合経路を更新してから完了処理を呼び出します。
+ * そのため、メインスレッドからは更新前と更新後の道路網しか見えません。
+ * 反映時に依存する要素の版番号が変わっていたエッジの結果は、古い状態から計算したものとして破棄します
+ * （その変更による再計算が別途行われます）。
+ *
+ * 再計算が必要なエッジが少ない場合は、ワーカーに渡さず呼び出し元のスレッドでそのまま計算します。
+ * 各エッジについて建築用（{@link PathTolerance#BUILD}）と表示用（{@link PathTolerance#PREVIEW}）の経路を
+ * 同じ曲線から求め、依存要素の版番号とともにエッジに保持します。
+ *
+ * セッションで地形追従が有効な場合は、反映の前に経路が通るチャンクの地表の高さを {@link TerrainHeightCache} に揃え、
+ * {@link TerrainProfile} で建築用の経路の高さを地形に沿わせます（表示用の経路には同じ高さを写します）。
+ * この段階もエッジごとに独立しているため、経路の計算と同じ方法で並列に実行します。
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class RouteRecalculator {
+
+    /** 経路計算時の弧長表の1区間の長さ（ブロック） */
+    private static final double PATH_STEP = 1.0;
+    /** ワーカー1つあたりに割り当てるタスク数の目安（タスクごとの計算量の偏りをならす） */
+    private static final int TASKS_PER_WORKER = 4;
+
+    private final AutoRoadGeneratorPluginMain plugin;
+    private final RouteCalculator calculator;
+    private final int parallelThreshold;
+    private final TerrainHeightCache terrainHeights;
+    private final TerrainProfile terrainProfile;
+
+    /**
+     * @param plugin プラグインのインスタンス
+     * @param calculator 経路の計算に使用するクラス
+     * @param parallelThreshold 並列計算に切り替える再計算エッジ数
+     */
+    public RouteRecalculator(AutoRoadGeneratorPluginMain plugin, RouteCalculator calculator, int parallelThreshold) {
+        this.plugin = plugin;
+        this.calculator = calculator;
+        this.parallelThreshold = Math.max(1, parallelThreshold);
+        this.terrainHeights = plugin.getTerrainHeightCache();
+        this.terrainProfile = new TerrainProfile(plugin.getConfig().getDouble("terrain.max_grade", 0.125),
+                plugin.getConfig().getDouble("terrain.smoothing_distance", 4.0));
+    }
+
+    /**
+     * 依存する要素が変わったエッジの経路を再計算し、結合経路を更新します。
+     * メインスレッドから呼び出してください。
+     * @param owner 再計算を要求したプレイヤーのUUID（計算スケジューラーの公平性の単位）
+     * @param session 対象のセッション
+     * @param world 経路のワールド
+     * @param onPublished 結果の反映後にメインスレッドで実行する処理
+     */
+    public void recalculate(UUID owner, RouteSession session, World world, Runnable onPublished) {
+        List<EdgeSnapshot> snapshots = new ArrayList<>();
+        List<long[]> stamps = new ArrayList<>();
+        for (RouteEdge edge : session.getEdges()) {
+            long[] stamp = session.getPathDependencyStamp(edge);
+            if (edge.isCalculatedPathCurrent(stamp)) {
+                continue;
+            }
+            snapshots.add(calculator.snapshot(edge, session, null, null));
+            stamps.add(stamp);
+        }
+
+        int count = snapshots.size();
+        PolylineBuffer[][] paths = new PolylineBuffer[count][];
+        boolean terrainFollowing = session.isTerrainFollowing();
+        forEach(owner, count, i -> paths[i] = calculator.calculate(snapshots.get(i), PATH_STEP, PathTolerance.BUILD, PathTolerance.PREVIEW), () -> {
+            if (!terrainFollowing || count == 0) {
+                publish(session, world, snapshots, stamps, paths, onPublished);
+                return;
+            }
+            // 経路が通るチャンクの地表の高さを揃えてから、高さを地形に沿わせる
+            terrainHeights.prepare(owner, world, chunksAlong(paths), () -> forEach(owner, count, i -> {
+                if (paths[i] != null) {
+                    PolylineBuffer build = terrainProfile.apply(paths[i][0], terrainHeights);
+                    paths[i] = new PolylineBuffer[]{build, terrainProfile.transfer(paths[i][1], build)};
+                }
+            }, () -> publish(session, world, snapshots, stamps, paths, onPublished)));
+        });
+    }
+
+    /**
+     * 地形追従時の最大勾配（水平距離1ブロックあたりの高低差）を返します。
+     */
+    public double getMaxGrade() {
+        return terrainProfile.getMaxGrade();
+    }
+
+    /**
+     * 0から count - 1 までの各添字について処理を実行し、すべて終わったらメインスレッドで完了処理を実行します。
+     * count が並列計算のしきい値未満の場合は呼び出し元のスレッドでそのまま実行します。
+     */
+    private void forEach(UUID owner, int count, IntConsumer task, Runnable onComplete) {
+        if (count < parallelThreshold) {
+            for (int i = 0; i < count; i++) {
+                task.accept(i);
+            }
+            onComplete.run();
+            return;
+        }
+
+        ComputeScheduler scheduler = plugin.getComputeScheduler();
+        int taskCount = Math.min(count, scheduler.getParallelism() * TASKS_PER_WORKER);
+        int chunkSize = (count + taskCount - 1) / taskCount;
+        taskCount = (count + chunkSize - 1) / chunkSize;
+        AtomicInteger remaining = new AtomicInteger(taskCount);
+        for (int start = 0; start < count; start += chunkSize) {
+            int from = start;
+            int to = Math.min(count, start + chunkSize);
+            scheduler.submit(owner, () -> {
+                try {
+                    for (int i = from; i < to; i++) {
+                        task.accept(i);
+                    }
+                } finally {
+                    // 最後に終わったタスクが完了処理をメインスレッドに依頼する（失敗したエッジはnullのまま）
+                    if (remaining.decrementAndGet() == 0 && plugin.isEnabled()) {
+                        Bukkit.getScheduler().runTask(plugin, onComplete);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * 建築用の経路が通るチャンクのキーを集めます。
+     */
+    private static Set<Long> chunksAlong(PolylineBuffer[][] paths) {
+        Set<Long> chunks = new HashSet<>();
+        for (PolylineBuffer[] edgePaths : paths) {
+            if (edgePaths == null) {
+                continue;
+            }
+            PolylineBuffer path = edgePaths[0];
+            for (int i = 0; i < path.size(); i++) {
+                chunks.add(TerrainHeightCache.chunkKey((int) Math.floor(path.getX(i)) >> 4, (int) Math.floor(path.getZ(i)) >> 4));
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * 計算結果をエッジに反映し、結合経路を更新します。
+     */
+    private void publish(RouteSession session, World world, List<EdgeSnapshot> snapshots, List<long[]> stamps,
+                         PolylineBuffer[][] paths, Runnable onPublished) {
+        for (int i = 0; i < paths.length; i++) {
+            if (paths[i] == null) {
+                continue;
+            }
+            RouteEdge edge = snapshots.get(i).getEdge();
+            long[] stamp = stamps.get(i);
+            if (Arrays.equals(session.getPathDependencyStamp(edge), stamp)) {
+                edge.setCalculatedPath(paths[i][0], paths[i][1], stamp);
+            }
+        }
+        // すべてのエッジのパスを結合して、RouteSessionのcalculatedPathに設定（変わっていない先頭部分は再利用）
+        session.refreshCalculatedPath(world);
+        onPublished.run();
+    }
+}
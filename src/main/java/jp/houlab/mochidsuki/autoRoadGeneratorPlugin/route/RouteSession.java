@@ -1,21 +1,42 @@
 package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route;
 
 import org.bukkit.Location;
+import org.bukkit.World;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * プレイヤー1人分の編集セッション情報を保持するクラスです。
  * 道路のノードとエッジのグラフ構造を管理します。
+ *
+ * ノード→接続エッジ、アンカー→エッジの索引を保持し、接続関係の検索は接続数に比例する時間で行います。
+ * エッジの追加・削除は必ずこのクラスのメソッドで行ってください。変更は1つのロックで直列化し、
+ * エッジ一覧と索引はコピーオンライトのため、読み取り側はロックなしで参照できます。
+ *
+ * ノードとアンカーはブロック座標の空間ハッシュにも登録し、クリック位置からの検索をワールドにアクセスせずに行います。
+ * 追加後のノードやアンカーの移動は {@link #moveNode(RouteNode, Location)} と
+ * {@link #moveAnchor(CurveAnchor, Location)} で行ってください。
  */
 public class RouteSession {
+    /** 1つのノードについて記録する隣接エッジの版番号の数（接続数、エッジ、両端ノード、アンカー） */
+    private static final int NEIGHBOUR_STAMP_LENGTH = 5;
+
     private final Map<UUID, RouteNode> nodes = new ConcurrentHashMap<>();
-    private final List<RouteEdge> edges = Collections.synchronizedList(new ArrayList<>());
+    private final List<RouteEdge> edges = new CopyOnWriteArrayList<>();
+    private final Set<RouteEdge> edgeSet = ConcurrentHashMap.newKeySet(); // 重複判定用
+    private final Map<UUID, List<RouteEdge>> edgesByNode = new ConcurrentHashMap<>(); // ノードID→接続エッジ
+    private final Map<UUID, RouteEdge> edgesByAnchor = new ConcurrentHashMap<>(); // アンカーID→エッジ
+    private final Object graphLock = new Object();
+    private final BlockSpatialIndex nodeIndex = new BlockSpatialIndex();
+    private final BlockSpatialIndex anchorIndex = new BlockSpatialIndex();
     private final Map<UUID, CurveAnchor> anchors = new ConcurrentHashMap<>(); // アンカーを追加
     private volatile UUID branchStartNodeId;
     private volatile Location previewLocation;
@@ -25,7 +46,13 @@ public class RouteSession {
     private volatile Location originalSelectedAnchorLocation; // 選択中のアンカーの元の位置
     private EdgeMode currentEdgeMode; // 現在選択されているエッジモード
     private AnchorEditMode currentAnchorEditMode; // 現在選択されているアンカー編集モード
-    private List<Location> calculatedPath = new ArrayList<>(); // 追加: 計算された高密度経路
+    private volatile PolylineBuffer calculatedPath = new PolylineBuffer(null, 1); // 追加: 計算された高密度経路
+    // calculatedPath を結合したときの各エッジの経路と、結合後の各経路の終端位置
+    private final List<PolylineBuffer> combinedSources = new ArrayList<>();
+    private int[] combinedEnds = new int[0];
+    private final AtomicBoolean livePreviewPending = new AtomicBoolean(); // ライブドラッグのプレビューを計算中か
+    private volatile boolean terrainFollowing; // 経路の高さを地形に沿わせるか
+    private volatile long terrainVersion = RouteVersions.next(); // 地形追従の切り替えごとに更新される版番号
 
     public RouteSession() {
         this.currentEdgeMode = EdgeMode.STRAIGHT; // デフォルトは直線モード
@@ -34,6 +61,19 @@ public class RouteSession {
 
     public void addNode(RouteNode node) {
         nodes.put(node.getId(), node);
+        nodeIndex.put(node.getId(), node.getLocation());
+    }
+
+    /**
+     * ノードを移動し、空間ハッシュを更新します。
+     * @param node 移動するノード
+     * @param location 新しい座標
+     */
+    public void moveNode(RouteNode node, Location location) {
+        node.setLocation(location);
+        if (nodes.containsKey(node.getId())) {
+            nodeIndex.put(node.getId(), location);
+        }
     }
 
     public RouteNode getNode(UUID id) {
@@ -44,19 +84,127 @@ public class RouteSession {
         return nodes;
     }
 
+    /**
+     * ノードを削除し、接続しているエッジとそのアンカーもすべて削除します。
+     * @param id 削除するノードのID
+     * @return 削除したノード、存在しなければnull
+     */
+    public RouteNode removeNode(UUID id) {
+        synchronized (graphLock) {
+            RouteNode node = nodes.remove(id);
+            if (node == null) {
+                return null;
+            }
+            nodeIndex.remove(id);
+            for (RouteEdge edge : getEdgesConnectedToNode(node)) {
+                removeEdge(edge);
+                if (edge.getCurveAnchor() != null) {
+                    removeAnchor(edge.getCurveAnchor().getId()); // 関連アンカーも削除
+                }
+            }
+            return node;
+        }
+    }
+
     public void addEdge(RouteEdge edge) {
-        // 既に同じエッジが存在しないか確認してから追加
-        if (!edges.contains(edge)) {
+        synchronized (graphLock) {
+            // 既に同じエッジが存在しないか確認してから追加
+            if (!edgeSet.add(edge)) {
+                return;
+            }
             edges.add(edge);
+            edgesByNode.computeIfAbsent(edge.getNode1().getId(), k -> new CopyOnWriteArrayList<>()).add(edge);
+            if (!edge.getNode2().equals(edge.getNode1())) {
+                edgesByNode.computeIfAbsent(edge.getNode2().getId(), k -> new CopyOnWriteArrayList<>()).add(edge);
+            }
+            if (edge.getCurveAnchor() != null) {
+                edgesByAnchor.put(edge.getCurveAnchor().getId(), edge);
+            }
         }
     }
 
+    /**
+     * エッジを削除します。エッジのアンカー自体は削除しません。
+     * @param edge 削除するエッジ（ノードの組が一致するエッジが削除されます）
+     * @return 削除した場合true
+     */
+    public boolean removeEdge(RouteEdge edge) {
+        synchronized (graphLock) {
+            if (!edgeSet.remove(edge)) {
+                return false;
+            }
+            // equalsはノードの組で判定するため、索引に登録されている実体を削除する
+            RouteEdge stored = null;
+            for (RouteEdge candidate : getEdgesConnectedToNode(edge.getNode1())) {
+                if (candidate.equals(edge)) {
+                    stored = candidate;
+                    break;
+                }
+            }
+            if (stored == null) {
+                stored = edge;
+            }
+            edges.remove(stored);
+            unindexNode(stored.getNode1(), stored);
+            unindexNode(stored.getNode2(), stored);
+            if (stored.getCurveAnchor() != null) {
+                edgesByAnchor.remove(stored.getCurveAnchor().getId(), stored);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * セッションに追加済みのエッジのアンカーを付け替え、索引を更新します。
+     * @param edge 対象のエッジ
+     * @param anchor 新しいアンカー、解除する場合はnull
+     */
+    public void setEdgeAnchor(RouteEdge edge, CurveAnchor anchor) {
+        synchronized (graphLock) {
+            CurveAnchor previous = edge.getCurveAnchor();
+            if (previous != null) {
+                edgesByAnchor.remove(previous.getId(), edge);
+            }
+            edge.setCurveAnchor(anchor);
+            if (anchor != null && edgeSet.contains(edge)) {
+                edgesByAnchor.put(anchor.getId(), edge);
+            }
+        }
+    }
+
+    /**
+     * 全てのエッジを追加順に返します。変更できないビューで、反復中に変更されても例外は発生しません。
+     * エッジの追加・削除は {@link #addEdge(RouteEdge)} と {@link #removeEdge(RouteEdge)} で行います。
+     */
     public List<RouteEdge> getEdges() {
-        return edges;
+        return Collections.unmodifiableList(edges);
+    }
+
+    private void unindexNode(RouteNode node, RouteEdge edge) {
+        List<RouteEdge> connected = edgesByNode.get(node.getId());
+        if (connected != null) {
+            connected.remove(edge);
+            if (connected.isEmpty()) {
+                edgesByNode.remove(node.getId(), connected);
+            }
+        }
     }
 
     public void addAnchor(CurveAnchor anchor) {
         anchors.put(anchor.getId(), anchor);
+        anchorIndex.put(anchor.getId(), anchor.getLocation());
+    }
+
+    /**
+     * アンカーを移動し、空間ハッシュを更新します。
+     * @param anchor 移動するアンカー
+     * @param location 新しい座標
+     */
+    public void moveAnchor(CurveAnchor anchor, Location location) {
+        anchor.setLocation(location);
+        if (anchors.containsKey(anchor.getId())) {
+            anchorIndex.put(anchor.getId(), location);
+        }
     }
 
     public CurveAnchor getAnchor(UUID id) {
@@ -69,6 +217,7 @@ public class RouteSession {
 
     public void removeAnchor(UUID id) {
         anchors.remove(id);
+        anchorIndex.remove(id);
         if (id.equals(selectedAnchorId)) {
             selectedAnchorId = null;
             originalSelectedAnchorLocation = null; // アンカー削除時もリセット
@@ -76,9 +225,16 @@ public class RouteSession {
     }
 
     public void clearSession() {
-        nodes.clear();
-        edges.clear();
+        synchronized (graphLock) {
+            nodes.clear();
+            edges.clear();
+            edgeSet.clear();
+            edgesByNode.clear();
+            edgesByAnchor.clear();
+        }
         anchors.clear(); // アンカーもクリア
+        nodeIndex.clear();
+        anchorIndex.clear();
         this.branchStartNodeId = null;
         this.previewLocation = null;
         this.markerLocations.clear();
@@ -87,7 +243,10 @@ public class RouteSession {
         this.originalSelectedAnchorLocation = null; // 元の位置もクリア
         this.currentEdgeMode = EdgeMode.STRAIGHT; // セッションクリア時もリセット
         this.currentAnchorEditMode = AnchorEditMode.FREE; // アンカー編集モードもリセット
-        this.calculatedPath.clear(); // 追加: 計算された経路もクリア
+        setTerrainFollowing(false); // 地形追従もリセット
+        this.calculatedPath = new PolylineBuffer(null, 1); // 追加: 計算された経路もクリア
+        this.combinedSources.clear();
+        this.combinedEnds = new int[0];
     }
 
     public UUID getBranchStartNodeId() {
@@ -139,6 +298,37 @@ public class RouteSession {
         return originalSelectedAnchorLocation;
     }
 
+    /**
+     * ライブドラッグのプレビュー計算を開始します。前回の計算が終わっていなければ開始しません。
+     * @return 開始できた場合はtrue
+     */
+    boolean beginLivePreview() {
+        return livePreviewPending.compareAndSet(false, true);
+    }
+
+    /**
+     * ライブドラッグのプレビュー計算の終了を記録します。
+     */
+    void endLivePreview() {
+        livePreviewPending.set(false);
+    }
+
+    public boolean isTerrainFollowing() {
+        return terrainFollowing;
+    }
+
+    /**
+     * 経路の高さを地形に沿わせるかどうかを設定します。
+     * 切り替えるとすべてのエッジの依存要素の版番号が変わり、次回の再計算で全エッジを計算し直します。
+     * @param terrainFollowing 地形に沿わせる場合true
+     */
+    public void setTerrainFollowing(boolean terrainFollowing) {
+        if (this.terrainFollowing != terrainFollowing) {
+            this.terrainFollowing = terrainFollowing;
+            this.terrainVersion = RouteVersions.next();
+        }
+    }
+
     public EdgeMode getCurrentEdgeMode() {
         return currentEdgeMode;
     }
@@ -161,15 +351,8 @@ public class RouteSession {
      * @return ノードのID、見つからなければnull
      */
     public UUID findNearestNodeId(Location blockLocation) {
-        // 比較のために、検索対象の座標をブロック座標（整数）に変換
-        Location searchLocation = blockLocation.getBlock().getLocation();
-        for (RouteNode node : nodes.values()) {
-            // 各ノードの座標もブロック座標に変換して比較
-            if (node.getLocation().getBlock().getLocation().equals(searchLocation)) {
-                return node.getId(); // ブロック座標が一致すれば、それは同じノードとみなす
-            }
-        }
-        return null; // 範囲内にノードが見つからなかった
+        // ブロック座標が一致すれば、それは同じノードとみなす
+        return nodeIndex.findAt(blockLocation);
     }
 
     /**
@@ -178,23 +361,17 @@ public class RouteSession {
      * @return アンカーのID、見つからなければnull
      */
     public UUID findNearestAnchorId(Location blockLocation) {
-        Location searchLocation = blockLocation.getBlock().getLocation();
-        for (CurveAnchor anchor : anchors.values()) {
-            if (anchor.getLocation().getBlock().getLocation().equals(searchLocation)) {
-                return anchor.getId();
-            }
-        }
-        return null;
+        return anchorIndex.findAt(blockLocation);
     }
 
+    /**
+     * 指定されたノードに接続しているエッジを返します。
+     * @param node 対象のノード
+     * @return 接続しているエッジ（変更できないビュー）
+     */
     public List<RouteEdge> getEdgesConnectedToNode(RouteNode node) {
-        List<RouteEdge> connectedEdges = new ArrayList<>();
-        for (RouteEdge edge : edges) {
-            if (edge.getNode1().equals(node) || edge.getNode2().equals(node)) {
-                connectedEdges.add(edge);
-            }
-        }
-        return connectedEdges;
+        List<RouteEdge> connectedEdges = edgesByNode.get(node.getId());
+        return connectedEdges != null ? Collections.unmodifiableList(connectedEdges) : Collections.emptyList();
     }
 
     /**
@@ -203,30 +380,107 @@ public class RouteSession {
      * @return アンカーに関連付けられているRouteEdge、見つからなければnull
      */
     public RouteEdge getEdgeWithAnchor(CurveAnchor anchor) {
-        for (RouteEdge edge : edges) {
-            if (edge.getCurveAnchor() != null && edge.getCurveAnchor().equals(anchor)) {
-                return edge;
-            }
-        }
-        return null;
+        RouteEdge edge = edgesByAnchor.get(anchor.getId());
+        return edge != null && anchor.equals(edge.getCurveAnchor()) ? edge : null;
     }
 
     /**
      * 計算された高密度経路を取得します。
-     * @return 計算された高密度経路のリスト
+     * @return 計算された高密度経路
      */
-    public List<Location> getCalculatedPath() {
+    public PolylineBuffer getCalculatedPath() {
         return calculatedPath;
     }
 
     /**
      * 計算された高密度経路を設定します。
-     * @param calculatedPath 設定する高密度経路のリスト
+     * @param calculatedPath 設定する高密度経路
      */
-    public void setCalculatedPath(List<Location> calculatedPath) {
+    public void setCalculatedPath(PolylineBuffer calculatedPath) {
+        this.combinedSources.clear();
+        this.combinedEnds = new int[0];
         this.calculatedPath = calculatedPath;
     }
 
+    /**
+     * 全エッジの経路を順に結合し、計算された高密度経路を更新します（接続点の重複は除く）。
+     * 前回の結合から変わっていない先頭部分のエッジは、点を追加し直さずにまとめて複製します。
+     * メインスレッドから呼び出してください。
+     * @param world 結合した経路のワールド
+     * @return 経路が更新された場合true、前回と同じだった場合false
+     */
+    public boolean refreshCalculatedPath(World world) {
+        List<PolylineBuffer> sources = new ArrayList<>();
+        for (RouteEdge edge : edges) {
+            if (edge.getCalculatedPath() != null) {
+                sources.add(edge.getCalculatedPath());
+            }
+        }
+
+        int common = 0;
+        if (calculatedPath.getWorld() == world) {
+            while (common < sources.size() && common < combinedSources.size() && sources.get(common) == combinedSources.get(common)) {
+                common++;
+            }
+            if (common == sources.size() && common == combinedSources.size()) {
+                return false;
+            }
+        }
+
+        int[] ends = new int[sources.size()];
+        System.arraycopy(combinedEnds, 0, ends, 0, common);
+        PolylineBuffer combined = common > 0 ? calculatedPath.copyPrefix(combinedEnds[common - 1]) : new PolylineBuffer(world);
+        for (int i = common; i < sources.size(); i++) {
+            combined.appendAll(sources.get(i));
+            ends[i] = combined.size();
+        }
+        combined.trimToSize();
+
+        combinedSources.clear();
+        combinedSources.addAll(sources);
+        combinedEnds = ends;
+        this.calculatedPath = combined;
+        return true;
+    }
+
+    /**
+     * エッジの経路が依存する要素の版番号を並べた配列を返します。
+     * 両端のノード、アンカー、エッジ自身（モード・アンカーの付け替え）に加え、
+     * ちょうど2つのエッジが接続するノードでは隣のエッジの接線が使われるため、隣のエッジの版番号も含みます。
+     * 地形追従の切り替えでも高さが変わるため、その版番号も含みます。
+     * 配列が前回の計算時と一致すれば、経路を再計算する必要はありません。
+     * @param edge 対象のエッジ
+     * @return 依存要素の版番号
+     */
+    public long[] getPathDependencyStamp(RouteEdge edge) {
+        long[] stamp = new long[5 + NEIGHBOUR_STAMP_LENGTH * 2];
+        stamp[0] = edge.getVersion();
+        stamp[1] = edge.getNode1().getVersion();
+        stamp[2] = edge.getNode2().getVersion();
+        stamp[3] = edge.getCurveAnchor() != null ? edge.getCurveAnchor().getVersion() : 0L;
+        stamp[4] = terrainVersion;
+        writeNeighbourStamp(edge, edge.getNode1(), stamp, 5);
+        writeNeighbourStamp(edge, edge.getNode2(), stamp, 5 + NEIGHBOUR_STAMP_LENGTH);
+        return stamp;
+    }
+
+    private void writeNeighbourStamp(RouteEdge edge, RouteNode node, long[] stamp, int offset) {
+        List<RouteEdge> connectedEdges = getEdgesConnectedToNode(node);
+        stamp[offset] = connectedEdges.size();
+        if (connectedEdges.size() != 2) {
+            return;
+        }
+        for (RouteEdge other : connectedEdges) {
+            if (!other.equals(edge)) {
+                stamp[offset + 1] = other.getVersion();
+                stamp[offset + 2] = other.getNode1().getVersion();
+                stamp[offset + 3] = other.getNode2().getVersion();
+                stamp[offset + 4] = other.getCurveAnchor() != null ? other.getCurveAnchor().getVersion() : 0L;
+                return;
+            }
+        }
+    }
+
     /**
      * 指定されたノードがちょうど2つのエッジで接続されているかを判定します。
      * @param node 検査対象のノード
@@ -0,0 +1,28 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ノード・エッジ・アンカーの版番号を発行するクラス
+ *
+ * 版番号は全ての経路要素で共通の連番から発行するため、要素の作成や変更のたびに一意な値になります。
+ * 版番号を並べたものが一致すれば、エッジの経路が依存する状態は変わっていないと判断できます。
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class RouteVersions {
+
+    private static final AtomicLong COUNTER = new AtomicLong();
+
+    private RouteVersions() {
+    }
+
+    /**
+     * 新しい版番号を発行します。
+     */
+    static long next() {
+        return COUNTER.incrementAndGet();
+    }
+}
@@ -50,13 +50,14 @@ public class RouteVisualizer {
                     cancel();
                     return;
                 }
-                // 全てのエッジの計算済みパスに沿ってパーティクルを表示
+                // 全てのエッジの表示用パス（曲率に応じて間引いたもの）に沿ってパーティクルを表示
                 Bukkit.getScheduler().runTask(plugin, () -> {
                     for (RouteEdge edge : session.getEdges()) {
-                        if (edge.getCalculatedPath() != null) {
+                        PolylineBuffer path = edge.getPreviewPath();
+                        if (path != null) {
                             Particle.DustOptions dustOptions = getDustOptionsForEdgeMode(edge.getEdgeMode());
-                            for (Location point : edge.getCalculatedPath()) {
-                                player.spawnParticle(Particle.REDSTONE, point.clone().add(0, 0.5, 0), 1, 0, 0, 0, 0, dustOptions);
+                            for (int i = 0; i < path.size(); i++) {
+                                player.spawnParticle(Particle.REDSTONE, path.getX(i), path.getY(i) + 0.5, path.getZ(i), 1, 0, 0, 0, 0, dustOptions);
                             }
                         }
                     }
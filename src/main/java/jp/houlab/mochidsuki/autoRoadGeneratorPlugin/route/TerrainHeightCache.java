@@ -0,0 +1,188 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route;
+
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.AutoRoadGeneratorPluginMain;
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build.PlacementBudget;
+import org.bukkit.Bukkit;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 道路の地形追従に使う、チャンクごとの地表の高さのキャッシュ
+ *
+ * メインスレッドでチャンクの {@link ChunkSnapshot} を取得し、ワーカースレッドで16×16列の地表の高さに変換して保持します。
+ * Spigot にはチャンクを非同期で読み込む手段がないため、読み込まれていないチャンクは
+ * {@link PlacementBudget#tryAcquireChunkLoad()} の枠の範囲で1ティックに数個ずつ同期で読み込みます。
+ * 取得した高さは再計算のたびに再利用し、上限を超えた分は最も長く使われていないチャンクから破棄します。
+ * プラグインの設置で地形が変わったチャンクは {@link #invalidate} で、それ以外の変更は {@link #clear} で破棄して取得し直させます。
+ * キャッシュはプラグインが1つだけ保持し、経路の再計算と建築の設置タスクの両方から参照します。
+ *
+ * 地表は、葉・原木と固体でないブロック（草花など）を除いた最も高いブロックです。水などの液体は地表として扱います。
+ * 高さの検索は任意のスレッドから行えます。
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class TerrainHeightCache {
+
+    /** 保持するチャンク数の上限（1チャンクあたり約1KB） */
+    private static final int MAX_CACHED_CHUNKS = 4096;
+
+    private final AutoRoadGeneratorPluginMain plugin;
+    private final Map<ChunkKey, int[]> heights = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ChunkKey, int[]> eldest) {
+            return size() > MAX_CACHED_CHUNKS;
+        }
+    });
+
+    public TerrainHeightCache(AutoRoadGeneratorPluginMain plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * チャンク座標をまとめたキーを返します。
+     */
+    static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    /**
+     * 指定したチャンクの高さを用意し、すべて揃ったらメインスレッドで処理を実行します。
+     * すでに揃っている場合はその場で実行します。メインスレッドから呼び出してください。
+     * @param owner 計算を要求したプレイヤーのUUID（計算スケジューラーの公平性の単位）
+     * @param world 対象のワールド
+     * @param chunks {@link #chunkKey(int, int)} で作ったチャンクのキー
+     * @param onReady 高さが揃った後に実行する処理
+     */
+    void prepare(UUID owner, World world, Set<Long> chunks, Runnable onReady) {
+        Set<Long> pending = new HashSet<>();
+        for (long chunk : chunks) {
+            if (!heights.containsKey(new ChunkKey(world.getUID(), (int) (chunk >> 32), (int) chunk))) {
+                pending.add(chunk);
+            }
+        }
+        if (pending.isEmpty()) {
+            onReady.run();
+            return;
+        }
+
+        AtomicInteger remaining = new AtomicInteger(pending.size());
+        Runnable onExtracted = () -> {
+            if (remaining.decrementAndGet() == 0 && plugin.isEnabled()) {
+                Bukkit.getScheduler().runTask(plugin, onReady);
+            }
+        };
+
+        // 読み込み済みのチャンクはすぐに、それ以外は読み込みの枠が取れたものからスナップショットを取得する
+        // （初回はこの場で、残りは毎ティック確認）
+        PlacementBudget budget = plugin.getPlacementBudget();
+        BukkitRunnable loader = new BukkitRunnable() {
+            @Override
+            public void run() {
+                pending.removeIf(chunk -> {
+                    int chunkX = (int) (chunk >> 32);
+                    int chunkZ = (int) (long) chunk;
+                    if (!world.isChunkLoaded(chunkX, chunkZ) && !budget.tryAcquireChunkLoad()) {
+                        return false;
+                    }
+                    capture(owner, world, chunkX, chunkZ, onExtracted);
+                    return true;
+                });
+                if (pending.isEmpty()) {
+                    cancel();
+                }
+            }
+        };
+        loader.run();
+        if (!pending.isEmpty()) {
+            loader.runTaskTimer(plugin, 1L, 1L);
+        }
+    }
+
+    /**
+     * 指定した位置の地表の上面の高さを返します。
+     * @return 高さ、チャンクの高さが用意されていない場合はNaN
+     */
+    double surfaceAt(World world, double x, double z) {
+        int blockX = (int) Math.floor(x);
+        int blockZ = (int) Math.floor(z);
+        int[] columns = heights.get(new ChunkKey(world.getUID(), blockX >> 4, blockZ >> 4));
+        if (columns == null) {
+            return Double.NaN;
+        }
+        return columns[((blockZ & 15) << 4) | (blockX & 15)] + 1.0;
+    }
+
+    /**
+     * 指定したチャンクの高さを破棄します。次に経路がこのチャンクを通るときに取得し直します。
+     * メインスレッドから呼び出してください。
+     * @param world チャンクのワールド
+     * @param chunkX チャンクのX座標
+     * @param chunkZ チャンクのZ座標
+     */
+    public void invalidate(World world, int chunkX, int chunkZ) {
+        heights.remove(new ChunkKey(world.getUID(), chunkX, chunkZ));
+    }
+
+    /**
+     * 保持している高さをすべて破棄します。メインスレッドから呼び出してください。
+     */
+    public void clear() {
+        heights.clear();
+    }
+
+    // スナップショットの取得はメインスレッド、高さへの変換はワーカースレッドで行う
+    private void capture(UUID owner, World world, int chunkX, int chunkZ, Runnable onExtracted) {
+        ChunkSnapshot snapshot = world.getChunkAt(chunkX, chunkZ).getChunkSnapshot(true, false, false);
+        int minY = world.getMinHeight();
+        ChunkKey key = new ChunkKey(world.getUID(), chunkX, chunkZ);
+        plugin.getComputeScheduler().submit(owner, () -> {
+            try {
+                int[] columns = new int[256];
+                for (int z = 0; z < 16; z++) {
+                    for (int x = 0; x < 16; x++) {
+                        columns[(z << 4) | x] = surfaceY(snapshot, x, z, minY);
+                    }
+                }
+                heights.put(key, columns);
+            } finally {
+                onExtracted.run();
+            }
+        });
+    }
+
+    private static int surfaceY(ChunkSnapshot snapshot, int x, int z, int minY) {
+        for (int y = snapshot.getHighestBlockYAt(x, z); y > minY; y--) {
+            if (isGround(snapshot.getBlockType(x, y, z))) {
+                return y;
+            }
+        }
+        return minY;
+    }
+
+    private static boolean isGround(Material type) {
+        if (type == Material.WATER || type == Material.LAVA) {
+            return true;
+        }
+        if (!type.isSolid()) {
+            return false;
+        }
+        String name = type.name();
+        return !name.endsWith("_LEAVES") && !name.endsWith("_LOG") && !name.endsWith("_WOOD")
+                && !name.endsWith("_STEM") && !name.endsWith("_HYPHAE");
+    }
+
+    private record ChunkKey(UUID worldId, int chunkX, int chunkZ) {
+    }
+}
@@ -0,0 +1,199 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route;
+
+/**
+ * 経路の高さを地形に沿わせる縦断線形の計算
+ *
+ * 水平距離に沿って地表の高さを標本化し、次の順で新しい高さを求めます。
+ * <ol>
+ *   <li>両端のノードの地表からの高さを線形に補間して地表に加え、目標の高さとする（地表が不明な点は両端の高さの線形補間）</li>
+ *   <li>平滑化距離の移動平均で細かな起伏をならす</li>
+ *   <li>勾配が最大勾配以下となる、目標の下側と上側の包絡線を前後2回の走査で求めて平均する</li>
+ *   <li>両端のノードの高さから最大勾配で到達できる範囲に収める</li>
+ * </ol>
+ * どの手順も点の数に対して線形時間です。両端の高さはノードの高さのまま変えないため、隣接するエッジとは必ずつながります。
+ * ただし、ノード間の高低差が最大勾配を超える場合は、その区間の勾配の上限を高低差に合わせて緩めます。
+ *
+ * 点の水平位置と向き（ヨー角）は変えず、ピッチ角は新しい高さから求め直します。
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+final class TerrainProfile {
+
+    private static final double EPSILON = 1e-9;
+
+    private final double maxGrade;
+    private final double smoothingDistance;
+
+    /**
+     * @param maxGrade 最大勾配（水平距離1ブロックあたりの高低差）
+     * @param smoothingDistance 移動平均の幅（ブロック、0の場合は平滑化しない）
+     */
+    TerrainProfile(double maxGrade, double smoothingDistance) {
+        this.maxGrade = Math.max(0.0, maxGrade);
+        this.smoothingDistance = Math.max(0.0, smoothingDistance);
+    }
+
+    double getMaxGrade() {
+        return maxGrade;
+    }
+
+    /**
+     * 地形に沿った高さの経路を求めます。
+     * @param path 元の経路
+     * @param heights 地表の高さ（{@link TerrainHeightCache#prepare} で経路上のチャンクを用意しておくこと）
+     * @return 高さを置き換えた新しい経路
+     */
+    PolylineBuffer apply(PolylineBuffer path, TerrainHeightCache heights) {
+        int n = path.size();
+        if (n < 3) {
+            return path;
+        }
+        double[] s = horizontalDistances(path);
+        double total = s[n - 1];
+        if (total < EPSILON) {
+            return path;
+        }
+        double startY = path.getY(0);
+        double endY = path.getY(n - 1);
+
+        double[] target = new double[n];
+        double startGround = heights.surfaceAt(path.getWorld(), path.getX(0), path.getZ(0));
+        double endGround = heights.surfaceAt(path.getWorld(), path.getX(n - 1), path.getZ(n - 1));
+        double startOffset = Double.isNaN(startGround) ? 0.0 : startY - startGround;
+        double endOffset = Double.isNaN(endGround) ? 0.0 : endY - endGround;
+        for (int i = 0; i < n; i++) {
+            double ratio = s[i] / total;
+            double ground = heights.surfaceAt(path.getWorld(), path.getX(i), path.getZ(i));
+            target[i] = Double.isNaN(ground)
+                    ? startY + (endY - startY) * ratio
+                    : ground + startOffset + (endOffset - startOffset) * ratio;
+        }
+
+        double[] y = smooth(target, s);
+        double grade = Math.max(maxGrade, Math.abs(endY - startY) / total);
+        limitGrade(y, s, grade);
+        for (int i = 0; i < n; i++) {
+            double low = Math.max(startY - grade * s[i], endY - grade * (total - s[i]));
+            double high = Math.min(startY + grade * s[i], endY + grade * (total - s[i]));
+            y[i] = Math.max(low, Math.min(high, y[i]));
+        }
+        y[0] = startY;
+        y[n - 1] = endY;
+        return rebuild(path, s, y);
+    }
+
+    /**
+     * 別の経路で求めた縦断線形を、同じ曲線を異なる間隔で標本化した経路に写します。
+     * 両経路の水平距離を全長で正規化し、対応する位置の高さを線形補間します。
+     * @param path 高さを置き換える経路
+     * @param profile {@link #apply} で求めた経路
+     * @return 高さを置き換えた新しい経路
+     */
+    PolylineBuffer transfer(PolylineBuffer path, PolylineBuffer profile) {
+        int n = path.size();
+        int m = profile.size();
+        if (n < 3 || m < 2) {
+            return path;
+        }
+        double[] s = horizontalDistances(path);
+        double[] sourceS = horizontalDistances(profile);
+        double total = s[n - 1];
+        double sourceTotal = sourceS[m - 1];
+        if (total < EPSILON || sourceTotal < EPSILON) {
+            return path;
+        }
+        double[] y = new double[n];
+        int j = 0;
+        for (int i = 0; i < n; i++) {
+            double position = s[i] / total * sourceTotal;
+            while (j < m - 2 && sourceS[j + 1] < position) {
+                j++;
+            }
+            double span = sourceS[j + 1] - sourceS[j];
+            double ratio = span > EPSILON ? Math.max(0.0, Math.min(1.0, (position - sourceS[j]) / span)) : 0.0;
+            y[i] = profile.getY(j) + (profile.getY(j + 1) - profile.getY(j)) * ratio;
+        }
+        y[0] = path.getY(0);
+        y[n - 1] = path.getY(n - 1);
+        return rebuild(path, s, y);
+    }
+
+    private static double[] horizontalDistances(PolylineBuffer path) {
+        double[] s = new double[path.size()];
+        for (int i = 1; i < s.length; i++) {
+            double dx = path.getX(i) - path.getX(i - 1);
+            double dz = path.getZ(i) - path.getZ(i - 1);
+            s[i] = s[i - 1] + Math.sqrt(dx * dx + dz * dz);
+        }
+        return s;
+    }
+
+    /**
+     * 水平距離で前後 smoothingDistance / 2 以内の点の平均を求めます（累積和と2つの添字による線形時間）。
+     */
+    private double[] smooth(double[] values, double[] s) {
+        int n = values.length;
+        double[] result = new double[n];
+        if (smoothingDistance < EPSILON) {
+            System.arraycopy(values, 0, result, 0, n);
+            return result;
+        }
+        double[] prefix = new double[n + 1];
+        for (int i = 0; i < n; i++) {
+            prefix[i + 1] = prefix[i] + values[i];
+        }
+        double half = smoothingDistance / 2.0;
+        int from = 0;
+        int to = 0;
+        for (int i = 0; i < n; i++) {
+            while (s[i] - s[from] > half) {
+                from++;
+            }
+            while (to + 1 < n && s[to + 1] - s[i] <= half) {
+                to++;
+            }
+            result[i] = (prefix[to + 1] - prefix[from]) / (to - from + 1);
+        }
+        return result;
+    }
+
+    /**
+     * 目標の高さを上から抑える最大の関数と下から抑える最小の関数のうち、勾配が grade 以下のものを求めて平均します。
+     * どちらも勾配が grade 以下なので、平均も勾配が grade 以下になります。
+     */
+    private static void limitGrade(double[] y, double[] s, double grade) {
+        int n = y.length;
+        double[] upper = y.clone();
+        double[] lower = y.clone();
+        for (int i = 1; i < n; i++) {
+            double rise = grade * (s[i] - s[i - 1]);
+            upper[i] = Math.min(upper[i], upper[i - 1] + rise);
+            lower[i] = Math.max(lower[i], lower[i - 1] - rise);
+        }
+        for (int i = n - 2; i >= 0; i--) {
+            double rise = grade * (s[i + 1] - s[i]);
+            upper[i] = Math.min(upper[i], upper[i + 1] + rise);
+            lower[i] = Math.max(lower[i], lower[i + 1] - rise);
+        }
+        for (int i = 0; i < n; i++) {
+            y[i] = 0.5 * (upper[i] + lower[i]);
+        }
+    }
+
+    private static PolylineBuffer rebuild(PolylineBuffer path, double[] s, double[] y) {
+        int n = path.size();
+        PolylineBuffer result = new PolylineBuffer(path.getWorld(), n);
+        for (int i = 0; i < n; i++) {
+            int previous = Math.max(0, i - 1);
+            int next = Math.min(n - 1, i + 1);
+            double run = s[next] - s[previous];
+            float pitch = run > EPSILON
+                    ? (float) -Math.toDegrees(Math.atan2(y[next] - y[previous], run))
+                    : path.getPitch(i);
+            result.add(path.getX(i), y[i], path.getZ(i), path.getYaw(i), pitch);
+        }
+        return result;
+    }
+}
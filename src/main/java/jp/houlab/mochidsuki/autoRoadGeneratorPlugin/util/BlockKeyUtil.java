@@ -0,0 +1,43 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.util;
+
+/**
+ * ブロック座標を1つのlong値に詰め込むためのユーティリティクラス
+ *
+ * 建築のボクセルキャンバスや経路編集の空間インデックスなど、ブロック座標をキーにする表で共通して使います。
+ * x・zは26ビット、yは12ビットの範囲で表現されます。
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class BlockKeyUtil {
+
+    private static final int X_BITS = 26;
+    private static final int Z_BITS = 26;
+    private static final int Y_BITS = 12;
+    private static final long X_MASK = (1L << X_BITS) - 1;
+    private static final long Z_MASK = (1L << Z_BITS) - 1;
+    private static final long Y_MASK = (1L << Y_BITS) - 1;
+
+    private BlockKeyUtil() {
+    }
+
+    /**
+     * ブロック座標を1つのlong値に詰め込みます。
+     */
+    public static long pack(int x, int y, int z) {
+        return ((x & X_MASK) << (Z_BITS + Y_BITS)) | ((z & Z_MASK) << Y_BITS) | (y & Y_MASK);
+    }
+
+    public static int unpackX(long key) {
+        return (int) (key >> (Z_BITS + Y_BITS));
+    }
+
+    public static int unpackY(long key) {
+        return (int) (key << (64 - Y_BITS) >> (64 - Y_BITS));
+    }
+
+    public static int unpackZ(long key) {
+        return (int) (key << X_BITS >> (X_BITS + Y_BITS));
+    }
+}
@@ -2,17 +2,29 @@ package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.util;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * String版のブロック回転ユーティリティ（完全にスレッドセーフ）
+ *
+ * 回転結果はブロック状態文字列と90度回転数の組ごとにメモ化されるため、
+ * 長い道路で同じブロック状態が繰り返し現れても実際の文字列操作は一度だけ行われます。
  */
 public class StringBlockRotationUtil {
 
     private static final Logger logger = Logger.getLogger(StringBlockRotationUtil.class.getName());
 
+    /** 回転キャッシュに保持するブロック状態の最大数 */
+    private static final int ROTATION_CACHE_LIMIT = 8192;
+
+    // ブロック状態文字列 -> 回転数ごとの回転結果（添字 = 90度回転数、未計算はnull）
+    private static final Map<String, String[]> ROTATION_CACHE = new ConcurrentHashMap<>();
+    // プロパティ名 -> 値を抽出する正規表現
+    private static final Map<String, Pattern> PROPERTY_PATTERNS = new ConcurrentHashMap<>();
+
     // 90度時計回りの回転マッピング
     private static final Map<String, String> FACING_ROTATION = new HashMap<>();
     private static final Map<String, String> AXIS_ROTATION = new HashMap<>();
@@ -58,18 +70,44 @@ public class StringBlockRotationUtil {
      * @return 回転後のBlockData文字列
      */
     public static String rotateBlockDataString(String blockDataString, double rotationAngle) {
+        // 角度を90度単位の回転回数に変換
+        return rotateQuarterTurns(blockDataString, getQuarterTurns(rotationAngle));
+    }
+
+    /**
+     * BlockDataStringを90度単位で回転させます。結果はキャッシュされます。
+     * @param blockDataString 元のBlockData文字列
+     * @param quarterTurns 時計回りの90度回転数
+     * @return 回転後のBlockData文字列
+     */
+    public static String rotateQuarterTurns(String blockDataString, int quarterTurns) {
         if (blockDataString == null || blockDataString.isEmpty()) {
             return blockDataString;
         }
+        int turns = ((quarterTurns % 4) + 4) % 4;
+        if (turns == 0) {
+            return blockDataString;
+        }
 
-        try {
-            // 角度を90度単位の回転回数に変換
-            int quarterTurns = getQuarterTurns(rotationAngle);
-
-            if (quarterTurns == 0) {
-                return blockDataString;
+        String[] rotations = ROTATION_CACHE.get(blockDataString);
+        if (rotations == null) {
+            // 上限を超えた場合は全て破棄する（プリセット由来の状態数は通常この上限よりずっと少ない）
+            if (ROTATION_CACHE.size() >= ROTATION_CACHE_LIMIT) {
+                ROTATION_CACHE.clear();
             }
+            rotations = ROTATION_CACHE.computeIfAbsent(blockDataString, k -> new String[4]);
+        }
+        String cached = rotations[turns];
+        if (cached == null) {
+            // 同じ値を書き込むだけなので、複数スレッドで同時に計算しても問題ない
+            cached = rotateUncached(blockDataString, turns);
+            rotations[turns] = cached;
+        }
+        return cached;
+    }
 
+    private static String rotateUncached(String blockDataString, int quarterTurns) {
+        try {
             String result = blockDataString;
             // quarterTurns回だけ90度回転を適用
             for (int i = 0; i < quarterTurns; i++) {
@@ -80,7 +118,7 @@ public class StringBlockRotationUtil {
 
         } catch (Exception e) {
             logger.severe("StringBlockRotationUtil.rotateBlockDataString failed for: '" + blockDataString +
-                         "' with angle: " + Math.toDegrees(rotationAngle) + "°");
+                         "' with angle: " + (quarterTurns * 90) + "°");
             logger.severe("Exception: " + e.getMessage());
             e.printStackTrace();
             // 失敗した場合は元の文字列を返す
@@ -222,7 +260,8 @@ public class StringBlockRotationUtil {
      */
     private static String extractPropertyValue(String blockDataString, String property) {
         // Regex to find "property=value" where value does not contain ',' or ']'
-        Matcher matcher = Pattern.compile(property + "=([^,\\]]*)").matcher(blockDataString);
+        Pattern pattern = PROPERTY_PATTERNS.computeIfAbsent(property, p -> Pattern.compile(p + "=([^,\\]]*)"));
+        Matcher matcher = pattern.matcher(blockDataString);
         if (matcher.find()) {
             return matcher.group(1);
         }
@@ -232,7 +271,7 @@ public class StringBlockRotationUtil {
     /**
      * 角度（ラジアン）を90度単位の回転回数（0〜3）に変換します。
      */
-    private static int getQuarterTurns(double rotationAngle) {
+    public static int getQuarterTurns(double rotationAngle) {
         double degrees = Math.toDegrees(rotationAngle);
         // 角度を 0-360 の範囲に正規化
         degrees = (degrees % 360 + 360) % 360;
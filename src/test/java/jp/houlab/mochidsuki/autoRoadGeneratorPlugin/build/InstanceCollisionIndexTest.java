@@ -0,0 +1,101 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build;
+
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.preset.roadObjects.ObjectPreset;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.util.Vector;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link InstanceCollisionIndex} による重なったインスタンスの除去のテスト
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+class InstanceCollisionIndexTest {
+
+    /** サーバーなしで使える、回転しても変わらないブロック */
+    private static final BlockData STONE = (BlockData) Proxy.newProxyInstance(BlockData.class.getClassLoader(),
+            new Class<?>[]{BlockData.class}, (proxy, method, args) -> switch (method.getName()) {
+                case "getAsString" -> "minecraft:stone";
+                case "clone" -> proxy;
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == args[0];
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+
+    @Test
+    void instanceSharingABlockIsRejected() {
+        InstanceCollisionIndex index = new InstanceCollisionIndex();
+        ObjectPreset.RotatedTemplate block = template(new int[]{0, 0, 0});
+
+        assertTrue(index.tryAdd(0, 64, 0, block));
+        assertFalse(index.tryAdd(0, 64, 0, block));
+        assertTrue(index.tryAdd(1, 64, 0, block));
+        assertTrue(index.tryAdd(0, 65, 0, block));
+    }
+
+    @Test
+    void overlappingBoxesWithoutSharedBlocksAreKept() {
+        InstanceCollisionIndex index = new InstanceCollisionIndex();
+        // 外接箱は同じだが、ブロックは対角線上で互いに重ならない
+        assertTrue(index.tryAdd(0, 64, 0, template(new int[]{0, 0, 0}, new int[]{1, 0, 1})));
+        assertTrue(index.tryAdd(0, 64, 0, template(new int[]{1, 0, 0}, new int[]{0, 0, 1})));
+        assertFalse(index.tryAdd(1, 64, 1, template(new int[]{0, 0, 0})));
+    }
+
+    @Test
+    void collisionsAreFoundAcrossCells() {
+        InstanceCollisionIndex index = new InstanceCollisionIndex();
+        int[][] line = new int[40][];
+        for (int i = 0; i < line.length; i++) {
+            line[i] = new int[]{i, 0, 0};
+        }
+        ObjectPreset.RotatedTemplate longLine = template(line);
+        ObjectPreset.RotatedTemplate block = template(new int[]{0, 0, 0});
+
+        assertTrue(index.tryAdd(0, 64, 0, longLine));
+        assertFalse(index.tryAdd(35, 64, 0, block));
+        assertTrue(index.tryAdd(-1, 64, 0, block));
+        assertTrue(index.tryAdd(35, 64, 1, block));
+
+        assertTrue(index.tryAdd(-50, 64, -20, longLine));
+        assertFalse(index.tryAdd(-15, 64, -20, block));
+        assertTrue(index.tryAdd(-15, 64, -21, block));
+    }
+
+    @Test
+    void manyInstancesAreTracked() {
+        InstanceCollisionIndex index = new InstanceCollisionIndex();
+        ObjectPreset.RotatedTemplate block = template(new int[]{0, 0, 0});
+        for (int i = 0; i < 100; i++) {
+            assertTrue(index.tryAdd(i * 3, 64, i % 7, block));
+        }
+        for (int i = 0; i < 100; i++) {
+            assertFalse(index.tryAdd(i * 3, 64, i % 7, block));
+        }
+    }
+
+    @Test
+    void emptyTemplateNeverCollides() {
+        InstanceCollisionIndex index = new InstanceCollisionIndex();
+        ObjectPreset.RotatedTemplate empty = template();
+        assertTrue(index.tryAdd(0, 64, 0, empty));
+        assertTrue(index.tryAdd(0, 64, 0, empty));
+    }
+
+    private static ObjectPreset.RotatedTemplate template(int[]... offsets) {
+        Map<Vector, BlockData> blocks = new LinkedHashMap<>();
+        for (int[] offset : offsets) {
+            blocks.put(new Vector(offset[0], offset[1], offset[2]), STONE);
+        }
+        return new ObjectPreset("test", blocks, 0, new Vector(1, 1, 1)).getRotationTemplates("", 0f)[0];
+    }
+}
@@ -0,0 +1,127 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.build;
+
+import jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route.PolylineBuffer;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link WallOffsetTracer} の平行曲線とループの切り取りのテスト
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+class WallOffsetTracerTest {
+
+    /** ブロックの中心に丸めることによる道路からの距離の誤差の上限 */
+    private static final double CELL_ERROR = Math.sqrt(0.5);
+
+    @Test
+    void straightRoadIsShiftedToTheRight() {
+        PolylineBuffer road = new PolylineBuffer(null);
+        for (int i = 0; i <= 20; i++) {
+            road.add(0.5 + i * 0.5, 64, 0.5);
+        }
+
+        PolylineBuffer right = WallOffsetTracer.trace(road, 3.0);
+        assertEquals(11, right.size());
+        for (int i = 0; i < right.size(); i++) {
+            assertEquals(0.5 + i, right.getX(i), 1e-9);
+            assertEquals(3.5, right.getZ(i), 1e-9);
+            assertEquals(64.0, right.getY(i), 1e-9);
+        }
+
+        PolylineBuffer left = WallOffsetTracer.trace(road, -3.0);
+        for (int i = 0; i < left.size(); i++) {
+            assertEquals(-2.5, left.getZ(i), 1e-9);
+        }
+    }
+
+    @Test
+    void loopInsideTightCornerIsTrimmed() {
+        // 半径1の右折の内側に4ずらすと、平行曲線は逆走して自己交差する
+        PolylineBuffer road = cornerRoad(1.0);
+        double offset = 4.0;
+        PolylineBuffer wall = WallOffsetTracer.trace(road, offset);
+
+        assertFourConnected(wall);
+        for (int i = 0; i < wall.size(); i++) {
+            double distance = distanceToRoad(road, wall.getX(i), wall.getZ(i));
+            assertTrue(distance >= offset - CELL_ERROR, "cell " + i + " is " + distance + " from the road");
+        }
+        assertEquals(4.5, wall.getZ(0), 1e-9);
+        assertEquals(17.5, wall.getX(wall.size() - 1), 1e-9);
+    }
+
+    @Test
+    void outerSideOfCornerStaysAtOffset() {
+        PolylineBuffer road = cornerRoad(1.0);
+        double offset = -4.0;
+        PolylineBuffer wall = WallOffsetTracer.trace(road, offset);
+
+        assertFourConnected(wall);
+        for (int i = 0; i < wall.size(); i++) {
+            double distance = distanceToRoad(road, wall.getX(i), wall.getZ(i));
+            assertEquals(-offset, distance, CELL_ERROR, "cell " + i);
+        }
+    }
+
+    @Test
+    void gapInRoadIsNotBridged() {
+        PolylineBuffer road = new PolylineBuffer(null);
+        for (int i = 0; i <= 10; i++) {
+            road.add(i * 0.5, 64, 0);
+        }
+        for (int i = 0; i <= 10; i++) {
+            road.add(15 + i * 0.5, 64, 0);
+        }
+
+        PolylineBuffer wall = WallOffsetTracer.trace(road, 3.0);
+        for (int i = 0; i < wall.size(); i++) {
+            assertFalse(wall.getX(i) > 6 && wall.getX(i) < 14, "cell " + i + " bridges the gap at x=" + wall.getX(i));
+        }
+    }
+
+    /**
+     * +X 方向に20進み、指定した半径で右（+Z 方向）に曲がって20進む道路
+     */
+    private static PolylineBuffer cornerRoad(double radius) {
+        PolylineBuffer road = new PolylineBuffer(null);
+        for (int i = 0; i < 40; i++) {
+            road.add(i * 0.5, 64, 0);
+        }
+        int arcPoints = 8;
+        for (int i = 0; i <= arcPoints; i++) {
+            double angle = Math.PI / 2 * i / arcPoints;
+            road.add(20 + radius * Math.sin(angle), 64, radius - radius * Math.cos(angle));
+        }
+        for (int i = 1; i <= 40; i++) {
+            road.add(20 + radius, 64, radius + i * 0.5);
+        }
+        return road;
+    }
+
+    private static void assertFourConnected(PolylineBuffer cells) {
+        for (int i = 1; i < cells.size(); i++) {
+            double step = Math.abs(cells.getX(i) - cells.getX(i - 1)) + Math.abs(cells.getZ(i) - cells.getZ(i - 1));
+            assertEquals(1.0, step, 1e-9, "step into cell " + i);
+        }
+    }
+
+    private static double distanceToRoad(PolylineBuffer road, double x, double z) {
+        double best = Double.POSITIVE_INFINITY;
+        for (int i = 1; i < road.size(); i++) {
+            double ax = road.getX(i - 1);
+            double az = road.getZ(i - 1);
+            double dx = road.getX(i) - ax;
+            double dz = road.getZ(i) - az;
+            double lengthSquared = dx * dx + dz * dz;
+            double t = lengthSquared > 0 ? Math.max(0, Math.min(1, ((x - ax) * dx + (z - az) * dz) / lengthSquared)) : 0;
+            best = Math.min(best, Math.hypot(x - (ax + t * dx), z - (az + t * dz)));
+        }
+        return best;
+    }
+}
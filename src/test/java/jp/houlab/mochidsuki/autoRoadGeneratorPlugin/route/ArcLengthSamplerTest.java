@@ -0,0 +1,84 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route;
+
+import org.bukkit.Location;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link ArcLengthSampler} の弧長からパラメータへの逆写像と、点の間隔のテスト
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+class ArcLengthSamplerTest {
+
+    private static final double TOLERANCE = 1e-6;
+
+    @Test
+    void uniformSamplingInvertsNonUniformParameter() {
+        // x = 10t² は t に対する速さが一定でないため、t の等分では点が始点側に偏る
+        EdgeCurve curve = (t, out) -> {
+            out[0] = 10.0 * t * t;
+            out[1] = 64.0;
+            out[2] = 0.0;
+            out[3] = 20.0 * t;
+            out[4] = 0.0;
+            out[5] = 0.0;
+        };
+        PolylineBuffer path = ArcLengthSampler.sample(curve, null, 16, new PathTolerance(1.0, 0.0),
+                new Location(null, 0, 64, 0), new Location(null, 10, 64, 0), 0f, 0f);
+
+        assertEquals(11, path.size());
+        for (int i = 0; i < path.size(); i++) {
+            assertEquals(i, path.getX(i), TOLERANCE, "point " + i);
+            assertEquals(64.0, path.getY(i), TOLERANCE);
+        }
+    }
+
+    @Test
+    void uniformSamplingOnArcHasEqualChords() {
+        double radius = 10.0;
+        EdgeCurve curve = new EdgeCurve.CircularArc(0, 0, radius, 0, Math.PI / 2, EdgeCurve.HeightProfile.linear(64, 64));
+        PolylineBuffer path = ArcLengthSampler.sample(curve, null, 16, PathTolerance.BUILD,
+                new Location(null, radius, 64, 0), new Location(null, 0, 64, radius), 0f, 0f);
+
+        double arcLength = radius * Math.PI / 2;
+        int segments = (int) Math.ceil(arcLength / PathTolerance.BUILD.getMaxSpacing());
+        assertEquals(segments + 1, path.size());
+        double expectedChord = 2 * radius * Math.sin(arcLength / segments / (2 * radius));
+        for (int i = 0; i < path.size(); i++) {
+            assertEquals(radius, Math.hypot(path.getX(i), path.getZ(i)), TOLERANCE, "radius at " + i);
+            if (i > 0) {
+                assertEquals(expectedChord, path.distance(i - 1, i), TOLERANCE, "chord " + i);
+            }
+        }
+    }
+
+    @Test
+    void adaptiveSamplingKeepsChordErrorWithinTolerance() {
+        double radius = 5.0;
+        PathTolerance tolerance = new PathTolerance(2.0, 0.05);
+        EdgeCurve curve = new EdgeCurve.CircularArc(0, 0, radius, 0, Math.PI, EdgeCurve.HeightProfile.linear(64, 64));
+        PolylineBuffer path = ArcLengthSampler.sample(curve, null, 64, tolerance,
+                new Location(null, radius, 64, 0), new Location(null, -radius, 64, 0), 0f, 0f);
+
+        for (int i = 1; i < path.size(); i++) {
+            double chord = path.distance(i - 1, i);
+            double sagitta = radius - Math.sqrt(radius * radius - chord * chord / 4);
+            assertTrue(sagitta <= tolerance.getMaxChordError() + TOLERANCE, "sagitta " + sagitta + " at " + i);
+        }
+    }
+
+    @Test
+    void adaptiveSamplingUsesMaxSpacingOnStraightLine() {
+        EdgeCurve curve = new EdgeCurve.Line(0, 64, 0, 10, 64, 0);
+        PolylineBuffer path = ArcLengthSampler.sample(curve, null, 10, new PathTolerance(2.0, 0.05),
+                new Location(null, 0, 64, 0), new Location(null, 10, 64, 0), 0f, 0f);
+
+        assertEquals(6, path.size());
+        assertEquals(10.0, path.length(), TOLERANCE);
+    }
+}
@@ -0,0 +1,91 @@
+package jp.houlab.mochidsuki.autoRoadGeneratorPlugin.route;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * {@link EulerSpiral} の当てはめと位置の計算のテスト
+ *
+ * @author Mochidsuki
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+class EulerSpiralTest {
+
+    private static final double TOLERANCE = 1e-6;
+
+    @Test
+    void fitReachesEndPointWithEndTangent() {
+        double[][] cases = {
+                {0, 0, 0.3, 50, 20, -1.2},
+                {0, 0, 1.5, 100, 5, -1.5},
+                {10, -4, Math.PI, -30, 12, 2.0},
+        };
+        for (double[] c : cases) {
+            EulerSpiral spiral = EulerSpiral.fit(c[0], c[1], c[2], c[3], c[4], c[5]);
+            assertNotNull(spiral);
+            double[] end = new double[2];
+            spiral.positionAt(spiral.getLength(), end);
+            assertEquals(c[3], end[0], TOLERANCE);
+            assertEquals(c[4], end[1], TOLERANCE);
+            assertEquals(0.0, normalize(spiral.angleAt(spiral.getLength()) - c[5]), TOLERANCE);
+            assertEquals(0.0, normalize(spiral.angleAt(0.0) - c[2]), TOLERANCE);
+        }
+    }
+
+    @Test
+    void fitOfAlignedTangentsIsStraight() {
+        EulerSpiral spiral = EulerSpiral.fit(0, 0, 0, 10, 0, 0);
+        assertNotNull(spiral);
+        assertEquals(10.0, spiral.getLength(), TOLERANCE);
+        double[] point = new double[2];
+        spiral.positionAt(5.0, point);
+        assertEquals(5.0, point[0], TOLERANCE);
+        assertEquals(0.0, point[1], TOLERANCE);
+    }
+
+    @Test
+    void fitOfSymmetricTangentsIsCircularArc() {
+        // 弦に対して対称な接線は一定の曲率（円弧）になり、接線角は弧長に比例して変わる
+        EulerSpiral spiral = EulerSpiral.fit(0, 0, 0.5, 10, 0, -0.5);
+        assertNotNull(spiral);
+        double length = spiral.getLength();
+        assertEquals(0.25, spiral.angleAt(length / 4), TOLERANCE);
+        double[] middle = new double[2];
+        spiral.positionAt(length / 2, middle);
+        assertEquals(5.0, middle[0], TOLERANCE);
+    }
+
+    @Test
+    void positionMatchesDirectIntegration() {
+        EulerSpiral spiral = EulerSpiral.fit(0, 0, 1.2, 40, 0, 1.0);
+        assertNotNull(spiral);
+        int steps = 200_000;
+        double h = spiral.getLength() / steps;
+        double x = 0.0;
+        double z = 0.0;
+        double[] point = new double[2];
+        for (int k = 1; k <= steps; k++) {
+            double angle = spiral.angleAt((k - 0.5) * h);
+            x += h * Math.cos(angle);
+            z += h * Math.sin(angle);
+            if (k % 25_000 == 0) {
+                spiral.positionAt(k * h, point);
+                assertEquals(x, point[0], 1e-4, "x at " + k * h);
+                assertEquals(z, point[1], 1e-4, "z at " + k * h);
+            }
+        }
+    }
+
+    @Test
+    void fitOfCoincidentPointsFails() {
+        assertNull(EulerSpiral.fit(3, 3, 0, 3, 3, 1));
+    }
+
+    private static double normalize(double angle) {
+        return Math.atan2(Math.sin(angle), Math.cos(angle));
+    }
+}